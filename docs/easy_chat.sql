@@ -44,6 +44,8 @@ CREATE TABLE `groups` (
     announcement TEXT COMMENT '群公告',
     max_members INT DEFAULT 500 COMMENT '最大成员数',
     status TINYINT DEFAULT 1 COMMENT '群状态：0-已解散，1-正常',
+    last_message_id BIGINT DEFAULT NULL COMMENT '最后一条消息ID（读扩散模式下维护）',
+    last_message_time TIMESTAMP NULL COMMENT '最后消息时间（读扩散模式下维护）',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
 
@@ -87,8 +89,9 @@ CREATE TABLE conversations (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='会话表';
 
 CREATE TABLE messages (
-    id BIGINT PRIMARY KEY AUTO_INCREMENT COMMENT '消息ID',
+    id BIGINT PRIMARY KEY COMMENT '消息ID（雪花算法生成，时间有序）',
     conversation_id VARCHAR(64) NOT NULL COMMENT '会话ID',
+    seq BIGINT NOT NULL COMMENT '会话内序列号（从 1 开始单调递增）',
     sender_id BIGINT NOT NULL COMMENT '发送者ID',
     message_type TINYINT NOT NULL COMMENT '消息类型：1-文本，2-图片，3-语音，4-视频，5-文件，6-位置，7-系统消息',
     content TEXT COMMENT '消息内容',
@@ -99,8 +102,12 @@ CREATE TABLE messages (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
 
-    -- 关键索引：按会话分页查询消息（最新在前）
-    INDEX idx_conv_created (conversation_id, created_at DESC),
+    -- 关键索引：按会话 + 消息ID 游标分页（历史消息向前/向后翻页、定位到消息）和区间扫描（重连同步）
+    -- 消息ID时间有序，与查询的排序一致，无需 filesort；status 放在索引内，已删除的消息在索引中过滤
+    INDEX idx_conv_id (conversation_id, id, status),
+
+    -- 会话内序列号唯一，用于按序列号区间补拉消息
+    UNIQUE KEY uk_conv_seq (conversation_id, seq),
 
     -- 辅助索引：查某人发送的所有消息（用于个人中心等）
     INDEX idx_sender_created (sender_id, created_at DESC)
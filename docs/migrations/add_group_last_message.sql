@@ -0,0 +1,32 @@
+-- 为已有的 groups 表增加最后一条消息（读扩散模式的大群使用，MySQL 8.0+）
+-- 新部署直接使用 docs/easy_chat.sql，无需执行本脚本
+--
+-- 应用按群维护 last_message_id、last_message_time，只在新消息ID更大时更新（GroupMapper.updateLastMessage）。
+-- 回填使用同样的条件，可以在应用运行时执行：回填与应用的写入谁先谁后，结果都是最大的消息ID；重复执行也不会改变结果。
+-- 应在部署开启读扩散的新版本之前执行，否则已有大群在会话列表中没有最后一条消息
+
+-- 1. 加列
+ALTER TABLE `groups`
+    ADD COLUMN last_message_id BIGINT DEFAULT NULL COMMENT '最后一条消息ID（读扩散模式下维护）' AFTER status,
+    ADD COLUMN last_message_time TIMESTAMP NULL COMMENT '最后消息时间（读扩散模式下维护）' AFTER last_message_id;
+
+-- 2. 按群会话（conversation_id = g_{群ID}）的最大消息ID回填
+--    各会话的最大ID通过 idx_conv_id 取得，不扫描全部消息；撤回、删除的消息与应用一致，同样计入
+UPDATE `groups` g
+    JOIN (
+        SELECT conversation_id, MAX(id) AS max_id
+        FROM messages
+        WHERE conversation_id LIKE 'g\_%'
+        GROUP BY conversation_id
+    ) latest ON latest.conversation_id = CONCAT('g_', g.id)
+    JOIN messages m ON m.id = latest.max_id
+SET g.last_message_id   = m.id,
+    g.last_message_time = m.created_at
+WHERE g.last_message_id IS NULL OR g.last_message_id < m.id;
+
+-- 3. 回填结果检查：应返回 0 行
+SELECT g.id, g.last_message_id, MAX(m.id)
+FROM `groups` g
+    JOIN messages m ON m.conversation_id = CONCAT('g_', g.id)
+GROUP BY g.id, g.last_message_id
+HAVING g.last_message_id IS NULL OR g.last_message_id < MAX(m.id);
@@ -0,0 +1,26 @@
+-- 为已有的 messages 表增加会话内序列号 seq（MySQL 8.0+）
+-- 新部署直接使用 docs/easy_chat.sql，无需执行本脚本
+--
+-- 已有数据的表不能直接加 NOT NULL 列和唯一索引：所有旧消息的 seq 都会是 0，唯一索引创建失败。
+-- 因此先以默认值 0 加列，再按 (conversation_id, id) 顺序回填 1、2、3……，最后去掉默认值并创建唯一索引。
+-- 回填期间应停止写入（或在维护窗口执行）；应用启动后 Redis 中的计数器不存在，会从回填后的最大序列号继续分配
+
+-- 1. 加列（暂时允许默认值 0）
+ALTER TABLE messages
+    ADD COLUMN seq BIGINT NOT NULL DEFAULT 0 COMMENT '会话内序列号（从 1 开始单调递增）' AFTER conversation_id;
+
+-- 2. 按会话内消息ID顺序回填序列号
+UPDATE messages m
+    JOIN (
+        SELECT id, ROW_NUMBER() OVER (PARTITION BY conversation_id ORDER BY id) AS rn
+        FROM messages
+    ) numbered ON numbered.id = m.id
+SET m.seq = numbered.rn;
+
+-- 3. 回填结果检查：应返回 0 行
+SELECT conversation_id, seq, COUNT(*) FROM messages GROUP BY conversation_id, seq HAVING COUNT(*) > 1 OR seq = 0;
+
+-- 4. 去掉默认值，创建唯一索引
+ALTER TABLE messages
+    ALTER COLUMN seq DROP DEFAULT,
+    ADD UNIQUE KEY uk_conv_seq (conversation_id, seq);
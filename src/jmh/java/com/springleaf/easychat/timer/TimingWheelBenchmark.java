@@ -0,0 +1,189 @@
+package com.springleaf.easychat.timer;
+
+import com.springleaf.easychat.config.EasyChatProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时间轮与 ScheduledThreadPoolExecutor 的定时开销对比（10 万个在途定时，相当于 10 万个连接的心跳检测）
+ * 每次操作取消一个在途定时并重新添加一个（与心跳检测的重新定时一致），总数保持 10 万；
+ * 分别以 1、4 个线程运行，运行前先测量两者持有 10 万个定时时的堆占用
+ *
+ * 运行：mvn -Pjmh test-compile exec:exec
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimingWheelBenchmark {
+
+    static final int TIMERS = 100_000;
+
+    private static final Runnable NOOP = () -> {
+    };
+
+    /**
+     * 定时时长：25 ~ 55 秒分散分布，基准测试期间不会到期
+     */
+    static long delayMillis(int i) {
+        return 25_000 + (i % 30_000);
+    }
+
+    @State(Scope.Benchmark)
+    public static class WheelState {
+
+        TimingWheel timingWheel;
+        TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[TIMERS];
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            timingWheel = new TimingWheel(new EasyChatProperties());
+            timingWheel.start();
+            for (int i = 0; i < TIMERS; i++) {
+                timeouts[i] = timingWheel.schedule(NOOP, delayMillis(i), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            timingWheel.stop();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ExecutorState {
+
+        ScheduledThreadPoolExecutor executor;
+        ScheduledFuture<?>[] futures = new ScheduledFuture<?>[TIMERS];
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            executor = newExecutor();
+            for (int i = 0; i < TIMERS; i++) {
+                futures[i] = executor.schedule(NOOP, delayMillis(i), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 每个基准线程轮流重新定时自己那一段定时（多线程时共享同一个时间轮、执行器，与多个连接线程并发定时一致）
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int from;
+        int to;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+            int slice = TIMERS / threadParams.getThreadCount();
+            from = threadParams.getThreadIndex() * slice;
+            to = from + slice;
+            next = from;
+        }
+
+        int next() {
+            int i = next;
+            next = i + 1 == to ? from : i + 1;
+            return i;
+        }
+    }
+
+    @Benchmark
+    public Object timingWheelReschedule(WheelState state, Cursor cursor) {
+        int i = cursor.next();
+        state.timeouts[i].cancel();
+        return state.timeouts[i] = state.timingWheel.schedule(NOOP, delayMillis(i), TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    public Object executorReschedule(ExecutorState state, Cursor cursor) {
+        int i = cursor.next();
+        state.futures[i].cancel(false);
+        return state.futures[i] = state.executor.schedule(NOOP, delayMillis(i), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 与心跳检测原先的用法一致：单线程，取消时立即从队列移除
+     */
+    static ScheduledThreadPoolExecutor newExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * 持有 10 万个定时后增加的堆占用（两次 Full GC 后的已用堆之差，线程等固定开销不计入）
+     * 时间轮的工作线程、ScheduledThreadPoolExecutor 的线程对象图包含 JDK 内部类，JOL 无法遍历，因此按堆差值测量
+     */
+    static void printFootprint() throws InterruptedException {
+        TimingWheel timingWheel = new TimingWheel(new EasyChatProperties());
+        timingWheel.start();
+        TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[TIMERS];
+        long before = usedHeap();
+        for (int i = 0; i < TIMERS; i++) {
+            timeouts[i] = timingWheel.schedule(NOOP, delayMillis(i), TimeUnit.MILLISECONDS);
+        }
+        // 等待时间轮线程把新任务转入槽位
+        Thread.sleep(500);
+        long wheelBytes = usedHeap() - before;
+        timingWheel.stop();
+
+        ScheduledThreadPoolExecutor executor = newExecutor();
+        ScheduledFuture<?>[] futures = new ScheduledFuture<?>[TIMERS];
+        before = usedHeap();
+        for (int i = 0; i < TIMERS; i++) {
+            futures[i] = executor.schedule(NOOP, delayMillis(i), TimeUnit.MILLISECONDS);
+        }
+        long executorBytes = usedHeap() - before;
+        executor.shutdownNow();
+
+        System.out.printf("Heap for %d timers: TimingWheel %d bytes (%.1f/timer), ScheduledThreadPoolExecutor %d bytes (%.1f/timer)%n",
+                TIMERS, wheelBytes, (double) wheelBytes / TIMERS, executorBytes, (double) executorBytes / TIMERS);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 2; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws RunnerException, InterruptedException {
+        printFootprint();
+        for (int threads : new int[]{1, 4}) {
+            new Runner(new OptionsBuilder()
+                    .include(TimingWheelBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler("gc")
+                    .build()).run();
+        }
+    }
+}
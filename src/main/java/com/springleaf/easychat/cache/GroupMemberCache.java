@@ -0,0 +1,145 @@
+package com.springleaf.easychat.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.springleaf.easychat.cluster.ClusterMessageBus;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.enums.GroupMemberStatusEnum;
+import com.springleaf.easychat.mapper.GroupMemberMapper;
+import com.springleaf.easychat.model.entity.GroupMember;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 群成员缓存
+ * key: groupId, value: 群成员快照（正常状态成员的 userId、角色，已退出的成员不在快照中）
+ *
+ * 发送群消息时的发送者校验、会话更新和推送共用此缓存，成员变更（建群、拉人、退群、踢人）后需调用 {@link #invalidate(Long)}
+ */
+@Slf4j
+@Component
+public class GroupMemberCache {
+
+    /**
+     * 缓存名称（用于集群失效广播）
+     */
+    public static final String CACHE_NAME = "groupMembers";
+
+    private final GroupMemberMapper groupMemberMapper;
+    private final ClusterMessageBus clusterMessageBus;
+    private final LoadingCache<Long, GroupMemberSnapshot> cache;
+
+    /**
+     * 失效监听器（本节点或其他节点触发的失效都会回调），参数为群组ID
+     */
+    private final List<Consumer<Long>> invalidationListeners = new CopyOnWriteArrayList<>();
+
+    public GroupMemberCache(GroupMemberMapper groupMemberMapper,
+                            ClusterMessageBus clusterMessageBus,
+                            EasyChatProperties properties) {
+        this.groupMemberMapper = groupMemberMapper;
+        this.clusterMessageBus = clusterMessageBus;
+        EasyChatProperties.CacheSpec spec = properties.getCache().getGroupMembers();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(spec.getMaximumSize())
+                .expireAfterWrite(Duration.ofSeconds(spec.getExpireSeconds()))
+                .recordStats()
+                .build(this::load);
+    }
+
+    @PostConstruct
+    public void init() {
+        clusterMessageBus.registerEvictionHandler(CACHE_NAME,
+                keys -> keys.forEach(key -> evictLocally(Long.valueOf(key))));
+    }
+
+    /**
+     * 注册失效监听器，用于依赖群成员的其他本地结构同步失效
+     *
+     * @param listener 监听器，参数为群组ID
+     */
+    public void addInvalidationListener(Consumer<Long> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    /**
+     * 获取群成员快照
+     *
+     * @param groupId 群组ID
+     * @return 群成员快照（群不存在时为空快照）
+     */
+    public GroupMemberSnapshot get(Long groupId) {
+        return cache.get(groupId);
+    }
+
+    /**
+     * 使群成员缓存失效
+     * 在事务中调用时，除立即失效外还会在事务提交后再次失效，防止提交前被其他线程以旧数据重新加载；
+     * 同时广播给其他节点
+     *
+     * @param groupId 群组ID
+     */
+    public void invalidate(Long groupId) {
+        evictLocally(groupId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictAndBroadcast(groupId);
+                }
+            });
+        } else {
+            evictAndBroadcast(groupId);
+        }
+    }
+
+    private void evictAndBroadcast(Long groupId) {
+        evictLocally(groupId);
+        clusterMessageBus.broadcastEviction(CACHE_NAME, Collections.singletonList(String.valueOf(groupId)));
+        log.debug("群成员缓存已失效，群组ID: {}", groupId);
+    }
+
+    private void evictLocally(Long groupId) {
+        cache.invalidate(groupId);
+        for (Consumer<Long> listener : invalidationListeners) {
+            listener.accept(groupId);
+        }
+    }
+
+    private GroupMemberSnapshot load(Long groupId) {
+        LambdaQueryWrapper<GroupMember> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(GroupMember::getUserId, GroupMember::getRole, GroupMember::getStatus)
+               .eq(GroupMember::getGroupId, groupId)
+               .eq(GroupMember::getStatus, GroupMemberStatusEnum.NORMAL.getCode());
+        List<GroupMember> members = groupMemberMapper.selectList(wrapper);
+        return GroupMemberSnapshot.of(members);
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("averageLoadMillis", stats.averageLoadPenalty() / 1_000_000.0);
+        return result;
+    }
+}
@@ -0,0 +1,85 @@
+package com.springleaf.easychat.cache;
+
+import com.springleaf.easychat.enums.GroupMemberStatusEnum;
+import com.springleaf.easychat.model.entity.GroupMember;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 群成员快照（只读）
+ * 只包含正常状态的成员：已退出的成员不能发消息，也不再接收推送、增加未读数，构建时直接排除，
+ * 因此成员判断、成员数和遍历都只针对正常成员。
+ * 使用按 userId 升序排列的 long 数组存储成员，角色用平行的 byte 数组存储，
+ * 千人群约占 9KB，成员判断为二分查找
+ */
+public final class GroupMemberSnapshot {
+
+    private final long[] userIds;
+    private final byte[] roles;
+
+    private GroupMemberSnapshot(long[] userIds, byte[] roles) {
+        this.userIds = userIds;
+        this.roles = roles;
+    }
+
+    /**
+     * 由群成员记录构建快照（非正常状态的记录被忽略）
+     *
+     * @param members 群成员记录
+     * @return 快照
+     */
+    public static GroupMemberSnapshot of(List<GroupMember> members) {
+        GroupMember[] sorted = members.stream()
+                .filter(member -> GroupMemberStatusEnum.NORMAL.getCode().equals(member.getStatus()))
+                .sorted(Comparator.comparingLong(GroupMember::getUserId))
+                .toArray(GroupMember[]::new);
+
+        long[] userIds = new long[sorted.length];
+        byte[] roles = new byte[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            userIds[i] = sorted[i].getUserId();
+            roles[i] = sorted[i].getRole() != null ? sorted[i].getRole().byteValue() : 0;
+        }
+        return new GroupMemberSnapshot(userIds, roles);
+    }
+
+    /**
+     * 正常成员数
+     */
+    public int size() {
+        return userIds.length;
+    }
+
+    /**
+     * 是否为正常状态的成员
+     */
+    public boolean contains(long userId) {
+        return Arrays.binarySearch(userIds, userId) >= 0;
+    }
+
+    /**
+     * 获取成员角色
+     *
+     * @return 角色码，不是成员时返回 null
+     */
+    public Integer getRole(long userId) {
+        int index = Arrays.binarySearch(userIds, userId);
+        return index >= 0 ? (int) roles[index] : null;
+    }
+
+    /**
+     * 按下标获取成员ID
+     */
+    public long userIdAt(int index) {
+        return userIds[index];
+    }
+
+    /**
+     * 获取所有成员ID（副本）
+     */
+    public long[] userIds() {
+        return userIds.clone();
+    }
+}
@@ -0,0 +1,220 @@
+package com.springleaf.easychat.cache;
+
+import cn.dev33.satoken.SaManager;
+import cn.dev33.satoken.dao.SaTokenDao;
+import cn.dev33.satoken.session.SaSession;
+import cn.dev33.satoken.stp.StpUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.springleaf.easychat.cluster.ClusterMessageBus;
+import com.springleaf.easychat.config.EasyChatProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 登录 token 缓存
+ * key: token 在 Sa-Token 存储中的键，value: loginId（或 Sa-Token 的异常标记值，例如被顶下线）
+ *
+ * 每个需要登录的 REST 请求和 WebSocket 握手都要由 token 查出 loginId，默认每次都是一次 Redis GET。
+ * 这里在 Sa-Token 的存储层（{@link SaTokenDao}）外包一层本地缓存，只缓存 token -> loginId 的映射：
+ * 登录、注销、被踢下线、被顶下线都会写入或删除该映射，写入时立即失效本地缓存并通知其他节点失效；
+ * token 在 Redis 中自然过期不会产生通知，由较短的本地过期时间兜底
+ */
+@Slf4j
+@Component
+public class LoginTokenCache implements SmartInitializingSingleton {
+
+    /**
+     * 缓存名称（用于集群失效广播）
+     */
+    public static final String CACHE_NAME = "loginTokens";
+
+    private final ClusterMessageBus clusterMessageBus;
+    private final Cache<String, String> cache;
+
+    /**
+     * token -> loginId 映射的键前缀
+     */
+    private String tokenKeyPrefix;
+
+    public LoginTokenCache(ClusterMessageBus clusterMessageBus, EasyChatProperties properties) {
+        this.clusterMessageBus = clusterMessageBus;
+        EasyChatProperties.CacheSpec spec = properties.getCache().getLoginTokens();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(spec.getMaximumSize())
+                .expireAfterWrite(Duration.ofSeconds(spec.getExpireSeconds()))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 所有单例初始化完成（Sa-Token 已注入 Redis 存储）后，用带缓存的存储替换之
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        tokenKeyPrefix = StpUtil.getStpLogic().splicingKeyTokenValue("");
+        clusterMessageBus.registerEvictionHandler(CACHE_NAME, keys -> keys.forEach(cache::invalidate));
+        SaTokenDao delegate = SaManager.getSaTokenDao();
+        SaManager.setSaTokenDao(new CachingSaTokenDao(delegate));
+        log.info("登录 token 缓存已启用，存储: {}, 键前缀: {}", delegate.getClass().getSimpleName(), tokenKeyPrefix);
+    }
+
+    private boolean isTokenKey(String key) {
+        return key != null && key.startsWith(tokenKeyPrefix);
+    }
+
+    private void evictAndBroadcast(String key) {
+        cache.invalidate(key);
+        clusterMessageBus.broadcastEviction(CACHE_NAME, Collections.singletonList(key));
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        return result;
+    }
+
+    /**
+     * 带本地缓存的 Sa-Token 存储
+     * token 映射的读取走缓存，写入、删除时失效；其余操作原样委托
+     */
+    private class CachingSaTokenDao implements SaTokenDao {
+
+        private final SaTokenDao delegate;
+
+        CachingSaTokenDao(SaTokenDao delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String get(String key) {
+            if (!isTokenKey(key)) {
+                return delegate.get(key);
+            }
+            // token 不存在时不缓存，避免登录后短时间内仍被判定为未登录
+            String value = cache.getIfPresent(key);
+            if (value == null) {
+                value = delegate.get(key);
+                if (value != null) {
+                    cache.put(key, value);
+                }
+            }
+            return value;
+        }
+
+        @Override
+        public void set(String key, String value, long timeout) {
+            delegate.set(key, value, timeout);
+            if (isTokenKey(key)) {
+                evictAndBroadcast(key);
+            }
+        }
+
+        @Override
+        public void update(String key, String value) {
+            delegate.update(key, value);
+            if (isTokenKey(key)) {
+                evictAndBroadcast(key);
+            }
+        }
+
+        @Override
+        public void delete(String key) {
+            delegate.delete(key);
+            if (isTokenKey(key)) {
+                evictAndBroadcast(key);
+            }
+        }
+
+        @Override
+        public long getTimeout(String key) {
+            return delegate.getTimeout(key);
+        }
+
+        @Override
+        public void updateTimeout(String key, long timeout) {
+            delegate.updateTimeout(key, timeout);
+        }
+
+        @Override
+        public Object getObject(String key) {
+            return delegate.getObject(key);
+        }
+
+        @Override
+        public void setObject(String key, Object object, long timeout) {
+            delegate.setObject(key, object, timeout);
+        }
+
+        @Override
+        public void updateObject(String key, Object object) {
+            delegate.updateObject(key, object);
+        }
+
+        @Override
+        public void deleteObject(String key) {
+            delegate.deleteObject(key);
+        }
+
+        @Override
+        public long getObjectTimeout(String key) {
+            return delegate.getObjectTimeout(key);
+        }
+
+        @Override
+        public void updateObjectTimeout(String key, long timeout) {
+            delegate.updateObjectTimeout(key, timeout);
+        }
+
+        @Override
+        public SaSession getSession(String sessionId) {
+            return delegate.getSession(sessionId);
+        }
+
+        @Override
+        public void setSession(SaSession session, long timeout) {
+            delegate.setSession(session, timeout);
+        }
+
+        @Override
+        public void updateSession(SaSession session) {
+            delegate.updateSession(session);
+        }
+
+        @Override
+        public void deleteSession(String sessionId) {
+            delegate.deleteSession(sessionId);
+        }
+
+        @Override
+        public long getSessionTimeout(String sessionId) {
+            return delegate.getSessionTimeout(sessionId);
+        }
+
+        @Override
+        public void updateSessionTimeout(String sessionId, long timeout) {
+            delegate.updateSessionTimeout(sessionId, timeout);
+        }
+
+        @Override
+        public List<String> searchData(String prefix, String keyword, int start, int size, boolean sortType) {
+            return delegate.searchData(prefix, keyword, start, size, sortType);
+        }
+    }
+}
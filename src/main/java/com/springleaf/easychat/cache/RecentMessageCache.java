@@ -0,0 +1,241 @@
+package com.springleaf.easychat.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.springleaf.easychat.cluster.ClusterMessageBus;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.enums.MessageStatusEnum;
+import com.springleaf.easychat.model.vo.MessageVO;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 会话最近消息缓存
+ * key: conversationId, value: 该会话最近 K 条已填充发送者信息的消息（按序列号排序）
+ *
+ * 打开会话时的第一页历史消息几乎都是同一批最新消息，命中时无需查询消息表和发送者信息。
+ * 发送消息时追加，撤回、删除时更新本地条目并通知其他节点失效；按总内存估算值淘汰最久未使用的会话。
+ *
+ * 其他节点发送的消息不会追加到本节点的缓存，因此读取时以 Redis 中会话当前的序列号校验：
+ * 缓存中最新一条的序列号与之相同、且所需的消息序列号连续时才算命中，否则回源数据库
+ */
+@Slf4j
+@Component
+public class RecentMessageCache {
+
+    /**
+     * 缓存名称（用于集群失效广播）
+     */
+    public static final String CACHE_NAME = "recentMessages";
+
+    /**
+     * 单条消息的固定内存开销估算（对象头、字段、包装类型等）
+     */
+    private static final int MESSAGE_OVERHEAD_BYTES = 256;
+
+    private final ClusterMessageBus clusterMessageBus;
+    private final int capacity;
+    private final Cache<String, RecentMessages> cache;
+
+    /**
+     * 读取命中/未命中次数（条目存在但校验不通过也计为未命中）
+     */
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    public RecentMessageCache(ClusterMessageBus clusterMessageBus, EasyChatProperties properties) {
+        this.clusterMessageBus = clusterMessageBus;
+        EasyChatProperties.RecentMessages spec = properties.getCache().getRecentMessages();
+        this.capacity = spec.getPerConversation();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(spec.getMaximumBytes())
+                .weigher((String conversationId, RecentMessages recent) -> recent.weight())
+                .expireAfterAccess(Duration.ofSeconds(spec.getExpireSeconds()))
+                .recordStats()
+                .build();
+    }
+
+    @PostConstruct
+    public void init() {
+        clusterMessageBus.registerEvictionHandler(CACHE_NAME, keys -> keys.forEach(cache::invalidate));
+    }
+
+    /**
+     * 读取会话最新的一页消息
+     *
+     * @param conversationId 会话ID
+     * @param size 条数
+     * @param currentSeq 会话当前已分配的最大序列号（小于 0 表示未知）
+     * @return 最新的消息（按ID倒序，已排除删除的消息），缓存无法完整提供时返回 null
+     */
+    public List<MessageVO> getLatest(String conversationId, int size, long currentSeq) {
+        List<MessageVO> result = currentSeq < 0 ? null : readLatest(conversationId, size, currentSeq);
+        if (result == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return result;
+    }
+
+    private List<MessageVO> readLatest(String conversationId, int size, long currentSeq) {
+        RecentMessages recent = cache.getIfPresent(conversationId);
+        if (recent == null || recent.messages().length == 0) {
+            return null;
+        }
+        MessageVO[] messages = recent.messages();
+        if (messages[messages.length - 1].getSeq() != currentSeq) {
+            // 有其他节点发送的、或尚未追加的消息
+            return null;
+        }
+
+        List<MessageVO> result = new ArrayList<>(size);
+        long expectedSeq = currentSeq;
+        for (int i = messages.length - 1; i >= 0 && result.size() < size; i--) {
+            MessageVO message = messages[i];
+            if (message.getSeq() != expectedSeq) {
+                // 序列号不连续，缺少的消息可能不在缓存中
+                return null;
+            }
+            expectedSeq--;
+            if (!MessageStatusEnum.DELETED.getCode().equals(message.getStatus())) {
+                result.add(message);
+            }
+        }
+        // 不足一页时只有缓存已包含会话的第一条消息才算完整
+        if (result.size() < size && expectedSeq > 0) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * 追加新发送的消息
+     *
+     * @param message 消息（已填充发送者信息）
+     */
+    public void append(MessageVO message) {
+        if (message.getSeq() == null) {
+            return;
+        }
+        cache.asMap().compute(message.getConversationId(), (conversationId, recent) ->
+                merge(recent, Collections.singletonList(message), true));
+    }
+
+    /**
+     * 用从数据库读取的最新一页消息填充缓存（已有的条目以缓存为准）
+     *
+     * @param conversationId 会话ID
+     * @param messages 最新的消息
+     */
+    public void fill(String conversationId, List<MessageVO> messages) {
+        if (messages.isEmpty() || messages.stream().anyMatch(message -> message.getSeq() == null)) {
+            return;
+        }
+        cache.asMap().compute(conversationId, (key, recent) -> merge(recent, messages, false));
+    }
+
+    /**
+     * 更新消息状态（撤回、删除），并通知其他节点失效
+     *
+     * @param conversationId 会话ID
+     * @param messageId 消息ID
+     * @param status 新状态
+     */
+    public void updateStatus(String conversationId, Long messageId, Integer status) {
+        cache.asMap().computeIfPresent(conversationId, (key, recent) -> {
+            MessageVO[] messages = recent.messages().clone();
+            for (int i = 0; i < messages.length; i++) {
+                if (messages[i].getId().equals(messageId)) {
+                    MessageVO updated = new MessageVO();
+                    BeanUtils.copyProperties(messages[i], updated);
+                    updated.setStatus(status);
+                    messages[i] = updated;
+                    return new RecentMessages(messages, recent.weight());
+                }
+            }
+            return recent;
+        });
+        clusterMessageBus.broadcastEviction(CACHE_NAME, Collections.singletonList(conversationId));
+    }
+
+    /**
+     * 合并消息并只保留序列号最大的 K 条
+     *
+     * @param overwrite 序列号相同时是否以新消息为准
+     */
+    private RecentMessages merge(RecentMessages recent, List<MessageVO> incoming, boolean overwrite) {
+        TreeMap<Long, MessageVO> bySeq = new TreeMap<>();
+        if (recent != null) {
+            for (MessageVO message : recent.messages()) {
+                bySeq.put(message.getSeq(), message);
+            }
+        }
+        for (MessageVO message : incoming) {
+            if (overwrite) {
+                bySeq.put(message.getSeq(), message);
+            } else {
+                bySeq.putIfAbsent(message.getSeq(), message);
+            }
+        }
+        while (bySeq.size() > capacity) {
+            bySeq.pollFirstEntry();
+        }
+
+        MessageVO[] messages = bySeq.values().toArray(new MessageVO[0]);
+        int weight = 0;
+        for (MessageVO message : messages) {
+            weight += estimateBytes(message);
+        }
+        return new RecentMessages(messages, weight);
+    }
+
+    private static int estimateBytes(MessageVO message) {
+        return MESSAGE_OVERHEAD_BYTES
+                + 2 * (length(message.getContent()) + length(message.getMediaUrl()) + length(message.getFileName())
+                + length(message.getSenderNickname()) + length(message.getSenderAvatar()));
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        long hits = hitCount.sum();
+        long misses = missCount.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("weightedBytes", cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+        result.put("hitCount", hits);
+        result.put("missCount", misses);
+        result.put("hitRate", hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+        result.put("evictionCount", stats.evictionCount());
+        return result;
+    }
+
+    /**
+     * 一个会话的最近消息（不可变，更新时整体替换，以便重新计算权重）
+     *
+     * @param messages 按序列号正序排列的消息
+     * @param weight 内存估算值（字节）
+     */
+    private record RecentMessages(MessageVO[] messages, int weight) {
+    }
+}
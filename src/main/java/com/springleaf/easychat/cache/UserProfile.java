@@ -0,0 +1,40 @@
+package com.springleaf.easychat.cache;
+
+import com.springleaf.easychat.model.entity.User;
+
+import java.time.LocalDate;
+
+/**
+ * 用户资料快照（不含密码、登录时间等敏感或频繁变化的字段）
+ * 用于消息发送者信息、会话列表、好友列表、好友申请等展示场景
+ *
+ * @param id 用户ID
+ * @param account 账号
+ * @param nickname 昵称
+ * @param avatarUrl 头像URL
+ * @param status 用户状态
+ * @param phone 手机号
+ * @param email 邮箱
+ * @param region 地区
+ * @param gender 性别
+ * @param birthday 生日
+ * @param signature 个性签名
+ */
+public record UserProfile(Long id,
+                          String account,
+                          String nickname,
+                          String avatarUrl,
+                          Integer status,
+                          String phone,
+                          String email,
+                          String region,
+                          Integer gender,
+                          LocalDate birthday,
+                          String signature) {
+
+    public static UserProfile of(User user) {
+        return new UserProfile(user.getId(), user.getAccount(), user.getNickname(), user.getAvatarUrl(),
+                user.getStatus(), user.getPhone(), user.getEmail(), user.getRegion(), user.getGender(),
+                user.getBirthday(), user.getSignature());
+    }
+}
@@ -0,0 +1,147 @@
+package com.springleaf.easychat.cache;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.springleaf.easychat.cluster.ClusterMessageBus;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.mapper.UserMapper;
+import com.springleaf.easychat.model.entity.User;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 用户资料缓存
+ * key: userId, value: 用户资料快照
+ *
+ * 发送消息时的发送者/接收者校验、消息发送者信息填充、会话列表、好友列表和好友申请共用此缓存，
+ * 用户资料变更后需调用 {@link #invalidate(Long)}
+ */
+@Slf4j
+@Component
+public class UserProfileCache {
+
+    /**
+     * 缓存名称（用于集群失效广播）
+     */
+    public static final String CACHE_NAME = "userProfiles";
+
+    private final UserMapper userMapper;
+    private final ClusterMessageBus clusterMessageBus;
+    private final LoadingCache<Long, UserProfile> cache;
+
+    public UserProfileCache(UserMapper userMapper,
+                            ClusterMessageBus clusterMessageBus,
+                            EasyChatProperties properties) {
+        this.userMapper = userMapper;
+        this.clusterMessageBus = clusterMessageBus;
+        EasyChatProperties.CacheSpec spec = properties.getCache().getUserProfiles();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(spec.getMaximumSize())
+                .expireAfterWrite(Duration.ofSeconds(spec.getExpireSeconds()))
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public UserProfile load(Long userId) {
+                        User user = userMapper.selectById(userId);
+                        return user == null ? null : UserProfile.of(user);
+                    }
+
+                    @Override
+                    public Map<Long, UserProfile> loadAll(Set<? extends Long> userIds) {
+                        return loadProfiles(userIds);
+                    }
+                });
+    }
+
+    @PostConstruct
+    public void init() {
+        clusterMessageBus.registerEvictionHandler(CACHE_NAME,
+                keys -> keys.forEach(key -> cache.invalidate(Long.valueOf(key))));
+    }
+
+    /**
+     * 获取用户资料
+     *
+     * @param userId 用户ID
+     * @return 用户资料，用户不存在时返回 null
+     */
+    public UserProfile get(Long userId) {
+        return cache.get(userId);
+    }
+
+    /**
+     * 批量获取用户资料（未缓存的用户一次查询加载）
+     *
+     * @param userIds 用户ID
+     * @return userId -> 用户资料，不存在的用户不包含在结果中
+     */
+    public Map<Long, UserProfile> getAll(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return cache.getAll(userIds);
+    }
+
+    /**
+     * 使用户资料缓存失效
+     * 在事务中调用时，除立即失效外还会在事务提交后再次失效，防止提交前被其他线程以旧数据重新加载；
+     * 同时广播给其他节点
+     *
+     * @param userId 用户ID
+     */
+    public void invalidate(Long userId) {
+        cache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictAndBroadcast(userId);
+                }
+            });
+        } else {
+            evictAndBroadcast(userId);
+        }
+    }
+
+    private void evictAndBroadcast(Long userId) {
+        cache.invalidate(userId);
+        clusterMessageBus.broadcastEviction(CACHE_NAME, Collections.singletonList(String.valueOf(userId)));
+        log.debug("用户资料缓存已失效，用户ID: {}", userId);
+    }
+
+    private Map<Long, UserProfile> loadProfiles(Collection<? extends Long> userIds) {
+        Map<Long, UserProfile> profiles = new HashMap<>(userIds.size());
+        for (User user : userMapper.selectBatchIds(userIds)) {
+            profiles.put(user.getId(), UserProfile.of(user));
+        }
+        return profiles;
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("averageLoadMillis", stats.averageLoadPenalty() / 1_000_000.0);
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+package com.springleaf.easychat.cluster;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 节点间投递信封
+ * 同一目标节点上的多个接收者合并为一个信封，一次发布完成投递
+ */
+@Data
+@NoArgsConstructor
+public class ClusterEnvelope {
+
+    /**
+     * 投递消息帧
+     */
+    public static final String TYPE_DELIVER = "deliver";
+
+    /**
+     * 广播本地缓存失效
+     */
+    public static final String TYPE_EVICT = "evict";
+
+    /**
+     * 投递消息状态回执（只投递给启用了投递确认的会话）
+     */
+    public static final String TYPE_RECEIPT = "receipt";
+
+    /**
+     * 投递未读总数（payload 为 用户ID → 未读总数 的 JSON）
+     */
+    public static final String TYPE_BADGE = "badge";
+
+    /**
+     * 更新用户的活跃会话（payload 为会话ID，为 null 表示离开聊天页）
+     */
+    public static final String TYPE_ACTIVE_CHAT = "active_chat";
+
+    /**
+     * 投递好友在线状态变化（payload 为 用户ID → 状态变化列表 的 JSON）
+     */
+    public static final String TYPE_PRESENCE = "presence";
+
+    /**
+     * 信封类型
+     */
+    private String type;
+
+    /**
+     * 来源节点ID
+     */
+    private String sourceNode;
+
+    /**
+     * 目标节点上的接收者用户ID列表
+     */
+    private List<Long> userIds;
+
+    /**
+     * 原样推送给客户端的帧内容（JSON）
+     */
+    private String payload;
+
+    /**
+     * 消息ID（投递消息帧时使用，接收节点据此生成送达回执）
+     */
+    private Long messageId;
+
+    /**
+     * 消息发送者ID（投递消息帧时使用）
+     */
+    private Long senderId;
+
+    /**
+     * 消息所属的会话ID（投递消息帧时使用，接收节点据此延长接收者的活跃会话）
+     */
+    private String conversationId;
+
+    /**
+     * 缓存名称（缓存失效广播时使用）
+     */
+    private String cache;
+
+    /**
+     * 失效的缓存 Key 列表（缓存失效广播时使用）
+     */
+    private List<String> keys;
+
+    public ClusterEnvelope(String type, String sourceNode, List<Long> userIds, String payload) {
+        this.type = type;
+        this.sourceNode = sourceNode;
+        this.userIds = userIds;
+        this.payload = payload;
+    }
+
+    /**
+     * 构造缓存失效广播信封
+     *
+     * @param cache 缓存名称
+     * @param keys 失效的缓存 Key
+     * @return 信封
+     */
+    public static ClusterEnvelope evict(String cache, List<String> keys) {
+        ClusterEnvelope envelope = new ClusterEnvelope();
+        envelope.setType(TYPE_EVICT);
+        envelope.setCache(cache);
+        envelope.setKeys(keys);
+        return envelope;
+    }
+}
@@ -0,0 +1,214 @@
+package com.springleaf.easychat.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import com.springleaf.easychat.websocket.ClientSession;
+import com.springleaf.easychat.websocket.DeliveryAckManager;
+import com.springleaf.easychat.websocket.SessionRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 节点间消息总线
+ * 每个节点订阅自己的频道 chat:node:{nodeId}，其他节点按目标节点合并接收者后发布信封；
+ * 同时订阅广播频道 chat:broadcast，用于各节点本地缓存的失效通知
+ */
+@Slf4j
+@Component
+public class ClusterMessageBus implements MessageListener {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ClusterNode clusterNode;
+    private final SessionRegistry sessionRegistry;
+    private final DeliveryAckManager deliveryAckManager;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 缓存失效处理器
+     * key: 缓存名称, value: 处理器（参数为失效的 Key 列表）
+     */
+    private final Map<String, Consumer<List<String>>> evictionHandlers = new ConcurrentHashMap<>();
+
+    /**
+     * 其他类型信封的处理器
+     * key: 信封类型, value: 处理器
+     */
+    private final Map<String, Consumer<ClusterEnvelope>> envelopeHandlers = new ConcurrentHashMap<>();
+
+    /**
+     * 发布的信封数
+     */
+    private final LongAdder publishedCount = new LongAdder();
+
+    /**
+     * 收到的信封数
+     */
+    private final LongAdder receivedCount = new LongAdder();
+
+    public ClusterMessageBus(StringRedisTemplate stringRedisTemplate,
+                             RedisMessageListenerContainer listenerContainer,
+                             ClusterNode clusterNode,
+                             SessionRegistry sessionRegistry,
+                             DeliveryAckManager deliveryAckManager,
+                             ObjectMapper objectMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.clusterNode = clusterNode;
+        this.sessionRegistry = sessionRegistry;
+        this.deliveryAckManager = deliveryAckManager;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        String channel = RedisKeyConstants.getNodeChannel(clusterNode.getNodeId());
+        listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+        listenerContainer.addMessageListener(this, new ChannelTopic(RedisKeyConstants.BROADCAST_CHANNEL));
+        log.info("订阅节点投递频道: {}, 广播频道: {}", channel, RedisKeyConstants.BROADCAST_CHANNEL);
+    }
+
+    /**
+     * 注册缓存失效处理器，收到其他节点的失效广播时回调
+     *
+     * @param cache 缓存名称
+     * @param handler 处理器
+     */
+    public void registerEvictionHandler(String cache, Consumer<List<String>> handler) {
+        evictionHandlers.put(cache, handler);
+    }
+
+    /**
+     * 注册信封处理器，收到该类型的信封时回调
+     *
+     * @param type 信封类型
+     * @param handler 处理器
+     */
+    public void registerHandler(String type, Consumer<ClusterEnvelope> handler) {
+        envelopeHandlers.put(type, handler);
+    }
+
+    /**
+     * 向所有节点广播缓存失效
+     *
+     * @param cache 缓存名称
+     * @param keys 失效的缓存 Key
+     */
+    public void broadcastEviction(String cache, List<String> keys) {
+        publishTo(RedisKeyConstants.BROADCAST_CHANNEL, ClusterEnvelope.evict(cache, keys));
+    }
+
+    /**
+     * 向目标节点发布信封
+     *
+     * @param nodeId 目标节点ID
+     * @param envelope 信封
+     */
+    public void publish(String nodeId, ClusterEnvelope envelope) {
+        publishTo(RedisKeyConstants.getNodeChannel(nodeId), envelope);
+    }
+
+    private void publishTo(String channel, ClusterEnvelope envelope) {
+        try {
+            envelope.setSourceNode(clusterNode.getNodeId());
+            String json = objectMapper.writeValueAsString(envelope);
+            stringRedisTemplate.convertAndSend(channel, json);
+            publishedCount.increment();
+        } catch (Exception e) {
+            log.error("发布节点信封失败，频道: {}, 类型: {}", channel, envelope.getType(), e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        receivedCount.increment();
+        try {
+            ClusterEnvelope envelope = objectMapper.readValue(message.getBody(), ClusterEnvelope.class);
+            if (ClusterEnvelope.TYPE_DELIVER.equals(envelope.getType())) {
+                deliverLocally(envelope);
+            } else if (ClusterEnvelope.TYPE_RECEIPT.equals(envelope.getType())) {
+                deliverReceipt(envelope);
+            } else if (ClusterEnvelope.TYPE_EVICT.equals(envelope.getType())) {
+                handleEviction(envelope);
+            } else if (envelopeHandlers.containsKey(envelope.getType())) {
+                envelopeHandlers.get(envelope.getType()).accept(envelope);
+            } else {
+                log.warn("未知的节点信封类型: {}", envelope.getType());
+            }
+        } catch (Exception e) {
+            log.error("处理节点信封失败: {}", new String(message.getBody(), StandardCharsets.UTF_8), e);
+        }
+    }
+
+    /**
+     * 将信封中的帧投递给本节点上的接收者
+     */
+    private void deliverLocally(ClusterEnvelope envelope) {
+        if (envelope.getUserIds() == null || envelope.getPayload() == null) {
+            return;
+        }
+        TextMessage textMessage = new TextMessage(envelope.getPayload().getBytes(StandardCharsets.UTF_8));
+        int delivered = 0;
+        for (Long userId : envelope.getUserIds()) {
+            // 多端登录时投递给该用户在本节点的所有连接
+            for (ClientSession clientSession : sessionRegistry.getSessions(userId)) {
+                if (deliveryAckManager.deliver(clientSession, textMessage, envelope.getMessageId(), envelope.getSenderId())) {
+                    clientSession.touchActiveChat(envelope.getConversationId());
+                    delivered++;
+                }
+            }
+        }
+        log.debug("收到节点 {} 的投递，接收者数: {}, 本节点投递成功数: {}",
+                envelope.getSourceNode(), envelope.getUserIds().size(), delivered);
+    }
+
+    /**
+     * 将消息状态回执投递给本节点上启用了投递确认的会话
+     */
+    private void deliverReceipt(ClusterEnvelope envelope) {
+        if (envelope.getUserIds() == null || envelope.getPayload() == null) {
+            return;
+        }
+        TextMessage receipt = new TextMessage(envelope.getPayload().getBytes(StandardCharsets.UTF_8));
+        for (Long userId : envelope.getUserIds()) {
+            for (ClientSession clientSession : sessionRegistry.getSessions(userId)) {
+                deliveryAckManager.sendReceipt(clientSession, receipt);
+            }
+        }
+    }
+
+    /**
+     * 处理其他节点的缓存失效广播（本节点发出的广播已在本地失效，忽略）
+     */
+    private void handleEviction(ClusterEnvelope envelope) {
+        if (clusterNode.isLocal(envelope.getSourceNode())) {
+            return;
+        }
+        Consumer<List<String>> handler = evictionHandlers.get(envelope.getCache());
+        if (handler != null && envelope.getKeys() != null) {
+            handler.accept(envelope.getKeys());
+        }
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    public long getReceivedCount() {
+        return receivedCount.sum();
+    }
+}
@@ -0,0 +1,117 @@
+package com.springleaf.easychat.cluster;
+
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 当前集群节点
+ * 负责生成节点ID、定时上报心跳，并缓存集群中的存活节点列表
+ */
+@Slf4j
+@Component
+public class ClusterNode {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final EasyChatProperties.Cluster config;
+
+    /**
+     * 当前节点ID
+     */
+    @Getter
+    private final String nodeId;
+
+    /**
+     * 存活节点缓存（随心跳刷新）
+     */
+    private volatile Set<String> aliveNodes = Collections.emptySet();
+
+    public ClusterNode(StringRedisTemplate stringRedisTemplate, EasyChatProperties properties) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.config = properties.getCluster();
+        this.nodeId = StringUtils.hasText(config.getNodeId()) ? config.getNodeId() : generateNodeId();
+    }
+
+    @PostConstruct
+    public void init() {
+        heartbeat();
+        log.info("集群节点启动，节点ID: {}, 存活节点: {}", nodeId, aliveNodes);
+    }
+
+    /**
+     * 上报心跳并刷新存活节点列表
+     */
+    @Scheduled(fixedDelayString = "${easy-chat.cluster.heartbeat-interval-millis:5000}")
+    public void heartbeat() {
+        try {
+            long now = System.currentTimeMillis();
+            stringRedisTemplate.opsForZSet().add(RedisKeyConstants.CLUSTER_NODES_KEY, nodeId, now);
+
+            // 清理长时间未心跳的节点
+            long expireBefore = now - config.getNodeTimeoutMillis();
+            stringRedisTemplate.opsForZSet().removeRangeByScore(RedisKeyConstants.CLUSTER_NODES_KEY, 0, expireBefore);
+
+            Set<String> nodes = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(RedisKeyConstants.CLUSTER_NODES_KEY, expireBefore, Double.MAX_VALUE);
+            Set<String> refreshed = nodes != null ? new HashSet<>(nodes) : new HashSet<>();
+            refreshed.add(nodeId);
+            this.aliveNodes = Collections.unmodifiableSet(refreshed);
+        } catch (Exception e) {
+            log.error("节点心跳上报失败，节点ID: {}", nodeId, e);
+        }
+    }
+
+    /**
+     * 判断节点是否存活
+     */
+    public boolean isAlive(String node) {
+        return nodeId.equals(node) || aliveNodes.contains(node);
+    }
+
+    /**
+     * 判断是否为当前节点
+     */
+    public boolean isLocal(String node) {
+        return nodeId.equals(node);
+    }
+
+    /**
+     * 获取存活节点列表
+     */
+    public Set<String> getAliveNodes() {
+        return aliveNodes;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            stringRedisTemplate.opsForZSet().remove(RedisKeyConstants.CLUSTER_NODES_KEY, nodeId);
+            log.info("集群节点下线，节点ID: {}", nodeId);
+        } catch (Exception e) {
+            log.warn("节点下线注销失败，节点ID: {}", nodeId, e);
+        }
+    }
+
+    private static String generateNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
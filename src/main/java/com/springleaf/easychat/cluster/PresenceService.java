@@ -0,0 +1,244 @@
+package com.springleaf.easychat.cluster;
+
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 在线状态服务
+ * 每个节点维护一个以用户ID为偏移量的位图（presence:node:{nodeId}），1 亿用户约占 12MB，
+ * 用户在节点上建立第一个连接时置 1，最后一个连接断开时置 0。
+ * 查询时只读取存活节点的位图，一次 Pipeline 中每个节点一条 BITFIELD 命令即可判断一批用户，
+ * 节点宕机后其位图随节点一起失效，不会残留"在线"
+ */
+@Slf4j
+@Service
+public class PresenceService {
+
+    /**
+     * 单条 BITFIELD 命令最多读取的用户数
+     */
+    private static final int BITFIELD_BATCH_SIZE = 500;
+
+    private static final BitFieldSubCommands.BitFieldType BIT = BitFieldSubCommands.BitFieldType.unsigned(1);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ClusterNode clusterNode;
+    private final String nodeKey;
+    private final long nodeKeyExpireMillis;
+
+    /**
+     * 本节点上的在线状态变化监听器（参数为用户ID）
+     */
+    private final List<Consumer<Long>> changeListeners = new CopyOnWriteArrayList<>();
+
+    public PresenceService(StringRedisTemplate stringRedisTemplate,
+                           ClusterNode clusterNode,
+                           EasyChatProperties properties) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.clusterNode = clusterNode;
+        this.nodeKey = RedisKeyConstants.getPresenceNodeKey(clusterNode.getNodeId());
+        // 位图比节点超时多保留一段时间，避免心跳短暂延迟时丢失
+        this.nodeKeyExpireMillis = properties.getCluster().getNodeTimeoutMillis() * 4;
+    }
+
+    /**
+     * 清除同名节点上次运行残留的位图
+     */
+    @PostConstruct
+    public void init() {
+        stringRedisTemplate.delete(nodeKey);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            stringRedisTemplate.delete(nodeKey);
+        } catch (Exception e) {
+            log.warn("节点下线时删除在线位图失败，节点ID: {}", clusterNode.getNodeId(), e);
+        }
+    }
+
+    /**
+     * 续期本节点的位图
+     */
+    @Scheduled(fixedDelayString = "${easy-chat.cluster.heartbeat-interval-millis:5000}")
+    public void renew() {
+        try {
+            stringRedisTemplate.expire(nodeKey, nodeKeyExpireMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("续期在线位图失败，节点ID: {}", clusterNode.getNodeId(), e);
+        }
+    }
+
+    /**
+     * 注册在线状态变化监听器（本节点上的用户上线、下线时回调）
+     */
+    public void addChangeListener(Consumer<Long> listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * 标记用户在本节点上线（用户在本节点的第一个连接建立时调用）
+     *
+     * @param userId 用户ID
+     */
+    public void markOnline(Long userId) {
+        setBit(userId, true);
+    }
+
+    /**
+     * 标记用户在本节点下线（用户在本节点的最后一个连接断开时调用）
+     *
+     * @param userId 用户ID
+     */
+    public void markOffline(Long userId) {
+        setBit(userId, false);
+    }
+
+    /**
+     * 批量查询在线的用户（一次 Pipeline 往返，每个存活节点每 500 个用户一条 BITFIELD 命令）
+     *
+     * @param userIds 用户ID列表
+     * @return 在线的用户ID
+     */
+    public Set<Long> getOnlineUsers(Collection<Long> userIds) {
+        return new HashSet<>(readNodes(userIds, aliveNodes()).keySet());
+    }
+
+    /**
+     * 批量查询用户连接所在的其他节点（一次 Pipeline 往返，每个存活的其他节点每 500 个用户一条 BITFIELD 命令）
+     * 命令数只与节点数、用户数 / 500 有关，不随用户数逐个增加，用于消息投递时代替逐个用户查询路由
+     *
+     * @param userIds 用户ID列表
+     * @return Map&lt;userId, 节点ID集合&gt;，不在其他节点在线的用户不会出现在结果中
+     */
+    public Map<Long, Set<String>> getRemoteNodes(Collection<Long> userIds) {
+        Set<String> nodes = new HashSet<>(clusterNode.getAliveNodes());
+        nodes.remove(clusterNode.getNodeId());
+        return readNodes(userIds, nodes);
+    }
+
+    /**
+     * 读取用户在给定节点的位图中的状态
+     *
+     * @return Map&lt;userId, 在线的节点ID集合&gt;
+     */
+    private Map<Long, Set<String>> readNodes(Collection<Long> userIds, Collection<String> nodes) {
+        Map<Long, Set<String>> result = new HashMap<>();
+        if (userIds == null || userIds.isEmpty() || nodes.isEmpty()) {
+            return result;
+        }
+        List<Long> orderedIds = new ArrayList<>(userIds);
+        List<String> orderedNodes = new ArrayList<>(nodes);
+
+        List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (String node : orderedNodes) {
+                    String key = RedisKeyConstants.getPresenceNodeKey(node);
+                    for (int from = 0; from < orderedIds.size(); from += BITFIELD_BATCH_SIZE) {
+                        operations.opsForValue().bitField(key,
+                                getCommands(orderedIds, from, Math.min(from + BITFIELD_BATCH_SIZE, orderedIds.size())));
+                    }
+                }
+                return null;
+            }
+        });
+
+        int index = 0;
+        for (String node : orderedNodes) {
+            for (int from = 0; from < orderedIds.size(); from += BITFIELD_BATCH_SIZE) {
+                Object value = index < results.size() ? results.get(index) : null;
+                index++;
+                if (!(value instanceof List<?> bits)) {
+                    continue;
+                }
+                for (int i = 0; i < bits.size(); i++) {
+                    if (bits.get(i) instanceof Number bit && bit.longValue() == 1) {
+                        result.computeIfAbsent(orderedIds.get(from + i), k -> new HashSet<>()).add(node);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 记录一批用户最近一次通知好友的在线状态，返回状态发生变化的用户（多节点同时通知时只有一个节点得到变化）
+     *
+     * @param states 用户ID → 当前是否在线
+     * @return 状态发生变化的用户ID → 当前是否在线
+     */
+    public Map<Long, Boolean> announce(Map<Long, Boolean> states) {
+        Map<Long, Boolean> changed = new HashMap<>();
+        if (states.isEmpty()) {
+            return changed;
+        }
+        List<Long> userIds = new ArrayList<>(states.keySet());
+        BitFieldSubCommands commands = BitFieldSubCommands.create();
+        for (Long userId : userIds) {
+            commands = commands.set(BIT).valueAt(userId).to(Boolean.TRUE.equals(states.get(userId)) ? 1 : 0);
+        }
+        List<Long> previous = stringRedisTemplate.opsForValue().bitField(RedisKeyConstants.PRESENCE_ANNOUNCED_KEY, commands);
+        for (int i = 0; i < userIds.size(); i++) {
+            boolean wasOnline = previous != null && i < previous.size() && previous.get(i) != null && previous.get(i) == 1;
+            Boolean online = states.get(userIds.get(i));
+            if (online != wasOnline) {
+                changed.put(userIds.get(i), online);
+            }
+        }
+        return changed;
+    }
+
+    private void setBit(Long userId, boolean online) {
+        stringRedisTemplate.opsForValue().setBit(nodeKey, userId, online);
+        log.debug("更新在线状态，用户ID: {}, 节点ID: {}, 在线: {}", userId, clusterNode.getNodeId(), online);
+        notifyChange(userId);
+    }
+
+    private void notifyChange(Long userId) {
+        for (Consumer<Long> listener : changeListeners) {
+            try {
+                listener.accept(userId);
+            } catch (Exception e) {
+                log.warn("在线状态监听器执行失败，用户ID: {}", userId, e);
+            }
+        }
+    }
+
+    private Set<String> aliveNodes() {
+        Set<String> nodes = new HashSet<>(clusterNode.getAliveNodes());
+        nodes.add(clusterNode.getNodeId());
+        return nodes;
+    }
+
+    private static BitFieldSubCommands getCommands(List<Long> userIds, int from, int to) {
+        BitFieldSubCommands commands = BitFieldSubCommands.create();
+        for (int i = from; i < to; i++) {
+            commands = commands.get(BIT).valueAt(userIds.get(i));
+        }
+        return commands;
+    }
+}
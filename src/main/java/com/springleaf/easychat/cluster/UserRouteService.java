@@ -0,0 +1,120 @@
+package com.springleaf.easychat.cluster;
+
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 用户路由服务
+ * 维护 用户 → 节点 的路由表，用于跨节点投递消息
+ */
+@Slf4j
+@Service
+public class UserRouteService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ClusterNode clusterNode;
+
+    public UserRouteService(StringRedisTemplate stringRedisTemplate, ClusterNode clusterNode) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.clusterNode = clusterNode;
+    }
+
+    /**
+     * 登记用户连接在当前节点
+     *
+     * @param userId 用户ID
+     */
+    public void register(Long userId) {
+        stringRedisTemplate.opsForSet().add(RedisKeyConstants.getRouteKey(userId), clusterNode.getNodeId());
+        log.debug("登记用户路由，用户ID: {}, 节点ID: {}", userId, clusterNode.getNodeId());
+    }
+
+    /**
+     * 移除用户在当前节点的路由
+     *
+     * @param userId 用户ID
+     */
+    public void unregister(Long userId) {
+        stringRedisTemplate.opsForSet().remove(RedisKeyConstants.getRouteKey(userId), clusterNode.getNodeId());
+        log.debug("移除用户路由，用户ID: {}, 节点ID: {}", userId, clusterNode.getNodeId());
+    }
+
+    /**
+     * 批量移除用户在当前节点的路由（节点下线时使用）
+     *
+     * @param userIds 用户ID列表
+     */
+    public void unregisterAll(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        String nodeId = clusterNode.getNodeId();
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (Long userId : userIds) {
+                    operations.opsForSet().remove(RedisKeyConstants.getRouteKey(userId), nodeId);
+                }
+                return null;
+            }
+        });
+        log.info("批量移除用户路由，节点ID: {}, 用户数: {}", nodeId, userIds.size());
+    }
+
+    /**
+     * 批量查询用户所在节点（一次 Pipeline 往返）
+     * 已下线节点上的残留路由会被过滤
+     *
+     * @param userIds 用户ID列表
+     * @return Map<userId, 节点ID集合>，不在线的用户不会出现在结果中
+     */
+    public Map<Long, Set<String>> lookup(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        List<Long> orderedIds = new ArrayList<>(userIds);
+        List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (Long userId : orderedIds) {
+                    operations.opsForSet().members(RedisKeyConstants.getRouteKey(userId));
+                }
+                return null;
+            }
+        });
+
+        Map<Long, Set<String>> routes = new HashMap<>();
+        for (int i = 0; i < orderedIds.size(); i++) {
+            Object value = i < results.size() ? results.get(i) : null;
+            if (!(value instanceof Set<?> nodes) || nodes.isEmpty()) {
+                continue;
+            }
+            Set<String> aliveNodes = new HashSet<>();
+            for (Object node : nodes) {
+                if (node != null && clusterNode.isAlive(node.toString())) {
+                    aliveNodes.add(node.toString());
+                }
+            }
+            if (!aliveNodes.isEmpty()) {
+                routes.put(orderedIds.get(i), aliveNodes);
+            }
+        }
+        return routes;
+    }
+}
@@ -0,0 +1,407 @@
+package com.springleaf.easychat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * easy-chat 自定义配置项
+ * 对应 application.yml 中的 easy-chat 前缀
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "easy-chat")
+public class EasyChatProperties {
+
+    /**
+     * 消息扇出（推送）配置
+     */
+    private Fanout fanout = new Fanout();
+
+    /**
+     * 会话出站缓冲配置
+     */
+    private Outbound outbound = new Outbound();
+
+    /**
+     * 集群配置
+     */
+    private Cluster cluster = new Cluster();
+
+    /**
+     * 本地缓存配置
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * 会话最后消息的扩散方式配置
+     */
+    private Diffusion diffusion = new Diffusion();
+
+    /**
+     * 消息ID生成器配置
+     */
+    private IdGenerator idGenerator = new IdGenerator();
+
+    /**
+     * 投递确认配置
+     */
+    private Ack ack = new Ack();
+
+    /**
+     * 消息组提交配置
+     */
+    private GroupCommit groupCommit = new GroupCommit();
+
+    /**
+     * 消息预写日志配置
+     */
+    private Wal wal = new Wal();
+
+    /**
+     * 未读数存储配置
+     */
+    private Unread unread = new Unread();
+
+    /**
+     * 时间轮配置
+     */
+    private Timer timer = new Timer();
+
+    /**
+     * 心跳与空闲连接检测配置
+     */
+    private Heartbeat heartbeat = new Heartbeat();
+
+    /**
+     * 在线状态配置
+     */
+    private Presence presence = new Presence();
+
+    /**
+     * 重连同步配置
+     */
+    private Sync sync = new Sync();
+
+    @Data
+    public static class Fanout {
+
+        /**
+         * 分区数（每个分区一个推送线程，同一会话的消息落在同一分区，保证推送顺序）
+         */
+        private int partitions = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * 每个分区最多容纳的未完成推送任务数，已满时在持久化之前直接拒绝发送（背压）
+         */
+        private int queueCapacity = 10000;
+    }
+
+    @Data
+    public static class Outbound {
+
+        /**
+         * 写线程数（所有会话共享，负责把缓冲区中的帧写到网络）
+         */
+        private int writerThreads = Runtime.getRuntime().availableProcessors() * 2;
+
+        /**
+         * 单个会话最多缓冲的帧数
+         */
+        private int maxQueuedFrames = 1000;
+
+        /**
+         * 单个会话最多缓冲的字节数
+         */
+        private int bufferSizeLimit = 512 * 1024;
+
+        /**
+         * 单帧最长等待发送时间（毫秒），超过即认为是慢消费者
+         */
+        private long sendTimeLimitMillis = 10000;
+    }
+
+    @Data
+    public static class Cluster {
+
+        /**
+         * 节点ID，为空时按 主机名-随机串 自动生成
+         */
+        private String nodeId;
+
+        /**
+         * 节点心跳间隔（毫秒）
+         */
+        private long heartbeatIntervalMillis = 5000;
+
+        /**
+         * 节点超时时间（毫秒），超过该时间未心跳的节点视为下线，其上的路由被忽略
+         */
+        private long nodeTimeoutMillis = 15000;
+    }
+
+    @Data
+    public static class Cache {
+
+        /**
+         * 群成员缓存（key: groupId）
+         */
+        private CacheSpec groupMembers = new CacheSpec(10000, 600);
+
+        /**
+         * 用户资料缓存（key: userId）
+         */
+        private CacheSpec userProfiles = new CacheSpec(100000, 600);
+
+        /**
+         * 登录 token 缓存（key: token），过期时间即 token 注销、过期后最多仍被本节点认可的时长
+         */
+        private CacheSpec loginTokens = new CacheSpec(100000, 5);
+
+        /**
+         * 会话最近消息缓存（key: conversationId）
+         */
+        private RecentMessages recentMessages = new RecentMessages();
+    }
+
+    @Data
+    public static class RecentMessages {
+
+        /**
+         * 每个会话缓存的最近消息条数
+         */
+        private int perConversation = 50;
+
+        /**
+         * 所有会话合计的内存上限估算值（字节），超过后淘汰最久未使用的会话
+         */
+        private long maximumBytes = 64L * 1024 * 1024;
+
+        /**
+         * 多久未访问后过期（秒）
+         */
+        private long expireSeconds = 600;
+    }
+
+    @Data
+    public static class Diffusion {
+
+        /**
+         * 群成员数达到该阈值时改用读扩散：最后消息只写入群组表，读取会话列表时再合并，
+         * 不再逐个更新成员的会话记录。0 表示始终使用写扩散
+         */
+        private int groupReadThreshold = 500;
+    }
+
+    @Data
+    public static class IdGenerator {
+
+        /**
+         * workerId（0 ~ 1023），不配置时由各节点通过 Redis 租约自动分配
+         */
+        private Long workerId;
+
+        /**
+         * workerId 租约时长（秒），持有节点每隔三分之一租约时长续期一次
+         */
+        private long workerLeaseSeconds = 60;
+    }
+
+    @Data
+    public static class Ack {
+
+        /**
+         * 单个会话最多未确认的帧数，超过后以"需要重新同步"关闭连接
+         */
+        private int windowSize = 256;
+
+        /**
+         * 帧未被确认多久后重发（毫秒）
+         */
+        private long resendTimeoutMillis = 5000;
+
+        /**
+         * 单帧最多重发次数，仍未确认则以"需要重新同步"关闭连接
+         */
+        private int maxResends = 3;
+
+        /**
+         * 送达回执的合并发送间隔（毫秒）
+         */
+        private long receiptFlushMillis = 200;
+    }
+
+    @Data
+    public static class GroupCommit {
+
+        /**
+         * 是否开启组提交（关闭时每条消息单独一个事务）
+         */
+        private boolean enabled = false;
+
+        /**
+         * 单个事务最多合并的消息数
+         */
+        private int maxBatchSize = 64;
+
+        /**
+         * 凑批的最长等待时间（毫秒）
+         */
+        private long maxDelayMillis = 2;
+
+        /**
+         * 待提交队列容量，队列满时由发送线程直接提交
+         */
+        private int queueCapacity = 10000;
+
+        /**
+         * 发送线程等待提交结果的超时时间（毫秒）
+         * 超时时仍在队列中的写入撤回并报告失败；已被提交线程取走的写入继续等待该批的结果，避免报告失败后又提交成功
+         */
+        private long waitTimeoutMillis = 5000;
+    }
+
+    @Data
+    public static class Wal {
+
+        /**
+         * 是否开启预写日志：消息追加到本地日志后即确认发送，由后台线程批量写入 MySQL
+         */
+        private boolean enabled = false;
+
+        /**
+         * 日志目录
+         */
+        private String dir = "./data/wal";
+
+        /**
+         * 单个分段文件大小（字节）
+         */
+        private int segmentSizeBytes = 64 * 1024 * 1024;
+
+        /**
+         * 每次追加后是否刷盘（关闭时只能抵御进程崩溃，开启后可抵御断电，但追加耗时增加）
+         */
+        private boolean syncOnAppend = false;
+
+        /**
+         * 写入 MySQL 失败后的重试间隔（毫秒）
+         */
+        private long retryIntervalMillis = 1000;
+    }
+
+    @Data
+    public static class Unread {
+
+        /**
+         * 存储格式：STRING 每个会话一个 Key（unread:{userId}:{conversationId}），
+         * HASH 每个用户一个 Hash（unread:{userId}，field 为会话ID），会话列表一次 HGETALL 读取全部未读数
+         */
+        private Storage storage = Storage.STRING;
+
+        /**
+         * HASH 格式下启动时是否把旧格式的 Key 迁移到 Hash（迁移完成前读取时同时合并旧 Key）
+         */
+        private boolean migrateOnStartup = true;
+
+        /**
+         * 迁移时每次 SCAN 的数量
+         */
+        private int migrateScanCount = 1000;
+
+        /**
+         * 未读总数推送的合并间隔（毫秒），同一用户在间隔内的多次变化只推送最新值
+         */
+        private long badgeFlushMillis = 200;
+
+        public enum Storage {
+            STRING,
+            HASH
+        }
+    }
+
+    @Data
+    public static class Timer {
+
+        /**
+         * 刻度（毫秒），即定时的精度
+         */
+        private long tickMillis = 100;
+
+        /**
+         * 槽位数（向上取整为 2 的幂），刻度 × 槽位数 为一圈的时长，超过一圈的定时按圈数计数
+         */
+        private int ticksPerWheel = 512;
+    }
+
+    @Data
+    public static class Heartbeat {
+
+        /**
+         * 是否开启空闲检测（关闭后只响应客户端的应用层心跳）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 连接空闲多久后由服务端发送 WebSocket Ping（毫秒），浏览器会自动回复 Pong
+         */
+        private long pingIntervalMillis = 25000;
+
+        /**
+         * 连接空闲多久后判定为断开并关闭（毫秒），应大于 Ping 间隔与客户端心跳间隔
+         */
+        private long idleTimeoutMillis = 75000;
+    }
+
+    @Data
+    public static class Presence {
+
+        /**
+         * 是否向好友推送上线、下线通知
+         */
+        private boolean pushEnabled = true;
+
+        /**
+         * 防抖时间（毫秒）：状态变化后保持这么久不再变化才通知好友，网络抖动导致的断线重连不会产生通知
+         */
+        private long debounceMillis = 3000;
+
+        /**
+         * 检查待通知状态变化的间隔（毫秒）
+         */
+        private long flushIntervalMillis = 1000;
+    }
+
+    @Data
+    public static class Sync {
+
+        /**
+         * 序列号空号的确认时间（毫秒）：空号之后的消息写入超过这么久，空号才视为发送失败留下的永久空号；
+         * 在此之前空号对应的消息可能仍在写入（序列号先分配、后提交，提交顺序与序列号顺序不一致），
+         * 同步时作为缺口返回。应大于消息从分配序列号到提交的最长时间（含预写日志的积压）
+         */
+        private long gapSettleMillis = 60000;
+    }
+
+    @Data
+    public static class CacheSpec {
+
+        /**
+         * 最大条目数
+         */
+        private long maximumSize;
+
+        /**
+         * 写入后过期时间（秒），作为失效通知丢失时的兜底
+         */
+        private long expireSeconds;
+
+        public CacheSpec() {
+        }
+
+        public CacheSpec(long maximumSize, long expireSeconds) {
+            this.maximumSize = maximumSize;
+            this.expireSeconds = expireSeconds;
+        }
+    }
+}
@@ -14,6 +14,38 @@ public class RedisKeyConstants {
      */
     private static final String UNREAD_PREFIX = "unread:";
 
+    /**
+     * 旧格式未读消息数 Key 的匹配模式（用于迁移到 Hash 格式）
+     */
+    public static final String UNREAD_LEGACY_PATTERN = UNREAD_PREFIX + "*:*";
+
+    /**
+     * 未读消息数迁移完成标记 Key
+     * 值类型：String (完成时间戳毫秒)
+     * 过期时间：无
+     */
+    public static final String UNREAD_MIGRATION_DONE_KEY = "migration:unread:done";
+
+    /**
+     * 未读消息数迁移锁 Key（同一时间只有一个节点执行迁移）
+     * 值类型：String (执行迁移的节点ID)
+     * 过期时间：锁时长，执行期间定期续期
+     */
+    public static final String UNREAD_MIGRATION_LOCK_KEY = "migration:unread:lock";
+
+    /**
+     * 未读总数 Key 前缀
+     * 格式：unread_total:{user_id}
+     * 值类型：Hash (field total: 未读总数（不含免打扰会话），field m:{conversation_id}: 免打扰会话标记)
+     * 过期时间：1 天，每次更新时续期（过期后读取时从会话列表重新计算，修正可能的累计误差）
+     */
+    private static final String UNREAD_TOTAL_PREFIX = "unread_total:";
+
+    /**
+     * 未读总数过期时间（秒）
+     */
+    public static final long UNREAD_TOTAL_EXPIRE_SECONDS = 86400;
+
     /**
      * 活跃会话 Key 前缀
      * 格式：active_chat:{user_id}
@@ -22,6 +54,61 @@ public class RedisKeyConstants {
      */
     private static final String ACTIVE_CHAT_PREFIX = "active_chat:";
 
+    /**
+     * 用户路由 Key 前缀
+     * 格式：route:{user_id}
+     * 值类型：Set (用户当前连接所在的节点ID)
+     * 过期时间：无（连接断开时移除，失效节点由节点心跳过滤）
+     */
+    private static final String ROUTE_PREFIX = "route:";
+
+    /**
+     * 节点在线用户位图 Key 前缀
+     * 格式：presence:node:{node_id}
+     * 值类型：Bitmap (偏移量为用户ID，1 表示用户在该节点有连接)
+     * 过期时间：由节点定时续期，节点失效后自动过期（查询时只读取存活节点的位图）
+     */
+    private static final String PRESENCE_NODE_PREFIX = "presence:node:";
+
+    /**
+     * 已通知好友的在线状态位图 Key
+     * 值类型：Bitmap (偏移量为用户ID，1 表示最近一次通知好友的状态为在线)，用于多节点间去重
+     */
+    public static final String PRESENCE_ANNOUNCED_KEY = "presence:announced";
+
+    /**
+     * 集群存活节点 Key
+     * 值类型：ZSet (member: 节点ID, score: 最近一次心跳时间戳毫秒)
+     */
+    public static final String CLUSTER_NODES_KEY = "cluster:nodes";
+
+    /**
+     * 节点投递频道前缀（Redis Pub/Sub）
+     * 格式：chat:node:{node_id}
+     */
+    private static final String NODE_CHANNEL_PREFIX = "chat:node:";
+
+    /**
+     * 集群广播频道（Redis Pub/Sub），用于本地缓存失效通知
+     */
+    public static final String BROADCAST_CHANNEL = "chat:broadcast";
+
+    /**
+     * 会话消息序列号 Key 前缀
+     * 格式：conv_seq:{conversation_id}
+     * 值类型：String (数字，当前已分配的最大序列号)
+     * 过期时间：无（丢失时从数据库最大序列号恢复）
+     */
+    private static final String CONVERSATION_SEQ_PREFIX = "conv_seq:";
+
+    /**
+     * 消息ID生成器 workerId 租约 Key 前缀
+     * 格式：id:worker:{worker_id}
+     * 值类型：String (持有该 workerId 的节点ID)
+     * 过期时间：租约时长，由持有节点定时续期
+     */
+    private static final String ID_WORKER_PREFIX = "id:worker:";
+
     /**
      * 活跃会话过期时间（秒）
      */
@@ -38,6 +125,29 @@ public class RedisKeyConstants {
         return UNREAD_PREFIX + userId + ":" + conversationId;
     }
 
+    /**
+     * 生成未读消息数 Hash Key（Hash 存储格式）
+     * 格式：unread:{user_id}
+     * 值类型：Hash (field: conversation_id, value: 未读数)
+     * 过期时间：无（清除未读时删除对应 field）
+     *
+     * @param userId 用户ID
+     * @return Redis Key
+     */
+    public static String getUnreadHashKey(Long userId) {
+        return UNREAD_PREFIX + userId;
+    }
+
+    /**
+     * 生成未读总数 Key
+     *
+     * @param userId 用户ID
+     * @return Redis Key
+     */
+    public static String getUnreadTotalKey(Long userId) {
+        return UNREAD_TOTAL_PREFIX + userId;
+    }
+
     /**
      * 生成活跃会话 Key
      *
@@ -57,4 +167,54 @@ public class RedisKeyConstants {
     public static String getUnreadKeyPattern(Long userId) {
         return UNREAD_PREFIX + userId + ":*";
     }
+
+    /**
+     * 生成节点在线用户位图 Key
+     *
+     * @param nodeId 节点ID
+     * @return Redis Key
+     */
+    public static String getPresenceNodeKey(String nodeId) {
+        return PRESENCE_NODE_PREFIX + nodeId;
+    }
+
+    /**
+     * 生成用户路由 Key
+     *
+     * @param userId 用户ID
+     * @return Redis Key
+     */
+    public static String getRouteKey(Long userId) {
+        return ROUTE_PREFIX + userId;
+    }
+
+    /**
+     * 生成节点投递频道名
+     *
+     * @param nodeId 节点ID
+     * @return 频道名
+     */
+    public static String getNodeChannel(String nodeId) {
+        return NODE_CHANNEL_PREFIX + nodeId;
+    }
+
+    /**
+     * 生成会话消息序列号 Key
+     *
+     * @param conversationId 会话ID
+     * @return Redis Key
+     */
+    public static String getConversationSeqKey(String conversationId) {
+        return CONVERSATION_SEQ_PREFIX + conversationId;
+    }
+
+    /**
+     * 生成 workerId 租约 Key
+     *
+     * @param workerId workerId
+     * @return Redis Key
+     */
+    public static String getIdWorkerKey(long workerId) {
+        return ID_WORKER_PREFIX + workerId;
+    }
 }
@@ -0,0 +1,76 @@
+package com.springleaf.easychat.constants;
+
+import org.springframework.web.socket.CloseStatus;
+
+/**
+ * WebSocket 常量类
+ * 统一管理会话属性名与自定义关闭码
+ */
+public class WebSocketConstants {
+
+    /**
+     * 会话属性：用户ID
+     */
+    public static final String ATTR_USER_ID = "userId";
+
+    /**
+     * 会话属性：出站会话包装对象
+     */
+    public static final String ATTR_CLIENT_SESSION = "clientSession";
+
+    /**
+     * 会话属性：是否启用投递确认（握手参数 ack=1）
+     */
+    public static final String ATTR_ACK_ENABLED = "ackEnabled";
+
+    /**
+     * 上行帧类型：发送聊天消息（不带 type 字段时的默认类型）
+     */
+    public static final String FRAME_TYPE_CHAT = "chat";
+
+    /**
+     * 上行帧类型：累计确认 {"type":"ack","frameSeq":N}，表示 N 及之前的帧均已收到
+     */
+    public static final String FRAME_TYPE_ACK = "ack";
+
+    /**
+     * 上行帧类型：设置活跃会话 {"type":"active","conversationId":"..."}，conversationId 为空表示离开聊天页
+     */
+    public static final String FRAME_TYPE_ACTIVE = "active";
+
+    /**
+     * 上行帧类型：应用层心跳 {"type":"ping"}，服务端回复 {"type":"pong"}
+     */
+    public static final String FRAME_TYPE_PING = "ping";
+
+    /**
+     * 下行帧类型：应用层心跳回复
+     */
+    public static final String FRAME_TYPE_PONG = "pong";
+
+    /**
+     * 下行帧类型：消息状态回执
+     */
+    public static final String FRAME_TYPE_RECEIPT = "receipt";
+
+    /**
+     * 下行帧类型：未读总数（应用角标）{"type":"badge","unreadTotal":N}
+     */
+    public static final String FRAME_TYPE_BADGE = "badge";
+
+    /**
+     * 下行帧类型：好友在线状态变化 {"type":"presence","users":[{"userId":1,"online":true}]}
+     */
+    public static final String FRAME_TYPE_PRESENCE = "presence";
+
+    /**
+     * 关闭码：客户端消费过慢，出站缓冲溢出，需要重新同步
+     * 客户端收到此关闭码后应重连并重新拉取会话列表和历史消息
+     */
+    public static final CloseStatus RESYNC_REQUIRED = new CloseStatus(4001, "resync required");
+
+    /**
+     * 关闭码：连接空闲超时（超过 idle-timeout-millis 未收到任何帧，包括心跳）
+     */
+    public static final CloseStatus IDLE_TIMEOUT = new CloseStatus(4002, "idle timeout");
+}
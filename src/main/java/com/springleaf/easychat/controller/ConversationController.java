@@ -5,6 +5,7 @@ import com.springleaf.easychat.model.dto.ActiveChatDTO;
 import com.springleaf.easychat.model.vo.ConversationVO;
 import com.springleaf.easychat.service.ConversationService;
 import com.springleaf.easychat.service.UnreadService;
+import com.springleaf.easychat.utils.UserContextUtil;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import lombok.extern.slf4j.Slf4j;
@@ -38,6 +39,16 @@ public class ConversationController {
         return Result.success(conversationList);
     }
 
+    /**
+     * 获取未读总数（应用角标，不含免打扰会话）
+     *
+     * @return 未读总数
+     */
+    @GetMapping("/unread-total")
+    public Result<Long> getUnreadTotal() {
+        return Result.success(unreadService.getUnreadTotal(UserContextUtil.getCurrentUserId()));
+    }
+
     /**
      * 设置活跃会话
      * 用户进入聊天页时调用，设置当前活跃的会话ID
@@ -74,4 +85,16 @@ public class ConversationController {
         conversationService.toggleMute(conversationId);
         return Result.success();
     }
+
+    /**
+     * 删除会话（隐藏，收到新消息后重新显示）
+     *
+     * @param conversationId 会话ID
+     * @return 操作结果
+     */
+    @DeleteMapping("/{conversationId}")
+    public Result<Void> deleteConversation(@PathVariable @NotBlank(message = "会话ID不能为空") String conversationId) {
+        conversationService.deleteConversation(conversationId);
+        return Result.success();
+    }
 }
@@ -2,6 +2,9 @@ package com.springleaf.easychat.controller;
 
 import com.springleaf.easychat.common.Result;
 import com.springleaf.easychat.model.dto.MessageHistoryDTO;
+import com.springleaf.easychat.model.dto.MessageRangeDTO;
+import com.springleaf.easychat.model.dto.MessageSyncDTO;
+import com.springleaf.easychat.model.vo.MessageSyncVO;
 import com.springleaf.easychat.model.vo.MessageVO;
 import com.springleaf.easychat.service.MessageService;
 import jakarta.annotation.Resource;
@@ -35,6 +38,31 @@ public class MessageController {
         return Result.success(messagePage);
     }
 
+    /**
+     * 按序列号区间获取会话的消息（客户端检测到序列号缺口时补拉）
+     *
+     * @param rangeDTO 查询参数
+     * @return 消息列表（按序列号正序）
+     */
+    @GetMapping("/range")
+    public Result<List<MessageVO>> getMessageRange(@Valid MessageRangeDTO rangeDTO) {
+        List<MessageVO> messages = messageService.getMessageRange(rangeDTO);
+        return Result.success(messages);
+    }
+
+    /**
+     * 重连同步：一次拉取所有会话中序列号水位线之后的新消息
+     * 替代重连后 会话列表 + 逐个会话拉取历史消息 的 N+1 次请求
+     *
+     * @param syncDTO 同步参数
+     * @return 同步结果（hasMore 为 true 时把响应的 seqs 合并进请求继续拉取，结束后按 gaps 回退对应会话的水位线）
+     */
+    @PostMapping("/sync")
+    public Result<MessageSyncVO> syncMessages(@Valid @RequestBody MessageSyncDTO syncDTO) {
+        MessageSyncVO syncVO = messageService.syncMessages(syncDTO);
+        return Result.success(syncVO);
+    }
+
     /**
      * 删除消息
      */
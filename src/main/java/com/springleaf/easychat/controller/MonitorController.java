@@ -0,0 +1,211 @@
+package com.springleaf.easychat.controller;
+
+import com.springleaf.easychat.cache.GroupMemberCache;
+import com.springleaf.easychat.cache.LoginTokenCache;
+import com.springleaf.easychat.cache.RecentMessageCache;
+import com.springleaf.easychat.cache.UserProfileCache;
+import com.springleaf.easychat.cluster.ClusterMessageBus;
+import com.springleaf.easychat.cluster.ClusterNode;
+import com.springleaf.easychat.common.Result;
+import com.springleaf.easychat.service.impl.MessageWriter;
+import com.springleaf.easychat.timer.TimingWheel;
+import com.springleaf.easychat.websocket.ActiveChatTracker;
+import com.springleaf.easychat.websocket.BadgePublisher;
+import com.springleaf.easychat.websocket.DeliveryAckManager;
+import com.springleaf.easychat.websocket.DeliveryReceiptPublisher;
+import com.springleaf.easychat.websocket.FanoutExecutor;
+import com.springleaf.easychat.websocket.HeartbeatMonitor;
+import com.springleaf.easychat.websocket.OnlineGroupIndex;
+import com.springleaf.easychat.websocket.OutboundDispatcher;
+import com.springleaf.easychat.websocket.PresencePublisher;
+import com.springleaf.easychat.websocket.SessionRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 运行状态监控控制器
+ * 暴露推送链路等内部组件的统计指标，用于容量评估
+ */
+@Slf4j
+@RestController
+@RequestMapping("/monitor")
+public class MonitorController {
+
+    @Resource
+    private FanoutExecutor fanoutExecutor;
+
+    @Resource
+    private OutboundDispatcher outboundDispatcher;
+
+    @Resource
+    private ClusterNode clusterNode;
+
+    @Resource
+    private ClusterMessageBus clusterMessageBus;
+
+    @Resource
+    private SessionRegistry sessionRegistry;
+
+    @Resource
+    private GroupMemberCache groupMemberCache;
+
+    @Resource
+    private RecentMessageCache recentMessageCache;
+
+    @Resource
+    private UserProfileCache userProfileCache;
+
+    @Resource
+    private LoginTokenCache loginTokenCache;
+
+    @Resource
+    private OnlineGroupIndex onlineGroupIndex;
+
+    @Resource
+    private DeliveryAckManager deliveryAckManager;
+
+    @Resource
+    private DeliveryReceiptPublisher deliveryReceiptPublisher;
+
+    @Resource
+    private BadgePublisher badgePublisher;
+
+    @Resource
+    private MessageWriter messageWriter;
+
+    @Resource
+    private TimingWheel timingWheel;
+
+    @Resource
+    private ActiveChatTracker activeChatTracker;
+
+    @Resource
+    private HeartbeatMonitor heartbeatMonitor;
+
+    @Resource
+    private PresencePublisher presencePublisher;
+
+    /**
+     * 获取消息扇出统计（队列深度、扇出耗时）
+     *
+     * @return 统计信息
+     */
+    @GetMapping("/fanout")
+    public Result<Map<String, Object>> getFanoutStats() {
+        return Result.success(fanoutExecutor.getStats());
+    }
+
+    /**
+     * 获取会话出站统计（慢消费者驱逐次数、写出帧数）
+     *
+     * @return 统计信息
+     */
+    @GetMapping("/outbound")
+    public Result<Map<String, Object>> getOutboundStats() {
+        return Result.success(outboundDispatcher.getStats());
+    }
+
+    /**
+     * 获取投递确认统计（未确认会话数、确认/重发帧数、回执帧数、角标帧数）
+     *
+     * @return 统计信息
+     */
+    @GetMapping("/ack")
+    public Result<Map<String, Object>> getAckStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(deliveryAckManager.getStats());
+        stats.put("receiptFrames", deliveryReceiptPublisher.getReceiptFrames());
+        stats.put("badgeFrames", badgePublisher.getBadgeFrames());
+        return Result.success(stats);
+    }
+
+    /**
+     * 获取心跳统计（Ping/Pong 帧数、因空闲超时关闭的连接数）
+     *
+     * @return 统计信息
+     */
+    @GetMapping("/heartbeat")
+    public Result<Map<String, Object>> getHeartbeatStats() {
+        return Result.success(heartbeatMonitor.getStats());
+    }
+
+    /**
+     * 获取在线状态推送统计（待通知变化数、已通知数、防抖/去重过滤数、推送帧数）
+     *
+     * @return 统计信息
+     */
+    @GetMapping("/presence")
+    public Result<Map<String, Object>> getPresenceStats() {
+        return Result.success(presencePublisher.getStats());
+    }
+
+    /**
+     * 获取本节点会话注册表统计（在线用户数、连接数、会话表内存估算及与装箱 Map 的对比）
+     *
+     * @return 统计信息
+     */
+    @GetMapping("/sessions")
+    public Result<Map<String, Object>> getSessionStats() {
+        return Result.success(sessionRegistry.getStats());
+    }
+
+    /**
+     * 获取消息写入统计（事务数、消息数、平均批量、退回逐条提交次数）
+     *
+     * @return 统计信息
+     */
+    @GetMapping("/write")
+    public Result<Map<String, Object>> getWriteStats() {
+        return Result.success(messageWriter.getStats());
+    }
+
+    /**
+     * 获取时间轮统计（待到期、已到期、已取消的定时数，过期的活跃会话数）
+     *
+     * @return 统计信息
+     */
+    @GetMapping("/timer")
+    public Result<Map<String, Object>> getTimerStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(timingWheel.getStats());
+        stats.put("expiredActiveChats", activeChatTracker.getExpiredCount());
+        return Result.success(stats);
+    }
+
+    /**
+     * 获取集群节点信息（节点ID、存活节点、本节点在线人数、节点间投递数）
+     *
+     * @return 统计信息
+     */
+    @GetMapping("/cluster")
+    public Result<Map<String, Object>> getClusterStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nodeId", clusterNode.getNodeId());
+        stats.put("aliveNodes", clusterNode.getAliveNodes());
+        stats.put("localOnlineUsers", sessionRegistry.getOnlineUserCount());
+        stats.put("localSessions", sessionRegistry.getSessionCount());
+        stats.put("indexedGroups", onlineGroupIndex.getIndexedGroupCount());
+        stats.put("publishedEnvelopes", clusterMessageBus.getPublishedCount());
+        stats.put("receivedEnvelopes", clusterMessageBus.getReceivedCount());
+        return Result.success(stats);
+    }
+
+    /**
+     * 获取本地缓存统计（命中率、条目数）
+     *
+     * @return 统计信息
+     */
+    @GetMapping("/cache")
+    public Result<Map<String, Object>> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put(GroupMemberCache.CACHE_NAME, groupMemberCache.getStats());
+        stats.put(RecentMessageCache.CACHE_NAME, recentMessageCache.getStats());
+        stats.put(UserProfileCache.CACHE_NAME, userProfileCache.getStats());
+        stats.put(LoginTokenCache.CACHE_NAME, loginTokenCache.getStats());
+        return Result.success(stats);
+    }
+}
@@ -1,15 +1,27 @@
 package com.springleaf.easychat.handler;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springleaf.easychat.cluster.PresenceService;
+import com.springleaf.easychat.cluster.UserRouteService;
+import com.springleaf.easychat.constants.WebSocketConstants;
 import com.springleaf.easychat.enums.ConversationTypeEnum;
-import com.springleaf.easychat.mapper.GroupMemberMapper;
 import com.springleaf.easychat.model.dto.SendMessageDTO;
-import com.springleaf.easychat.model.entity.GroupMember;
 import com.springleaf.easychat.model.vo.MessageVO;
 import com.springleaf.easychat.service.MessageService;
-import com.springleaf.easychat.service.UnreadService;
 import com.springleaf.easychat.utils.ConversationIdUtil;
+import com.springleaf.easychat.websocket.ActiveChatTracker;
+import com.springleaf.easychat.websocket.ClientSession;
+import com.springleaf.easychat.websocket.DeliveryAckManager;
+import com.springleaf.easychat.websocket.DeliveryReceiptPublisher;
+import com.springleaf.easychat.websocket.FanoutExecutor;
+import com.springleaf.easychat.websocket.HeartbeatMonitor;
+import com.springleaf.easychat.websocket.MessagePusher;
+import com.springleaf.easychat.websocket.OnlineGroupIndex;
+import com.springleaf.easychat.websocket.OutboundDispatcher;
+import com.springleaf.easychat.websocket.SessionRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
@@ -17,7 +29,6 @@ import org.springframework.web.socket.*;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * WebSocket 聊天处理器
@@ -27,24 +38,65 @@ import java.util.concurrent.ConcurrentHashMap;
 public class ChatWebSocketHandler implements WebSocketHandler {
 
     /**
-     * 存储所有在线用户的 WebSocket 会话
-     * key: userId, value: WebSocketSession
+     * 用户连接生命周期锁的分段数
      */
-    private static final Map<Long, WebSocketSession> ONLINE_USERS = new ConcurrentHashMap<>();
+    private static final int LIFECYCLE_LOCK_STRIPES = 64;
 
     private final MessageService messageService;
-    private final GroupMemberMapper groupMemberMapper;
     private final ObjectMapper objectMapper;
-    private final UnreadService unreadService;
+    private final FanoutExecutor fanoutExecutor;
+    private final OutboundDispatcher outboundDispatcher;
+    private final SessionRegistry sessionRegistry;
+    private final MessagePusher messagePusher;
+    private final UserRouteService userRouteService;
+    private final OnlineGroupIndex onlineGroupIndex;
+    private final DeliveryAckManager deliveryAckManager;
+    private final DeliveryReceiptPublisher deliveryReceiptPublisher;
+    private final ActiveChatTracker activeChatTracker;
+    private final HeartbeatMonitor heartbeatMonitor;
+    private final PresenceService presenceService;
+
+    /**
+     * 按用户分段的连接生命周期锁：注册会话与登记路由、在线状态，注销会话与移除路由、在线状态分别在锁内完成，
+     * 避免"新连接注册时旧连接尚在（不是第一个连接），旧连接注销后又移除了路由与在线状态"导致在线用户被标记为离线
+     */
+    private final Object[] lifecycleLocks = new Object[LIFECYCLE_LOCK_STRIPES];
 
     public ChatWebSocketHandler(MessageService messageService,
-                               GroupMemberMapper groupMemberMapper,
                                ObjectMapper objectMapper,
-                               UnreadService unreadService) {
+                               FanoutExecutor fanoutExecutor,
+                               OutboundDispatcher outboundDispatcher,
+                               SessionRegistry sessionRegistry,
+                               MessagePusher messagePusher,
+                               UserRouteService userRouteService,
+                               OnlineGroupIndex onlineGroupIndex,
+                               DeliveryAckManager deliveryAckManager,
+                               DeliveryReceiptPublisher deliveryReceiptPublisher,
+                               ActiveChatTracker activeChatTracker,
+                               HeartbeatMonitor heartbeatMonitor,
+                               PresenceService presenceService) {
         this.messageService = messageService;
-        this.groupMemberMapper = groupMemberMapper;
         this.objectMapper = objectMapper;
-        this.unreadService = unreadService;
+        this.fanoutExecutor = fanoutExecutor;
+        this.outboundDispatcher = outboundDispatcher;
+        this.sessionRegistry = sessionRegistry;
+        this.messagePusher = messagePusher;
+        this.userRouteService = userRouteService;
+        this.onlineGroupIndex = onlineGroupIndex;
+        this.deliveryAckManager = deliveryAckManager;
+        this.deliveryReceiptPublisher = deliveryReceiptPublisher;
+        this.activeChatTracker = activeChatTracker;
+        this.heartbeatMonitor = heartbeatMonitor;
+        this.presenceService = presenceService;
+        for (int i = 0; i < LIFECYCLE_LOCK_STRIPES; i++) {
+            lifecycleLocks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        // 空闲超时的连接关闭后立即清理，不等待关闭事件（半开连接的关闭握手可能迟迟不能完成）
+        heartbeatMonitor.addReapListener(this::cleanup);
     }
 
     /**
@@ -52,10 +104,26 @@ public class ChatWebSocketHandler implements WebSocketHandler {
      */
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
-        Long userId = (Long) session.getAttributes().get("userId");
+        Long userId = (Long) session.getAttributes().get(WebSocketConstants.ATTR_USER_ID);
         if (userId != null) {
-            ONLINE_USERS.put(userId, session);
-            log.info("用户 {} 建立 WebSocket 连接，当前在线人数: {}", userId, ONLINE_USERS.size());
+            boolean ackEnabled = Boolean.TRUE.equals(session.getAttributes().get(WebSocketConstants.ATTR_ACK_ENABLED));
+            ClientSession clientSession = new ClientSession(userId, session, ackEnabled);
+            session.getAttributes().put(WebSocketConstants.ATTR_CLIENT_SESSION, clientSession);
+            synchronized (lifecycleLock(userId)) {
+                // 同一用户的多个连接（多端登录）同时保留
+                boolean first = sessionRegistry.register(clientSession);
+                // 登记路由，其他节点据此把该用户的消息投递到本节点
+                userRouteService.register(userId);
+                // 用户已有其他连接在本节点时在线状态不变
+                if (first) {
+                    presenceService.markOnline(userId);
+                }
+            }
+            heartbeatMonitor.onConnect(clientSession);
+            // 加入本节点在线群成员索引（须在注册会话之后，保证与索引构建不会漏掉该用户）
+            onlineGroupIndex.onConnect(clientSession);
+            log.info("用户 {} 建立 WebSocket 连接，本节点在线人数: {}, 连接数: {}",
+                    userId, sessionRegistry.getOnlineUserCount(), sessionRegistry.getSessionCount());
         }
     }
 
@@ -64,21 +132,71 @@ public class ChatWebSocketHandler implements WebSocketHandler {
      */
     @Override
     public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        ClientSession clientSession = (ClientSession) session.getAttributes().get(WebSocketConstants.ATTR_CLIENT_SESSION);
+        // 收到任何帧（包括 Pong）都说明连接存活
+        if (clientSession != null) {
+            clientSession.markActive();
+        }
         if (message instanceof TextMessage) {
             String payload = ((TextMessage) message).getPayload();
-            log.info("收到消息: {}", payload);
 
             try {
+                JsonNode frame = objectMapper.readTree(payload);
+                String type = frame.path("type").asText(WebSocketConstants.FRAME_TYPE_CHAT);
+
+                // 累计确认：不回复，不记录 info 日志（频率与下行帧相当）
+                if (WebSocketConstants.FRAME_TYPE_ACK.equals(type)) {
+                    deliveryAckManager.onAck(clientSession, frame.path("frameSeq").asLong());
+                    return;
+                }
+                // 应用层心跳
+                if (WebSocketConstants.FRAME_TYPE_PING.equals(type)) {
+                    heartbeatMonitor.onPing(clientSession);
+                    return;
+                }
+                // 进入、离开聊天页
+                if (WebSocketConstants.FRAME_TYPE_ACTIVE.equals(type)) {
+                    activeChatTracker.onFrame(clientSession, frame.path("conversationId").asText(null));
+                    return;
+                }
+                if (!WebSocketConstants.FRAME_TYPE_CHAT.equals(type)) {
+                    sendErrorMessage(session, "未知的帧类型: " + type);
+                    return;
+                }
+                log.info("收到消息: {}", payload);
+
                 // 解析消息
-                SendMessageDTO messageDTO = objectMapper.readValue(payload, SendMessageDTO.class);
-                Long senderId = (Long) session.getAttributes().get("userId");
+                SendMessageDTO messageDTO = objectMapper.treeToValue(frame, SendMessageDTO.class);
+                Long senderId = (Long) session.getAttributes().get(WebSocketConstants.ATTR_USER_ID);
                 messageDTO.setSenderId(senderId);
 
+                // 持久化之前预留推送名额，推送积压时直接拒绝发送（尚未持久化，客户端可重试），不阻塞入站线程
+                Long targetId = ConversationTypeEnum.GROUP.getCode().equals(messageDTO.getConversationType())
+                        ? messageDTO.getGroupId() : messageDTO.getReceiverId();
+                String partitionKey = ConversationIdUtil.generateConversationId(
+                        messageDTO.getConversationType(), senderId, targetId);
+                if (!fanoutExecutor.tryReserve(partitionKey)) {
+                    sendErrorMessage(session, "服务繁忙，消息发送失败，请稍后重试");
+                    return;
+                }
+
                 // 发送消息（通过 Service 层处理业务逻辑）
-                MessageVO messageVO = messageService.sendMessage(messageDTO);
+                MessageVO messageVO;
+                try {
+                    messageVO = messageService.sendMessage(messageDTO);
+                } catch (RuntimeException e) {
+                    fanoutExecutor.cancelReservation(partitionKey);
+                    throw e;
+                }
+
+                // 消息已持久化，回复发送者 sent 回执（仅启用了投递确认的会话）
+                deliveryReceiptPublisher.sendSentReceipt(clientSession, messageDTO.getClientMsgId(), messageVO);
 
-                // 推送消息给接收者
-                pushMessage(messageVO);
+                // 消息已持久化，推送交给扇出执行器异步完成（按会话分区，保证同一会话内顺序）
+                // 名额已预留，仅在节点关闭时失败，此时接收者重连后通过同步获取
+                if (!fanoutExecutor.submitReserved(partitionKey, () -> messagePusher.pushMessage(messageVO, clientSession))) {
+                    sendErrorMessage(session, "服务繁忙，消息已保存但未能推送，对方将在重新同步时收到");
+                }
 
             } catch (Exception e) {
                 log.error("处理消息失败", e);
@@ -92,7 +210,7 @@ public class ChatWebSocketHandler implements WebSocketHandler {
      */
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
-        Long userId = (Long) session.getAttributes().get("userId");
+        Long userId = (Long) session.getAttributes().get(WebSocketConstants.ATTR_USER_ID);
         log.error("WebSocket 传输错误，用户ID: {}", userId, exception);
     }
 
@@ -101,11 +219,44 @@ public class ChatWebSocketHandler implements WebSocketHandler {
      */
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
-        Long userId = (Long) session.getAttributes().get("userId");
-        if (userId != null) {
-            ONLINE_USERS.remove(userId);
-            log.info("用户 {} 断开 WebSocket 连接，当前在线人数: {}", userId, ONLINE_USERS.size());
+        Long userId = (Long) session.getAttributes().get(WebSocketConstants.ATTR_USER_ID);
+        ClientSession clientSession = (ClientSession) session.getAttributes().get(WebSocketConstants.ATTR_CLIENT_SESSION);
+        if (userId != null && clientSession != null) {
+            cleanup(clientSession);
+            log.info("用户 {} 断开 WebSocket 连接，本节点在线人数: {}, 连接数: {}",
+                    userId, sessionRegistry.getOnlineUserCount(), sessionRegistry.getSessionCount());
+        }
+    }
+
+    /**
+     * 移除会话的在线状态与路由（连接关闭或空闲超时时调用，可重复调用）
+     */
+    private void cleanup(ClientSession clientSession) {
+        Long userId = clientSession.getUserId();
+        int remaining;
+        synchronized (lifecycleLock(userId)) {
+            // 仅移除当前连接对应的会话，同一用户的其他连接不受影响
+            remaining = sessionRegistry.unregister(clientSession);
+            // 用户在本节点的最后一个连接断开时，才移除路由与在线状态
+            if (remaining == 0) {
+                userRouteService.unregister(userId);
+                presenceService.markOffline(userId);
+            }
+        }
+        if (remaining < 0) {
+            return;
         }
+        heartbeatMonitor.onDisconnect(clientSession);
+        deliveryAckManager.onDisconnect(clientSession);
+        activeChatTracker.onDisconnect(clientSession);
+        // 群成员索引移除时会在桶锁内重新检查注册表，并发重连的用户不会被移出
+        if (remaining == 0) {
+            onlineGroupIndex.onDisconnect(clientSession);
+        }
+    }
+
+    private Object lifecycleLock(Long userId) {
+        return lifecycleLocks[(Long.hashCode(userId) & Integer.MAX_VALUE) % LIFECYCLE_LOCK_STRIPES];
     }
 
     @Override
@@ -114,100 +265,15 @@ public class ChatWebSocketHandler implements WebSocketHandler {
     }
 
     /**
-     * 推送消息给接收者
+     * 节点停机前移除本节点上所有用户的路由，避免其他节点继续向本节点投递
      */
-    private void pushMessage(MessageVO messageVO) {
+    @PreDestroy
+    public void destroy() {
+        List<Long> userIds = sessionRegistry.all().stream().map(ClientSession::getUserId).distinct().toList();
         try {
-            String messageJson = objectMapper.writeValueAsString(messageVO);
-            TextMessage textMessage = new TextMessage(messageJson);
-
-            // 单聊：推送给接收者
-            if (ConversationTypeEnum.SINGLE.getCode().equals(messageVO.getConversationType())) {
-                // 从会话ID中提取对方用户ID
-                Long receiverId = ConversationIdUtil.extractTargetId(
-                    messageVO.getConversationId(),
-                    messageVO.getSenderId()
-                );
-
-                // 检查接收者的活跃会话
-                String activeConversationId = unreadService.getActiveChat(receiverId);
-                boolean isActiveChat = messageVO.getConversationId().equals(activeConversationId);
-
-                WebSocketSession receiverSession = ONLINE_USERS.get(receiverId);
-                if (receiverSession != null && receiverSession.isOpen()) {
-                    // 接收者在线
-                    if (isActiveChat) {
-                        // 活跃会话匹配：续期活跃状态，推送消息，不增加未读数
-                        unreadService.renewActiveChat(receiverId);
-                        receiverSession.sendMessage(textMessage);
-                        log.info("单聊消息已推送给在线用户（活跃会话），未增加未读数，用户ID: {}, 会话ID: {}",
-                                receiverId, messageVO.getConversationId());
-                    } else {
-                        // 活跃会话不匹配：推送消息，增加未读数
-                        unreadService.incrementUnread(receiverId, messageVO.getConversationId());
-                        receiverSession.sendMessage(textMessage);
-                        log.info("单聊消息已推送给在线用户（非活跃会话），已增加未读数，用户ID: {}, 会话ID: {}",
-                                receiverId, messageVO.getConversationId());
-                    }
-                } else {
-                    // 接收者离线：增加未读数
-                    unreadService.incrementUnread(receiverId, messageVO.getConversationId());
-                    log.info("接收者离线，已增加未读数，用户ID: {}, 会话ID: {}", receiverId, messageVO.getConversationId());
-                }
-            }
-            // 群聊：推送给所有在线群成员
-            else if (ConversationTypeEnum.GROUP.getCode().equals(messageVO.getConversationType())) {
-                // 从会话ID中提取群组ID
-                Long groupId = ConversationIdUtil.extractGroupIdFromGroupChat(messageVO.getConversationId());
-
-                // 查询群成员列表
-                LambdaQueryWrapper<GroupMember> wrapper = new LambdaQueryWrapper<>();
-                wrapper.eq(GroupMember::getGroupId, groupId);
-                List<GroupMember> groupMembers = groupMemberMapper.selectList(wrapper);
-
-                int onlineCount = 0;
-                int unreadIncrementCount = 0;
-                for (GroupMember member : groupMembers) {
-                    // 跳过发送者自己（发送者不需要接收自己的消息）
-                    if (member.getUserId().equals(messageVO.getSenderId())) {
-                        continue;
-                    }
-
-                    // 检查该成员的活跃会话
-                    String activeChatId = unreadService.getActiveChat(member.getUserId());
-                    boolean isActiveChat = messageVO.getConversationId().equals(activeChatId);
-
-                    // 推送给所有在线成员
-                    WebSocketSession memberSession = ONLINE_USERS.get(member.getUserId());
-                    if (memberSession != null && memberSession.isOpen()) {
-                        try {
-                            if (isActiveChat) {
-                                // 活跃会话匹配：续期，推送，不增加未读数
-                                unreadService.renewActiveChat(member.getUserId());
-                                memberSession.sendMessage(textMessage);
-                                onlineCount++;
-                            } else {
-                                // 活跃会话不匹配：推送，增加未读数
-                                unreadService.incrementUnread(member.getUserId(), messageVO.getConversationId());
-                                memberSession.sendMessage(textMessage);
-                                onlineCount++;
-                                unreadIncrementCount++;
-                            }
-                        } catch (IOException e) {
-                            log.error("推送消息给群成员 {} 失败", member.getUserId(), e);
-                        }
-                    } else {
-                        // 成员离线：增加未读数
-                        unreadService.incrementUnread(member.getUserId(), messageVO.getConversationId());
-                        unreadIncrementCount++;
-                    }
-                }
-                log.info("群聊消息已推送，会话ID: {}, 群组ID: {}, 在线成员数: {}/{}, 增加未读数成员数: {}",
-                         messageVO.getConversationId(), groupId, onlineCount, groupMembers.size() - 1, unreadIncrementCount);
-            }
-
+            userRouteService.unregisterAll(userIds);
         } catch (Exception e) {
-            log.error("推送消息失败", e);
+            log.warn("节点停机时移除用户路由失败", e);
         }
     }
 
@@ -218,23 +284,10 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         try {
             Map<String, String> error = Map.of("error", errorMsg);
             String errorJson = objectMapper.writeValueAsString(error);
-            session.sendMessage(new TextMessage(errorJson));
+            ClientSession clientSession = (ClientSession) session.getAttributes().get(WebSocketConstants.ATTR_CLIENT_SESSION);
+            outboundDispatcher.send(clientSession, new TextMessage(errorJson));
         } catch (IOException e) {
             log.error("发送错误消息失败", e);
         }
     }
-
-    /**
-     * 获取在线用户数量
-     */
-    public static int getOnlineUserCount() {
-        return ONLINE_USERS.size();
-    }
-
-    /**
-     * 判断用户是否在线
-     */
-    public static boolean isUserOnline(Long userId) {
-        return ONLINE_USERS.containsKey(userId);
-    }
 }
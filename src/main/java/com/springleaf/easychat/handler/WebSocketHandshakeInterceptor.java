@@ -1,6 +1,7 @@
 package com.springleaf.easychat.handler;
 
 import cn.dev33.satoken.stp.StpUtil;
+import com.springleaf.easychat.constants.WebSocketConstants;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
@@ -37,7 +38,9 @@ public class WebSocketHandshakeInterceptor implements HandshakeInterceptor {
                 Object loginId = StpUtil.getLoginIdByToken(token);
                 if (loginId != null) {
                     Long userId = Long.valueOf(loginId.toString());
-                    attributes.put("userId", userId);
+                    attributes.put(WebSocketConstants.ATTR_USER_ID, userId);
+                    // 客户端以 ack=1 连接时启用投递确认
+                    attributes.put(WebSocketConstants.ATTR_ACK_ENABLED, query.matches("(.*&)?ack=1(&.*)?"));
                     log.info("WebSocket 握手成功，用户ID: {}", userId);
                     return true;
                 }
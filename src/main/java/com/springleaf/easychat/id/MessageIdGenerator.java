@@ -0,0 +1,16 @@
+package com.springleaf.easychat.id;
+
+/**
+ * 消息ID生成器
+ * 在持久化之前生成全局唯一、按时间递增的 64 位消息ID，
+ * 使消息ID不再依赖 messages 表的自增主键
+ */
+public interface MessageIdGenerator {
+
+    /**
+     * 生成下一个消息ID
+     *
+     * @return 消息ID（同一节点上严格递增，不同节点之间按毫秒时间有序）
+     */
+    long nextId();
+}
@@ -0,0 +1,184 @@
+package com.springleaf.easychat.id;
+
+import com.springleaf.easychat.cluster.ClusterNode;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+
+/**
+ * 雪花算法消息ID生成器
+ * ID 结构：1 位符号位 + 41 位毫秒时间戳（相对 2024-01-01）+ 10 位 workerId + 12 位序列号
+ *
+ * workerId 优先取配置，未配置时在 Redis 中以 SET NX 抢占一个租约并定时续期，保证存活节点之间不重复。
+ * 时钟回拨时沿用上一次的时间戳继续递增序列号（序列号用尽则借用下一毫秒），不会生成重复或倒序的ID
+ */
+@Slf4j
+@Component
+public class SnowflakeIdGenerator implements MessageIdGenerator {
+
+    /**
+     * 起始时间 2024-01-01T00:00:00Z（毫秒）
+     */
+    private static final long EPOCH = LocalDateTime.of(2024, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    private static final int WORKER_ID_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    private static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final int WORKER_ID_SHIFT = SEQUENCE_BITS;
+    private static final int TIMESTAMP_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
+
+    /**
+     * 续期 workerId 租约（仅持有该租约的节点才能续期）
+     */
+    private static final DefaultRedisScript<Long> RENEW_LEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+            "end " +
+            "return 0", Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ClusterNode clusterNode;
+    private final EasyChatProperties.IdGenerator config;
+
+    /**
+     * 当前节点的 workerId
+     */
+    @Getter
+    private long workerId;
+
+    /**
+     * workerId 是否来自 Redis 租约（需要续期和释放）
+     */
+    private boolean leased;
+
+    private long lastTimestamp = -1L;
+    private long sequence;
+
+    public SnowflakeIdGenerator(StringRedisTemplate stringRedisTemplate,
+                                ClusterNode clusterNode,
+                                EasyChatProperties properties) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.clusterNode = clusterNode;
+        this.config = properties.getIdGenerator();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (config.getWorkerId() != null) {
+            if (config.getWorkerId() < 0 || config.getWorkerId() > MAX_WORKER_ID) {
+                throw new IllegalStateException("workerId 必须在 0 ~ " + MAX_WORKER_ID + " 之间: " + config.getWorkerId());
+            }
+            workerId = config.getWorkerId();
+        } else {
+            workerId = acquireWorkerId();
+            leased = true;
+        }
+        log.info("消息ID生成器初始化完成，workerId: {}, 来源: {}", workerId, leased ? "Redis 租约" : "配置");
+    }
+
+    @Override
+    public synchronized long nextId() {
+        long timestamp = System.currentTimeMillis();
+        if (timestamp < lastTimestamp) {
+            // 时钟回拨：沿用上一次的时间戳，保证ID单调递增
+            timestamp = lastTimestamp;
+        }
+
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                // 当前毫秒的序列号已用尽
+                timestamp = waitNextMillis(lastTimestamp);
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+
+        return ((timestamp - EPOCH) << TIMESTAMP_SHIFT) | (workerId << WORKER_ID_SHIFT) | sequence;
+    }
+
+    /**
+     * 续期 workerId 租约（每三分之一租约时长一次）
+     */
+    @Scheduled(fixedDelayString = "#{${easy-chat.id-generator.worker-lease-seconds:60} * 1000 / 3}")
+    public void renewLease() {
+        if (!leased) {
+            return;
+        }
+        try {
+            Long renewed = stringRedisTemplate.execute(
+                    RENEW_LEASE_SCRIPT,
+                    Collections.singletonList(RedisKeyConstants.getIdWorkerKey(workerId)),
+                    clusterNode.getNodeId(), String.valueOf(config.getWorkerLeaseSeconds()));
+            if (renewed == null || renewed == 0) {
+                // 租约已过期：若未被其他节点占用则重新占用，否则只能告警
+                Boolean reacquired = stringRedisTemplate.opsForValue().setIfAbsent(
+                        RedisKeyConstants.getIdWorkerKey(workerId), clusterNode.getNodeId(),
+                        Duration.ofSeconds(config.getWorkerLeaseSeconds()));
+                if (Boolean.TRUE.equals(reacquired)) {
+                    log.warn("workerId 租约曾过期，已重新占用，workerId: {}", workerId);
+                } else {
+                    log.error("workerId 租约已被其他节点占用，可能生成重复的消息ID，workerId: {}", workerId);
+                }
+            }
+        } catch (Exception e) {
+            log.error("workerId 租约续期失败，workerId: {}", workerId, e);
+        }
+    }
+
+    @PreDestroy
+    public void releaseLease() {
+        if (!leased) {
+            return;
+        }
+        try {
+            String key = RedisKeyConstants.getIdWorkerKey(workerId);
+            if (clusterNode.getNodeId().equals(stringRedisTemplate.opsForValue().get(key))) {
+                stringRedisTemplate.delete(key);
+            }
+            log.info("释放 workerId 租约，workerId: {}", workerId);
+        } catch (Exception e) {
+            log.warn("释放 workerId 租约失败，workerId: {}", workerId, e);
+        }
+    }
+
+    /**
+     * 在 Redis 中抢占一个空闲的 workerId
+     */
+    private long acquireWorkerId() {
+        Duration lease = Duration.ofSeconds(config.getWorkerLeaseSeconds());
+        for (long candidate = 0; candidate <= MAX_WORKER_ID; candidate++) {
+            Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(
+                    RedisKeyConstants.getIdWorkerKey(candidate), clusterNode.getNodeId(), lease);
+            if (Boolean.TRUE.equals(acquired)) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("没有可用的 workerId，存活节点数已超过 " + (MAX_WORKER_ID + 1));
+    }
+
+    private long waitNextMillis(long lastTimestamp) {
+        long timestamp = System.currentTimeMillis();
+        while (timestamp <= lastTimestamp) {
+            Thread.onSpinWait();
+            timestamp = System.currentTimeMillis();
+        }
+        return timestamp;
+    }
+}
@@ -2,7 +2,11 @@ package com.springleaf.easychat.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.springleaf.easychat.model.entity.Conversation;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * 会话Mapper接口
@@ -10,5 +14,26 @@ import org.apache.ibatis.annotations.Mapper;
 @Mapper
 public interface ConversationMapper extends BaseMapper<Conversation> {
 
-    // 待实现自定义SQL方法
+    /**
+     * 批量写入会话的最后消息（不存在则创建，已存在则更新，已删除的会话会被恢复）
+     * 一条多行 INSERT ... ON DUPLICATE KEY UPDATE 语句完成，依赖联合主键 (user_id, conversation_id)
+     *
+     * 只有更新的消息ID才会覆盖最后消息，避免并发发送时事务提交顺序导致最后消息回退。
+     * 注意 MySQL 按从左到右的顺序执行赋值，last_message_time 必须先于 last_message_id 更新
+     *
+     * @param conversations 会话列表（需设置 conversationId、type、userId、targetId、lastMessageId、lastMessageTime）
+     * @return 影响行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO conversations (conversation_id, type, user_id, target_id, last_message_id, last_message_time, status, pinned, muted) VALUES " +
+            "<foreach collection='list' item='c' separator=','>" +
+            "(#{c.conversationId}, #{c.type}, #{c.userId}, #{c.targetId}, #{c.lastMessageId}, #{c.lastMessageTime}, 1, FALSE, FALSE)" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE " +
+            "last_message_time = CASE WHEN VALUES(last_message_id) >= IFNULL(last_message_id, 0) " +
+            "THEN VALUES(last_message_time) ELSE last_message_time END, " +
+            "last_message_id = GREATEST(IFNULL(last_message_id, 0), VALUES(last_message_id)), " +
+            "status = 1" +
+            "</script>")
+    int batchUpsertLastMessage(@Param("list") List<Conversation> conversations);
 }
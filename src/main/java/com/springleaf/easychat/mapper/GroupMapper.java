@@ -3,6 +3,10 @@ package com.springleaf.easychat.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.springleaf.easychat.model.entity.Group;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
 
 /**
  * 群组Mapper接口
@@ -10,5 +14,18 @@ import org.apache.ibatis.annotations.Mapper;
 @Mapper
 public interface GroupMapper extends BaseMapper<Group> {
 
-    // 待实现自定义SQL方法
+    /**
+     * 更新群组的最后消息（读扩散模式）
+     * 只有更新的消息ID才会覆盖，避免并发发送时事务提交顺序导致最后消息回退
+     *
+     * @param groupId 群组ID
+     * @param lastMessageId 最后消息ID
+     * @param lastMessageTime 最后消息时间
+     * @return 影响行数
+     */
+    @Update("UPDATE `groups` SET last_message_id = #{lastMessageId}, last_message_time = #{lastMessageTime} " +
+            "WHERE id = #{groupId} AND (last_message_id IS NULL OR last_message_id < #{lastMessageId})")
+    int updateLastMessage(@Param("groupId") Long groupId,
+                          @Param("lastMessageId") Long lastMessageId,
+                          @Param("lastMessageTime") LocalDateTime lastMessageTime);
 }
@@ -3,6 +3,10 @@ package com.springleaf.easychat.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.springleaf.easychat.model.entity.Message;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 /**
  * 消息Mapper接口
@@ -10,5 +14,46 @@ import org.apache.ibatis.annotations.Mapper;
 @Mapper
 public interface MessageMapper extends BaseMapper<Message> {
 
-    // 待实现自定义SQL方法
+    /**
+     * 查询会话的最大序列号（走 uk_conv_seq 索引）
+     *
+     * @param conversationId 会话ID
+     * @return 最大序列号，没有消息时返回 0
+     */
+    @Select("SELECT IFNULL(MAX(seq), 0) FROM messages WHERE conversation_id = #{conversationId}")
+    long selectMaxSeq(@Param("conversationId") String conversationId);
+
+    /**
+     * 向前翻页：查询会话中比 beforeId 更早的消息（按ID倒序）
+     * 走 idx_conv_id (conversation_id, id, status) 索引：按索引顺序反向扫描，状态在索引内过滤，无需排序
+     * 没有游标时 uk_conv_seq 也能匹配会话ID前缀，但需要排序，因此指定索引
+     *
+     * @param conversationId 会话ID
+     * @param beforeId 消息ID上界（不包含），为 null 时从最新的消息开始
+     * @param limit 条数
+     * @return 消息列表（最新的在前）
+     */
+    @Select("<script>" +
+            "SELECT * FROM messages USE INDEX (idx_conv_id) WHERE conversation_id = #{conversationId} " +
+            "<if test='beforeId != null'>AND id &lt; #{beforeId} </if>" +
+            "AND status != 2 ORDER BY id DESC LIMIT #{limit}" +
+            "</script>")
+    List<Message> selectOlder(@Param("conversationId") String conversationId,
+                              @Param("beforeId") Long beforeId,
+                              @Param("limit") int limit);
+
+    /**
+     * 向后翻页：查询会话中比 afterId 更新的消息（按ID正序）
+     * 走 idx_conv_id (conversation_id, id, status) 索引的正向扫描
+     *
+     * @param conversationId 会话ID
+     * @param afterId 消息ID下界（不包含）
+     * @param limit 条数
+     * @return 消息列表（最早的在前）
+     */
+    @Select("SELECT * FROM messages USE INDEX (idx_conv_id) WHERE conversation_id = #{conversationId} " +
+            "AND id > #{afterId} AND status != 2 ORDER BY id ASC LIMIT #{limit}")
+    List<Message> selectNewer(@Param("conversationId") String conversationId,
+                              @Param("afterId") Long afterId,
+                              @Param("limit") int limit);
 }
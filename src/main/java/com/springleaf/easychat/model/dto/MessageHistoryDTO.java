@@ -30,4 +30,16 @@ public class MessageHistoryDTO {
      * 如果为空，则查询最新的消息
      */
     private Long lastMessageId;
+
+    /**
+     * 查询比此ID更新的消息（向下翻页，例如从定位到的消息处继续往后加载）
+     * 与 lastMessageId、aroundMessageId 互斥
+     */
+    private Long afterMessageId;
+
+    /**
+     * 查询此消息及其前后的消息（跳转到指定消息），前后各约一半
+     * 与 lastMessageId、afterMessageId 互斥
+     */
+    private Long aroundMessageId;
 }
@@ -0,0 +1,33 @@
+package com.springleaf.easychat.model.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+/**
+ * 按序列号区间查询消息 DTO
+ */
+@Data
+public class MessageRangeDTO {
+
+    /**
+     * 会话ID
+     */
+    @NotBlank(message = "会话ID不能为空")
+    private String conversationId;
+
+    /**
+     * 起始序列号（包含）
+     */
+    @NotNull(message = "起始序列号不能为空")
+    @Min(value = 1, message = "起始序列号必须大于0")
+    private Long fromSeq;
+
+    /**
+     * 结束序列号（包含），区间最多 100 条
+     */
+    @NotNull(message = "结束序列号不能为空")
+    @Min(value = 1, message = "结束序列号必须大于0")
+    private Long toSeq;
+}
@@ -0,0 +1,32 @@
+package com.springleaf.easychat.model.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 重连同步 DTO
+ */
+@Data
+public class MessageSyncDTO {
+
+    /**
+     * 各会话已收到的最大序列号（水位线，key: 会话ID）
+     * 首次同步传客户端本地各会话的最大 seq；后续分页把上一次响应中的 seqs 合并进来再传
+     * 未列出的会话视为本地没有消息，从第一条开始返回
+     * 不用全局的消息ID做水位线：消息ID在发送时分配、异步写入数据库，提交顺序与ID顺序不一致，
+     * 较小的ID可能在较大的ID之后才可见，按ID推进会永久漏掉这类消息
+     */
+    @Size(max = 500, message = "会话序列号最多500个")
+    private Map<String, Long> seqs;
+
+    /**
+     * 每页大小（默认200条）
+     */
+    @Min(value = 1, message = "每页大小必须大于0")
+    @Max(value = 500, message = "每页大小不能超过500")
+    private Integer size = 200;
+}
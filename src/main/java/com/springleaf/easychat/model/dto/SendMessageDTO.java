@@ -56,4 +56,9 @@ public class SendMessageDTO {
      * 文件大小（字节）
      */
     private Integer fileSize;
+
+    /**
+     * 客户端消息ID（可选，仅用于在 sent 回执中回传，便于客户端关联本地消息）
+     */
+    private String clientMsgId;
 }
@@ -48,6 +48,16 @@ public class Group {
      */
     private Integer status;
 
+    /**
+     * 最后一条消息ID（读扩散模式下维护）
+     */
+    private Long lastMessageId;
+
+    /**
+     * 最后消息时间（读扩散模式下维护）
+     */
+    private LocalDateTime lastMessageTime;
+
     /**
      * 创建时间
      */
@@ -13,9 +13,9 @@ import java.time.LocalDateTime;
 public class Message {
 
     /**
-     * 消息ID
+     * 消息ID（由 MessageIdGenerator 在保存前生成）
      */
-    @TableId(type = IdType.AUTO)
+    @TableId(type = IdType.INPUT)
     private Long id;
 
     /**
@@ -23,6 +23,11 @@ public class Message {
      */
     private String conversationId;
 
+    /**
+     * 会话内序列号（从 1 开始单调递增）
+     */
+    private Long seq;
+
     /**
      * 发送者ID
      */
@@ -1,6 +1,8 @@
 package com.springleaf.easychat.model.vo;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.Data;
 
 import java.io.Serializable;
@@ -43,8 +45,9 @@ public class ConversationVO {
     private Integer unreadCount;
 
     /**
-     * 最后一条消息ID
+     * 最后一条消息ID（序列化为字符串，避免超出 JavaScript 安全整数范围）
      */
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long lastMessageId;
 
     /**
@@ -79,6 +79,11 @@ public class FriendVO {
      */
     private Integer status;
 
+    /**
+     * 好友是否在线（仅好友列表返回）
+     */
+    private Boolean online;
+
     /**
      * 添加好友时间
      */
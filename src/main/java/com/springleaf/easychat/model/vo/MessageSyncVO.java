@@ -0,0 +1,37 @@
+package com.springleaf.easychat.model.vo;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 重连同步响应
+ */
+@Data
+public class MessageSyncVO {
+
+    /**
+     * 新消息（按会话分组，会话内按序列号正序）
+     */
+    private List<MessageVO> messages;
+
+    /**
+     * 本页涉及的会话的新水位线（key: 会话ID，value: 本页该会话最后一条消息的序列号）
+     * 合并进请求的 seqs 后继续拉取下一页
+     */
+    private Map<String, Long> seqs;
+
+    /**
+     * 本页涉及的会话中可能仍在写入的空号（key: 会话ID，value: 该会话最小的未确认空号）
+     * 序列号在写入前分配，较大的序列号可能先提交；水位线照常推进到本页最后一条，
+     * 本轮同步结束后客户端把这些会话的本地水位线降为 空号 - 1（下次同步从空号处重新拉取，按 seq 去重），
+     * 或稍后用 /message/range 补拉该区间
+     */
+    private Map<String, Long> gaps;
+
+    /**
+     * 是否还有更多消息
+     */
+    private Boolean hasMore;
+}
@@ -1,5 +1,7 @@
 package com.springleaf.easychat.model.vo;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.Data;
 import java.time.LocalDateTime;
 
@@ -10,8 +12,9 @@ import java.time.LocalDateTime;
 public class MessageVO {
 
     /**
-     * 消息ID
+     * 消息ID（序列化为字符串，避免超出 JavaScript 安全整数范围）
      */
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long id;
 
     /**
@@ -19,6 +22,11 @@ public class MessageVO {
      */
     private String conversationId;
 
+    /**
+     * 会话内序列号（连续递增，客户端据此检测丢失的消息）
+     */
+    private Long seq;
+
     /**
      * 发送者ID
      */
@@ -31,4 +31,12 @@ public interface ConversationService extends IService<Conversation> {
      * @param conversationId 会话ID
      */
     void toggleMute(String conversationId);
+
+    /**
+     * 删除会话（从会话列表中隐藏，收到新消息后重新显示）
+     * 同时清除该会话的未读数并从未读总数中扣除
+     *
+     * @param conversationId 会话ID
+     */
+    void deleteConversation(String conversationId);
 }
@@ -2,8 +2,11 @@ package com.springleaf.easychat.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.springleaf.easychat.model.dto.MessageHistoryDTO;
+import com.springleaf.easychat.model.dto.MessageRangeDTO;
+import com.springleaf.easychat.model.dto.MessageSyncDTO;
 import com.springleaf.easychat.model.dto.SendMessageDTO;
 import com.springleaf.easychat.model.entity.Message;
+import com.springleaf.easychat.model.vo.MessageSyncVO;
 import com.springleaf.easychat.model.vo.MessageVO;
 
 import java.util.List;
@@ -29,6 +32,23 @@ public interface MessageService extends IService<Message> {
      */
     List<MessageVO> getMessageHistory(MessageHistoryDTO queryDTO);
 
+    /**
+     * 按序列号区间查询会话的消息（用于补拉丢失的消息）
+     *
+     * @param rangeDTO 查询参数
+     * @return 消息列表（按序列号正序）
+     */
+    List<MessageVO> getMessageRange(MessageRangeDTO rangeDTO);
+
+    /**
+     * 重连同步：一次返回当前用户所有会话中各自序列号水位线之后的新消息（按会话逐个查询，会话内按序列号正序）
+     * 不清除未读数，也不设置活跃会话
+     *
+     * @param syncDTO 同步参数
+     * @return 同步结果
+     */
+    MessageSyncVO syncMessages(MessageSyncDTO syncDTO);
+
     /**
      * 删除消息
      * @param messageId 消息ID
@@ -0,0 +1,52 @@
+package com.springleaf.easychat.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 会话序列号服务接口
+ * 为每个会话分配单调递增的消息序列号，客户端据此检测丢失的消息并按区间补拉
+ */
+public interface SequenceService {
+
+    /**
+     * 分配会话的下一个序列号
+     *
+     * @param conversationId 会话ID
+     * @return 序列号（从 1 开始）
+     */
+    long nextSeq(String conversationId);
+
+    /**
+     * 查询会话当前已分配的最大序列号
+     *
+     * @param conversationId 会话ID
+     * @return 最大序列号，计数器不存在时返回 -1
+     */
+    long currentSeq(String conversationId);
+
+    /**
+     * 批量查询会话当前已分配的最大序列号（一次 MGET）
+     *
+     * @param conversationIds 会话ID列表
+     * @return 最大序列号（key: 会话ID），计数器不存在的会话值为 -1
+     */
+    Map<String, Long> currentSeqs(List<String> conversationIds);
+
+    /**
+     * 记录已确认发送、但尚未写入数据库的序列号（预写日志模式下消息异步写入 MySQL），
+     * 计数器重建时不低于这些序列号
+     *
+     * @param conversationId 会话ID
+     * @param seq 序列号
+     */
+    void markPending(String conversationId, long seq);
+
+    /**
+     * 序列号对应的消息已写入数据库
+     *
+     * @param conversationId 会话ID
+     * @param seq 序列号
+     */
+    void markPersisted(String conversationId, long seq);
+}
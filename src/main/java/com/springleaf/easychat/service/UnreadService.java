@@ -2,8 +2,10 @@ package com.springleaf.easychat.service;
 
 import com.springleaf.easychat.model.dto.ActiveChatDTO;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * 未读消息服务接口
@@ -11,7 +13,7 @@ import java.util.Map;
 public interface UnreadService {
 
     /**
-     * 设置用户的活跃会话
+     * 设置用户的活跃会话（更新用户连接上的会话状态，并写入 Redis 供其他节点读取）
      *
      * @param dto 活跃会话DTO
      */
@@ -33,13 +35,6 @@ public interface UnreadService {
      */
     String getActiveChat(Long userId);
 
-    /**
-     * 续期活跃会话（重新设置 60 秒过期时间）
-     *
-     * @param userId 用户ID
-     */
-    void renewActiveChat(Long userId);
-
     /**
      * 增加未读消息数
      *
@@ -75,4 +70,45 @@ public interface UnreadService {
      */
     Map<String, Integer> batchGetUnreadCounts(Long userId, List<String> conversationIds);
 
+    /**
+     * 批量获取多个用户的活跃会话ID（MGET，一次往返）
+     * 只用于连接不在本节点的用户，本节点的用户直接读取 {@code ClientSession#getActiveChat()}
+     *
+     * @param userIds 用户ID列表
+     * @return Map<userId, conversationId>，没有活跃会话的用户不会出现在结果中
+     */
+    Map<Long, String> batchGetActiveChats(List<Long> userIds);
+
+    /**
+     * 批量为多个用户增加同一会话的未读数（Lua 脚本，同时更新未读总数，一次往返）
+     *
+     * @param userIds 用户ID列表
+     * @param conversationId 会话ID
+     */
+    void batchIncrementUnread(Collection<Long> userIds, String conversationId);
+
+    /**
+     * 获取用户的未读总数（不含免打扰会话），用于应用角标
+     * 未读总数随未读数增减原子维护；尚未初始化（或已过期）时从会话列表重新计算
+     *
+     * @param userId 用户ID
+     * @return 未读总数
+     */
+    long getUnreadTotal(Long userId);
+
+    /**
+     * 会话免打扰状态变更后调整未读总数
+     *
+     * @param userId 用户ID
+     * @param conversationId 会话ID
+     * @param muted 是否免打扰
+     */
+    void onMuteChanged(Long userId, String conversationId, boolean muted);
+
+    /**
+     * 注册未读总数变更监听器（用于推送角标），参数为 userId -> 最新未读总数
+     *
+     * @param listener 监听器
+     */
+    void addUnreadTotalListener(Consumer<Map<Long, Long>> listener);
 }
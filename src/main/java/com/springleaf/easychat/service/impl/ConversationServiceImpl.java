@@ -2,6 +2,8 @@ package com.springleaf.easychat.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.springleaf.easychat.cache.UserProfile;
+import com.springleaf.easychat.cache.UserProfileCache;
 import com.springleaf.easychat.enums.ConversationStatusEnum;
 import com.springleaf.easychat.enums.ConversationTypeEnum;
 import com.springleaf.easychat.enums.MessageTypeEnum;
@@ -11,20 +13,19 @@ import com.springleaf.easychat.model.entity.Conversation;
 import com.springleaf.easychat.model.entity.Friend;
 import com.springleaf.easychat.model.entity.Group;
 import com.springleaf.easychat.model.entity.Message;
-import com.springleaf.easychat.model.entity.User;
 import com.springleaf.easychat.model.vo.ConversationVO;
 import com.springleaf.easychat.service.ConversationService;
 import com.springleaf.easychat.service.FriendService;
 import com.springleaf.easychat.service.GroupService;
 import com.springleaf.easychat.service.MessageService;
 import com.springleaf.easychat.service.UnreadService;
-import com.springleaf.easychat.service.UserService;
 import com.springleaf.easychat.utils.UserContextUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.Resource;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -36,8 +37,15 @@ import java.util.stream.Collectors;
 @Service
 public class ConversationServiceImpl extends ServiceImpl<ConversationMapper, Conversation> implements ConversationService {
 
+    /**
+     * 会话列表排序：置顶的排在前面，再按最后消息时间倒序（与查询时的排序一致）
+     */
+    private static final Comparator<Conversation> CONVERSATION_ORDER = Comparator
+            .comparing(Conversation::getPinned, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Conversation::getLastMessageTime, Comparator.nullsLast(Comparator.reverseOrder()));
+
     @Resource
-    private UserService userService;
+    private UserProfileCache userProfileCache;
 
     @Resource
     private GroupService groupService;
@@ -84,11 +92,10 @@ public class ConversationServiceImpl extends ServiceImpl<ConversationMapper, Con
         }
 
         // 4. 批量查询单聊好友信息和备注名
-        Map<Long, User> userMap = null;
+        Map<Long, UserProfile> userMap = null;
         Map<Long, String> remarkNameMap = null;
         if (!singleChatTargetIds.isEmpty()) {
-            List<User> users = userService.listByIds(singleChatTargetIds);
-            userMap = users.stream().collect(Collectors.toMap(User::getId, user -> user));
+            userMap = userProfileCache.getAll(singleChatTargetIds);
 
             // 查询好友备注名
             LambdaQueryWrapper<Friend> friendQueryWrapper = new LambdaQueryWrapper<>();
@@ -105,6 +112,11 @@ public class ConversationServiceImpl extends ServiceImpl<ConversationMapper, Con
         if (!groupChatTargetIds.isEmpty()) {
             List<Group> groups = groupService.listByIds(groupChatTargetIds);
             groupMap = groups.stream().collect(Collectors.toMap(Group::getId, group -> group));
+
+            // 读扩散的群组：最后消息记录在群组表上，合并到成员的会话视图后按时间重新排序
+            if (mergeGroupLastMessage(conversationList, groupMap)) {
+                conversationList.sort(CONVERSATION_ORDER);
+            }
         }
 
         // 6. 批量查询最后一条消息
@@ -148,15 +160,15 @@ public class ConversationServiceImpl extends ServiceImpl<ConversationMapper, Con
             if (ConversationTypeEnum.SINGLE.getCode().equals(conversation.getType())) {
                 // 单聊：显示好友信息
                 if (userMap != null) {
-                    User friendUser = userMap.get(conversation.getTargetId());
+                    UserProfile friendUser = userMap.get(conversation.getTargetId());
                     if (friendUser != null) {
                         // 优先显示备注名，没有备注名则显示昵称
-                        String displayName = friendUser.getNickname();
+                        String displayName = friendUser.nickname();
                         if (remarkNameMap != null && remarkNameMap.containsKey(conversation.getTargetId())) {
                             displayName = remarkNameMap.get(conversation.getTargetId());
                         }
                         conversationVO.setConversationName(displayName);
-                        conversationVO.setAvatarUrl(friendUser.getAvatarUrl());
+                        conversationVO.setAvatarUrl(friendUser.avatarUrl());
                     }
                 }
             } else if (ConversationTypeEnum.GROUP.getCode().equals(conversation.getType())) {
@@ -189,6 +201,30 @@ public class ConversationServiceImpl extends ServiceImpl<ConversationMapper, Con
         return conversationVOList;
     }
 
+    /**
+     * 将群组表上的最后消息合并到群聊会话（取消息ID较大者）
+     *
+     * @return 是否有会话被合并
+     */
+    private boolean mergeGroupLastMessage(List<Conversation> conversationList, Map<Long, Group> groupMap) {
+        boolean merged = false;
+        for (Conversation conversation : conversationList) {
+            if (!ConversationTypeEnum.GROUP.getCode().equals(conversation.getType())) {
+                continue;
+            }
+            Group group = groupMap.get(conversation.getTargetId());
+            if (group == null || group.getLastMessageId() == null) {
+                continue;
+            }
+            if (conversation.getLastMessageId() == null || group.getLastMessageId() > conversation.getLastMessageId()) {
+                conversation.setLastMessageId(group.getLastMessageId());
+                conversation.setLastMessageTime(group.getLastMessageTime());
+                merged = true;
+            }
+        }
+        return merged;
+    }
+
     @Override
     public void togglePin(String conversationId) {
         Long userId = UserContextUtil.getCurrentUserId();
@@ -238,9 +274,32 @@ public class ConversationServiceImpl extends ServiceImpl<ConversationMapper, Con
                     .eq(Conversation::getConversationId, conversationId);
         this.update(conversation, updateWrapper);
 
+        // 免打扰会话不计入未读总数
+        unreadService.onMuteChanged(userId, conversationId, conversation.getMuted());
+
         log.info("切换会话免打扰状态成功，用户ID: {}, 会话ID: {}, 免打扰: {}", userId, conversationId, conversation.getMuted());
     }
 
+    @Override
+    public void deleteConversation(String conversationId) {
+        Long userId = UserContextUtil.getCurrentUserId();
+
+        Conversation conversation = new Conversation();
+        conversation.setStatus(ConversationStatusEnum.DELETED.getCode());
+        LambdaQueryWrapper<Conversation> updateWrapper = new LambdaQueryWrapper<>();
+        updateWrapper.eq(Conversation::getUserId, userId)
+                    .eq(Conversation::getConversationId, conversationId)
+                    .eq(Conversation::getStatus, ConversationStatusEnum.NORMAL.getCode());
+        if (!this.update(conversation, updateWrapper)) {
+            throw new BusinessException("会话不存在");
+        }
+
+        // 已删除的会话不计入未读总数（收到新消息恢复显示后重新计入）
+        unreadService.clearUnread(userId, conversationId);
+
+        log.info("删除会话成功，用户ID: {}, 会话ID: {}", userId, conversationId);
+    }
+
     /**
      * 格式化消息内容用于会话列表显示
      * 根据不同的消息类型显示不同的提示文本
@@ -2,6 +2,8 @@ package com.springleaf.easychat.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.springleaf.easychat.cache.UserProfile;
+import com.springleaf.easychat.cache.UserProfileCache;
 import com.springleaf.easychat.enums.FriendRequestStatusEnum;
 import com.springleaf.easychat.enums.FriendStatusEnum;
 import com.springleaf.easychat.enums.ResultCodeEnum;
@@ -12,10 +14,8 @@ import com.springleaf.easychat.model.dto.friend.HandleFriendRequestDTO;
 import com.springleaf.easychat.model.dto.friend.SendFriendRequestDTO;
 import com.springleaf.easychat.model.entity.Friend;
 import com.springleaf.easychat.model.entity.FriendRequest;
-import com.springleaf.easychat.model.entity.User;
 import com.springleaf.easychat.model.vo.FriendRequestVO;
 import com.springleaf.easychat.service.FriendRequestService;
-import com.springleaf.easychat.service.UserService;
 import com.springleaf.easychat.utils.UserContextUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -35,7 +35,7 @@ import java.util.stream.Collectors;
 public class FriendRequestServiceImpl extends ServiceImpl<FriendRequestMapper, FriendRequest> implements FriendRequestService {
 
     @Resource
-    private UserService userService;
+    private UserProfileCache userProfileCache;
 
     @Resource
     private FriendMapper friendMapper;
@@ -53,7 +53,7 @@ public class FriendRequestServiceImpl extends ServiceImpl<FriendRequestMapper, F
         }
 
         // 3. 验证目标用户是否存在
-        User targetUser = userService.getById(targetId);
+        UserProfile targetUser = userProfileCache.get(targetId);
         if (targetUser == null) {
             throw new BusinessException(ResultCodeEnum.USER_NOT_EXIST, "目标用户不存在");
         }
@@ -210,14 +210,12 @@ public class FriendRequestServiceImpl extends ServiceImpl<FriendRequestMapper, F
                 .collect(Collectors.toList());
 
         // 4. 批量查询申请人信息
-        List<User> requesterUsers = userService.listByIds(requesterIds);
-        Map<Long, User> requesterUserMap = requesterUsers.stream()
-                .collect(Collectors.toMap(User::getId, user -> user));
+        Map<Long, UserProfile> requesterUserMap = userProfileCache.getAll(requesterIds);
 
         // 5. 组装FriendRequestVO
         List<FriendRequestVO> requestVOList = new ArrayList<>();
         for (FriendRequest friendRequest : requestList) {
-            User requester = requesterUserMap.get(friendRequest.getRequesterId());
+            UserProfile requester = requesterUserMap.get(friendRequest.getRequesterId());
             if (requester != null) {
                 FriendRequestVO requestVO = buildFriendRequestVO(friendRequest, requester);
                 requestVOList.add(requestVO);
@@ -249,22 +247,20 @@ public class FriendRequestServiceImpl extends ServiceImpl<FriendRequestMapper, F
                 .collect(Collectors.toList());
 
         // 4. 批量查询目标用户信息
-        List<User> targetUsers = userService.listByIds(targetIds);
-        Map<Long, User> targetUserMap = targetUsers.stream()
-                .collect(Collectors.toMap(User::getId, user -> user));
+        Map<Long, UserProfile> targetUserMap = userProfileCache.getAll(targetIds);
 
         // 5. 组装FriendRequestVO（这里requester是当前用户，但显示的是target信息）
         List<FriendRequestVO> requestVOList = new ArrayList<>();
         for (FriendRequest friendRequest : requestList) {
-            User targetUser = targetUserMap.get(friendRequest.getTargetId());
+            UserProfile targetUser = targetUserMap.get(friendRequest.getTargetId());
             if (targetUser != null) {
                 FriendRequestVO requestVO = new FriendRequestVO();
                 requestVO.setId(friendRequest.getId());
                 requestVO.setRequesterId(friendRequest.getRequesterId());
                 // 显示目标用户的信息（对方）
-                requestVO.setRequesterAccount(targetUser.getAccount());
-                requestVO.setRequesterNickname(targetUser.getNickname());
-                requestVO.setRequesterAvatarUrl(targetUser.getAvatarUrl());
+                requestVO.setRequesterAccount(targetUser.account());
+                requestVO.setRequesterNickname(targetUser.nickname());
+                requestVO.setRequesterAvatarUrl(targetUser.avatarUrl());
                 requestVO.setTargetId(friendRequest.getTargetId());
                 requestVO.setStatus(friendRequest.getStatus());
                 requestVO.setStatusDesc(FriendRequestStatusEnum.getByCode(friendRequest.getStatus()).getDesc());
@@ -298,13 +294,13 @@ public class FriendRequestServiceImpl extends ServiceImpl<FriendRequestMapper, F
     /**
      * 构建FriendRequestVO对象
      */
-    private FriendRequestVO buildFriendRequestVO(FriendRequest friendRequest, User requester) {
+    private FriendRequestVO buildFriendRequestVO(FriendRequest friendRequest, UserProfile requester) {
         FriendRequestVO requestVO = new FriendRequestVO();
         requestVO.setId(friendRequest.getId());
         requestVO.setRequesterId(friendRequest.getRequesterId());
-        requestVO.setRequesterAccount(requester.getAccount());
-        requestVO.setRequesterNickname(requester.getNickname());
-        requestVO.setRequesterAvatarUrl(requester.getAvatarUrl());
+        requestVO.setRequesterAccount(requester.account());
+        requestVO.setRequesterNickname(requester.nickname());
+        requestVO.setRequesterAvatarUrl(requester.avatarUrl());
         requestVO.setTargetId(friendRequest.getTargetId());
         requestVO.setStatus(friendRequest.getStatus());
         requestVO.setStatusDesc(FriendRequestStatusEnum.getByCode(friendRequest.getStatus()).getDesc());
@@ -2,6 +2,9 @@ package com.springleaf.easychat.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.springleaf.easychat.cache.UserProfile;
+import com.springleaf.easychat.cache.UserProfileCache;
+import com.springleaf.easychat.cluster.PresenceService;
 import com.springleaf.easychat.enums.FriendStatusEnum;
 import com.springleaf.easychat.enums.ResultCodeEnum;
 import com.springleaf.easychat.exception.BusinessException;
@@ -9,10 +12,8 @@ import com.springleaf.easychat.mapper.FriendMapper;
 import com.springleaf.easychat.model.dto.friend.AddFriendRequest;
 import com.springleaf.easychat.model.dto.friend.DeleteFriendRequest;
 import com.springleaf.easychat.model.entity.Friend;
-import com.springleaf.easychat.model.entity.User;
 import com.springleaf.easychat.model.vo.FriendVO;
 import com.springleaf.easychat.service.FriendService;
-import com.springleaf.easychat.service.UserService;
 import com.springleaf.easychat.utils.BeanCopyUtil;
 import com.springleaf.easychat.utils.UserContextUtil;
 import lombok.extern.slf4j.Slf4j;
@@ -23,6 +24,7 @@ import jakarta.annotation.Resource;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -33,7 +35,10 @@ import java.util.stream.Collectors;
 public class FriendServiceImpl extends ServiceImpl<FriendMapper, Friend> implements FriendService {
 
     @Resource
-    private UserService userService;
+    private UserProfileCache userProfileCache;
+
+    @Resource
+    private PresenceService presenceService;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -48,7 +53,7 @@ public class FriendServiceImpl extends ServiceImpl<FriendMapper, Friend> impleme
         }
 
         // 3. 验证好友用户是否存在
-        User friendUser = userService.getById(friendId);
+        UserProfile friendUser = userProfileCache.get(friendId);
         if (friendUser == null) {
             throw new BusinessException(ResultCodeEnum.USER_NOT_EXIST, "要添加的好友不存在");
         }
@@ -169,29 +174,31 @@ public class FriendServiceImpl extends ServiceImpl<FriendMapper, Friend> impleme
                 .collect(Collectors.toList());
 
         // 4. 批量查询好友用户信息
-        List<User> friendUsers = userService.listByIds(friendIds);
-        Map<Long, User> friendUserMap = friendUsers.stream()
-                .collect(Collectors.toMap(User::getId, user -> user));
+        Map<Long, UserProfile> friendUserMap = userProfileCache.getAll(friendIds);
+
+        // 批量查询好友在线状态（一次 Redis 往返）
+        Set<Long> onlineFriendIds = presenceService.getOnlineUsers(friendIds);
 
         // 5. 组装FriendVO
         List<FriendVO> friendVOList = new ArrayList<>();
         for (Friend friend : friendList) {
-            User friendUser = friendUserMap.get(friend.getFriendId());
+            UserProfile friendUser = friendUserMap.get(friend.getFriendId());
             if (friendUser != null) {
                 FriendVO friendVO = new FriendVO();
                 friendVO.setId(friend.getId());
-                friendVO.setFriendId(friendUser.getId());
-                friendVO.setAccount(friendUser.getAccount());
-                friendVO.setNickname(friendUser.getNickname());
+                friendVO.setFriendId(friendUser.id());
+                friendVO.setAccount(friendUser.account());
+                friendVO.setNickname(friendUser.nickname());
                 friendVO.setRemarkName(friend.getRemarkName());
-                friendVO.setPhone(friendUser.getPhone());
-                friendVO.setEmail(friendUser.getEmail());
-                friendVO.setAvatarUrl(friendUser.getAvatarUrl());
-                friendVO.setRegion(friendUser.getRegion());
-                friendVO.setGender(friendUser.getGender());
-                friendVO.setBirthday(friendUser.getBirthday());
-                friendVO.setSignature(friendUser.getSignature());
+                friendVO.setPhone(friendUser.phone());
+                friendVO.setEmail(friendUser.email());
+                friendVO.setAvatarUrl(friendUser.avatarUrl());
+                friendVO.setRegion(friendUser.region());
+                friendVO.setGender(friendUser.gender());
+                friendVO.setBirthday(friendUser.birthday());
+                friendVO.setSignature(friendUser.signature());
                 friendVO.setStatus(friend.getStatus());
+                friendVO.setOnline(onlineFriendIds.contains(friendUser.id()));
                 friendVO.setCreatedAt(friend.getCreatedAt());
                 friendVOList.add(friendVO);
             }
@@ -214,24 +221,24 @@ public class FriendServiceImpl extends ServiceImpl<FriendMapper, Friend> impleme
             throw new BusinessException(ResultCodeEnum.PARAM_ERROR, "好友关系不存在");
         }
         // 3. 查询好友用户信息
-        User friendUser = userService.getById(id);
+        UserProfile friendUser = userProfileCache.get(id);
         if (friendUser == null) {
             throw new BusinessException(ResultCodeEnum.PARAM_ERROR, "好友用户不存在");
         }
         // 4. 组装FriendVO
         FriendVO friendVO = new FriendVO();
         friendVO.setId(friend.getId());
-        friendVO.setFriendId(friendUser.getId());
-        friendVO.setAccount(friendUser.getAccount());
-        friendVO.setNickname(friendUser.getNickname());
+        friendVO.setFriendId(friendUser.id());
+        friendVO.setAccount(friendUser.account());
+        friendVO.setNickname(friendUser.nickname());
         friendVO.setRemarkName(friend.getRemarkName());
-        friendVO.setPhone(friendUser.getPhone());
-        friendVO.setEmail(friendUser.getEmail());
-        friendVO.setAvatarUrl(friendUser.getAvatarUrl());
-        friendVO.setRegion(friendUser.getRegion());
-        friendVO.setGender(friendUser.getGender());
-        friendVO.setBirthday(friendUser.getBirthday());
-        friendVO.setSignature(friendUser.getSignature());
+        friendVO.setPhone(friendUser.phone());
+        friendVO.setEmail(friendUser.email());
+        friendVO.setAvatarUrl(friendUser.avatarUrl());
+        friendVO.setRegion(friendUser.region());
+        friendVO.setGender(friendUser.gender());
+        friendVO.setBirthday(friendUser.birthday());
+        friendVO.setSignature(friendUser.signature());
         friendVO.setStatus(friend.getStatus());
         friendVO.setCreatedAt(friend.getCreatedAt());
         log.info("查询好友信息成功，用户ID：{}, 好友ID：{}", userId, id);
@@ -2,6 +2,7 @@ package com.springleaf.easychat.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.springleaf.easychat.cache.GroupMemberCache;
 import com.springleaf.easychat.enums.ConversationStatusEnum;
 import com.springleaf.easychat.enums.ConversationTypeEnum;
 import com.springleaf.easychat.enums.GroupMemberRoleEnum;
@@ -41,13 +42,16 @@ public class GroupServiceImpl extends ServiceImpl<GroupMapper, Group> implements
     private final GroupMemberMapper groupMemberMapper;
     private final ConversationMapper conversationMapper;
     private final UserService userService;
+    private final GroupMemberCache groupMemberCache;
 
     public GroupServiceImpl(GroupMemberMapper groupMemberMapper,
                            ConversationMapper conversationMapper,
-                           UserService userService) {
+                           UserService userService,
+                           GroupMemberCache groupMemberCache) {
         this.groupMemberMapper = groupMemberMapper;
         this.conversationMapper = conversationMapper;
         this.userService = userService;
+        this.groupMemberCache = groupMemberCache;
     }
 
     @Override
@@ -88,6 +92,9 @@ public class GroupServiceImpl extends ServiceImpl<GroupMapper, Group> implements
         // 为所有群成员创建会话记录（包括群主）
         createConversationsForAllMembers(group.getId(), ownerId, memberIds);
 
+        // 群成员变更，失效群成员缓存
+        groupMemberCache.invalidate(group.getId());
+
         log.info("群组创建完成，群组ID: {}, 总成员数: {}", group.getId(), memberIds.size() + 1);
         return group;
     }
@@ -154,6 +161,9 @@ public class GroupServiceImpl extends ServiceImpl<GroupMapper, Group> implements
         // 为新成员创建会话记录
         createConversationsForNewMembers(groupId, newMemberIds);
 
+        // 群成员变更，失效群成员缓存
+        groupMemberCache.invalidate(groupId);
+
         log.info("添加群成员成功，群组ID: {}, 新增成员数: {}", groupId, newMemberIds.size());
     }
 
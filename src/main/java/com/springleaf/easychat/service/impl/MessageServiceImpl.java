@@ -1,33 +1,43 @@
 package com.springleaf.easychat.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.springleaf.easychat.cache.GroupMemberCache;
+import com.springleaf.easychat.cache.GroupMemberSnapshot;
+import com.springleaf.easychat.cache.RecentMessageCache;
+import com.springleaf.easychat.cache.UserProfile;
+import com.springleaf.easychat.cache.UserProfileCache;
+import com.springleaf.easychat.config.EasyChatProperties;
 import com.springleaf.easychat.enums.ConversationTypeEnum;
 import com.springleaf.easychat.enums.MessageStatusEnum;
 import com.springleaf.easychat.exception.BusinessException;
+import com.springleaf.easychat.id.MessageIdGenerator;
 import com.springleaf.easychat.mapper.ConversationMapper;
-import com.springleaf.easychat.mapper.GroupMemberMapper;
 import com.springleaf.easychat.mapper.MessageMapper;
 import com.springleaf.easychat.model.dto.ActiveChatDTO;
 import com.springleaf.easychat.model.dto.MessageHistoryDTO;
+import com.springleaf.easychat.model.dto.MessageRangeDTO;
+import com.springleaf.easychat.model.dto.MessageSyncDTO;
 import com.springleaf.easychat.model.dto.SendMessageDTO;
 import com.springleaf.easychat.model.entity.Conversation;
-import com.springleaf.easychat.model.entity.GroupMember;
 import com.springleaf.easychat.model.entity.Message;
-import com.springleaf.easychat.model.entity.User;
+import com.springleaf.easychat.model.vo.MessageSyncVO;
 import com.springleaf.easychat.model.vo.MessageVO;
 import com.springleaf.easychat.service.MessageService;
+import com.springleaf.easychat.service.SequenceService;
 import com.springleaf.easychat.service.UnreadService;
-import com.springleaf.easychat.service.UserService;
 import com.springleaf.easychat.utils.ConversationIdUtil;
 import com.springleaf.easychat.utils.UserContextUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -39,30 +49,56 @@ import java.util.stream.Collectors;
 @Service
 public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> implements MessageService {
 
-    private final UserService userService;
+    /**
+     * 按序列号区间查询的最大条数
+     */
+    private static final int MAX_RANGE_SIZE = 100;
+
+    private final UserProfileCache userProfileCache;
     private final ConversationMapper conversationMapper;
-    private final GroupMemberMapper groupMemberMapper;
+    private final GroupMemberCache groupMemberCache;
     private final UnreadService unreadService;
-
-    public MessageServiceImpl(UserService userService,
+    private final EasyChatProperties.Diffusion diffusionConfig;
+    private final EasyChatProperties.Sync syncConfig;
+    private final MessageIdGenerator messageIdGenerator;
+    private final SequenceService sequenceService;
+    private final MessageWriter messageWriter;
+    private final RecentMessageCache recentMessageCache;
+
+    public MessageServiceImpl(UserProfileCache userProfileCache,
                             ConversationMapper conversationMapper,
-                            GroupMemberMapper groupMemberMapper,
-                            UnreadService unreadService) {
-        this.userService = userService;
+                            GroupMemberCache groupMemberCache,
+                            UnreadService unreadService,
+                            EasyChatProperties properties,
+                            MessageIdGenerator messageIdGenerator,
+                            SequenceService sequenceService,
+                            MessageWriter messageWriter,
+                            RecentMessageCache recentMessageCache) {
+        this.userProfileCache = userProfileCache;
         this.conversationMapper = conversationMapper;
-        this.groupMemberMapper = groupMemberMapper;
+        this.groupMemberCache = groupMemberCache;
         this.unreadService = unreadService;
+        this.diffusionConfig = properties.getDiffusion();
+        this.syncConfig = properties.getSync();
+        this.messageIdGenerator = messageIdGenerator;
+        this.sequenceService = sequenceService;
+        this.messageWriter = messageWriter;
+        this.recentMessageCache = recentMessageCache;
     }
 
+    /**
+     * 发送消息
+     * 校验与构建在调用线程完成，写入由 {@link MessageWriter} 在一个事务内完成（开启组提交时与其他消息合并提交），
+     * 因此这里不声明事务，等待组提交期间不占用数据库连接
+     */
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public MessageVO sendMessage(SendMessageDTO messageDTO) {
         // 验证参数
         validateMessageDTO(messageDTO);
         Long senderId = messageDTO.getSenderId();
 
         // 获取发送者信息
-        User sender = userService.getById(senderId);
+        UserProfile sender = userProfileCache.get(senderId);
         if (sender == null) {
             throw new BusinessException("发送者不存在");
         }
@@ -70,6 +106,8 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
         // 生成会话ID
         String conversationId;
         List<Conversation> conversationsToUpdate;
+        // 读扩散模式下最后消息只写入群组表
+        boolean readDiffusion = false;
 
         if (messageDTO.getConversationType().equals(ConversationTypeEnum.SINGLE.getCode())) {
             // 单聊
@@ -78,7 +116,7 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
             }
 
             // 验证接收者是否存在
-            User receiver = userService.getById(messageDTO.getReceiverId());
+            UserProfile receiver = userProfileCache.get(messageDTO.getReceiverId());
             if (receiver == null) {
                 throw new BusinessException("接收者不存在");
             }
@@ -91,25 +129,30 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
                 throw new BusinessException("群聊时群组ID不能为空");
             }
 
-            // 验证用户是否在群组中
-            LambdaQueryWrapper<GroupMember> wrapper = new LambdaQueryWrapper<>();
-            wrapper.eq(GroupMember::getGroupId, messageDTO.getGroupId())
-                   .eq(GroupMember::getUserId, senderId);
-            GroupMember groupMember = groupMemberMapper.selectOne(wrapper);
-
-            if (groupMember == null) {
+            // 验证用户是否为群组的正常成员（群成员缓存只含正常成员，与后续会话更新、推送共用同一份快照）
+            GroupMemberSnapshot groupMembers = groupMemberCache.get(messageDTO.getGroupId());
+            if (!groupMembers.contains(senderId)) {
                 throw new BusinessException("您不在该群组中");
             }
 
             conversationId = ConversationIdUtil.generateGroupChatId(messageDTO.getGroupId());
-            conversationsToUpdate = handleGroupMessage(conversationId, messageDTO.getGroupId());
+            readDiffusion = isReadDiffusion(groupMembers);
+            // 读扩散：成员的会话记录在入群时已创建，发送时不再逐个更新
+            conversationsToUpdate = readDiffusion
+                    ? new ArrayList<>()
+                    : handleGroupMessage(conversationId, messageDTO.getGroupId(), groupMembers);
         } else {
             throw new BusinessException("无效的会话类型");
         }
 
         // 创建消息实体
         Message message = new Message();
+        // 消息ID在保存前生成，不依赖数据库自增主键
+        message.setId(messageIdGenerator.nextId());
         message.setConversationId(conversationId);
+        // 会话内序列号（事务回滚时该序列号不会被使用，客户端补拉时得到空结果即可）
+        // 序列号先分配、后提交，并发发送时较大的序列号可能先可见，重连同步据此把较新的空号作为缺口返回
+        message.setSeq(sequenceService.nextSeq(conversationId));
         message.setSenderId(senderId);
         message.setMessageType(messageDTO.getMessageType());
         message.setContent(messageDTO.getContent());
@@ -118,20 +161,27 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
         message.setFileSize(messageDTO.getFileSize());
         message.setStatus(MessageStatusEnum.NORMAL.getCode());
 
-        // 保存消息（此时会生成消息ID）
-        this.save(message);
+        // 创建时间在写入前确定（开启预写日志时消息异步写入 MySQL，重放时也要保持原始时间）
+        LocalDateTime lastMessageTime = LocalDateTime.now();
+        message.setCreatedAt(lastMessageTime);
+        message.setUpdatedAt(lastMessageTime);
 
-        // 消息保存成功后，更新相关会话的最后消息信息
+        // 写扩散：相关会话的最后消息与消息在同一事务内写入（不存在的会话同时创建）
         for (Conversation conversation : conversationsToUpdate) {
-            updateConversation(conversation, message);
+            conversation.setLastMessageId(message.getId());
+            conversation.setLastMessageTime(lastMessageTime);
         }
 
+        // 保存消息（读扩散时只更新群组的最后消息）
+        messageWriter.write(message, conversationsToUpdate, readDiffusion ? messageDTO.getGroupId() : null);
+
         // 构建返回的 MessageVO
         MessageVO messageVO = new MessageVO();
         BeanUtils.copyProperties(message, messageVO);
         messageVO.setConversationType(messageDTO.getConversationType());
-        messageVO.setSenderNickname(sender.getNickname());
-        messageVO.setSenderAvatar(sender.getAvatarUrl());
+        messageVO.setSenderNickname(sender.nickname());
+        messageVO.setSenderAvatar(sender.avatarUrl());
+        recentMessageCache.append(messageVO);
 
         log.info("消息发送成功，消息ID: {}, 会话ID: {}", message.getId(), conversationId);
         return messageVO;
@@ -142,14 +192,10 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
      * @return 需要更新的会话列表
      */
     private List<Conversation> handlePrivateMessage(String conversationId, Long senderId, Long receiverId) {
-        // 查找或创建双方的会话
-        Conversation senderConversation = findOrCreateConversation(conversationId, senderId, receiverId, ConversationTypeEnum.SINGLE.getCode());
-        Conversation receiverConversation = findOrCreateConversation(conversationId, receiverId, senderId, ConversationTypeEnum.SINGLE.getCode());
-
-        // 返回需要更新的会话列表（在消息保存后再更新）
+        // 双方的会话（在消息保存后统一写入）
         List<Conversation> conversations = new ArrayList<>();
-        conversations.add(senderConversation);
-        conversations.add(receiverConversation);
+        conversations.add(buildConversation(conversationId, senderId, receiverId, ConversationTypeEnum.SINGLE.getCode()));
+        conversations.add(buildConversation(conversationId, receiverId, senderId, ConversationTypeEnum.SINGLE.getCode()));
         return conversations;
     }
 
@@ -157,59 +203,33 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
      * 处理群聊消息
      * @return 需要更新的会话列表
      */
-    private List<Conversation> handleGroupMessage(String conversationId, Long groupId) {
-        // 查询所有群成员，为每个成员创建或更新会话
-        LambdaQueryWrapper<GroupMember> memberWrapper = new LambdaQueryWrapper<>();
-        memberWrapper.eq(GroupMember::getGroupId, groupId);
-        List<GroupMember> groupMembers = groupMemberMapper.selectList(memberWrapper);
-
-        List<Conversation> conversations = new ArrayList<>();
-        for (GroupMember member : groupMembers) {
-            Conversation memberConversation = findOrCreateConversation(conversationId, member.getUserId(), groupId, ConversationTypeEnum.GROUP.getCode());
-            conversations.add(memberConversation);
+    private List<Conversation> handleGroupMessage(String conversationId, Long groupId, GroupMemberSnapshot groupMembers) {
+        // 每个群成员的会话（在消息保存后统一写入）
+        List<Conversation> conversations = new ArrayList<>(groupMembers.size());
+        for (int i = 0; i < groupMembers.size(); i++) {
+            conversations.add(buildConversation(conversationId, groupMembers.userIdAt(i), groupId, ConversationTypeEnum.GROUP.getCode()));
         }
-
         return conversations;
     }
 
     /**
-     * 查找或创建会话
+     * 群组是否使用读扩散
      */
-    private Conversation findOrCreateConversation(String conversationId, Long userId, Long targetId, Integer type) {
-        LambdaQueryWrapper<Conversation> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(Conversation::getUserId, userId)
-               .eq(Conversation::getConversationId, conversationId)
-               .eq(Conversation::getStatus, 1);
-
-        Conversation conversation = conversationMapper.selectOne(wrapper);
-
-        if (conversation == null) {
-            conversation = new Conversation();
-            conversation.setConversationId(conversationId);
-            conversation.setUserId(userId);
-            conversation.setTargetId(targetId);
-            conversation.setType(type);
-            conversation.setStatus(1);
-            conversation.setPinned(false);
-            conversation.setMuted(false);
-            conversationMapper.insert(conversation);
-        }
-
-        return conversation;
+    private boolean isReadDiffusion(GroupMemberSnapshot groupMembers) {
+        int threshold = diffusionConfig.getGroupReadThreshold();
+        return threshold > 0 && groupMembers.size() >= threshold;
     }
 
     /**
-     * 更新会话信息
+     * 构建待写入的会话
      */
-    private void updateConversation(Conversation conversation, Message message) {
-        conversation.setLastMessageId(message.getId());
-        conversation.setLastMessageTime(LocalDateTime.now());
-
-        // 使用联合主键条件更新，因为 conversations 表使用 (user_id, conversation_id) 作为联合主键
-        LambdaQueryWrapper<Conversation> updateWrapper = new LambdaQueryWrapper<>();
-        updateWrapper.eq(Conversation::getUserId, conversation.getUserId())
-                    .eq(Conversation::getConversationId, conversation.getConversationId());
-        conversationMapper.update(conversation, updateWrapper);
+    private Conversation buildConversation(String conversationId, Long userId, Long targetId, Integer type) {
+        Conversation conversation = new Conversation();
+        conversation.setConversationId(conversationId);
+        conversation.setUserId(userId);
+        conversation.setTargetId(targetId);
+        conversation.setType(type);
+        return conversation;
     }
 
     /**
@@ -245,6 +265,13 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
         if (!ConversationIdUtil.isValid(queryDTO.getConversationId())) {
             throw new BusinessException("无效的会话ID格式");
         }
+        int cursorCount = (queryDTO.getLastMessageId() != null ? 1 : 0)
+                + (queryDTO.getAfterMessageId() != null ? 1 : 0)
+                + (queryDTO.getAroundMessageId() != null ? 1 : 0);
+        if (cursorCount > 1) {
+            throw new BusinessException("lastMessageId、afterMessageId、aroundMessageId 只能指定一个");
+        }
+        boolean latestPage = cursorCount == 0;
 
         // 3. 立即清除未读数（在查询消息之前）
         unreadService.clearUnread(currentUserId, queryDTO.getConversationId());
@@ -263,31 +290,196 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
         // 设置活跃会话
         unreadService.setActiveChat(new ActiveChatDTO(queryDTO.getConversationId()));
 
-        // 5. 构建查询条件（游标分页）
-        LambdaQueryWrapper<Message> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Message::getConversationId, queryDTO.getConversationId())
-                    .ne(Message::getStatus, MessageStatusEnum.DELETED.getCode()) // 排除已删除的消息
-                    .orderByDesc(Message::getId); // 按ID倒序（最新的在前）
+        // 第一页优先从最近消息缓存读取
+        if (latestPage) {
+            List<MessageVO> cached = recentMessageCache.getLatest(queryDTO.getConversationId(), queryDTO.getSize(),
+                    sequenceService.currentSeq(queryDTO.getConversationId()));
+            if (cached != null) {
+                List<MessageVO> messageVOList = new ArrayList<>(cached.size());
+                for (MessageVO cachedVO : cached) {
+                    MessageVO messageVO = new MessageVO();
+                    BeanUtils.copyProperties(cachedVO, messageVO);
+                    messageVO.setConversationType(conversation.getType());
+                    messageVOList.add(messageVO);
+                }
+                log.info("查询历史消息命中最近消息缓存，会话ID: {}, 用户ID: {}, 每页大小: {}, 返回数量: {}",
+                        queryDTO.getConversationId(), currentUserId, queryDTO.getSize(), messageVOList.size());
+                return messageVOList;
+            }
+        }
+
+        // 5. 按消息ID游标查询（走 idx_conv_id 索引，按索引顺序扫描，无需排序）
+        String conversationId = queryDTO.getConversationId();
+        int size = queryDTO.getSize();
+        List<Message> messageList;
+        if (queryDTO.getAfterMessageId() != null) {
+            // 6. 比 afterMessageId 更新的消息，按正序取出后反转为最新的在前
+            messageList = baseMapper.selectNewer(conversationId, queryDTO.getAfterMessageId(), size);
+            Collections.reverse(messageList);
+        } else if (queryDTO.getAroundMessageId() != null) {
+            // 6. 目标消息及更早的一半 + 更新的一半
+            Long aroundMessageId = queryDTO.getAroundMessageId();
+            List<Message> olderList = baseMapper.selectOlder(conversationId, aroundMessageId + 1, (size + 1) / 2);
+            messageList = baseMapper.selectNewer(conversationId, aroundMessageId, size - olderList.size());
+            Collections.reverse(messageList);
+            messageList.addAll(olderList);
+        } else {
+            // 6. 比 lastMessageId 更早的消息（未提供时为最新的消息）
+            messageList = baseMapper.selectOlder(conversationId, queryDTO.getLastMessageId(), size);
+        }
+
+        // 7. 转换为 MessageVO 并填充发送者信息
+        List<MessageVO> messageVOList = convertToMessageVOList(messageList, conversation.getType());
+        if (latestPage) {
+            recentMessageCache.fill(queryDTO.getConversationId(), messageVOList);
+        }
+
+        log.info("查询历史消息成功并清除未读数，会话ID: {}, 用户ID: {}, lastMessageId: {}, afterMessageId: {}, aroundMessageId: {}, 每页大小: {}, 返回数量: {}",
+                queryDTO.getConversationId(), currentUserId, queryDTO.getLastMessageId(), queryDTO.getAfterMessageId(),
+                queryDTO.getAroundMessageId(), queryDTO.getSize(), messageVOList.size());
+
+        return messageVOList;
+    }
+
+    @Override
+    public List<MessageVO> getMessageRange(MessageRangeDTO rangeDTO) {
+        Long currentUserId = UserContextUtil.getCurrentUserId();
+
+        if (!ConversationIdUtil.isValid(rangeDTO.getConversationId())) {
+            throw new BusinessException("无效的会话ID格式");
+        }
+        if (rangeDTO.getToSeq() < rangeDTO.getFromSeq()) {
+            throw new BusinessException("结束序列号不能小于起始序列号");
+        }
+        if (rangeDTO.getToSeq() - rangeDTO.getFromSeq() >= MAX_RANGE_SIZE) {
+            throw new BusinessException("单次最多查询" + MAX_RANGE_SIZE + "条消息");
+        }
 
-        // 6. 如果提供了 lastMessageId，查询比此ID更小的消息（更早的消息）
-        if (queryDTO.getLastMessageId() != null) {
-            queryWrapper.lt(Message::getId, queryDTO.getLastMessageId());
+        // 验证会话是否存在且用户有权限访问
+        LambdaQueryWrapper<Conversation> conversationWrapper = new LambdaQueryWrapper<>();
+        conversationWrapper.eq(Conversation::getUserId, currentUserId)
+                          .eq(Conversation::getConversationId, rangeDTO.getConversationId())
+                          .eq(Conversation::getStatus, 1);
+        Conversation conversation = conversationMapper.selectOne(conversationWrapper);
+        if (conversation == null) {
+            throw new BusinessException("会话不存在或无权访问");
         }
 
-        // 7. 执行查询（使用 limit 而不是分页）
-        queryWrapper.last("LIMIT " + queryDTO.getSize());
+        // 走 uk_conv_seq 索引的区间扫描
+        LambdaQueryWrapper<Message> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(Message::getConversationId, rangeDTO.getConversationId())
+                    .between(Message::getSeq, rangeDTO.getFromSeq(), rangeDTO.getToSeq())
+                    .ne(Message::getStatus, MessageStatusEnum.DELETED.getCode())
+                    .orderByAsc(Message::getSeq);
         List<Message> messageList = this.list(queryWrapper);
 
-        // 8. 转换为 MessageVO 并填充发送者信息
-        List<MessageVO> messageVOList = convertToMessageVOList(messageList, conversation.getType());
+        log.info("按序列号区间查询消息，会话ID: {}, 用户ID: {}, 区间: [{}, {}], 返回数量: {}",
+                rangeDTO.getConversationId(), currentUserId, rangeDTO.getFromSeq(), rangeDTO.getToSeq(), messageList.size());
+        return convertToMessageVOList(messageList, conversation.getType());
+    }
 
-        // 9. 构建分页结果（为了保持返回格式一致，使用 Page 对象）
+    @Override
+    public MessageSyncVO syncMessages(MessageSyncDTO syncDTO) {
+        Long currentUserId = UserContextUtil.getCurrentUserId();
+        Map<String, Long> clientSeqs = syncDTO.getSeqs() != null ? syncDTO.getSeqs() : Collections.emptyMap();
 
-        log.info("查询历史消息成功并清除未读数，会话ID: {}, 用户ID: {}, lastMessageId: {}, 每页大小: {}, 返回数量: {}",
-                queryDTO.getConversationId(), currentUserId, queryDTO.getLastMessageId(),
-                queryDTO.getSize(), messageVOList.size());
+        // 1. 查询当前用户的所有正常会话（最近有消息的在前，优先同步）
+        LambdaQueryWrapper<Conversation> conversationWrapper = new LambdaQueryWrapper<>();
+        conversationWrapper.select(Conversation::getConversationId, Conversation::getType)
+                          .eq(Conversation::getUserId, currentUserId)
+                          .eq(Conversation::getStatus, 1)
+                          .orderByDesc(Conversation::getLastMessageTime);
+        List<Conversation> conversations = conversationMapper.selectList(conversationWrapper);
 
-        return messageVOList;
+        MessageSyncVO syncVO = new MessageSyncVO();
+        List<MessageVO> messageVOList = new ArrayList<>();
+        Map<String, Long> nextSeqs = new HashMap<>();
+        Map<String, Long> gaps = new HashMap<>();
+        syncVO.setMessages(messageVOList);
+        syncVO.setSeqs(nextSeqs);
+        syncVO.setGaps(gaps);
+        syncVO.setHasMore(false);
+        if (conversations.isEmpty()) {
+            return syncVO;
+        }
+
+        // 2. 一次 MGET 取各会话已分配的最大序列号，跳过客户端已追平的会话，不必逐个查库
+        //    计数器是已分配序列号的上界（含发送失败留下的空号），只会多查、不会漏查；计数器不存在时须查库
+        Map<String, Long> currentSeqs = sequenceService.currentSeqs(
+                conversations.stream().map(Conversation::getConversationId).toList());
+
+        // 空号之后的消息在此时间之前写入的，空号视为永久空号（发送失败），之后写入的空号可能仍在提交中
+        LocalDateTime settledBefore = LocalDateTime.now().minus(Duration.ofMillis(syncConfig.getGapSettleMillis()));
+
+        // 3. 逐个会话按序列号拉取（走 uk_conv_seq 索引的区间扫描），直到凑满一页
+        //    已删除的消息也参与扫描（不返回），否则删除留下的空号会被误判为缺口
+        int remaining = syncDTO.getSize();
+        int queried = 0;
+        for (Conversation conversation : conversations) {
+            String conversationId = conversation.getConversationId();
+            long afterSeq = clientSeqs.getOrDefault(conversationId, 0L);
+            long currentSeq = currentSeqs.getOrDefault(conversationId, -1L);
+            if (currentSeq >= 0 && currentSeq <= afterSeq) {
+                continue;
+            }
+            if (remaining == 0) {
+                // 本页已满，还有会话未同步
+                syncVO.setHasMore(true);
+                break;
+            }
+
+            // 多取一条判断该会话是否还有更多
+            LambdaQueryWrapper<Message> queryWrapper = new LambdaQueryWrapper<>();
+            queryWrapper.eq(Message::getConversationId, conversationId)
+                        .gt(Message::getSeq, afterSeq)
+                        .orderByAsc(Message::getSeq);
+            List<Message> messageList = this.page(new Page<>(1, remaining + 1, false), queryWrapper).getRecords();
+            queried++;
+            if (messageList.isEmpty()) {
+                continue;
+            }
+
+            boolean truncated = messageList.size() > remaining;
+            if (truncated) {
+                messageList = messageList.subList(0, remaining);
+            }
+            Long gap = findUnsettledGap(messageList, afterSeq, settledBefore);
+            if (gap != null) {
+                gaps.put(conversationId, gap);
+            }
+            List<Message> visible = messageList.stream()
+                    .filter(message -> !MessageStatusEnum.DELETED.getCode().equals(message.getStatus()))
+                    .toList();
+            messageVOList.addAll(convertToMessageVOList(visible, conversation.getType()));
+            nextSeqs.put(conversationId, messageList.get(messageList.size() - 1).getSeq());
+            remaining -= messageList.size();
+            if (truncated) {
+                syncVO.setHasMore(true);
+                break;
+            }
+        }
+
+        log.info("重连同步完成，用户ID: {}, 会话数: {}, 查询会话数: {}, 返回数量: {}, 缺口会话数: {}, hasMore: {}",
+                currentUserId, conversations.size(), queried, messageVOList.size(), gaps.size(), syncVO.getHasMore());
+        return syncVO;
+    }
+
+    /**
+     * 查找按序列号排列的消息中最小的未确认空号
+     * 空号之后的第一条消息在 settledBefore 之后才写入时，空号对应的消息可能仍在提交中
+     *
+     * @return 空号，没有未确认的空号时返回 null
+     */
+    private static Long findUnsettledGap(List<Message> messages, long afterSeq, LocalDateTime settledBefore) {
+        long expected = afterSeq + 1;
+        for (Message message : messages) {
+            if (message.getSeq() > expected
+                    && (message.getCreatedAt() == null || message.getCreatedAt().isAfter(settledBefore))) {
+                return expected;
+            }
+            expected = message.getSeq() + 1;
+        }
+        return null;
     }
 
     @Override
@@ -302,6 +494,7 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
         }
         message.setStatus(MessageStatusEnum.DELETED.getCode());
         this.updateById(message);
+        recentMessageCache.updateStatus(message.getConversationId(), messageId, message.getStatus());
     }
 
     @Override
@@ -316,6 +509,7 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
         }
         message.setStatus(MessageStatusEnum.WITHDRAWN.getCode());
         this.updateById(message);
+        recentMessageCache.updateStatus(message.getConversationId(), messageId, message.getStatus());
     }
 
     /**
@@ -332,9 +526,8 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
                 .distinct()
                 .collect(Collectors.toList());
 
-        // 2. 批量查询发送者信息
-        Map<Long, User> userMap = userService.listByIds(senderIds).stream()
-                .collect(Collectors.toMap(User::getId, user -> user));
+        // 2. 批量查询发送者信息（用户资料缓存）
+        Map<Long, UserProfile> userMap = userProfileCache.getAll(senderIds);
 
         // 3. 转换为 MessageVO 并填充信息
         List<MessageVO> messageVOList = new ArrayList<>();
@@ -346,10 +539,10 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
             messageVO.setConversationType(conversationType);
 
             // 填充发送者信息
-            User sender = userMap.get(message.getSenderId());
+            UserProfile sender = userMap.get(message.getSenderId());
             if (sender != null) {
-                messageVO.setSenderNickname(sender.getNickname());
-                messageVO.setSenderAvatar(sender.getAvatarUrl());
+                messageVO.setSenderNickname(sender.nickname());
+                messageVO.setSenderAvatar(sender.avatarUrl());
             }
 
             messageVOList.add(messageVO);
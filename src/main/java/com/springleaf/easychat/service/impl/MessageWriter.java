@@ -0,0 +1,535 @@
+package com.springleaf.easychat.service.impl;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.baomidou.mybatisplus.extension.toolkit.Db;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.exception.BusinessException;
+import com.springleaf.easychat.mapper.ConversationMapper;
+import com.springleaf.easychat.mapper.GroupMapper;
+import com.springleaf.easychat.mapper.MessageMapper;
+import com.springleaf.easychat.model.entity.Conversation;
+import com.springleaf.easychat.model.entity.Message;
+import com.springleaf.easychat.service.SequenceService;
+import com.springleaf.easychat.wal.MessageWal;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消息写入器
+ * 负责在一个事务内写入消息、相关会话的最后消息以及读扩散群组的最后消息。
+ *
+ * 开启组提交（easy-chat.group-commit.enabled）后，写入请求先进入队列，由提交线程把一个短窗口内
+ * （最多 max-delay-millis 毫秒或 max-batch-size 条）到达的请求合并为一个事务：
+ * 消息以 JDBC 批量插入（驱动开启 rewriteBatchedStatements 后改写为多行 INSERT），会话按批合并 upsert，
+ * 提交后再逐个唤醒调用方。合并事务失败时退回逐条提交，避免一条坏数据拖累同批的其他消息。
+ *
+ * 开启预写日志（easy-chat.wal.enabled）后，消息追加到本地日志即返回，由同一个提交线程按上述方式批量写入 MySQL，
+ * 提交成功后推进日志检查点。此时调用方已确认发送，写入失败只能重试：数据库异常时等待后重试；
+ * 序列号与已写入的消息冲突（计数器重建时其他节点日志中的序列号尚未写入数据库）时重新分配序列号后重试；
+ * 只有其他数据错误（违反约束）的消息才记录日志后跳过。重启时先重放检查点之后的记录，已存在的消息不再插入。
+ * 日志中尚未写入数据库的序列号登记到 {@link SequenceService}，计数器重建时不会重复分配
+ */
+@Slf4j
+@Component
+public class MessageWriter {
+
+    /**
+     * 会话批量写入的单条语句行数
+     */
+    private static final int CONVERSATION_UPSERT_BATCH_SIZE = 500;
+
+    private final ConversationMapper conversationMapper;
+    private final GroupMapper groupMapper;
+    private final MessageMapper messageMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MessageWal messageWal;
+    private final SequenceService sequenceService;
+    private final EasyChatProperties.GroupCommit config;
+    private final EasyChatProperties.Wal walConfig;
+
+    private final BlockingQueue<PendingWrite> queue;
+
+    private volatile boolean running;
+    private Thread committer;
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder messageCount = new LongAdder();
+    private final LongAdder fallbackCount = new LongAdder();
+    private final LongAdder replayedCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder reassignedCount = new LongAdder();
+
+    public MessageWriter(ConversationMapper conversationMapper,
+                         GroupMapper groupMapper,
+                         MessageMapper messageMapper,
+                         TransactionTemplate transactionTemplate,
+                         ObjectMapper objectMapper,
+                         MessageWal messageWal,
+                         SequenceService sequenceService,
+                         EasyChatProperties properties) {
+        this.conversationMapper = conversationMapper;
+        this.groupMapper = groupMapper;
+        this.messageMapper = messageMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.messageWal = messageWal;
+        this.sequenceService = sequenceService;
+        this.config = properties.getGroupCommit();
+        this.walConfig = properties.getWal();
+        // 预写日志模式下日志已持久化，队列只是待写入 MySQL 的积压，不设上限（调用方不能退回直接提交，否则会打乱检查点顺序）
+        this.queue = walConfig.isEnabled()
+                ? new LinkedBlockingQueue<>()
+                : new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (walConfig.isEnabled()) {
+            // 先把上次未写入 MySQL 的记录放入队列，再接收新的写入
+            for (MessageWal.Record record : messageWal.open()) {
+                Write write = objectMapper.readValue(record.payload(), Write.class);
+                markPending(write);
+                queue.add(new PendingWrite(write, null, record.end()));
+                replayedCount.increment();
+            }
+        } else if (!config.isEnabled()) {
+            return;
+        }
+        running = true;
+        committer = new Thread(this::commitLoop, "message-group-commit");
+        committer.setDaemon(true);
+        committer.start();
+        log.info("消息组提交已开启，预写日志: {}, 最大批量: {}, 最大等待: {} 毫秒",
+                walConfig.isEnabled(), config.getMaxBatchSize(), config.getMaxDelayMillis());
+    }
+
+    /**
+     * 写入一条消息（提交成功后才返回；开启预写日志时追加到日志后即返回）
+     *
+     * @param message 消息（ID、序列号、创建时间已生成）
+     * @param conversations 需要写入最后消息的会话（写扩散），没有则为空列表
+     * @param readDiffusionGroupId 读扩散群组ID，写扩散时为 null
+     */
+    public void write(Message message, List<Conversation> conversations, Long readDiffusionGroupId) {
+        Write write = new Write(message, conversations, readDiffusionGroupId);
+        if (walConfig.isEnabled()) {
+            appendToWal(write);
+            return;
+        }
+
+        PendingWrite pending = new PendingWrite(write, new CompletableFuture<>(), null);
+        if (!running || !queue.offer(pending)) {
+            // 未开启组提交，或队列已满（由调用线程直接提交，形成背压）
+            commitSingle(write);
+            return;
+        }
+
+        try {
+            awaitCommitted(pending);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new BusinessException("消息保存失败");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("消息保存被中断");
+        }
+    }
+
+    /**
+     * 等待写入请求的提交结果
+     * 超时后只有请求仍在队列中（撤回成功，之后不会再提交）才报告超时；已被提交线程取走的请求可能随后提交成功，
+     * 此时报告失败会让客户端重发而产生重复消息，因此继续等待该批的结果（事务受数据库超时约束，不会无限等待）
+     */
+    private void awaitCommitted(PendingWrite pending) throws ExecutionException, InterruptedException {
+        try {
+            pending.future().get(config.getWaitTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (queue.remove(pending)) {
+                throw new BusinessException("消息保存超时");
+            }
+            pending.future().get();
+        }
+    }
+
+    /**
+     * 追加到预写日志并放入提交队列
+     * 两步在同一把锁内完成，保证队列顺序与日志顺序一致，提交线程才能按队列顺序推进检查点
+     */
+    private void appendToWal(Write write) {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(write);
+        } catch (IOException e) {
+            throw new BusinessException("消息保存失败");
+        }
+        synchronized (messageWal) {
+            try {
+                MessageWal.Position end = messageWal.append(payload);
+                markPending(write);
+                queue.add(new PendingWrite(write, null, end));
+            } catch (IOException e) {
+                log.error("追加预写日志失败，消息ID: {}", write.message().getId(), e);
+                throw new BusinessException("消息保存失败");
+            }
+        }
+    }
+
+    private void commitLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<PendingWrite> batch = new ArrayList<>();
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getMaxDelayMillis());
+                while (batch.size() < config.getMaxBatchSize()) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                if (walConfig.isEnabled()) {
+                    commitWalBatch(batch);
+                } else {
+                    commitBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                // 停机：继续循环，把队列中剩余的请求提交完
+                running = false;
+            } catch (Exception e) {
+                log.error("消息组提交线程异常", e);
+            }
+        }
+    }
+
+    /**
+     * 合并提交一批写入请求
+     */
+    private void commitBatch(List<PendingWrite> batch) {
+        List<Write> writes = new ArrayList<>(batch.size());
+        for (PendingWrite pending : batch) {
+            writes.add(pending.write());
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> persist(writes));
+            batchCount.increment();
+            messageCount.add(batch.size());
+            for (PendingWrite pending : batch) {
+                pending.future().complete(null);
+            }
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                batch.get(0).future().completeExceptionally(e);
+                return;
+            }
+            // 合并事务失败：逐条提交，只让出错的那条失败
+            fallbackCount.increment();
+            log.warn("消息组提交失败，退回逐条提交，批量: {}", batch.size(), e);
+            for (PendingWrite pending : batch) {
+                try {
+                    commitSingle(pending.write());
+                    pending.future().complete(null);
+                } catch (Exception single) {
+                    pending.future().completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    /**
+     * 提交一批预写日志中的记录，成功后推进检查点
+     * 调用方已确认发送，数据库异常时不放弃，等待后重试直到成功
+     */
+    private void commitWalBatch(List<PendingWrite> batch) throws InterruptedException {
+        List<Write> writes = new ArrayList<>(batch.size());
+        for (PendingWrite pending : batch) {
+            writes.add(pending.write());
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Write> remaining = skipPersisted(writes);
+                if (!remaining.isEmpty()) {
+                    persist(remaining);
+                }
+            });
+            batchCount.increment();
+            messageCount.add(batch.size());
+            for (Write write : writes) {
+                markPersisted(write);
+            }
+        } catch (Exception e) {
+            // 合并事务失败：逐条提交，找出出错的那条
+            fallbackCount.increment();
+            log.warn("预写日志批量写入失败，退回逐条提交，批量: {}", batch.size(), e);
+            for (Write write : writes) {
+                commitWalSingle(write);
+            }
+        }
+        advanceCheckpoint(batch.get(batch.size() - 1).walPosition());
+    }
+
+    private void commitWalSingle(Write write) throws InterruptedException {
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    List<Write> remaining = skipPersisted(Collections.singletonList(write));
+                    if (!remaining.isEmpty()) {
+                        persist(remaining);
+                    }
+                });
+                batchCount.increment();
+                messageCount.increment();
+                markPersisted(write);
+                return;
+            } catch (Exception e) {
+                if (isSeqConflict(e)) {
+                    // 序列号已被其他消息占用：消息已确认发送，不能丢弃，重新分配序列号后重试
+                    try {
+                        reassignSeq(write);
+                    } catch (Exception reassignFailure) {
+                        retryCount.increment();
+                        log.warn("重新分配序列号失败，{} 毫秒后重试，消息ID: {}",
+                                walConfig.getRetryIntervalMillis(), write.message().getId(), reassignFailure);
+                        Thread.sleep(walConfig.getRetryIntervalMillis());
+                    }
+                    continue;
+                }
+                if (isConstraintViolation(e)) {
+                    // 数据本身有误，重试也不会成功：记录完整内容以便人工处理，然后跳过
+                    skippedCount.increment();
+                    markPersisted(write);
+                    log.error("预写日志记录无法写入，已跳过，内容: {}", toJson(write), e);
+                    return;
+                }
+                retryCount.increment();
+                log.warn("预写日志记录写入失败，{} 毫秒后重试，消息ID: {}",
+                        walConfig.getRetryIntervalMillis(), write.message().getId(), e);
+                Thread.sleep(walConfig.getRetryIntervalMillis());
+            }
+        }
+    }
+
+    /**
+     * 是否违反 (conversation_id, seq) 唯一索引
+     * 批量插入的异常不经过 Spring 的异常转换（MyBatis 的 PersistenceException 包装 BatchUpdateException），按异常链判断
+     */
+    private static boolean isSeqConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (isConstraintViolation(cause) && cause.getMessage() != null
+                    && cause.getMessage().toLowerCase().contains("uk_conv_seq")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否违反约束（SQLState 23 类：唯一索引、非空、外键等），重试也不会成功
+     */
+    private static boolean isConstraintViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null
+                    && sqlException.getSQLState().startsWith("23")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reassignSeq(Write write) {
+        Message message = write.message();
+        long oldSeq = message.getSeq();
+        long newSeq = sequenceService.nextSeq(message.getConversationId());
+        sequenceService.markPending(message.getConversationId(), newSeq);
+        message.setSeq(newSeq);
+        sequenceService.markPersisted(message.getConversationId(), oldSeq);
+        reassignedCount.increment();
+        log.warn("预写日志记录的序列号已被占用，重新分配，消息ID: {}, 会话ID: {}, 序列号: {} -> {}",
+                message.getId(), message.getConversationId(), oldSeq, newSeq);
+    }
+
+    private void markPending(Write write) {
+        sequenceService.markPending(write.message().getConversationId(), write.message().getSeq());
+    }
+
+    private void markPersisted(Write write) {
+        sequenceService.markPersisted(write.message().getConversationId(), write.message().getSeq());
+    }
+
+    /**
+     * 过滤掉已写入 MySQL 的消息（重启重放或检查点落后时），使重放幂等
+     * 会话与群组的最后消息和消息在同一事务内写入，消息已存在说明它们也已写入
+     */
+    private List<Write> skipPersisted(List<Write> writes) {
+        List<Long> ids = new ArrayList<>(writes.size());
+        for (Write write : writes) {
+            ids.add(write.message().getId());
+        }
+        Set<Long> persisted = new HashSet<>();
+        for (Message message : messageMapper.selectList(Wrappers.<Message>lambdaQuery()
+                .select(Message::getId)
+                .in(Message::getId, ids))) {
+            persisted.add(message.getId());
+        }
+        if (persisted.isEmpty()) {
+            return writes;
+        }
+        List<Write> remaining = new ArrayList<>(writes.size());
+        for (Write write : writes) {
+            if (!persisted.contains(write.message().getId())) {
+                remaining.add(write);
+            }
+        }
+        return remaining;
+    }
+
+    private void advanceCheckpoint(MessageWal.Position position) {
+        try {
+            messageWal.checkpoint(position);
+        } catch (IOException e) {
+            // 检查点落后只会导致重启时多重放一些记录（幂等），不影响正确性
+            log.warn("推进预写日志检查点失败: {}", position, e);
+        }
+    }
+
+    private String toJson(Write write) {
+        try {
+            return objectMapper.writeValueAsString(write);
+        } catch (IOException e) {
+            return String.valueOf(write.message().getId());
+        }
+    }
+
+    private void commitSingle(Write write) {
+        transactionTemplate.executeWithoutResult(status -> persist(Collections.singletonList(write)));
+        batchCount.increment();
+        messageCount.increment();
+    }
+
+    /**
+     * 在当前事务内写入消息、会话最后消息和读扩散群组最后消息
+     */
+    private void persist(List<Write> writes) {
+        List<Message> messages = new ArrayList<>(writes.size());
+        List<Conversation> conversations = new ArrayList<>();
+        // 同一批中同一群组只保留最新的一条
+        Map<Long, Message> groupLastMessages = new HashMap<>();
+        for (Write write : writes) {
+            messages.add(write.message());
+            conversations.addAll(write.conversations());
+            if (write.readDiffusionGroupId() != null) {
+                groupLastMessages.merge(write.readDiffusionGroupId(), write.message(),
+                        (a, b) -> a.getId() >= b.getId() ? a : b);
+            }
+        }
+
+        // 保存消息（JDBC 批量，驱动改写为多行 INSERT）
+        Db.saveBatch(messages, messages.size());
+
+        // 写扩散：批量写入相关会话的最后消息信息（不存在的会话同时创建）
+        upsertConversations(conversations);
+
+        // 读扩散：只更新群组的最后消息，读取会话列表时合并，发送成本与群规模无关
+        for (Map.Entry<Long, Message> entry : groupLastMessages.entrySet()) {
+            Message lastMessage = entry.getValue();
+            groupMapper.updateLastMessage(entry.getKey(), lastMessage.getId(), lastMessage.getCreatedAt());
+        }
+    }
+
+    /**
+     * 批量写入会话的最后消息
+     * 按批次拆分为多行 INSERT ... ON DUPLICATE KEY UPDATE，N 个成员只需 ceil(N / 批次大小) 条语句。
+     * 按用户ID、会话ID排序后写入，保证并发事务以相同顺序加行锁，避免死锁
+     */
+    private void upsertConversations(List<Conversation> conversations) {
+        conversations.sort(Comparator.comparing(Conversation::getUserId).thenComparing(Conversation::getConversationId));
+        for (int from = 0; from < conversations.size(); from += CONVERSATION_UPSERT_BATCH_SIZE) {
+            int to = Math.min(from + CONVERSATION_UPSERT_BATCH_SIZE, conversations.size());
+            conversationMapper.batchUpsertLastMessage(conversations.subList(from, to));
+        }
+    }
+
+    /**
+     * 获取写入统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long batches = batchCount.sum();
+        long messages = messageCount.sum();
+        stats.put("groupCommitEnabled", running);
+        stats.put("queueDepth", queue.size());
+        stats.put("transactions", batches);
+        stats.put("messages", messages);
+        stats.put("avgBatchSize", batches == 0 ? 0 : (double) messages / batches);
+        stats.put("fallbacks", fallbackCount.sum());
+        if (walConfig.isEnabled()) {
+            stats.put("walReplayed", replayedCount.sum());
+            stats.put("walRetries", retryCount.sum());
+            stats.put("walSkipped", skippedCount.sum());
+            stats.put("walSeqReassigned", reassignedCount.sum());
+            stats.put("wal", messageWal.getStats());
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (committer == null) {
+            return;
+        }
+        running = false;
+        committer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * 一条消息的写入内容（同时也是预写日志的记录内容）
+     */
+    record Write(Message message, List<Conversation> conversations, Long readDiffusionGroupId) {
+    }
+
+    /**
+     * 待提交的写入
+     *
+     * @param write 写入内容
+     * @param future 提交结果，预写日志模式下为 null（调用方不等待）
+     * @param walPosition 记录在预写日志中的结束位置，未开启预写日志时为 null
+     */
+    private record PendingWrite(Write write, CompletableFuture<Void> future, MessageWal.Position walPosition) {
+    }
+}
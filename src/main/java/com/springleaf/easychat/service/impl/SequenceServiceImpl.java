@@ -0,0 +1,103 @@
+package com.springleaf.easychat.service.impl;
+
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import com.springleaf.easychat.mapper.MessageMapper;
+import com.springleaf.easychat.service.SequenceService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 会话序列号服务实现类
+ * 序列号计数器保存在 Redis 中（INCR），计数器不存在时（首次使用或 Redis 数据丢失）以数据库中的最大序列号
+ * 与本节点预写日志中尚未写入数据库的最大序列号两者的较大值为起点，保证序列号不会回退；
+ * messages 表上的 (conversation_id, seq) 唯一索引兜底防止重复（其他节点日志中的序列号在写入时冲突，由写入方重新分配）
+ */
+@Slf4j
+@Service
+public class SequenceServiceImpl implements SequenceService {
+
+    /**
+     * 计数器存在时自增，否则返回 -1
+     */
+    private static final DefaultRedisScript<Long> INCR_IF_EXISTS_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then " +
+            "  return redis.call('INCR', KEYS[1]) " +
+            "end " +
+            "return -1", Long.class);
+
+    /**
+     * 以给定值初始化计数器（已被其他请求初始化则保留原值）后自增
+     */
+    private static final DefaultRedisScript<Long> SEED_AND_INCR_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('SET', KEYS[1], ARGV[1], 'NX') " +
+            "return redis.call('INCR', KEYS[1])", Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MessageMapper messageMapper;
+
+    /**
+     * 本节点已分配、尚未写入数据库的最大序列号
+     * key: conversationId, value: seq
+     */
+    private final Map<String, Long> pendingMaxSeqs = new ConcurrentHashMap<>();
+
+    public SequenceServiceImpl(StringRedisTemplate stringRedisTemplate, MessageMapper messageMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.messageMapper = messageMapper;
+    }
+
+    @Override
+    public long nextSeq(String conversationId) {
+        String key = RedisKeyConstants.getConversationSeqKey(conversationId);
+        Long seq = stringRedisTemplate.execute(INCR_IF_EXISTS_SCRIPT, Collections.singletonList(key));
+        if (seq != null && seq > 0) {
+            return seq;
+        }
+
+        // 计数器不存在：从数据库与本节点待写入的最大序列号继续
+        long maxSeq = messageMapper.selectMaxSeq(conversationId);
+        long pendingMaxSeq = pendingMaxSeqs.getOrDefault(conversationId, 0L);
+        seq = stringRedisTemplate.execute(SEED_AND_INCR_SCRIPT, Collections.singletonList(key),
+                String.valueOf(Math.max(maxSeq, pendingMaxSeq)));
+        log.info("初始化会话序列号，会话ID: {}, 数据库最大序列号: {}, 待写入最大序列号: {}, 分配: {}",
+                conversationId, maxSeq, pendingMaxSeq, seq);
+        return seq;
+    }
+
+    @Override
+    public long currentSeq(String conversationId) {
+        String value = stringRedisTemplate.opsForValue().get(RedisKeyConstants.getConversationSeqKey(conversationId));
+        return value == null ? -1 : Long.parseLong(value);
+    }
+
+    @Override
+    public Map<String, Long> currentSeqs(List<String> conversationIds) {
+        List<String> keys = conversationIds.stream().map(RedisKeyConstants::getConversationSeqKey).toList();
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+        Map<String, Long> seqs = new HashMap<>(conversationIds.size() * 2);
+        for (int i = 0; i < conversationIds.size(); i++) {
+            String value = values == null ? null : values.get(i);
+            seqs.put(conversationIds.get(i), value == null ? -1 : Long.parseLong(value));
+        }
+        return seqs;
+    }
+
+    @Override
+    public void markPending(String conversationId, long seq) {
+        pendingMaxSeqs.merge(conversationId, seq, Math::max);
+    }
+
+    @Override
+    public void markPersisted(String conversationId, long seq) {
+        // 只在写入的正是最大的待写入序列号时移除：此时数据库最大值已不低于其余待写入的序列号
+        pendingMaxSeqs.remove(conversationId, seq);
+    }
+}
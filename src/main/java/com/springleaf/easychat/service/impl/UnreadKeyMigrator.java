@@ -0,0 +1,172 @@
+package com.springleaf.easychat.service.impl;
+
+import com.springleaf.easychat.cluster.ClusterNode;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * 未读数 Key 迁移器
+ * 未读数改用 Hash 格式存储后，把旧格式的 unread:{userId}:{conversationId} 逐个合并到 unread:{userId} 并删除。
+ *
+ * 迁移在后台线程中以 SCAN 分批进行，同一时间只有持有迁移锁的节点执行，完成后写入完成标记；
+ * 每个 Key 的合并与删除在一个 Lua 脚本内完成，重复执行不会重复累加。
+ * 完成标记写入前 {@link #isCompleted()} 为 false，读取未读数时需同时合并旧 Key
+ */
+@Slf4j
+@Component
+public class UnreadKeyMigrator {
+
+    /**
+     * 把旧 Key 的值累加到 Hash 的 field 上并删除旧 Key，返回迁移的值（旧 Key 不存在时返回 0）
+     */
+    private static final DefaultRedisScript<Long> MOVE_SCRIPT = new DefaultRedisScript<>(
+            "local value = redis.call('GET', KEYS[1]) " +
+            "if not value then return 0 end " +
+            "redis.call('HINCRBY', KEYS[2], ARGV[1], value) " +
+            "redis.call('DEL', KEYS[1]) " +
+            "return tonumber(value)", Long.class);
+
+    /**
+     * 迁移锁时长，执行期间每处理一批续期一次
+     */
+    private static final Duration LOCK_TIMEOUT = Duration.ofSeconds(60);
+
+    /**
+     * 未持有迁移锁的节点检查完成标记的间隔（毫秒）
+     */
+    private static final long POLL_INTERVAL_MILLIS = 10000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ClusterNode clusterNode;
+    private final EasyChatProperties.Unread config;
+
+    /**
+     * 旧格式的 Key 是否已全部迁移（STRING 格式下不使用）
+     */
+    private volatile boolean completed;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public UnreadKeyMigrator(StringRedisTemplate stringRedisTemplate,
+                             ClusterNode clusterNode,
+                             EasyChatProperties properties) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.clusterNode = clusterNode;
+        this.config = properties.getUnread();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (config.getStorage() != EasyChatProperties.Unread.Storage.HASH) {
+            return;
+        }
+        if (checkDone()) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "unread-key-migrator");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 旧格式的 Key 是否已全部迁移
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    private void run() {
+        while (running && !completed) {
+            try {
+                if (config.isMigrateOnStartup() && tryLock()) {
+                    migrate();
+                    return;
+                }
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+                checkDone();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                log.error("迁移未读数 Key 失败，稍后重试", e);
+                try {
+                    Thread.sleep(POLL_INTERVAL_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void migrate() {
+        log.info("开始迁移未读数 Key 到 Hash 格式");
+        long keys = 0;
+        long total = 0;
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(RedisKeyConstants.UNREAD_LEGACY_PATTERN)
+                .count(config.getMigrateScanCount())
+                .build();
+        try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+            while (cursor.hasNext() && running) {
+                String key = cursor.next();
+                // unread:{userId}:{conversationId}
+                String[] parts = key.split(":", 3);
+                if (parts.length != 3) {
+                    continue;
+                }
+                Long value = stringRedisTemplate.execute(MOVE_SCRIPT,
+                        Arrays.asList(key, RedisKeyConstants.getUnreadHashKey(Long.valueOf(parts[1]))), parts[2]);
+                keys++;
+                total += value == null ? 0 : value;
+                if (keys % config.getMigrateScanCount() == 0) {
+                    renewLock();
+                    log.info("迁移未读数 Key 进行中，已迁移: {}", keys);
+                }
+            }
+        }
+        if (!running) {
+            return;
+        }
+        stringRedisTemplate.opsForValue().set(RedisKeyConstants.UNREAD_MIGRATION_DONE_KEY,
+                String.valueOf(System.currentTimeMillis()));
+        stringRedisTemplate.delete(RedisKeyConstants.UNREAD_MIGRATION_LOCK_KEY);
+        completed = true;
+        log.info("未读数 Key 迁移完成，迁移 Key 数: {}, 未读数合计: {}", keys, total);
+    }
+
+    private boolean checkDone() {
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(RedisKeyConstants.UNREAD_MIGRATION_DONE_KEY))) {
+            completed = true;
+        }
+        return completed;
+    }
+
+    private boolean tryLock() {
+        return Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(
+                RedisKeyConstants.UNREAD_MIGRATION_LOCK_KEY, clusterNode.getNodeId(), LOCK_TIMEOUT));
+    }
+
+    private void renewLock() {
+        stringRedisTemplate.expire(RedisKeyConstants.UNREAD_MIGRATION_LOCK_KEY, LOCK_TIMEOUT);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+}
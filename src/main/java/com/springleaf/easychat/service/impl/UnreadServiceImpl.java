@@ -1,50 +1,180 @@
 package com.springleaf.easychat.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.springleaf.easychat.config.EasyChatProperties;
 import com.springleaf.easychat.constants.RedisKeyConstants;
+import com.springleaf.easychat.enums.ConversationStatusEnum;
+import com.springleaf.easychat.mapper.ConversationMapper;
+import com.springleaf.easychat.model.entity.Conversation;
 import com.springleaf.easychat.model.dto.ActiveChatDTO;
 import com.springleaf.easychat.service.UnreadService;
 import com.springleaf.easychat.utils.UserContextUtil;
+import com.springleaf.easychat.websocket.ActiveChatTracker;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
  * 未读消息服务实现类
+ * 未读数支持两种存储格式（easy-chat.unread.storage）：
+ * - STRING：每个会话一个 Key unread:{userId}:{conversationId}，会话列表需 MGET N 个 Key
+ * - HASH：每个用户一个 Hash unread:{userId}，会话列表一次 HGETALL；会话数不多时 Hash 以紧凑编码存储，内存占用远小于独立 Key。
+ *   从 STRING 切换时由 {@link UnreadKeyMigrator} 在后台迁移旧 Key，迁移完成前读取、清除时同时处理旧 Key
+ *
+ * 未读总数（应用角标）保存在 unread_total:{userId}，由增加、清除未读数的同一个 Lua 脚本原子更新，免打扰会话不计入；
+ * 总数字段不存在时（未初始化或已过期）脚本不做任何写入，由下一次读取从会话列表重新计算，连同免打扰标记一起重建；
+ * 重建时在同一个脚本内读取各会话的未读数并写入总数，读取与写入之间不会漏掉其他请求增加的未读数。
+ * 删除会话时清除其未读数并从总数中扣除，会话收到新消息恢复显示后重新计入。
+ * 每次写入总数时续期 1 天，连续 1 天没有变化后过期，下次读取时重算以修正可能的累计误差
  */
 @Slf4j
 @Service
 public class UnreadServiceImpl implements UnreadService {
 
+    /**
+     * 批量增加未读数并更新未读总数
+     * KEYS: 每个用户依次为 未读数 Key、未读总数 Key；ARGV: 会话ID、是否 Hash 格式、未读总数过期时间（秒）
+     * 返回：每个用户依次为 会话未读数、最新未读总数（未变化或未初始化时为 -1）
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "local cid = ARGV[1] " +
+            "local result = {} " +
+            "for i = 1, #KEYS, 2 do " +
+            "  local count " +
+            "  if ARGV[2] == '1' then count = redis.call('HINCRBY', KEYS[i], cid, 1) " +
+            "  else count = redis.call('INCR', KEYS[i]) end " +
+            "  local total = -1 " +
+            "  if redis.call('HEXISTS', KEYS[i + 1], 'total') == 1 and redis.call('HEXISTS', KEYS[i + 1], 'm:' .. cid) == 0 then " +
+            "    total = redis.call('HINCRBY', KEYS[i + 1], 'total', 1) " +
+            "    redis.call('EXPIRE', KEYS[i + 1], ARGV[3]) " +
+            "  end " +
+            "  result[#result + 1] = count " +
+            "  result[#result + 1] = total " +
+            "end " +
+            "return result", List.class);
+
+    /**
+     * 清除未读数并从未读总数中扣除
+     * KEYS: 未读数 Key、未读总数 Key、[旧格式 Key]；ARGV: 会话ID、是否 Hash 格式、未读总数过期时间（秒）
+     * 返回：最新未读总数（未变化或未初始化时为 -1）
+     */
+    private static final DefaultRedisScript<Long> CLEAR_SCRIPT = new DefaultRedisScript<>(
+            "local cid = ARGV[1] " +
+            "local n " +
+            "if ARGV[2] == '1' then " +
+            "  n = tonumber(redis.call('HGET', KEYS[1], cid) or '0') " +
+            "  redis.call('HDEL', KEYS[1], cid) " +
+            "else " +
+            "  n = tonumber(redis.call('GET', KEYS[1]) or '0') " +
+            "  redis.call('DEL', KEYS[1]) " +
+            "end " +
+            "if KEYS[3] then " +
+            "  n = n + tonumber(redis.call('GET', KEYS[3]) or '0') " +
+            "  redis.call('DEL', KEYS[3]) " +
+            "end " +
+            "if n > 0 and redis.call('HEXISTS', KEYS[2], 'total') == 1 and redis.call('HEXISTS', KEYS[2], 'm:' .. cid) == 0 then " +
+            "  local total = redis.call('HINCRBY', KEYS[2], 'total', -n) " +
+            "  if total < 0 then redis.call('HSET', KEYS[2], 'total', 0) total = 0 end " +
+            "  redis.call('EXPIRE', KEYS[2], ARGV[3]) " +
+            "  return total " +
+            "end " +
+            "return -1", Long.class);
+
+    /**
+     * 切换免打扰后调整未读总数（免打扰扣除该会话的未读数，取消免打扰加回）
+     * KEYS: 未读数 Key、未读总数 Key；ARGV: 会话ID、是否 Hash 格式、是否免打扰、未读总数过期时间（秒）
+     * 返回：最新未读总数（未变化或未初始化时为 -1）
+     */
+    private static final DefaultRedisScript<Long> MUTE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[2], 'total') == 0 then return -1 end " +
+            "local cid = ARGV[1] " +
+            "local n " +
+            "if ARGV[2] == '1' then n = tonumber(redis.call('HGET', KEYS[1], cid) or '0') " +
+            "else n = tonumber(redis.call('GET', KEYS[1]) or '0') end " +
+            "if ARGV[3] == '1' then " +
+            "  if redis.call('HSETNX', KEYS[2], 'm:' .. cid, 1) == 0 then return -1 end " +
+            "  n = -n " +
+            "elseif redis.call('HDEL', KEYS[2], 'm:' .. cid) == 0 then return -1 end " +
+            // 未读数为 0 时不调用 HINCRBY（Lua 中 -0 会被转换为 Redis 不接受的 "-0"）
+            "local total " +
+            "if n == 0 then total = tonumber(redis.call('HGET', KEYS[2], 'total')) " +
+            "else total = redis.call('HINCRBY', KEYS[2], 'total', n) end " +
+            "if total < 0 then redis.call('HSET', KEYS[2], 'total', 0) total = 0 end " +
+            "redis.call('EXPIRE', KEYS[2], ARGV[4]) " +
+            "return total", Long.class);
+
+    /**
+     * 初始化未读总数（已被其他请求初始化则返回现有值）：在脚本内累加非免打扰会话的未读数，免打扰标记整体重建
+     * KEYS: 未读总数 Key、[HASH 格式为用户的 Hash]、非免打扰会话的独立 Key（STRING 格式，或 HASH 格式迁移完成前的旧 Key）...
+     * ARGV: 过期时间（秒）、是否 Hash 格式、非免打扰会话数 n、n 个非免打扰会话ID、免打扰会话ID...
+     */
+    private static final DefaultRedisScript<Long> INIT_TOTAL_SCRIPT = new DefaultRedisScript<>(
+            "local total = redis.call('HGET', KEYS[1], 'total') " +
+            "if total then return tonumber(total) end " +
+            "local n = tonumber(ARGV[3]) " +
+            "local sum = 0 " +
+            "local first = 2 " +
+            "if ARGV[2] == '1' then " +
+            "  for i = 1, n do sum = sum + tonumber(redis.call('HGET', KEYS[2], ARGV[3 + i]) or '0') end " +
+            "  first = 3 " +
+            "end " +
+            "for i = first, #KEYS do sum = sum + tonumber(redis.call('GET', KEYS[i]) or '0') end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "redis.call('HSET', KEYS[1], 'total', sum) " +
+            "for i = 4 + n, #ARGV do redis.call('HSET', KEYS[1], 'm:' .. ARGV[i], 1) end " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "return sum", Long.class);
+
+    /**
+     * 单个脚本最多处理的用户数
+     */
+    private static final int INCREMENT_BATCH_SIZE = 500;
+
     private final StringRedisTemplate stringRedisTemplate;
+    private final UnreadKeyMigrator unreadKeyMigrator;
+    private final ConversationMapper conversationMapper;
+    private final ActiveChatTracker activeChatTracker;
+    private final boolean hashStorage;
+
+    /**
+     * 未读总数变更监听器
+     */
+    private final List<Consumer<Map<Long, Long>>> unreadTotalListeners = new CopyOnWriteArrayList<>();
 
-    public UnreadServiceImpl(StringRedisTemplate stringRedisTemplate) {
+    public UnreadServiceImpl(StringRedisTemplate stringRedisTemplate,
+                             UnreadKeyMigrator unreadKeyMigrator,
+                             ConversationMapper conversationMapper,
+                             ActiveChatTracker activeChatTracker,
+                             EasyChatProperties properties) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.unreadKeyMigrator = unreadKeyMigrator;
+        this.conversationMapper = conversationMapper;
+        this.activeChatTracker = activeChatTracker;
+        this.hashStorage = properties.getUnread().getStorage() == EasyChatProperties.Unread.Storage.HASH;
     }
 
     @Override
     public void setActiveChat(ActiveChatDTO dto) {
         Long userId = UserContextUtil.getCurrentUserId();
-        String conversationId = dto.getConversationId();
-        String key = RedisKeyConstants.getActiveChatKey(userId);
-        stringRedisTemplate.opsForValue().set(
-            key,
-            conversationId,
-            RedisKeyConstants.ACTIVE_CHAT_EXPIRE_SECONDS,
-            TimeUnit.SECONDS
-        );
-        log.debug("设置活跃会话，用户ID: {}, 会话ID: {}", userId, conversationId);
+        activeChatTracker.set(userId, dto.getConversationId());
+        log.debug("设置活跃会话，用户ID: {}, 会话ID: {}", userId, dto.getConversationId());
     }
 
     @Override
     public void deleteActiveChat(Long userId) {
-        String key = RedisKeyConstants.getActiveChatKey(userId);
-        stringRedisTemplate.delete(key);
+        activeChatTracker.set(userId, null);
         log.debug("删除活跃会话，用户ID: {}", userId);
     }
 
@@ -54,31 +184,36 @@ public class UnreadServiceImpl implements UnreadService {
         return stringRedisTemplate.opsForValue().get(key);
     }
 
-    @Override
-    public void renewActiveChat(Long userId) {
-        String key = RedisKeyConstants.getActiveChatKey(userId);
-        // 续期 - 重新设置过期时间
-        stringRedisTemplate.expire(key, RedisKeyConstants.ACTIVE_CHAT_EXPIRE_SECONDS, TimeUnit.SECONDS);
-        log.debug("续期活跃会话，用户ID: {}", userId);
-    }
-
     @Override
     public Long incrementUnread(Long userId, String conversationId) {
-        String key = RedisKeyConstants.getUnreadKey(userId, conversationId);
-        Long count = stringRedisTemplate.opsForValue().increment(key);
+        List<Long> result = executeIncrement(List.of(userId), conversationId);
+        Long count = result.get(0);
+        notifyUnreadTotals(collectTotals(List.of(userId), result));
         log.debug("增加未读数，用户ID: {}, 会话ID: {}, 当前未读数: {}", userId, conversationId, count);
         return count;
     }
 
     @Override
     public void clearUnread(Long userId, String conversationId) {
-        String key = RedisKeyConstants.getUnreadKey(userId, conversationId);
-        stringRedisTemplate.delete(key);
+        List<String> keys = new ArrayList<>(3);
+        keys.add(getCounterKey(userId, conversationId));
+        keys.add(RedisKeyConstants.getUnreadTotalKey(userId));
+        if (hashStorage && !unreadKeyMigrator.isCompleted()) {
+            // 同时删除旧格式的 Key（与迁移脚本互斥，避免旧 Key 在删除后又被迁移回 Hash）
+            keys.add(RedisKeyConstants.getUnreadKey(userId, conversationId));
+        }
+        Long total = stringRedisTemplate.execute(CLEAR_SCRIPT, keys, conversationId, hashFlag(), totalExpireSeconds());
+        if (total != null && total >= 0) {
+            notifyUnreadTotals(Map.of(userId, total));
+        }
         log.debug("清除未读数，用户ID: {}, 会话ID: {}", userId, conversationId);
     }
 
     @Override
     public Integer getUnreadCount(Long userId, String conversationId) {
+        if (hashStorage) {
+            return batchGetUnreadCounts(userId, List.of(conversationId)).get(conversationId);
+        }
         String key = RedisKeyConstants.getUnreadKey(userId, conversationId);
         String value = stringRedisTemplate.opsForValue().get(key);
         if (value == null) {
@@ -97,6 +232,9 @@ public class UnreadServiceImpl implements UnreadService {
         if (conversationIds == null || conversationIds.isEmpty()) {
             return new HashMap<>();
         }
+        if (hashStorage) {
+            return hashGetUnreadCounts(userId, conversationIds);
+        }
 
         // 构建所有 Redis Key
         List<String> keys = conversationIds.stream()
@@ -127,4 +265,199 @@ public class UnreadServiceImpl implements UnreadService {
         log.debug("批量查询未读数，用户ID: {}, 会话数: {}", userId, conversationIds.size());
         return result;
     }
+
+    @Override
+    public Map<Long, String> batchGetActiveChats(List<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        List<String> keys = userIds.stream()
+                .map(RedisKeyConstants::getActiveChatKey)
+                .collect(Collectors.toList());
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+
+        Map<Long, String> result = new HashMap<>();
+        if (values == null) {
+            return result;
+        }
+        for (int i = 0; i < userIds.size() && i < values.size(); i++) {
+            String conversationId = values.get(i);
+            if (conversationId != null) {
+                result.put(userIds.get(i), conversationId);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void batchIncrementUnread(Collection<Long> userIds, String conversationId) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        List<Long> userIdList = new ArrayList<>(userIds);
+        Map<Long, Long> totals = new HashMap<>();
+        for (int from = 0; from < userIdList.size(); from += INCREMENT_BATCH_SIZE) {
+            List<Long> batch = userIdList.subList(from, Math.min(from + INCREMENT_BATCH_SIZE, userIdList.size()));
+            totals.putAll(collectTotals(batch, executeIncrement(batch, conversationId)));
+        }
+        notifyUnreadTotals(totals);
+        log.debug("批量增加未读数，会话ID: {}, 用户数: {}", conversationId, userIds.size());
+    }
+
+    @Override
+    public long getUnreadTotal(Long userId) {
+        Object total = stringRedisTemplate.opsForHash().get(RedisKeyConstants.getUnreadTotalKey(userId), "total");
+        if (total != null) {
+            return Long.parseLong(total.toString());
+        }
+
+        // 未初始化：按会话列表在脚本内重新计算（免打扰会话不计入）
+        LambdaQueryWrapper<Conversation> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(Conversation::getConversationId, Conversation::getMuted)
+               .eq(Conversation::getUserId, userId)
+               .eq(Conversation::getStatus, ConversationStatusEnum.NORMAL.getCode());
+        List<Conversation> conversations = conversationMapper.selectList(wrapper);
+
+        List<String> unmutedIds = new ArrayList<>();
+        List<String> mutedIds = new ArrayList<>();
+        for (Conversation conversation : conversations) {
+            if (Boolean.TRUE.equals(conversation.getMuted())) {
+                mutedIds.add(conversation.getConversationId());
+            } else {
+                unmutedIds.add(conversation.getConversationId());
+            }
+        }
+
+        List<String> keys = new ArrayList<>(unmutedIds.size() + 2);
+        keys.add(RedisKeyConstants.getUnreadTotalKey(userId));
+        if (hashStorage) {
+            keys.add(RedisKeyConstants.getUnreadHashKey(userId));
+        }
+        if (!hashStorage || !unreadKeyMigrator.isCompleted()) {
+            for (String conversationId : unmutedIds) {
+                keys.add(RedisKeyConstants.getUnreadKey(userId, conversationId));
+            }
+        }
+        List<String> args = new ArrayList<>(conversations.size() + 3);
+        args.add(totalExpireSeconds());
+        args.add(hashFlag());
+        args.add(String.valueOf(unmutedIds.size()));
+        args.addAll(unmutedIds);
+        args.addAll(mutedIds);
+        Long result = stringRedisTemplate.execute(INIT_TOTAL_SCRIPT, keys, args.toArray());
+        log.debug("初始化未读总数，用户ID: {}, 会话数: {}, 未读总数: {}", userId, conversations.size(), result);
+        return result == null ? 0 : result;
+    }
+
+    @Override
+    public void onMuteChanged(Long userId, String conversationId, boolean muted) {
+        Long total = stringRedisTemplate.execute(MUTE_SCRIPT,
+                List.of(getCounterKey(userId, conversationId), RedisKeyConstants.getUnreadTotalKey(userId)),
+                conversationId, hashFlag(), muted ? "1" : "0", totalExpireSeconds());
+        if (total != null && total >= 0) {
+            notifyUnreadTotals(Map.of(userId, total));
+        }
+    }
+
+    @Override
+    public void addUnreadTotalListener(Consumer<Map<Long, Long>> listener) {
+        unreadTotalListeners.add(listener);
+    }
+
+    /**
+     * 执行增加未读数脚本
+     *
+     * @return 每个用户依次为 会话未读数、最新未读总数
+     */
+    @SuppressWarnings("unchecked")
+    private List<Long> executeIncrement(List<Long> userIds, String conversationId) {
+        List<String> keys = new ArrayList<>(userIds.size() * 2);
+        for (Long userId : userIds) {
+            keys.add(getCounterKey(userId, conversationId));
+            keys.add(RedisKeyConstants.getUnreadTotalKey(userId));
+        }
+        List<Long> result = stringRedisTemplate.execute(INCREMENT_SCRIPT, keys, conversationId, hashFlag(),
+                totalExpireSeconds());
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    private Map<Long, Long> collectTotals(List<Long> userIds, List<Long> result) {
+        Map<Long, Long> totals = new HashMap<>();
+        for (int i = 0; i < userIds.size() && i * 2 + 1 < result.size(); i++) {
+            Long total = result.get(i * 2 + 1);
+            if (total != null && total >= 0) {
+                totals.put(userIds.get(i), total);
+            }
+        }
+        return totals;
+    }
+
+    private void notifyUnreadTotals(Map<Long, Long> totals) {
+        if (totals.isEmpty()) {
+            return;
+        }
+        for (Consumer<Map<Long, Long>> listener : unreadTotalListeners) {
+            try {
+                listener.accept(totals);
+            } catch (Exception e) {
+                log.warn("未读总数监听器执行失败", e);
+            }
+        }
+    }
+
+    /**
+     * 会话未读数所在的 Key（HASH 格式为用户的 Hash，STRING 格式为会话独立的 Key）
+     */
+    private String getCounterKey(Long userId, String conversationId) {
+        return hashStorage
+                ? RedisKeyConstants.getUnreadHashKey(userId)
+                : RedisKeyConstants.getUnreadKey(userId, conversationId);
+    }
+
+    private String hashFlag() {
+        return hashStorage ? "1" : "0";
+    }
+
+    private static String totalExpireSeconds() {
+        return String.valueOf(RedisKeyConstants.UNREAD_TOTAL_EXPIRE_SECONDS);
+    }
+
+    /**
+     * HASH 格式：一次 HGETALL 读取用户所有会话的未读数；旧 Key 尚未迁移完时再 MGET 旧 Key 合并
+     */
+    private Map<String, Integer> hashGetUnreadCounts(Long userId, List<String> conversationIds) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(RedisKeyConstants.getUnreadHashKey(userId));
+        List<String> legacyValues = null;
+        if (!unreadKeyMigrator.isCompleted()) {
+            legacyValues = stringRedisTemplate.opsForValue().multiGet(conversationIds.stream()
+                    .map(conversationId -> RedisKeyConstants.getUnreadKey(userId, conversationId))
+                    .collect(Collectors.toList()));
+        }
+
+        Map<String, Integer> result = new HashMap<>(conversationIds.size());
+        for (int i = 0; i < conversationIds.size(); i++) {
+            String conversationId = conversationIds.get(i);
+            int unreadCount = parseCount(conversationId, entries.get(conversationId));
+            if (legacyValues != null && i < legacyValues.size()) {
+                unreadCount += parseCount(conversationId, legacyValues.get(i));
+            }
+            result.put(conversationId, unreadCount);
+        }
+
+        log.debug("批量查询未读数，用户ID: {}, 会话数: {}", userId, conversationIds.size());
+        return result;
+    }
+
+    private int parseCount(String conversationId, Object value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.toString());
+        } catch (NumberFormatException e) {
+            log.error("解析未读数失败，conversationId: {}, value: {}", conversationId, value, e);
+            return 0;
+        }
+    }
 }
@@ -3,6 +3,7 @@ package com.springleaf.easychat.service.impl;
 import cn.dev33.satoken.stp.StpUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.springleaf.easychat.cache.UserProfileCache;
 import com.springleaf.easychat.enums.GenderEnum;
 import com.springleaf.easychat.enums.ResultCodeEnum;
 import com.springleaf.easychat.enums.UserStatusEnum;
@@ -44,6 +45,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     @Resource
     private FriendMapper friendMapper;
 
+    @Resource
+    private UserProfileCache userProfileCache;
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void register(UserRegisterRequest request) {
@@ -165,6 +169,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         if (!updateResult) {
             throw new BusinessException(ResultCodeEnum.OPERATION_FAILED, "更新用户信息失败");
         }
+        // 昵称、头像等资料已变更，使各节点的用户资料缓存失效
+        userProfileCache.invalidate(userId);
 
         log.info("用户信息更新成功，用户ID：{}", userId);
         return true;
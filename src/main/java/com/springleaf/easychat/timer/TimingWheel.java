@@ -0,0 +1,301 @@
+package com.springleaf.easychat.timer;
+
+import com.springleaf.easychat.config.EasyChatProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 哈希时间轮
+ * 用于会话级的大量短期定时（活跃会话过期、心跳与空闲超时等），添加、取消都是 O(1)：
+ * 调用线程只把任务放入无锁队列，由时间轮线程每个刻度把新任务挂到对应的槽位、执行到期的槽位，
+ * 超过一圈的任务记录剩余圈数，不需要多层时间轮。
+ *
+ * 到期任务在时间轮线程上执行，不能阻塞（需要访问 Redis、数据库时应转交给其他线程），
+ * 实际到期时间的误差为一个刻度
+ */
+@Slf4j
+@Component
+public class TimingWheel {
+
+    /**
+     * 每个刻度最多转入的新任务数，避免大量添加时饿死到期处理
+     */
+    private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime;
+
+    /**
+     * 待转入槽位的新任务
+     */
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 待从槽位移除的已取消任务
+     */
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * 当前刻度（只由时间轮线程访问）
+     */
+    private long tick;
+
+    private final LongAdder scheduledCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    public TimingWheel(EasyChatProperties properties) {
+        EasyChatProperties.Timer config = properties.getTimer();
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(config.getTickMillis(), 1));
+        // 槽位数取 2 的幂，用位运算定位槽位
+        int size = Integer.highestOneBit(Math.max(config.getTicksPerWheel() - 1, 1)) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, "timing-wheel");
+        this.worker.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        worker.start();
+        log.info("时间轮已启动，刻度: {}ms, 槽位数: {}", TimeUnit.NANOSECONDS.toMillis(tickNanos), wheel.length);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.NANOSECONDS.toMillis(tickNanos) * 2 + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 添加定时任务
+     *
+     * @param task 到期后执行的任务（在时间轮线程上执行，不能阻塞）
+     * @param delay 延迟
+     * @param unit 延迟单位
+     * @return 定时句柄，可用于取消
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(this, task, System.nanoTime() + unit.toNanos(Math.max(delay, 0)));
+        pendingTimeouts.add(timeout);
+        scheduledCount.increment();
+        return timeout;
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < deadline) {
+                LockSupport.parkNanos(deadline - now);
+                if (!running) {
+                    return;
+                }
+            }
+            try {
+                removeCancelled();
+                transferPending();
+                wheel[(int) (tick & mask)].expire();
+            } catch (Throwable e) {
+                log.error("时间轮刻度处理失败", e);
+            }
+            tick++;
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPending() {
+        // 转入前已取消的任务直接丢弃，不占每个刻度的转入配额（频繁重新定时时队列里大多是这类任务）
+        int transferred = 0;
+        while (transferred < MAX_TRANSFER_PER_TICK) {
+            Timeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            transferred++;
+            long ticks = Math.max((timeout.deadline - startTime) / tickNanos, tick);
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * 获取时间轮统计信息
+     */
+    public Map<String, Object> getStats() {
+        long scheduled = scheduledCount.sum();
+        long expired = expiredCount.sum();
+        long cancelled = cancelledCount.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", scheduled - expired - cancelled);
+        stats.put("scheduled", scheduled);
+        stats.put("expired", expired);
+        stats.put("cancelled", cancelled);
+        stats.put("failed", failedCount.sum());
+        return stats;
+    }
+
+    /**
+     * 定时句柄
+     */
+    public static final class Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final TimingWheel timer;
+        private final Runnable task;
+        private final long deadline;
+        /**
+         * 状态用字段更新器做 CAS，每个定时少一个 AtomicInteger 对象（16 字节）
+         */
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private volatile int state = ST_INIT;
+
+        /**
+         * 以下字段只由时间轮线程访问
+         */
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimingWheel timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消定时（已到期或已取消时返回 false）
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            timer.cancelledCount.increment();
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            timer.expiredCount.increment();
+            try {
+                task.run();
+            } catch (Throwable e) {
+                timer.failedCount.increment();
+                log.warn("时间轮任务执行失败", e);
+            }
+        }
+    }
+
+    /**
+     * 槽位：双向链表，只由时间轮线程访问
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        /**
+         * 执行本圈到期的任务，其余任务剩余圈数减一
+         */
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    // 槽位按 到期时间 / 刻度 向下取整定位，处理该槽位时到期时间必然已过
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.springleaf.easychat.wal;
+
+import com.springleaf.easychat.config.EasyChatProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 消息预写日志（内存映射、分段）
+ * 消息先追加到本地日志即可确认发送，再由后台线程批量写入 MySQL，写入成功后推进检查点并删除已提交的分段。
+ *
+ * 目录结构：
+ * - wal-{分段号}.log：固定大小的分段文件，记录格式为 [长度 int][CRC32 int][内容]，长度为 0 表示分段内已无记录
+ * - checkpoint：已提交到 MySQL 的位置（分段号 long + 分段内偏移 int）
+ *
+ * 写入 MappedByteBuffer 后数据即在页缓存中，进程崩溃不会丢失；需要抵御断电时开启 sync-on-append，每次追加后刷盘
+ */
+@Slf4j
+@Component
+public class MessageWal {
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    /**
+     * 记录头：长度 + CRC32
+     */
+    private static final int HEADER_BYTES = 8;
+
+    private final EasyChatProperties.Wal config;
+
+    /**
+     * 现存的分段号
+     */
+    private final NavigableSet<Long> segments = new ConcurrentSkipListSet<>();
+
+    private Path dir;
+    private long currentSegment;
+    private FileChannel currentChannel;
+    private MappedByteBuffer currentBuffer;
+
+    /**
+     * 已提交到 MySQL 的位置
+     */
+    @Getter
+    private volatile Position checkpoint = new Position(0, 0);
+
+    private final LongAdder appendedCount = new LongAdder();
+
+    public MessageWal(EasyChatProperties properties) {
+        this.config = properties.getWal();
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 打开日志，返回检查点之后尚未提交的记录（用于重启后重放）
+     *
+     * @return 未提交的记录（按追加顺序）
+     */
+    public synchronized List<Record> open() throws IOException {
+        dir = Paths.get(config.getDir());
+        Files.createDirectories(dir);
+        checkpoint = readCheckpoint();
+
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(path -> path.getFileName().toString())
+                 .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                 .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                 .forEach(segments::add);
+        }
+
+        // 删除检查点之前的分段（上次停机前可能未来得及删除）
+        deleteSegmentsBefore(checkpoint.segment());
+
+        List<Record> pending = new ArrayList<>();
+        int lastEnd = 0;
+        for (long segment : segments) {
+            int start = segment == checkpoint.segment() ? checkpoint.offset() : 0;
+            lastEnd = readSegment(segment, start, pending);
+        }
+
+        if (segments.isEmpty()) {
+            openSegment(Math.max(checkpoint.segment(), 0), 0);
+        } else {
+            // 继续在最后一个分段的有效记录之后追加
+            openSegment(segments.last(), lastEnd);
+        }
+        log.info("消息预写日志已打开，目录: {}, 检查点: {}, 分段数: {}, 待重放记录数: {}",
+                dir.toAbsolutePath(), checkpoint, segments.size(), pending.size());
+        return pending;
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param payload 记录内容
+     * @return 记录结束的位置（提交后以此推进检查点）
+     */
+    public synchronized Position append(byte[] payload) throws IOException {
+        int required = HEADER_BYTES + payload.length;
+        if (required + HEADER_BYTES > config.getSegmentSizeBytes()) {
+            throw new IOException("记录超过分段大小: " + payload.length);
+        }
+        // 当前分段剩余空间不足（保留一个记录头的空间写结束标记）时切换到新分段
+        if (currentBuffer.remaining() < required + HEADER_BYTES) {
+            currentBuffer.force();
+            openSegment(currentSegment + 1, 0);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int start = currentBuffer.position();
+        currentBuffer.position(start + 4);
+        currentBuffer.putInt((int) crc.getValue());
+        currentBuffer.put(payload);
+        // 最后写长度，读取时以长度非 0 判断记录是否完整
+        currentBuffer.putInt(start, payload.length);
+        if (config.isSyncOnAppend()) {
+            currentBuffer.force();
+        }
+        appendedCount.increment();
+        return new Position(currentSegment, currentBuffer.position());
+    }
+
+    /**
+     * 推进检查点，并删除检查点之前已全部提交的分段
+     *
+     * @param position 已提交到 MySQL 的位置
+     */
+    public void checkpoint(Position position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        buffer.putLong(position.segment()).putInt(position.offset()).flip();
+        Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(buffer);
+        }
+        Files.move(tmp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        checkpoint = position;
+        deleteSegmentsBefore(position.segment());
+    }
+
+    /**
+     * 获取日志统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("segments", segments.size());
+        stats.put("currentSegment", currentSegment);
+        stats.put("checkpoint", checkpoint.toString());
+        stats.put("appended", appendedCount.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (currentBuffer != null) {
+            currentBuffer.force();
+        }
+        if (currentChannel != null) {
+            currentChannel.close();
+        }
+    }
+
+    private void openSegment(long segment, int position) throws IOException {
+        if (currentChannel != null) {
+            currentChannel.close();
+        }
+        currentChannel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        currentBuffer = currentChannel.map(FileChannel.MapMode.READ_WRITE, 0, config.getSegmentSizeBytes());
+        currentBuffer.position(position);
+        currentSegment = segment;
+        segments.add(segment);
+    }
+
+    /**
+     * 读取分段中 start 之后的完整记录，遇到结束标记、越界或校验失败（写入中途崩溃）时停止
+     *
+     * @return 最后一条有效记录的结束偏移
+     */
+    private int readSegment(long segment, int start, List<Record> records) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int offset = start;
+            while (offset + HEADER_BYTES <= buffer.limit()) {
+                int length = buffer.getInt(offset);
+                if (length <= 0 || offset + HEADER_BYTES + length > buffer.limit()) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(offset + HEADER_BYTES, payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                    log.warn("预写日志记录校验失败，分段: {}, 偏移: {}，忽略之后的内容", segment, offset);
+                    break;
+                }
+                offset += HEADER_BYTES + length;
+                records.add(new Record(payload, new Position(segment, offset)));
+            }
+            return offset;
+        }
+    }
+
+    private void deleteSegmentsBefore(long segment) throws IOException {
+        for (Long old : segments.headSet(segment, false)) {
+            if (old == currentSegment && currentChannel != null) {
+                continue;
+            }
+            Files.deleteIfExists(segmentPath(old));
+            segments.remove(old);
+            log.debug("删除已提交的预写日志分段: {}", old);
+        }
+    }
+
+    private Position readCheckpoint() throws IOException {
+        Path path = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return new Position(0, 0);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        return new Position(buffer.getLong(), buffer.getInt());
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * 日志位置
+     *
+     * @param segment 分段号
+     * @param offset 分段内偏移
+     */
+    public record Position(long segment, int offset) {
+    }
+
+    /**
+     * 日志记录
+     *
+     * @param payload 内容
+     * @param end 记录结束的位置
+     */
+    public record Record(byte[] payload, Position end) {
+    }
+}
@@ -0,0 +1,118 @@
+package com.springleaf.easychat.websocket;
+
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 会话的投递确认窗口
+ * 为发往该会话的帧分配连续的 frameSeq，并保留未确认的帧用于重发。
+ * 所有方法都需要在持有该对象锁的情况下调用（由 {@link DeliveryAckManager} 保证），
+ * 分配序号与入队在同一把锁内完成，保证帧按 frameSeq 顺序写出
+ */
+final class AckWindow {
+
+    private final ArrayDeque<PendingFrame> pending = new ArrayDeque<>();
+
+    private long lastFrameSeq;
+
+    int size() {
+        return pending.size();
+    }
+
+    boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * 分配下一个 frameSeq 并加入窗口
+     *
+     * @param payload 原始帧（JSON 对象）
+     * @param messageId 消息ID，非消息帧为 null
+     * @param senderId 消息发送者ID，非消息帧为 null
+     * @param now 当前时间（纳秒）
+     * @return 加入窗口的帧（已写入 frameSeq）
+     */
+    PendingFrame append(byte[] payload, Long messageId, Long senderId, long now) {
+        long frameSeq = ++lastFrameSeq;
+        PendingFrame frame = new PendingFrame(frameSeq, stamp(payload, frameSeq), messageId, senderId, now);
+        pending.addLast(frame);
+        return frame;
+    }
+
+    /**
+     * 撤销最后加入的帧（入队失败时使用）
+     */
+    void removeLast() {
+        pending.pollLast();
+    }
+
+    /**
+     * 累计确认：移除 frameSeq 及之前的所有帧
+     *
+     * @param frameSeq 客户端已连续收到的最大 frameSeq
+     * @return 被确认的帧
+     */
+    List<PendingFrame> ack(long frameSeq) {
+        if (pending.isEmpty() || pending.peekFirst().frameSeq > frameSeq) {
+            return Collections.emptyList();
+        }
+        List<PendingFrame> acked = new ArrayList<>();
+        while (!pending.isEmpty() && pending.peekFirst().frameSeq <= frameSeq) {
+            acked.add(pending.pollFirst());
+        }
+        return acked;
+    }
+
+    /**
+     * 获取已超时需要重发的帧（不移除）
+     */
+    List<PendingFrame> overdue(long now, long timeoutNanos) {
+        List<PendingFrame> overdue = new ArrayList<>();
+        Iterator<PendingFrame> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            PendingFrame frame = iterator.next();
+            if (now - frame.lastSentAt > timeoutNanos) {
+                overdue.add(frame);
+            }
+        }
+        return overdue;
+    }
+
+    /**
+     * 在原始 JSON 对象的开头写入 frameSeq 字段，只做字节拼接，不重新序列化
+     */
+    private static TextMessage stamp(byte[] payload, long frameSeq) {
+        byte[] prefix = ("{\"frameSeq\":" + frameSeq + (payload.length > 2 ? "," : "")).getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[prefix.length + payload.length - 1];
+        System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+        System.arraycopy(payload, 1, bytes, prefix.length, payload.length - 1);
+        return new TextMessage(bytes);
+    }
+
+    /**
+     * 未确认的帧
+     */
+    static final class PendingFrame {
+
+        final long frameSeq;
+        final TextMessage message;
+        final Long messageId;
+        final Long senderId;
+        long lastSentAt;
+        int resends;
+
+        PendingFrame(long frameSeq, TextMessage message, Long messageId, Long senderId, long sentAt) {
+            this.frameSeq = frameSeq;
+            this.message = message;
+            this.messageId = messageId;
+            this.senderId = senderId;
+            this.lastSentAt = sentAt;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.springleaf.easychat.websocket;
+
+import com.springleaf.easychat.cluster.ClusterEnvelope;
+import com.springleaf.easychat.cluster.ClusterMessageBus;
+import com.springleaf.easychat.cluster.ClusterNode;
+import com.springleaf.easychat.cluster.UserRouteService;
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import com.springleaf.easychat.timer.TimingWheel;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 活跃会话跟踪器
+ * 用户正在查看的会话保存在其所在节点的 {@link ClientSession} 上，本节点推送时直接读取，不访问 Redis；
+ * Redis 中的 active_chat:{userId} 只供其他节点的推送判断使用，由所在节点定时批量续期，连接断开时删除。
+ *
+ * 活跃会话在设置后或收到该会话的消息后 60 秒内有效（与原 Redis 过期时间的语义一致），
+ * 过期由时间轮驱动：每个会话只有一个定时，到期时如果有效期已被延长则按剩余时间重新定时，
+ * 因此收到消息时只需更新到期时间，不需要取消、重建定时。
+ *
+ * 多端登录时每个连接各自记录活跃会话，本节点推送时任一连接正在查看即不增加未读数；
+ * Redis 中每个用户只有一个值，以最后设置的为准，某个连接断开或过期时如果同一用户还有其他连接在查看会话则保留
+ */
+@Slf4j
+@Component
+public class ActiveChatTracker {
+
+    /**
+     * 续期间隔（毫秒），取过期时间的三分之一，允许连续两次续期失败
+     */
+    private static final long RENEW_INTERVAL_MILLIS = RedisKeyConstants.ACTIVE_CHAT_EXPIRE_SECONDS * 1000 / 3;
+
+    private final SessionRegistry sessionRegistry;
+    private final UserRouteService userRouteService;
+    private final ClusterMessageBus clusterMessageBus;
+    private final ClusterNode clusterNode;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TimingWheel timingWheel;
+
+    /**
+     * 活跃会话已过期、待从 Redis 删除的会话（时间轮线程不访问 Redis）
+     */
+    private final Queue<ClientSession> expiredSessions = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder expiredCount = new LongAdder();
+
+    public ActiveChatTracker(SessionRegistry sessionRegistry,
+                             UserRouteService userRouteService,
+                             ClusterMessageBus clusterMessageBus,
+                             ClusterNode clusterNode,
+                             StringRedisTemplate stringRedisTemplate,
+                             TimingWheel timingWheel) {
+        this.sessionRegistry = sessionRegistry;
+        this.userRouteService = userRouteService;
+        this.clusterMessageBus = clusterMessageBus;
+        this.clusterNode = clusterNode;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.timingWheel = timingWheel;
+    }
+
+    @PostConstruct
+    public void init() {
+        clusterMessageBus.registerHandler(ClusterEnvelope.TYPE_ACTIVE_CHAT, this::handleEnvelope);
+    }
+
+    /**
+     * 设置用户的活跃会话（HTTP 接口调用，用户的连接可能在其他节点）
+     *
+     * @param userId 用户ID
+     * @param conversationId 会话ID，为 null 表示离开聊天页
+     */
+    public void set(Long userId, String conversationId) {
+        // HTTP 请求无法区分是哪个连接，更新该用户的所有连接
+        for (ClientSession localSession : sessionRegistry.getSessions(userId)) {
+            activate(localSession, conversationId);
+        }
+        // 通知该用户的其他连接所在的节点更新会话状态（多端登录时可能同时连接在本节点和其他节点）
+        Set<String> nodes = userRouteService.lookup(Collections.singletonList(userId)).get(userId);
+        if (nodes != null) {
+            for (String node : nodes) {
+                if (!clusterNode.isLocal(node)) {
+                    clusterMessageBus.publish(node, new ClusterEnvelope(ClusterEnvelope.TYPE_ACTIVE_CHAT, null,
+                            Collections.singletonList(userId), conversationId));
+                }
+            }
+        }
+        writeRedis(userId, conversationId);
+    }
+
+    /**
+     * 处理客户端上行的活跃会话帧
+     *
+     * @param clientSession 会话
+     * @param conversationId 会话ID，为空表示离开聊天页
+     */
+    public void onFrame(ClientSession clientSession, String conversationId) {
+        if (conversationId != null && conversationId.isEmpty()) {
+            conversationId = null;
+        }
+        if (clientSession == null) {
+            return;
+        }
+        boolean changed = !Objects.equals(clientSession.getActiveChat(), conversationId);
+        // 重复设置同一会话只延长有效期，Redis 由定时续期覆盖
+        activate(clientSession, conversationId);
+        if (changed) {
+            // 离开聊天页时如果同一用户的其他连接仍在查看会话，Redis 改为该会话
+            writeRedis(clientSession.getUserId(),
+                    conversationId != null ? conversationId : otherActiveChat(clientSession));
+        }
+    }
+
+    /**
+     * 连接断开时删除活跃会话
+     *
+     * @param clientSession 已断开的会话
+     */
+    public void onDisconnect(ClientSession clientSession) {
+        if (clientSession.getActiveChat() != null) {
+            activate(clientSession, null);
+            writeRedis(clientSession.getUserId(), otherActiveChat(clientSession));
+        }
+    }
+
+    /**
+     * 从 Redis 删除已过期的活跃会话（一次 Pipeline 往返）
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void flushExpired() {
+        List<Long> userIds = new ArrayList<>();
+        ClientSession clientSession;
+        while ((clientSession = expiredSessions.poll()) != null) {
+            // 过期后又重新设置了活跃会话的、同一用户的其他连接仍在查看会话的不删除
+            if (clientSession.getActiveChat() == null && otherActiveChat(clientSession) == null) {
+                userIds.add(clientSession.getUserId());
+            }
+        }
+        if (userIds.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.delete(userIds.stream().map(RedisKeyConstants::getActiveChatKey).toList());
+            log.debug("删除过期的活跃会话，用户数: {}", userIds.size());
+        } catch (Exception e) {
+            log.warn("删除过期的活跃会话失败，用户数: {}", userIds.size(), e);
+        }
+    }
+
+    /**
+     * 批量续期本节点上所有有活跃会话的用户（一次 Pipeline 往返）
+     */
+    @Scheduled(fixedDelay = RENEW_INTERVAL_MILLIS)
+    public void renew() {
+        List<ClientSession> activeSessions = new ArrayList<>();
+        for (ClientSession clientSession : sessionRegistry.all()) {
+            if (clientSession.getActiveChat() != null) {
+                activeSessions.add(clientSession);
+            }
+        }
+        if (activeSessions.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) throws DataAccessException {
+                    for (ClientSession clientSession : activeSessions) {
+                        String conversationId = clientSession.getActiveChat();
+                        if (conversationId != null) {
+                            operations.opsForValue().set(RedisKeyConstants.getActiveChatKey(clientSession.getUserId()),
+                                    conversationId, RedisKeyConstants.ACTIVE_CHAT_EXPIRE_SECONDS, TimeUnit.SECONDS);
+                        }
+                    }
+                    return null;
+                }
+            });
+            log.debug("批量续期活跃会话，用户数: {}", activeSessions.size());
+        } catch (Exception e) {
+            log.warn("批量续期活跃会话失败，用户数: {}", activeSessions.size(), e);
+        }
+    }
+
+    /**
+     * 处理其他节点转发的活跃会话变更（Redis 已由发起节点写入）
+     */
+    private void handleEnvelope(ClusterEnvelope envelope) {
+        if (envelope.getUserIds() == null) {
+            return;
+        }
+        for (Long userId : envelope.getUserIds()) {
+            for (ClientSession clientSession : sessionRegistry.getSessions(userId)) {
+                activate(clientSession, envelope.getPayload());
+            }
+        }
+    }
+
+    /**
+     * 同一用户在本节点的其他连接正在查看的会话
+     *
+     * @return 会话ID，没有则返回 null
+     */
+    private String otherActiveChat(ClientSession clientSession) {
+        for (ClientSession other : sessionRegistry.getSessions(clientSession.getUserId())) {
+            if (other != clientSession && other.getActiveChat() != null) {
+                return other.getActiveChat();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 设置会话的活跃会话，并确保有一个过期定时
+     */
+    private void activate(ClientSession clientSession, String conversationId) {
+        synchronized (clientSession) {
+            clientSession.setActiveChat(conversationId);
+            TimingWheel.Timeout timeout = clientSession.getActiveChatTimeout();
+            if (conversationId == null) {
+                if (timeout != null) {
+                    timeout.cancel();
+                    clientSession.setActiveChatTimeout(null);
+                }
+            } else if (timeout == null) {
+                clientSession.setActiveChatTimeout(timingWheel.schedule(() -> checkExpiry(clientSession),
+                        ClientSession.ACTIVE_CHAT_LEASE_NANOS, TimeUnit.NANOSECONDS));
+            }
+        }
+    }
+
+    /**
+     * 过期定时到期（时间轮线程）：有效期已被延长则按剩余时间重新定时，否则清除活跃会话
+     */
+    private void checkExpiry(ClientSession clientSession) {
+        synchronized (clientSession) {
+            clientSession.setActiveChatTimeout(null);
+            if (clientSession.getActiveChat() == null || !clientSession.isOpen()) {
+                return;
+            }
+            long remaining = clientSession.getActiveChatDeadline() - System.nanoTime();
+            if (remaining > 0) {
+                clientSession.setActiveChatTimeout(timingWheel.schedule(() -> checkExpiry(clientSession),
+                        remaining, TimeUnit.NANOSECONDS));
+                return;
+            }
+            clientSession.setActiveChat(null);
+        }
+        expiredCount.increment();
+        expiredSessions.add(clientSession);
+    }
+
+    /**
+     * 因长时间没有新消息而过期的活跃会话数
+     */
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    private void writeRedis(Long userId, String conversationId) {
+        String key = RedisKeyConstants.getActiveChatKey(userId);
+        if (conversationId == null) {
+            stringRedisTemplate.delete(key);
+        } else {
+            stringRedisTemplate.opsForValue().set(key, conversationId,
+                    RedisKeyConstants.ACTIVE_CHAT_EXPIRE_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.springleaf.easychat.websocket;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springleaf.easychat.cluster.ClusterEnvelope;
+import com.springleaf.easychat.cluster.ClusterMessageBus;
+import com.springleaf.easychat.cluster.ClusterNode;
+import com.springleaf.easychat.cluster.UserRouteService;
+import com.springleaf.easychat.constants.WebSocketConstants;
+import com.springleaf.easychat.service.UnreadService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 未读总数（应用角标）推送器
+ * 未读总数变化后按用户合并，每隔 badge-flush-millis 毫秒推送一次最新值（用户在其他节点时经节点间总线转发）
+ */
+@Slf4j
+@Component
+public class BadgePublisher {
+
+    private final UnreadService unreadService;
+    private final DeliveryAckManager deliveryAckManager;
+    private final SessionRegistry sessionRegistry;
+    private final UserRouteService userRouteService;
+    private final ClusterMessageBus clusterMessageBus;
+    private final ClusterNode clusterNode;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 待推送的未读总数
+     * key: 用户ID, value: 最新未读总数
+     */
+    private Map<Long, Long> pendingTotals = new HashMap<>();
+
+    private final LongAdder badgeFrames = new LongAdder();
+
+    public BadgePublisher(UnreadService unreadService,
+                          DeliveryAckManager deliveryAckManager,
+                          SessionRegistry sessionRegistry,
+                          UserRouteService userRouteService,
+                          ClusterMessageBus clusterMessageBus,
+                          ClusterNode clusterNode,
+                          ObjectMapper objectMapper) {
+        this.unreadService = unreadService;
+        this.deliveryAckManager = deliveryAckManager;
+        this.sessionRegistry = sessionRegistry;
+        this.userRouteService = userRouteService;
+        this.clusterMessageBus = clusterMessageBus;
+        this.clusterNode = clusterNode;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        unreadService.addUnreadTotalListener(this::onUnreadTotalChanged);
+        clusterMessageBus.registerHandler(ClusterEnvelope.TYPE_BADGE, this::handleEnvelope);
+    }
+
+    private synchronized void onUnreadTotalChanged(Map<Long, Long> totals) {
+        pendingTotals.putAll(totals);
+    }
+
+    /**
+     * 推送合并后的未读总数
+     */
+    @Scheduled(fixedDelayString = "${easy-chat.unread.badge-flush-millis:200}")
+    public void flush() {
+        Map<Long, Long> totals;
+        synchronized (this) {
+            if (pendingTotals.isEmpty()) {
+                return;
+            }
+            totals = pendingTotals;
+            pendingTotals = new HashMap<>();
+        }
+
+        try {
+            // 本节点上的连接直接推送
+            for (Map.Entry<Long, Long> entry : totals.entrySet()) {
+                sendBadge(sessionRegistry.getSessions(entry.getKey()), entry.getValue());
+            }
+
+            // 多端登录的用户可能同时连接在其他节点，一次往返查询所有用户的路由，每个目标节点只发布一次
+            List<Long> userIds = new ArrayList<>(totals.keySet());
+            Map<Long, Set<String>> routes = userRouteService.lookup(userIds);
+            Map<String, Map<Long, Long>> remoteTotals = new HashMap<>();
+            for (Long userId : userIds) {
+                Set<String> nodes = routes.get(userId);
+                if (nodes == null) {
+                    continue;
+                }
+                for (String node : nodes) {
+                    if (!clusterNode.isLocal(node)) {
+                        remoteTotals.computeIfAbsent(node, k -> new HashMap<>()).put(userId, totals.get(userId));
+                    }
+                }
+            }
+            for (Map.Entry<String, Map<Long, Long>> entry : remoteTotals.entrySet()) {
+                Map<Long, Long> nodeTotals = entry.getValue();
+                clusterMessageBus.publish(entry.getKey(), new ClusterEnvelope(ClusterEnvelope.TYPE_BADGE, null,
+                        new ArrayList<>(nodeTotals.keySet()), objectMapper.writeValueAsString(nodeTotals)));
+            }
+        } catch (Exception e) {
+            log.error("推送未读总数失败，用户数: {}", totals.size(), e);
+        }
+    }
+
+    /**
+     * 处理其他节点转发的未读总数
+     */
+    private void handleEnvelope(ClusterEnvelope envelope) {
+        if (envelope.getPayload() == null) {
+            return;
+        }
+        try {
+            Map<Long, Long> totals = objectMapper.readValue(envelope.getPayload(), new TypeReference<Map<Long, Long>>() {
+            });
+            for (Map.Entry<Long, Long> entry : totals.entrySet()) {
+                sendBadge(sessionRegistry.getSessions(entry.getKey()), entry.getValue());
+            }
+        } catch (Exception e) {
+            log.error("处理节点 {} 转发的未读总数失败", envelope.getSourceNode(), e);
+        }
+    }
+
+    private void sendBadge(ClientSession[] clientSessions, long unreadTotal) throws Exception {
+        if (clientSessions.length == 0) {
+            return;
+        }
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", WebSocketConstants.FRAME_TYPE_BADGE);
+        frame.put("unreadTotal", unreadTotal);
+        TextMessage textMessage = new TextMessage(objectMapper.writeValueAsBytes(frame));
+        for (ClientSession clientSession : clientSessions) {
+            if (deliveryAckManager.sendNotice(clientSession, textMessage)) {
+                badgeFrames.increment();
+            }
+        }
+    }
+
+    /**
+     * 已推送的未读总数帧数
+     */
+    public long getBadgeFrames() {
+        return badgeFrames.sum();
+    }
+}
@@ -0,0 +1,284 @@
+package com.springleaf.easychat.websocket;
+
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import com.springleaf.easychat.timer.TimingWheel;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在线客户端会话
+ * 包装 WebSocketSession，并为其维护一个有界的出站缓冲区
+ *
+ * 所有发往该会话的帧都先进入缓冲区，再由 {@link OutboundDispatcher} 的写线程串行写出，
+ * 因此推送线程不会被单个慢连接阻塞，也避免了 WebSocketSession 被多线程并发写
+ */
+public class ClientSession {
+
+    /**
+     * 活跃会话的有效期（纳秒）
+     */
+    static final long ACTIVE_CHAT_LEASE_NANOS = TimeUnit.SECONDS.toNanos(RedisKeyConstants.ACTIVE_CHAT_EXPIRE_SECONDS);
+
+    /**
+     * 用户ID
+     */
+    @Getter
+    private final Long userId;
+
+    /**
+     * 底层 WebSocket 会话
+     */
+    @Getter
+    private final WebSocketSession session;
+
+    /**
+     * 待发送的帧
+     */
+    private final Queue<OutboundFrame> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 缓冲中的帧数
+     */
+    private final AtomicInteger queuedFrames = new AtomicInteger();
+
+    /**
+     * 缓冲中的字节数
+     */
+    private final AtomicInteger queuedBytes = new AtomicInteger();
+
+    /**
+     * 是否有写线程正在写出该会话的缓冲区
+     */
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    /**
+     * 是否已被驱逐（驱逐后不再接收新帧）
+     */
+    private final AtomicBoolean evicted = new AtomicBoolean();
+
+    /**
+     * 当前正在写出的帧的开始时间（纳秒），0 表示没有正在写出的帧
+     */
+    private volatile long sendingSince;
+
+    /**
+     * 最近一次收到客户端帧（包括 Pong）的时间（纳秒），用于空闲检测
+     */
+    private volatile long lastActiveAt = System.nanoTime();
+
+    /**
+     * 最近一次发送心跳 Ping 的时间（纳秒），0 表示空闲后尚未发送
+     */
+    private volatile long lastPingAt;
+
+    /**
+     * 心跳检测定时（由 {@link HeartbeatMonitor} 维护）
+     */
+    private volatile TimingWheel.Timeout heartbeatTimeout;
+
+    /**
+     * 连接建立时用户所在的群组ID，用于断开时从在线群成员索引中移除
+     */
+    @Getter
+    @Setter
+    private volatile long[] groupIds = new long[0];
+
+    /**
+     * 用户正在查看的会话ID（活跃会话），null 表示不在聊天页
+     */
+    @Getter
+    private volatile String activeChat;
+
+    /**
+     * 活跃会话的到期时间（纳秒），设置活跃会话或收到该会话的消息时延长
+     */
+    private volatile long activeChatDeadline;
+
+    /**
+     * 活跃会话的过期定时（由 {@link ActiveChatTracker} 在持有该对象锁时维护）
+     */
+    private TimingWheel.Timeout activeChatTimeout;
+
+    /**
+     * 投递确认窗口，未启用投递确认时为 null
+     */
+    private final AckWindow ackWindow;
+
+    public ClientSession(Long userId, WebSocketSession session) {
+        this(userId, session, false);
+    }
+
+    public ClientSession(Long userId, WebSocketSession session, boolean ackEnabled) {
+        this.userId = userId;
+        this.session = session;
+        this.ackWindow = ackEnabled ? new AckWindow() : null;
+    }
+
+    /**
+     * 收到客户端的帧，刷新活跃时间
+     */
+    public void markActive() {
+        lastActiveAt = System.nanoTime();
+    }
+
+    long getLastActiveAt() {
+        return lastActiveAt;
+    }
+
+    long getLastPingAt() {
+        return lastPingAt;
+    }
+
+    void setLastPingAt(long lastPingAt) {
+        this.lastPingAt = lastPingAt;
+    }
+
+    TimingWheel.Timeout getHeartbeatTimeout() {
+        return heartbeatTimeout;
+    }
+
+    void setHeartbeatTimeout(TimingWheel.Timeout heartbeatTimeout) {
+        this.heartbeatTimeout = heartbeatTimeout;
+    }
+
+    /**
+     * 收到会话的消息时，如果正是活跃会话则延长其有效期
+     *
+     * @param conversationId 消息所属的会话ID
+     * @return 是否为活跃会话
+     */
+    public boolean touchActiveChat(String conversationId) {
+        if (conversationId == null || !conversationId.equals(activeChat)) {
+            return false;
+        }
+        activeChatDeadline = System.nanoTime() + ACTIVE_CHAT_LEASE_NANOS;
+        return true;
+    }
+
+    void setActiveChat(String conversationId) {
+        this.activeChat = conversationId;
+        if (conversationId != null) {
+            this.activeChatDeadline = System.nanoTime() + ACTIVE_CHAT_LEASE_NANOS;
+        }
+    }
+
+    long getActiveChatDeadline() {
+        return activeChatDeadline;
+    }
+
+    TimingWheel.Timeout getActiveChatTimeout() {
+        return activeChatTimeout;
+    }
+
+    void setActiveChatTimeout(TimingWheel.Timeout activeChatTimeout) {
+        this.activeChatTimeout = activeChatTimeout;
+    }
+
+    /**
+     * 是否启用了投递确认
+     */
+    public boolean isAckEnabled() {
+        return ackWindow != null;
+    }
+
+    AckWindow getAckWindow() {
+        return ackWindow;
+    }
+
+    /**
+     * 会话是否可用（连接打开且未被驱逐）
+     */
+    public boolean isOpen() {
+        return !evicted.get() && session.isOpen();
+    }
+
+    boolean isEvicted() {
+        return evicted.get();
+    }
+
+    boolean markEvicted() {
+        return evicted.compareAndSet(false, true);
+    }
+
+    /**
+     * 先计数再入队：帧被取出（计数减少）之前一定已经计数，并发取出、清空时计数不会为负
+     */
+    void offer(WebSocketMessage<?> message) {
+        int bytes = message.getPayloadLength();
+        queuedFrames.incrementAndGet();
+        queuedBytes.addAndGet(bytes);
+        queue.offer(new OutboundFrame(message, bytes, System.nanoTime()));
+    }
+
+    OutboundFrame poll() {
+        OutboundFrame frame = queue.poll();
+        if (frame != null) {
+            queuedFrames.decrementAndGet();
+            queuedBytes.addAndGet(-frame.bytes());
+        }
+        return frame;
+    }
+
+    boolean hasPending() {
+        return !queue.isEmpty();
+    }
+
+    int getQueuedFrames() {
+        return queuedFrames.get();
+    }
+
+    int getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    /**
+     * 最早一帧已等待的时间（纳秒），包括正在写出的帧
+     */
+    long oldestPendingNanos(long now) {
+        long since = sendingSince;
+        if (since != 0) {
+            return now - since;
+        }
+        OutboundFrame head = queue.peek();
+        return head == null ? 0 : now - head.enqueuedAt();
+    }
+
+    boolean tryStartFlush() {
+        return flushing.compareAndSet(false, true);
+    }
+
+    void finishFlush() {
+        flushing.set(false);
+    }
+
+    void markSending(long since) {
+        this.sendingSince = since;
+    }
+
+    /**
+     * 逐帧取出清空，每取出一帧减去它自己的计数（直接清零会与并发的取出、入队交错，使计数为负或残留）
+     */
+    void clear() {
+        while (poll() != null) {
+            // 丢弃
+        }
+    }
+
+    /**
+     * 出站帧
+     *
+     * @param message 消息（文本帧或心跳的 Ping 帧）
+     * @param bytes 负载字节数
+     * @param enqueuedAt 入队时间（纳秒）
+     */
+    record OutboundFrame(WebSocketMessage<?> message, int bytes, long enqueuedAt) {
+    }
+}
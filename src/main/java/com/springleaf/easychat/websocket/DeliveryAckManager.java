@@ -0,0 +1,242 @@
+package com.springleaf.easychat.websocket;
+
+import com.springleaf.easychat.config.EasyChatProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 投递确认管理器
+ * 对启用了投递确认的会话（握手参数 ack=1），每个下行帧带上会话内连续的 frameSeq 并保留在确认窗口中，
+ * 客户端以累计确认 {"type":"ack","frameSeq":N} 批量确认（例如每 N 帧或每 T 毫秒一次），
+ * 超时未确认的帧会重发，重发次数或窗口大小超限时以"需要重新同步"关闭连接，由客户端重连后通过同步接口补齐。
+ * 未启用投递确认的会话保持原有的帧格式，直接进入出站缓冲
+ */
+@Slf4j
+@Component
+public class DeliveryAckManager {
+
+    private final OutboundDispatcher outboundDispatcher;
+    private final EasyChatProperties.Ack config;
+    private final long resendTimeoutNanos;
+
+    /**
+     * 有未确认帧的会话，只扫描这些会话
+     */
+    private final Set<ClientSession> pendingSessions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 送达监听器
+     */
+    private final List<DeliveryListener> deliveryListeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder trackedFrames = new LongAdder();
+    private final LongAdder ackedFrames = new LongAdder();
+    private final LongAdder resentFrames = new LongAdder();
+    private final LongAdder resyncCount = new LongAdder();
+    private final LongAdder abandonedFrames = new LongAdder();
+
+    public DeliveryAckManager(OutboundDispatcher outboundDispatcher, EasyChatProperties properties) {
+        this.outboundDispatcher = outboundDispatcher;
+        this.config = properties.getAck();
+        this.resendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getResendTimeoutMillis());
+    }
+
+    /**
+     * 注册送达监听器（客户端确认收到消息帧时回调）
+     */
+    public void addDeliveryListener(DeliveryListener listener) {
+        deliveryListeners.add(listener);
+    }
+
+    /**
+     * 投递消息帧
+     * 启用了投递确认的会话写入 frameSeq 并进入确认窗口，否则直接入队
+     *
+     * @param clientSession 目标会话
+     * @param message 消息帧（JSON 对象）
+     * @param messageId 消息ID
+     * @param senderId 消息发送者ID
+     * @return 是否成功入队
+     */
+    public boolean deliver(ClientSession clientSession, TextMessage message, Long messageId, Long senderId) {
+        if (clientSession == null) {
+            return false;
+        }
+        AckWindow window = clientSession.getAckWindow();
+        if (window == null) {
+            return outboundDispatcher.send(clientSession, message);
+        }
+
+        synchronized (window) {
+            if (window.size() >= config.getWindowSize()) {
+                resync(clientSession, "确认窗口已满");
+                return false;
+            }
+            AckWindow.PendingFrame frame = window.append(message.asBytes(), messageId, senderId, System.nanoTime());
+            if (!outboundDispatcher.send(clientSession, frame.message)) {
+                window.removeLast();
+                return false;
+            }
+            pendingSessions.add(clientSession);
+        }
+        trackedFrames.increment();
+        return true;
+    }
+
+    /**
+     * 发送回执帧（只发给启用了投递确认的会话，回执本身不需要确认）
+     *
+     * @param clientSession 目标会话
+     * @param receipt 回执帧
+     * @return 是否成功入队
+     */
+    public boolean sendReceipt(ClientSession clientSession, TextMessage receipt) {
+        if (clientSession == null || !clientSession.isAckEnabled()) {
+            return false;
+        }
+        return outboundDispatcher.send(clientSession, receipt);
+    }
+
+    /**
+     * 发送通知帧（发给所有会话，不需要确认，丢失后客户端可通过接口重新拉取）
+     *
+     * @param clientSession 目标会话
+     * @param frame 通知帧
+     * @return 是否成功入队
+     */
+    public boolean sendNotice(ClientSession clientSession, TextMessage frame) {
+        if (clientSession == null) {
+            return false;
+        }
+        return outboundDispatcher.send(clientSession, frame);
+    }
+
+    /**
+     * 处理客户端的累计确认
+     *
+     * @param clientSession 会话
+     * @param frameSeq 客户端已连续收到的最大 frameSeq
+     */
+    public void onAck(ClientSession clientSession, long frameSeq) {
+        AckWindow window = clientSession.getAckWindow();
+        if (window == null) {
+            return;
+        }
+        List<AckWindow.PendingFrame> acked;
+        synchronized (window) {
+            acked = window.ack(frameSeq);
+        }
+        if (acked.isEmpty()) {
+            return;
+        }
+        ackedFrames.add(acked.size());
+        for (AckWindow.PendingFrame frame : acked) {
+            if (frame.messageId == null) {
+                continue;
+            }
+            for (DeliveryListener listener : deliveryListeners) {
+                listener.onDelivered(frame.senderId, frame.messageId, clientSession.getUserId());
+            }
+        }
+    }
+
+    /**
+     * 会话断开：放弃其未确认的帧（客户端重连后通过同步接口补齐）
+     */
+    public void onDisconnect(ClientSession clientSession) {
+        AckWindow window = clientSession.getAckWindow();
+        if (window == null) {
+            return;
+        }
+        pendingSessions.remove(clientSession);
+        synchronized (window) {
+            if (!window.isEmpty()) {
+                abandonedFrames.add(window.size());
+                log.debug("会话断开时仍有未确认的帧，用户ID: {}, 帧数: {}", clientSession.getUserId(), window.size());
+            }
+        }
+    }
+
+    /**
+     * 重发超时未确认的帧
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void resendOverdue() {
+        long now = System.nanoTime();
+        for (ClientSession clientSession : pendingSessions) {
+            if (!clientSession.isOpen()) {
+                pendingSessions.remove(clientSession);
+                continue;
+            }
+            AckWindow window = clientSession.getAckWindow();
+            synchronized (window) {
+                if (window.isEmpty()) {
+                    pendingSessions.remove(clientSession);
+                    continue;
+                }
+                for (AckWindow.PendingFrame frame : window.overdue(now, resendTimeoutNanos)) {
+                    if (frame.resends >= config.getMaxResends()) {
+                        resync(clientSession, "帧 " + frame.frameSeq + " 多次重发未确认");
+                        break;
+                    }
+                    frame.resends++;
+                    frame.lastSentAt = now;
+                    if (!outboundDispatcher.send(clientSession, frame.message)) {
+                        break;
+                    }
+                    resentFrames.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * 以"需要重新同步"关闭连接
+     */
+    private void resync(ClientSession clientSession, String reason) {
+        resyncCount.increment();
+        pendingSessions.remove(clientSession);
+        outboundDispatcher.evict(clientSession, reason);
+    }
+
+    /**
+     * 获取投递确认统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pendingSessions", pendingSessions.size());
+        stats.put("trackedFrames", trackedFrames.sum());
+        stats.put("ackedFrames", ackedFrames.sum());
+        stats.put("resentFrames", resentFrames.sum());
+        stats.put("resync", resyncCount.sum());
+        stats.put("abandonedFrames", abandonedFrames.sum());
+        return stats;
+    }
+
+    /**
+     * 送达监听器
+     */
+    @FunctionalInterface
+    public interface DeliveryListener {
+
+        /**
+         * 消息帧已被接收者确认
+         *
+         * @param senderId 消息发送者ID
+         * @param messageId 消息ID
+         * @param receiverId 接收者ID
+         */
+        void onDelivered(Long senderId, Long messageId, Long receiverId);
+    }
+}
@@ -0,0 +1,180 @@
+package com.springleaf.easychat.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springleaf.easychat.cluster.ClusterEnvelope;
+import com.springleaf.easychat.cluster.ClusterMessageBus;
+import com.springleaf.easychat.cluster.ClusterNode;
+import com.springleaf.easychat.cluster.UserRouteService;
+import com.springleaf.easychat.constants.WebSocketConstants;
+import com.springleaf.easychat.model.vo.MessageVO;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消息状态回执发布器
+ * 发送成功后立即给发送者回 sent 回执；接收者确认收到后，送达事件按发送者合并，
+ * 每隔 receipt-flush-millis 毫秒发送一次 delivered 回执（发送者在其他节点时经节点间总线转发）
+ */
+@Slf4j
+@Component
+public class DeliveryReceiptPublisher {
+
+    private static final String STATUS_SENT = "sent";
+    private static final String STATUS_DELIVERED = "delivered";
+
+    private final DeliveryAckManager deliveryAckManager;
+    private final SessionRegistry sessionRegistry;
+    private final UserRouteService userRouteService;
+    private final ClusterMessageBus clusterMessageBus;
+    private final ClusterNode clusterNode;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 待发送的送达事件
+     * key: 发送者ID, value: (消息ID → 已确认的接收者ID列表)
+     */
+    private Map<Long, Map<Long, List<Long>>> pendingReceipts = new HashMap<>();
+
+    private final LongAdder receiptFrames = new LongAdder();
+
+    public DeliveryReceiptPublisher(DeliveryAckManager deliveryAckManager,
+                                    SessionRegistry sessionRegistry,
+                                    UserRouteService userRouteService,
+                                    ClusterMessageBus clusterMessageBus,
+                                    ClusterNode clusterNode,
+                                    ObjectMapper objectMapper) {
+        this.deliveryAckManager = deliveryAckManager;
+        this.sessionRegistry = sessionRegistry;
+        this.userRouteService = userRouteService;
+        this.clusterMessageBus = clusterMessageBus;
+        this.clusterNode = clusterNode;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        deliveryAckManager.addDeliveryListener(this::onDelivered);
+    }
+
+    /**
+     * 给发送者回 sent 回执（消息已持久化）
+     *
+     * @param clientSession 发送者会话
+     * @param clientMsgId 客户端消息ID
+     * @param messageVO 已保存的消息
+     */
+    public void sendSentReceipt(ClientSession clientSession, String clientMsgId, MessageVO messageVO) {
+        if (clientSession == null || !clientSession.isAckEnabled()) {
+            return;
+        }
+        Map<String, Object> receipt = new LinkedHashMap<>();
+        receipt.put("type", WebSocketConstants.FRAME_TYPE_RECEIPT);
+        receipt.put("status", STATUS_SENT);
+        receipt.put("clientMsgId", clientMsgId);
+        receipt.put("messageId", String.valueOf(messageVO.getId()));
+        receipt.put("conversationId", messageVO.getConversationId());
+        receipt.put("seq", messageVO.getSeq());
+        try {
+            if (deliveryAckManager.sendReceipt(clientSession, new TextMessage(objectMapper.writeValueAsBytes(receipt)))) {
+                receiptFrames.increment();
+            }
+        } catch (Exception e) {
+            log.warn("发送 sent 回执失败，用户ID: {}", clientSession.getUserId(), e);
+        }
+    }
+
+    private synchronized void onDelivered(Long senderId, Long messageId, Long receiverId) {
+        if (senderId == null) {
+            return;
+        }
+        List<Long> receiverIds = pendingReceipts.computeIfAbsent(senderId, k -> new LinkedHashMap<>())
+                .computeIfAbsent(messageId, k -> new ArrayList<>());
+        // 多端登录的接收者每个连接都会确认一次，只记录一次
+        if (!receiverIds.contains(receiverId)) {
+            receiverIds.add(receiverId);
+        }
+    }
+
+    /**
+     * 按发送者合并发送 delivered 回执
+     */
+    @Scheduled(fixedDelayString = "${easy-chat.ack.receipt-flush-millis:200}")
+    public void flush() {
+        Map<Long, Map<Long, List<Long>>> receipts;
+        synchronized (this) {
+            if (pendingReceipts.isEmpty()) {
+                return;
+            }
+            receipts = pendingReceipts;
+            pendingReceipts = new HashMap<>();
+        }
+
+        try {
+            // 多端登录的发送者可能同时连接在本节点和其他节点，一次往返查询所有发送者的路由
+            Map<Long, Set<String>> routes = userRouteService.lookup(new ArrayList<>(receipts.keySet()));
+
+            for (Map.Entry<Long, Map<Long, List<Long>>> entry : receipts.entrySet()) {
+                Long senderId = entry.getKey();
+                byte[] payload = objectMapper.writeValueAsBytes(buildDeliveredReceipt(entry.getValue()));
+
+                ClientSession[] localSessions = sessionRegistry.getSessions(senderId);
+                if (localSessions.length > 0) {
+                    TextMessage receipt = new TextMessage(payload);
+                    for (ClientSession localSession : localSessions) {
+                        if (deliveryAckManager.sendReceipt(localSession, receipt)) {
+                            receiptFrames.increment();
+                        }
+                    }
+                }
+                Set<String> nodes = routes.get(senderId);
+                if (nodes == null) {
+                    continue;
+                }
+                String json = new String(payload, StandardCharsets.UTF_8);
+                for (String node : nodes) {
+                    if (!clusterNode.isLocal(node)) {
+                        clusterMessageBus.publish(node, new ClusterEnvelope(ClusterEnvelope.TYPE_RECEIPT, null,
+                                Collections.singletonList(senderId), json));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("发送 delivered 回执失败，发送者数: {}", receipts.size(), e);
+        }
+    }
+
+    private Map<String, Object> buildDeliveredReceipt(Map<Long, List<Long>> deliveries) {
+        List<Map<String, Object>> messages = new ArrayList<>(deliveries.size());
+        for (Map.Entry<Long, List<Long>> delivery : deliveries.entrySet()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("messageId", String.valueOf(delivery.getKey()));
+            item.put("receiverIds", delivery.getValue());
+            messages.add(item);
+        }
+        Map<String, Object> receipt = new LinkedHashMap<>();
+        receipt.put("type", WebSocketConstants.FRAME_TYPE_RECEIPT);
+        receipt.put("status", STATUS_DELIVERED);
+        receipt.put("messages", messages);
+        return receipt;
+    }
+
+    /**
+     * 已发送的回执帧数
+     */
+    public long getReceiptFrames() {
+        return receiptFrames.sum();
+    }
+}
@@ -0,0 +1,232 @@
+package com.springleaf.easychat.websocket;
+
+import com.springleaf.easychat.config.EasyChatProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消息扇出执行器
+ * 将消息推送从 WebSocket 入站线程中剥离出来，在有界、分区的线程池中异步执行
+ *
+ * 分区规则：按分区键（会话ID）哈希到固定分区，每个分区单线程执行，保证同一会话内的推送顺序
+ * 背压策略：每个分区最多容纳 queueCapacity 个未完成的任务（含执行中的任务），发送消息在持久化之前先预留名额，
+ * 名额已满时立即拒绝发送（消息尚未保存，客户端可重试），不阻塞 WebSocket 入站线程；
+ * 持久化之后提交已预留名额的任务一定能进入队列，已保存的消息不会因为队列满而漏推。
+ * 不能由提交线程直接执行，否则会越过队列中同一会话的消息，打乱推送顺序
+ */
+@Slf4j
+@Component
+public class FanoutExecutor {
+
+    private final ThreadPoolExecutor[] partitions;
+
+    /**
+     * 各分区剩余的任务名额（队列本身不设上限，由名额限制未完成的任务数）
+     */
+    private final Semaphore[] permits;
+
+    /**
+     * 已提交任务数
+     */
+    private final LongAdder submittedCount = new LongAdder();
+
+    /**
+     * 已完成任务数
+     */
+    private final LongAdder completedCount = new LongAdder();
+
+    /**
+     * 名额已满被拒绝的任务数
+     */
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * 排队耗时累计（纳秒）
+     */
+    private final LongAdder totalQueueNanos = new LongAdder();
+
+    /**
+     * 扇出总耗时累计（纳秒，从提交到推送完成）
+     */
+    private final LongAdder totalLatencyNanos = new LongAdder();
+
+    /**
+     * 扇出最大耗时（纳秒）
+     */
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public FanoutExecutor(EasyChatProperties properties) {
+        EasyChatProperties.Fanout config = properties.getFanout();
+        int partitionCount = Math.max(1, config.getPartitions());
+        this.partitions = new ThreadPoolExecutor[partitionCount];
+        this.permits = new Semaphore[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            String threadName = "fanout-" + i;
+            AtomicInteger created = new AtomicInteger();
+            partitions[i] = new ThreadPoolExecutor(
+                    1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, threadName + "-" + created.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            permits[i] = new Semaphore(Math.max(1, config.getQueueCapacity()));
+        }
+        log.info("消息扇出执行器初始化完成，分区数: {}, 每分区队列容量: {}", partitionCount, config.getQueueCapacity());
+    }
+
+    /**
+     * 为分区键所在分区预留一个任务名额（发送消息持久化之前调用，不阻塞）
+     * 预留成功后必须调用 submitReserved 或 cancelReservation 归还名额
+     *
+     * @param partitionKey 分区键（一般为会话ID）
+     * @return 是否预留成功，名额已满时返回 false
+     */
+    public boolean tryReserve(String partitionKey) {
+        int partition = partitionOf(partitionKey);
+        if (permits[partition].tryAcquire()) {
+            return true;
+        }
+        rejectedCount.increment();
+        log.warn("扇出队列已满，拒绝发送，分区: fanout-{}", partition);
+        return false;
+    }
+
+    /**
+     * 取消预留的名额（预留后消息发送失败时调用）
+     *
+     * @param partitionKey 分区键，与预留时一致
+     */
+    public void cancelReservation(String partitionKey) {
+        permits[partitionOf(partitionKey)].release();
+    }
+
+    /**
+     * 使用已预留的名额提交扇出任务，任务完成后归还名额
+     * 队列不设上限，仅在执行器已关闭时失败（此时消息已保存，接收者重连后通过同步获取）
+     *
+     * @param partitionKey 分区键，与预留时一致
+     * @param task 扇出任务
+     * @return 是否提交成功
+     */
+    public boolean submitReserved(String partitionKey, Runnable task) {
+        long submitAt = System.nanoTime();
+        int partition = partitionOf(partitionKey);
+        try {
+            partitions[partition].execute(wrap(partitionKey, task, submitAt, permits[partition]));
+        } catch (RejectedExecutionException e) {
+            permits[partition].release();
+            log.warn("扇出执行器已关闭，消息未推送，分区键: {}", partitionKey);
+            return false;
+        }
+        submittedCount.increment();
+        return true;
+    }
+
+    /**
+     * 提交扇出任务（预留名额并提交，不阻塞）
+     *
+     * @param partitionKey 分区键（一般为会话ID）
+     * @param task 扇出任务
+     * @return 是否提交成功，名额已满或执行器已关闭时返回 false
+     */
+    public boolean submit(String partitionKey, Runnable task) {
+        return tryReserve(partitionKey) && submitReserved(partitionKey, task);
+    }
+
+    private Runnable wrap(String partitionKey, Runnable task, long submitAt, Semaphore permit) {
+        return () -> {
+            long startAt = System.nanoTime();
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("扇出任务执行失败，分区键: {}", partitionKey, e);
+            } finally {
+                permit.release();
+                long endAt = System.nanoTime();
+                recordLatency(startAt - submitAt, endAt - submitAt);
+            }
+        };
+    }
+
+    private int partitionOf(String partitionKey) {
+        if (partitionKey == null) {
+            return 0;
+        }
+        return Math.floorMod(partitionKey.hashCode(), partitions.length);
+    }
+
+    private void recordLatency(long queueNanos, long latencyNanos) {
+        completedCount.increment();
+        totalQueueNanos.add(queueNanos);
+        totalLatencyNanos.add(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    /**
+     * 获取当前所有分区的排队任务数
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor executor : partitions) {
+            depth += executor.getQueue().size();
+        }
+        return depth;
+    }
+
+    /**
+     * 获取扇出统计信息
+     *
+     * @return 队列深度、任务数与耗时统计（耗时单位：毫秒）
+     */
+    public Map<String, Object> getStats() {
+        long completed = completedCount.sum();
+        int[] partitionDepths = new int[partitions.length];
+        for (int i = 0; i < partitions.length; i++) {
+            partitionDepths[i] = partitions[i].getQueue().size();
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("partitions", partitions.length);
+        stats.put("queueDepth", getQueueDepth());
+        stats.put("partitionQueueDepths", partitionDepths);
+        stats.put("submitted", submittedCount.sum());
+        stats.put("completed", completed);
+        stats.put("rejected", rejectedCount.sum());
+        stats.put("avgQueueMillis", completed == 0 ? 0 : totalQueueNanos.sum() / completed / 1_000_000.0);
+        stats.put("avgLatencyMillis", completed == 0 ? 0 : totalLatencyNanos.sum() / completed / 1_000_000.0);
+        stats.put("maxLatencyMillis", maxLatencyNanos.get() / 1_000_000.0);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor executor : partitions) {
+            executor.shutdown();
+        }
+        for (ThreadPoolExecutor executor : partitions) {
+            try {
+                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("消息扇出执行器已关闭");
+    }
+}
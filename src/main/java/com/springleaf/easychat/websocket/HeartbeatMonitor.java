@@ -0,0 +1,177 @@
+package com.springleaf.easychat.websocket;
+
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.constants.WebSocketConstants;
+import com.springleaf.easychat.timer.TimingWheel;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 心跳与空闲连接检测
+ * 移动网络下的半开连接不会触发关闭事件，会一直被当作在线（占用推送、不增加未读数）。
+ * 每个连接在时间轮上有一个检测定时：空闲超过 ping-interval-millis 的发送 WebSocket Ping（浏览器自动回复 Pong），
+ * 空闲超过 idle-timeout-millis 的关闭连接，并回调清理监听器移除在线状态与路由，不等待关闭握手完成。
+ * 定时到期时按最近活跃时间计算下一次需要检测的时间重新定时，收到客户端帧时只更新活跃时间，不需要重建定时。
+ * 客户端也可以主动发送 {"type":"ping"} 应用层心跳
+ */
+@Slf4j
+@Component
+public class HeartbeatMonitor {
+
+    private static final TextMessage PONG_FRAME = new TextMessage(
+            ("{\"type\":\"" + WebSocketConstants.FRAME_TYPE_PONG + "\"}").getBytes(StandardCharsets.UTF_8));
+
+    private final OutboundDispatcher outboundDispatcher;
+    private final TimingWheel timingWheel;
+    private final EasyChatProperties.Heartbeat config;
+    private final long pingIntervalNanos;
+    private final long idleTimeoutNanos;
+
+    /**
+     * 执行清理监听器（会访问 Redis，不能在时间轮线程上执行）
+     */
+    private final ExecutorService reapPool;
+
+    /**
+     * 空闲连接关闭后的清理监听器
+     */
+    private final List<Consumer<ClientSession>> reapListeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder pingFrames = new LongAdder();
+    private final LongAdder pongFrames = new LongAdder();
+    private final LongAdder reapedCount = new LongAdder();
+
+    public HeartbeatMonitor(OutboundDispatcher outboundDispatcher,
+                            TimingWheel timingWheel,
+                            EasyChatProperties properties) {
+        this.outboundDispatcher = outboundDispatcher;
+        this.timingWheel = timingWheel;
+        this.config = properties.getHeartbeat();
+        this.pingIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getPingIntervalMillis());
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+        this.reapPool = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "heartbeat-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reapPool.shutdown();
+    }
+
+    /**
+     * 注册清理监听器（空闲连接被关闭时回调，用于移除在线状态、路由等）
+     */
+    public void addReapListener(Consumer<ClientSession> listener) {
+        reapListeners.add(listener);
+    }
+
+    /**
+     * 连接建立后开始检测
+     *
+     * @param clientSession 会话
+     */
+    public void onConnect(ClientSession clientSession) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        clientSession.setHeartbeatTimeout(timingWheel.schedule(() -> check(clientSession),
+                pingIntervalNanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * 连接断开后停止检测
+     *
+     * @param clientSession 会话
+     */
+    public void onDisconnect(ClientSession clientSession) {
+        TimingWheel.Timeout timeout = clientSession.getHeartbeatTimeout();
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * 回复客户端的应用层心跳
+     *
+     * @param clientSession 会话
+     */
+    public void onPing(ClientSession clientSession) {
+        if (outboundDispatcher.send(clientSession, PONG_FRAME)) {
+            pongFrames.increment();
+        }
+    }
+
+    /**
+     * 检测定时到期（时间轮线程）：发送 Ping 或关闭空闲超时的连接，否则按下一次需要检测的时间重新定时
+     */
+    private void check(ClientSession clientSession) {
+        if (!clientSession.isOpen()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long lastActiveAt = clientSession.getLastActiveAt();
+        long idle = now - lastActiveAt;
+        if (idle > idleTimeoutNanos) {
+            reapPool.execute(() -> reap(clientSession, idle));
+            return;
+        }
+        if (idle > pingIntervalNanos && now - clientSession.getLastPingAt() > pingIntervalNanos) {
+            // 每个 Ping 间隔最多发送一次
+            clientSession.setLastPingAt(now);
+            if (outboundDispatcher.send(clientSession, new PingMessage(ByteBuffer.allocate(0)))) {
+                pingFrames.increment();
+            }
+        }
+
+        // 下一次检测：空闲超时的时间，与下一次需要发送 Ping 的时间，取较早者
+        long nextPingAt = Math.max(lastActiveAt, clientSession.getLastPingAt()) + pingIntervalNanos;
+        long next = Math.min(lastActiveAt + idleTimeoutNanos, nextPingAt);
+        clientSession.setHeartbeatTimeout(timingWheel.schedule(() -> check(clientSession),
+                Math.max(next - now, 0) + 1, TimeUnit.NANOSECONDS));
+    }
+
+    private void reap(ClientSession clientSession, long idleNanos) {
+        if (!outboundDispatcher.closeIdle(clientSession)) {
+            return;
+        }
+        reapedCount.increment();
+        log.info("连接空闲超时，已关闭，用户ID: {}, 空闲: {}ms",
+                clientSession.getUserId(), TimeUnit.NANOSECONDS.toMillis(idleNanos));
+        for (Consumer<ClientSession> listener : reapListeners) {
+            try {
+                listener.accept(clientSession);
+            } catch (Exception e) {
+                log.warn("空闲连接清理失败，用户ID: {}", clientSession.getUserId(), e);
+            }
+        }
+    }
+
+    /**
+     * 获取心跳统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pingFrames", pingFrames.sum());
+        stats.put("pongFrames", pongFrames.sum());
+        stats.put("reaped", reapedCount.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,258 @@
+package com.springleaf.easychat.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springleaf.easychat.cache.GroupMemberCache;
+import com.springleaf.easychat.cache.GroupMemberSnapshot;
+import com.springleaf.easychat.cluster.ClusterEnvelope;
+import com.springleaf.easychat.cluster.ClusterMessageBus;
+import com.springleaf.easychat.cluster.ClusterNode;
+import com.springleaf.easychat.cluster.PresenceService;
+import com.springleaf.easychat.enums.ConversationTypeEnum;
+import com.springleaf.easychat.model.vo.MessageVO;
+import com.springleaf.easychat.service.UnreadService;
+import com.springleaf.easychat.utils.ConversationIdUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 消息推送器
+ * 计算消息的接收者，处理未读数，并将消息投递到接收者在本节点的所有连接，或按目标节点合并后发布到其他节点
+ */
+@Slf4j
+@Component
+public class MessagePusher {
+
+    private final GroupMemberCache groupMemberCache;
+    private final ObjectMapper objectMapper;
+    private final UnreadService unreadService;
+    private final SessionRegistry sessionRegistry;
+    private final ClusterNode clusterNode;
+    private final PresenceService presenceService;
+    private final ClusterMessageBus clusterMessageBus;
+    private final OnlineGroupIndex onlineGroupIndex;
+    private final DeliveryAckManager deliveryAckManager;
+
+    public MessagePusher(GroupMemberCache groupMemberCache,
+                         ObjectMapper objectMapper,
+                         UnreadService unreadService,
+                         SessionRegistry sessionRegistry,
+                         ClusterNode clusterNode,
+                         PresenceService presenceService,
+                         ClusterMessageBus clusterMessageBus,
+                         OnlineGroupIndex onlineGroupIndex,
+                         DeliveryAckManager deliveryAckManager) {
+        this.groupMemberCache = groupMemberCache;
+        this.objectMapper = objectMapper;
+        this.unreadService = unreadService;
+        this.sessionRegistry = sessionRegistry;
+        this.clusterNode = clusterNode;
+        this.presenceService = presenceService;
+        this.clusterMessageBus = clusterMessageBus;
+        this.onlineGroupIndex = onlineGroupIndex;
+        this.deliveryAckManager = deliveryAckManager;
+    }
+
+    /**
+     * 推送消息给接收者，并同步给发送者的其他连接（多端登录）
+     *
+     * @param messageVO 消息
+     * @param origin 发出该消息的连接，同步时跳过；为 null 时同步给发送者的所有连接
+     */
+    public void pushMessage(MessageVO messageVO, ClientSession origin) {
+        try {
+            // 按字节构造，出站缓冲统计字节数时无需重复编码
+            byte[] payload = objectMapper.writeValueAsBytes(messageVO);
+            TextMessage textMessage = new TextMessage(payload);
+            Long senderId = messageVO.getSenderId();
+
+            // 本节点在线的接收者及其所有连接
+            Map<Long, ClientSession[]> localReceivers = new HashMap<>();
+            // 所有接收者（多端登录的用户可能同时连接在本节点和其他节点，都需要查询其他节点的在线位图）
+            List<Long> receiverIds;
+            // 单聊：推送给接收者
+            if (ConversationTypeEnum.SINGLE.getCode().equals(messageVO.getConversationType())) {
+                // 从会话ID中提取对方用户ID
+                Long receiverId = ConversationIdUtil.extractTargetId(
+                    messageVO.getConversationId(),
+                    senderId
+                );
+                receiverIds = Collections.singletonList(receiverId);
+                ClientSession[] sessions = sessionRegistry.getSessions(receiverId);
+                if (sessions.length > 0) {
+                    localReceivers.put(receiverId, sessions);
+                }
+            }
+            // 群聊：推送给所有群成员
+            else if (ConversationTypeEnum.GROUP.getCode().equals(messageVO.getConversationType())) {
+                // 从会话ID中提取群组ID
+                Long groupId = ConversationIdUtil.extractGroupIdFromGroupChat(messageVO.getConversationId());
+
+                // 获取群成员列表（群成员缓存）
+                GroupMemberSnapshot groupMembers = groupMemberCache.get(groupId);
+
+                // 本节点在线成员直接取自索引，只遍历在线人数
+                Set<Long> onlineMembers = onlineGroupIndex.getOnlineMembers(groupId, groupMembers);
+                for (Long memberId : onlineMembers) {
+                    // 跳过发送者自己（发送者的其他连接单独同步）；索引与快照不一致时以快照为准，不推送给已退出的成员
+                    if (memberId.equals(senderId) || !groupMembers.contains(memberId)) {
+                        continue;
+                    }
+                    ClientSession[] sessions = sessionRegistry.getSessions(memberId);
+                    if (sessions.length > 0) {
+                        localReceivers.put(memberId, sessions);
+                    } else {
+                        // 索引残留（会话已断开），顺手清理
+                        onlineGroupIndex.remove(groupId, memberId);
+                    }
+                }
+
+                receiverIds = new ArrayList<>(groupMembers.size());
+                for (int i = 0; i < groupMembers.size(); i++) {
+                    long memberId = groupMembers.userIdAt(i);
+                    if (memberId != senderId) {
+                        receiverIds.add(memberId);
+                    }
+                }
+            } else {
+                return;
+            }
+
+            deliver(messageVO, textMessage, new String(payload, StandardCharsets.UTF_8),
+                    origin, receiverIds, localReceivers);
+        } catch (Exception e) {
+            log.error("推送消息失败", e);
+        }
+    }
+
+    /**
+     * 投递给接收者：本节点连接直接入队，其他节点的接收者按节点合并为一个信封发布，离线用户一次性增加未读数
+     */
+    private void deliver(MessageVO messageVO, TextMessage textMessage, String payload, ClientSession origin,
+                         List<Long> receiverIds, Map<Long, ClientSession[]> localReceivers) {
+        String conversationId = messageVO.getConversationId();
+        Long senderId = messageVO.getSenderId();
+
+        // 本节点有连接正在查看该会话的接收者
+        Set<Long> activeReceiverIds = new HashSet<>();
+        int localCount = 0;
+        for (Map.Entry<Long, ClientSession[]> entry : localReceivers.entrySet()) {
+            for (ClientSession localSession : entry.getValue()) {
+                if (deliveryAckManager.deliver(localSession, textMessage, messageVO.getId(), senderId)) {
+                    // 消息已进入出站缓冲，活跃会话直接读取会话状态（匹配时顺带延长有效期）
+                    localCount++;
+                    if (localSession.touchActiveChat(conversationId)) {
+                        activeReceiverIds.add(entry.getKey());
+                    }
+                }
+            }
+        }
+
+        // 一次往返查询所有接收者与发送者（同步给发送者在其他节点的连接）在其他节点的连接：
+        // 读取其他存活节点的在线位图，每个节点每 500 个用户一条 BITFIELD 命令，而不是每个用户一条 SMEMBERS
+        List<Long> lookupIds = new ArrayList<>(receiverIds.size() + 1);
+        lookupIds.addAll(receiverIds);
+        lookupIds.add(senderId);
+        Map<Long, Set<String>> routes = presenceService.getRemoteNodes(lookupIds);
+
+        // 其他节点的在线接收者（本节点没有连接在查看该会话），需要从 Redis 查询活跃会话
+        List<Long> remoteOnlineUserIds = new ArrayList<>();
+        // 需要增加未读数的接收者（离线，或没有在查看该会话）
+        List<Long> unreadUserIds = new ArrayList<>();
+        Map<String, List<Long>> remoteReceivers = new HashMap<>();
+        for (Long receiverId : receiverIds) {
+            boolean remote = addRemoteNodes(routes.get(receiverId), receiverId, remoteReceivers);
+            if (activeReceiverIds.contains(receiverId)) {
+                continue;
+            }
+            if (remote) {
+                remoteOnlineUserIds.add(receiverId);
+            } else {
+                unreadUserIds.add(receiverId);
+            }
+        }
+        int remoteCount = remoteOnlineUserIds.size();
+
+        // 一次往返查询其他节点在线接收者的活跃会话（活跃会话由所在节点定时续期，这里不再续期）
+        Map<Long, String> activeChats = unreadService.batchGetActiveChats(remoteOnlineUserIds);
+        for (Long receiverId : remoteOnlineUserIds) {
+            if (!conversationId.equals(activeChats.get(receiverId))) {
+                unreadUserIds.add(receiverId);
+            }
+        }
+
+        // 一次往返增加未读数
+        unreadService.batchIncrementUnread(unreadUserIds, conversationId);
+
+        // 每个目标节点只发布一次
+        for (Map.Entry<String, List<Long>> entry : remoteReceivers.entrySet()) {
+            publish(entry.getKey(), entry.getValue(), messageVO, payload, senderId);
+        }
+
+        int syncCount = syncToSender(messageVO, textMessage, payload, origin, routes.get(senderId));
+
+        log.info("消息已推送，会话ID: {}, 接收者数: {}, 本节点连接: {}, 其他节点在线: {}（{} 个节点）, 增加未读数: {}, 同步发送者连接: {}",
+                conversationId, receiverIds.size(), localCount, remoteCount, remoteReceivers.size(),
+                unreadUserIds.size(), syncCount);
+    }
+
+    /**
+     * 把消息同步给发送者的其他连接，使多端登录时各端的消息列表一致
+     * 同步帧不带发送者ID，不会产生送达回执，也不影响未读数
+     *
+     * @return 本节点同步的连接数
+     */
+    private int syncToSender(MessageVO messageVO, TextMessage textMessage, String payload,
+                             ClientSession origin, Set<String> senderNodes) {
+        Long senderId = messageVO.getSenderId();
+        int syncCount = 0;
+        for (ClientSession clientSession : sessionRegistry.getSessions(senderId)) {
+            if (clientSession != origin && deliveryAckManager.deliver(clientSession, textMessage, messageVO.getId(), null)) {
+                syncCount++;
+            }
+        }
+        if (senderNodes != null) {
+            for (String node : senderNodes) {
+                if (!clusterNode.isLocal(node)) {
+                    publish(node, Collections.singletonList(senderId), messageVO, payload, null);
+                }
+            }
+        }
+        return syncCount;
+    }
+
+    /**
+     * 把用户所在的其他节点加入目标节点
+     *
+     * @return 用户是否在其他节点在线
+     */
+    private boolean addRemoteNodes(Set<String> nodes, Long userId, Map<String, List<Long>> remoteReceivers) {
+        boolean remote = false;
+        if (nodes != null) {
+            for (String node : nodes) {
+                if (!clusterNode.isLocal(node)) {
+                    remoteReceivers.computeIfAbsent(node, k -> new ArrayList<>()).add(userId);
+                    remote = true;
+                }
+            }
+        }
+        return remote;
+    }
+
+    private void publish(String node, List<Long> userIds, MessageVO messageVO, String payload, Long senderId) {
+        ClusterEnvelope envelope = new ClusterEnvelope(ClusterEnvelope.TYPE_DELIVER, null, userIds, payload);
+        envelope.setMessageId(messageVO.getId());
+        envelope.setSenderId(senderId);
+        envelope.setConversationId(messageVO.getConversationId());
+        clusterMessageBus.publish(node, envelope);
+    }
+}
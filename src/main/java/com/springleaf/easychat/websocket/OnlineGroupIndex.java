@@ -0,0 +1,127 @@
+package com.springleaf.easychat.websocket;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.springleaf.easychat.cache.GroupMemberCache;
+import com.springleaf.easychat.cache.GroupMemberSnapshot;
+import com.springleaf.easychat.enums.GroupMemberStatusEnum;
+import com.springleaf.easychat.mapper.GroupMemberMapper;
+import com.springleaf.easychat.model.entity.GroupMember;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本节点在线群成员索引
+ * key: groupId, value: 连接在本节点的群成员ID集合
+ *
+ * 群消息推送时只需遍历本节点在线的成员，而不必逐个探测全部群成员。
+ * 索引按需构建：某个群首次推送时由群成员快照与本节点会话注册表求交集得到，
+ * 之后由连接建立/断开增量维护，群成员变更时整体失效、下次推送时重建
+ */
+@Slf4j
+@Component
+public class OnlineGroupIndex {
+
+    private final Map<Long, Set<Long>> onlineMembers = new ConcurrentHashMap<>();
+
+    private final GroupMemberMapper groupMemberMapper;
+    private final GroupMemberCache groupMemberCache;
+    private final SessionRegistry sessionRegistry;
+
+    public OnlineGroupIndex(GroupMemberMapper groupMemberMapper,
+                            GroupMemberCache groupMemberCache,
+                            SessionRegistry sessionRegistry) {
+        this.groupMemberMapper = groupMemberMapper;
+        this.groupMemberCache = groupMemberCache;
+        this.sessionRegistry = sessionRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        // 群成员变更（本节点或其他节点）时整体失效，下次推送时重建
+        groupMemberCache.addInvalidationListener(onlineMembers::remove);
+    }
+
+    /**
+     * 获取群组在本节点的在线成员
+     *
+     * @param groupId 群组ID
+     * @param snapshot 群成员快照（索引不存在时用于构建）
+     * @return 在线成员ID集合（实时视图，调用方不可修改）
+     */
+    public Set<Long> getOnlineMembers(Long groupId, GroupMemberSnapshot snapshot) {
+        // computeIfAbsent 与连接建立/断开时的 computeIfPresent 在同一个桶锁上串行，不会漏掉并发上线的成员
+        return onlineMembers.computeIfAbsent(groupId, key -> {
+            Set<Long> members = ConcurrentHashMap.newKeySet();
+            for (int i = 0; i < snapshot.size(); i++) {
+                long userId = snapshot.userIdAt(i);
+                if (sessionRegistry.isUserOnline(userId)) {
+                    members.add(userId);
+                }
+            }
+            return members;
+        });
+    }
+
+    /**
+     * 连接建立：加入用户所在群的已构建索引
+     *
+     * @param clientSession 会话
+     */
+    public void onConnect(ClientSession clientSession) {
+        Long userId = clientSession.getUserId();
+        LambdaQueryWrapper<GroupMember> wrapper = new LambdaQueryWrapper<>();
+        // 已退出的群不加入索引（与群成员快照一致）
+        wrapper.select(GroupMember::getGroupId)
+               .eq(GroupMember::getUserId, userId)
+               .eq(GroupMember::getStatus, GroupMemberStatusEnum.NORMAL.getCode());
+        List<GroupMember> memberships = groupMemberMapper.selectList(wrapper);
+
+        long[] groupIds = new long[memberships.size()];
+        for (int i = 0; i < memberships.size(); i++) {
+            groupIds[i] = memberships.get(i).getGroupId();
+            onlineMembers.computeIfPresent(groupIds[i], (key, members) -> {
+                members.add(userId);
+                return members;
+            });
+        }
+        clientSession.setGroupIds(groupIds);
+    }
+
+    /**
+     * 连接断开：从用户所在群的索引中移除
+     *
+     * @param clientSession 会话
+     */
+    public void onDisconnect(ClientSession clientSession) {
+        for (long groupId : clientSession.getGroupIds()) {
+            remove(groupId, clientSession.getUserId());
+        }
+    }
+
+    /**
+     * 从群组索引中移除成员（推送时发现会话已不在本节点也会调用，用于自愈）
+     * 在桶锁内重新检查注册表：用户在检查之前已重新连接则保留；在检查之后才连接的，
+     * 其 onConnect 排在本次移除之后，会把用户重新加入，因此并发的断开、重连不会把在线成员移出索引
+     */
+    public void remove(Long groupId, Long userId) {
+        onlineMembers.computeIfPresent(groupId, (key, members) -> {
+            if (!sessionRegistry.isUserOnline(userId)) {
+                members.remove(userId);
+            }
+            return members;
+        });
+    }
+
+    /**
+     * 已构建索引的群组数
+     */
+    public int getIndexedGroupCount() {
+        return onlineMembers.size();
+    }
+}
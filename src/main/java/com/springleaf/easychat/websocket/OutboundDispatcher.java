@@ -0,0 +1,254 @@
+package com.springleaf.easychat.websocket;
+
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.constants.WebSocketConstants;
+import com.springleaf.easychat.timer.TimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 出站分发器
+ * 负责将帧写入 {@link ClientSession} 的有界缓冲区，并由共享写线程池异步写出
+ *
+ * 当某个会话的缓冲帧数、字节数或最早一帧的等待时间超过上限时，判定为慢消费者，
+ * 以 {@link WebSocketConstants#RESYNC_REQUIRED} 关闭该连接，避免其拖慢整个群的推送。
+ * 入队时的检查只在有新帧时触发，写线程阻塞在某个连接的 sendMessage 上时不会再有检查，
+ * 因此由时间轮上的看门狗定期检查正在写出的会话，写出超时的同样驱逐，关闭连接后阻塞的写出随之失败，写线程得以释放
+ */
+@Slf4j
+@Component
+public class OutboundDispatcher {
+
+    private final EasyChatProperties.Outbound config;
+    private final long sendTimeLimitNanos;
+    private final ExecutorService writerPool;
+    private final TimingWheel timingWheel;
+
+    /**
+     * 看门狗检查间隔（毫秒）：写出超时上限的 1/4，卡住的写出最晚在上限的 1.25 倍时被发现
+     */
+    private final long watchdogIntervalMillis;
+
+    /**
+     * 正在写出的会话（最多为写线程数），由看门狗检查写出是否超时
+     */
+    private final Set<ClientSession> flushingSessions = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running = true;
+
+    /**
+     * 关闭连接使用独立线程，防止关闭握手阻塞写线程或推送线程
+     */
+    private final ExecutorService closePool;
+
+    /**
+     * 慢消费者驱逐次数
+     */
+    private final LongAdder evictedCount = new LongAdder();
+
+    /**
+     * 写出成功的帧数
+     */
+    private final LongAdder sentFrames = new LongAdder();
+
+    /**
+     * 写出失败的帧数
+     */
+    private final LongAdder failedFrames = new LongAdder();
+
+    public OutboundDispatcher(TimingWheel timingWheel, EasyChatProperties properties) {
+        this.config = properties.getOutbound();
+        this.timingWheel = timingWheel;
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(config.getSendTimeLimitMillis());
+        this.watchdogIntervalMillis = Math.max(1, config.getSendTimeLimitMillis() / 4);
+        this.writerPool = Executors.newFixedThreadPool(Math.max(1, config.getWriterThreads()), namedThreadFactory("ws-writer-"));
+        this.closePool = Executors.newSingleThreadExecutor(namedThreadFactory("ws-evict-"));
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduleWatchdog();
+    }
+
+    /**
+     * 发送帧到指定会话
+     * 只负责入队，不会阻塞调用线程
+     *
+     * @param clientSession 目标会话
+     * @param message 文本帧（或心跳的 Ping 帧）
+     * @return 是否成功入队（会话已关闭或被驱逐时返回 false）
+     */
+    public boolean send(ClientSession clientSession, WebSocketMessage<?> message) {
+        if (clientSession == null || !clientSession.isOpen()) {
+            return false;
+        }
+
+        clientSession.offer(message);
+
+        if (isOverflowed(clientSession)) {
+            evict(clientSession, "出站缓冲溢出");
+            return false;
+        }
+
+        scheduleFlush(clientSession);
+        return true;
+    }
+
+    /**
+     * 判断会话的出站缓冲是否超过上限
+     */
+    private boolean isOverflowed(ClientSession clientSession) {
+        return clientSession.getQueuedFrames() > config.getMaxQueuedFrames()
+                || clientSession.getQueuedBytes() > config.getBufferSizeLimit()
+                || clientSession.oldestPendingNanos(System.nanoTime()) > sendTimeLimitNanos;
+    }
+
+    private void scheduleFlush(ClientSession clientSession) {
+        if (clientSession.tryStartFlush()) {
+            writerPool.execute(() -> flush(clientSession));
+        }
+    }
+
+    /**
+     * 串行写出会话缓冲区中的所有帧
+     */
+    private void flush(ClientSession clientSession) {
+        flushingSessions.add(clientSession);
+        try {
+            ClientSession.OutboundFrame frame;
+            while (!clientSession.isEvicted() && (frame = clientSession.poll()) != null) {
+                clientSession.markSending(System.nanoTime());
+                try {
+                    clientSession.getSession().sendMessage(frame.message());
+                    sentFrames.increment();
+                } catch (IOException | IllegalStateException e) {
+                    failedFrames.increment();
+                    log.warn("写出消息失败，用户ID: {}, 原因: {}", clientSession.getUserId(), e.getMessage());
+                    evict(clientSession, "写出失败");
+                    return;
+                } finally {
+                    clientSession.markSending(0);
+                }
+            }
+        } finally {
+            flushingSessions.remove(clientSession);
+            clientSession.finishFlush();
+        }
+
+        // 结束标记与新帧入队之间存在竞争，这里补一次检查，避免帧滞留
+        if (clientSession.hasPending() && !clientSession.isEvicted()) {
+            scheduleFlush(clientSession);
+        }
+    }
+
+    private void scheduleWatchdog() {
+        if (running) {
+            timingWheel.schedule(this::checkStalledSends, watchdogIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 看门狗：驱逐写出超时的会话（在时间轮线程上执行，驱逐只做标记，关闭交给关闭线程，不会阻塞）
+     */
+    void checkStalledSends() {
+        try {
+            long now = System.nanoTime();
+            for (ClientSession clientSession : flushingSessions) {
+                if (clientSession.oldestPendingNanos(now) > sendTimeLimitNanos) {
+                    evict(clientSession, "写出超时");
+                }
+            }
+        } catch (Exception e) {
+            log.error("检查写出超时失败", e);
+        } finally {
+            scheduleWatchdog();
+        }
+    }
+
+    /**
+     * 驱逐慢消费者：丢弃缓冲并以"需要重新同步"关闭连接
+     */
+    void evict(ClientSession clientSession, String reason) {
+        if (!clientSession.markEvicted()) {
+            return;
+        }
+        evictedCount.increment();
+        log.warn("驱逐慢消费者（{}），用户ID: {}, 缓冲帧数: {}, 缓冲字节数: {}",
+                reason, clientSession.getUserId(), clientSession.getQueuedFrames(), clientSession.getQueuedBytes());
+        close(clientSession, WebSocketConstants.RESYNC_REQUIRED);
+    }
+
+    /**
+     * 关闭空闲超时的连接：丢弃缓冲并以"空闲超时"关闭连接
+     *
+     * @return 是否由本次调用关闭（已被驱逐的返回 false）
+     */
+    boolean closeIdle(ClientSession clientSession) {
+        if (!clientSession.markEvicted()) {
+            return false;
+        }
+        close(clientSession, WebSocketConstants.IDLE_TIMEOUT);
+        return true;
+    }
+
+    private void close(ClientSession clientSession, CloseStatus status) {
+        clientSession.clear();
+        closePool.execute(() -> {
+            try {
+                clientSession.getSession().close(status);
+            } catch (IOException e) {
+                log.warn("关闭连接失败，用户ID: {}, 关闭码: {}", clientSession.getUserId(), status.getCode(), e);
+            }
+        });
+    }
+
+    /**
+     * 获取出站统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("evicted", evictedCount.sum());
+        stats.put("sentFrames", sentFrames.sum());
+        stats.put("failedFrames", failedFrames.sum());
+        return stats;
+    }
+
+    /**
+     * 获取慢消费者驱逐次数
+     */
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writerPool.shutdown();
+        closePool.shutdown();
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
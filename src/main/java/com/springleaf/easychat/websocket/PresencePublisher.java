@@ -0,0 +1,218 @@
+package com.springleaf.easychat.websocket;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springleaf.easychat.cluster.ClusterEnvelope;
+import com.springleaf.easychat.cluster.ClusterMessageBus;
+import com.springleaf.easychat.cluster.ClusterNode;
+import com.springleaf.easychat.cluster.PresenceService;
+import com.springleaf.easychat.cluster.UserRouteService;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.constants.WebSocketConstants;
+import com.springleaf.easychat.enums.FriendStatusEnum;
+import com.springleaf.easychat.mapper.FriendMapper;
+import com.springleaf.easychat.model.entity.Friend;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 好友在线状态推送器
+ * 本节点用户上线、下线后先记录变化时间，状态保持 debounce-millis 不变后才查询其全局在线状态，
+ * 与上次通知的状态比较（多节点间通过 presence:announced 位图去重），有变化时通知其在线的好友；
+ * 同一好友在一次检查中收到的多个变化合并为一帧
+ */
+@Slf4j
+@Component
+public class PresencePublisher {
+
+    private final PresenceService presenceService;
+    private final FriendMapper friendMapper;
+    private final SessionRegistry sessionRegistry;
+    private final UserRouteService userRouteService;
+    private final ClusterMessageBus clusterMessageBus;
+    private final ClusterNode clusterNode;
+    private final DeliveryAckManager deliveryAckManager;
+    private final ObjectMapper objectMapper;
+    private final EasyChatProperties.Presence config;
+    private final long debounceNanos;
+
+    /**
+     * 待通知的状态变化
+     * key: 用户ID, value: 最近一次变化的时间（纳秒）
+     */
+    private final Map<Long, Long> pendingChanges = new ConcurrentHashMap<>();
+
+    private final LongAdder announcedCount = new LongAdder();
+    private final LongAdder suppressedCount = new LongAdder();
+    private final LongAdder presenceFrames = new LongAdder();
+
+    public PresencePublisher(PresenceService presenceService,
+                             FriendMapper friendMapper,
+                             SessionRegistry sessionRegistry,
+                             UserRouteService userRouteService,
+                             ClusterMessageBus clusterMessageBus,
+                             ClusterNode clusterNode,
+                             DeliveryAckManager deliveryAckManager,
+                             ObjectMapper objectMapper,
+                             EasyChatProperties properties) {
+        this.presenceService = presenceService;
+        this.friendMapper = friendMapper;
+        this.sessionRegistry = sessionRegistry;
+        this.userRouteService = userRouteService;
+        this.clusterMessageBus = clusterMessageBus;
+        this.clusterNode = clusterNode;
+        this.deliveryAckManager = deliveryAckManager;
+        this.objectMapper = objectMapper;
+        this.config = properties.getPresence();
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(config.getDebounceMillis());
+    }
+
+    @PostConstruct
+    public void init() {
+        if (config.isPushEnabled()) {
+            presenceService.addChangeListener(userId -> pendingChanges.put(userId, System.nanoTime()));
+        }
+        clusterMessageBus.registerHandler(ClusterEnvelope.TYPE_PRESENCE, this::handleEnvelope);
+    }
+
+    /**
+     * 通知状态已稳定的变化
+     */
+    @Scheduled(fixedDelayString = "${easy-chat.presence.flush-interval-millis:1000}")
+    public void flush() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        List<Long> userIds = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : pendingChanges.entrySet()) {
+            // 防抖期内又发生变化的留到下次检查；移除时比较时间，避免误删检查期间的新变化
+            if (now - entry.getValue() >= debounceNanos && pendingChanges.remove(entry.getKey(), entry.getValue())) {
+                userIds.add(entry.getKey());
+            }
+        }
+        if (userIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            Set<Long> online = presenceService.getOnlineUsers(userIds);
+            Map<Long, Boolean> states = new HashMap<>();
+            for (Long userId : userIds) {
+                states.put(userId, online.contains(userId));
+            }
+            Map<Long, Boolean> changed = presenceService.announce(states);
+            suppressedCount.add(userIds.size() - changed.size());
+            if (changed.isEmpty()) {
+                return;
+            }
+            announcedCount.add(changed.size());
+            publish(changed);
+        } catch (Exception e) {
+            log.error("通知好友在线状态失败，用户数: {}", userIds.size(), e);
+        }
+    }
+
+    /**
+     * 通知状态变化的用户的好友（只通知在线的好友）
+     */
+    private void publish(Map<Long, Boolean> changed) throws Exception {
+        // 一次查询把这些用户加为好友的用户
+        LambdaQueryWrapper<Friend> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(Friend::getUserId, Friend::getFriendId)
+               .in(Friend::getFriendId, changed.keySet())
+               .eq(Friend::getStatus, FriendStatusEnum.NORMAL.getCode());
+        Map<Long, List<Map<String, Object>>> changesByWatcher = new HashMap<>();
+        for (Friend friend : friendMapper.selectList(wrapper)) {
+            Map<String, Object> change = new LinkedHashMap<>();
+            change.put("userId", friend.getFriendId());
+            change.put("online", changed.get(friend.getFriendId()));
+            changesByWatcher.computeIfAbsent(friend.getUserId(), k -> new ArrayList<>()).add(change);
+        }
+
+        // 本节点上的连接直接推送
+        for (Map.Entry<Long, List<Map<String, Object>>> entry : changesByWatcher.entrySet()) {
+            sendPresence(sessionRegistry.getSessions(entry.getKey()), entry.getValue());
+        }
+        if (changesByWatcher.isEmpty()) {
+            return;
+        }
+
+        // 多端登录的好友可能同时连接在其他节点，一次往返查询所有好友的路由，每个目标节点只发布一次
+        Map<Long, Set<String>> routes = userRouteService.lookup(new ArrayList<>(changesByWatcher.keySet()));
+        Map<String, Map<Long, List<Map<String, Object>>>> remoteChanges = new HashMap<>();
+        for (Map.Entry<Long, Set<String>> route : routes.entrySet()) {
+            for (String node : route.getValue()) {
+                if (!clusterNode.isLocal(node)) {
+                    remoteChanges.computeIfAbsent(node, k -> new HashMap<>())
+                            .put(route.getKey(), changesByWatcher.get(route.getKey()));
+                }
+            }
+        }
+        for (Map.Entry<String, Map<Long, List<Map<String, Object>>>> entry : remoteChanges.entrySet()) {
+            Map<Long, List<Map<String, Object>>> nodeChanges = entry.getValue();
+            clusterMessageBus.publish(entry.getKey(), new ClusterEnvelope(ClusterEnvelope.TYPE_PRESENCE, null,
+                    new ArrayList<>(nodeChanges.keySet()), objectMapper.writeValueAsString(nodeChanges)));
+        }
+    }
+
+    /**
+     * 处理其他节点转发的在线状态变化
+     */
+    private void handleEnvelope(ClusterEnvelope envelope) {
+        if (envelope.getPayload() == null) {
+            return;
+        }
+        try {
+            Map<Long, List<Map<String, Object>>> changes = objectMapper.readValue(envelope.getPayload(),
+                    new TypeReference<Map<Long, List<Map<String, Object>>>>() {
+                    });
+            for (Map.Entry<Long, List<Map<String, Object>>> entry : changes.entrySet()) {
+                sendPresence(sessionRegistry.getSessions(entry.getKey()), entry.getValue());
+            }
+        } catch (Exception e) {
+            log.error("处理节点 {} 转发的在线状态失败", envelope.getSourceNode(), e);
+        }
+    }
+
+    private void sendPresence(ClientSession[] clientSessions, List<Map<String, Object>> changes) throws Exception {
+        if (clientSessions.length == 0) {
+            return;
+        }
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", WebSocketConstants.FRAME_TYPE_PRESENCE);
+        frame.put("users", changes);
+        TextMessage textMessage = new TextMessage(objectMapper.writeValueAsBytes(frame));
+        for (ClientSession clientSession : clientSessions) {
+            if (deliveryAckManager.sendNotice(clientSession, textMessage)) {
+                presenceFrames.increment();
+            }
+        }
+    }
+
+    /**
+     * 获取在线状态推送统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pendingChanges", pendingChanges.size());
+        stats.put("announced", announcedCount.sum());
+        stats.put("suppressed", suppressedCount.sum());
+        stats.put("presenceFrames", presenceFrames.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,127 @@
+package com.springleaf.easychat.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本节点在线会话注册表
+ * 只记录连接到当前节点的会话，跨节点的路由由 {@link com.springleaf.easychat.cluster.UserRouteService} 维护。
+ * 同一用户可以同时有多个连接（多端登录），推送时投递给该用户在本节点的所有会话。
+ *
+ * 底层是以 long 用户ID为键的开放寻址表 {@link SessionTable}：每个用户占一个槽位（8 字节键 + 4 字节引用，
+ * 负载因子 0.375 ~ 0.75 下约 16 ~ 32 字节），而 ConcurrentHashMap&lt;Long, ClientSession&gt;
+ * 每个条目需要 Node（32 字节）+ 桶数组引用（负载 0.375 ~ 0.75 下约 5 ~ 11 字节），约 37 ~ 43 字节
+ * （装箱的 Long 键即会话持有的用户ID，不额外占用）
+ */
+@Slf4j
+@Component
+public class SessionRegistry {
+
+    /**
+     * ConcurrentHashMap 每个条目的估算字节数：Node 32 + 桶数组引用（典型负载约 0.6 时约 6.5）
+     */
+    private static final int BOXED_MAP_BYTES_PER_ENTRY = 39;
+
+    /**
+     * 开放寻址表每个槽位的字节数：long 键 8 + 值引用 4（分段对象、锁与数组头另计，可忽略）
+     */
+    private static final int SLOT_BYTES = 12;
+
+    /**
+     * 多端在线时值数组的额外开销：数组头 16 字节
+     */
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    /**
+     * 引用大小（开启压缩指针）
+     */
+    private static final int REFERENCE_BYTES = 4;
+
+    /**
+     * 存储本节点所有在线用户的会话（带有界出站缓冲）
+     */
+    private final SessionTable sessions = new SessionTable();
+
+    /**
+     * 注册会话
+     *
+     * @param clientSession 会话
+     * @return 是否是该用户在本节点的第一个会话
+     */
+    public boolean register(ClientSession clientSession) {
+        return sessions.add(clientSession) == 1;
+    }
+
+    /**
+     * 注销会话
+     * 只移除该会话本身，同一用户的其他连接不受影响
+     *
+     * @param clientSession 会话
+     * @return 该用户在本节点剩余的会话数，会话未注册（或已注销）时返回 -1
+     */
+    public int unregister(ClientSession clientSession) {
+        return sessions.remove(clientSession);
+    }
+
+    /**
+     * 获取用户在本节点的所有会话
+     *
+     * @param userId 用户ID
+     * @return 会话数组，不在本节点则返回空数组（调用方不可修改）
+     */
+    public ClientSession[] getSessions(Long userId) {
+        return sessions.get(userId);
+    }
+
+    /**
+     * 获取本节点所有会话的快照，遍历期间可以关闭、注销会话
+     */
+    public List<ClientSession> all() {
+        return sessions.snapshot();
+    }
+
+    /**
+     * 获取本节点在线用户数量
+     */
+    public int getOnlineUserCount() {
+        return sessions.userCount();
+    }
+
+    /**
+     * 获取本节点会话数量（多端登录的用户计多个）
+     */
+    public int getSessionCount() {
+        return sessions.sessionCount();
+    }
+
+    /**
+     * 判断用户是否连接在本节点
+     */
+    public boolean isUserOnline(Long userId) {
+        return sessions.get(userId).length > 0;
+    }
+
+    /**
+     * 获取注册表统计信息（用户数、会话数、内存估算及与 ConcurrentHashMap 的对比）
+     * 字节数按槽位数、条目数与上面的对象布局常量计算（64 位 JVM、开启压缩指针），不是堆实测值；
+     * 常量由 SessionTableTest 用 JOL 实测校验（误差在 5% 以内），不含会话对象本身
+     */
+    public Map<String, Object> getStats() {
+        int users = sessions.userCount();
+        int sessionCount = sessions.sessionCount();
+        long slots = sessions.slotCount();
+        // 多端用户的值数组（两种结构都需要），按每多一个会话 数组头 + 两个引用 估算上限
+        long arrayBytes = (long) (sessionCount - users) * (ARRAY_HEADER_BYTES + 2 * REFERENCE_BYTES);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("users", users);
+        stats.put("sessions", sessionCount);
+        stats.put("slots", slots);
+        stats.put("estimatedBytes", slots * SLOT_BYTES + arrayBytes);
+        stats.put("boxedMapEstimatedBytes", (long) users * BOXED_MAP_BYTES_PER_ENTRY + arrayBytes);
+        return stats;
+    }
+}
@@ -0,0 +1,315 @@
+package com.springleaf.easychat.websocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 以 long 类型用户ID为键的会话表（开放寻址、线性探测）
+ * 键直接存放在 long[] 中，值为 {@link ClientSession}（单个连接）或 ClientSession[]（多端同时在线），
+ * 不需要装箱的 Long 键和每个条目的 Node 对象；按用户ID分段加锁，读取走 StampedLock 乐观读，不阻塞写入
+ */
+final class SessionTable {
+
+    /**
+     * 分段数（2 的幂）
+     */
+    private static final int STRIPES = 16;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final ClientSession[] EMPTY = new ClientSession[0];
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    SessionTable() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * 添加会话
+     *
+     * @return 添加后该用户的会话数
+     */
+    int add(ClientSession clientSession) {
+        long userId = clientSession.getUserId();
+        Stripe stripe = stripe(userId);
+        long stamp = stripe.lock.writeLock();
+        try {
+            return stripe.add(userId, clientSession);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 移除会话
+     *
+     * @return 移除后该用户剩余的会话数，会话不在表中时返回 -1
+     */
+    int remove(ClientSession clientSession) {
+        long userId = clientSession.getUserId();
+        Stripe stripe = stripe(userId);
+        long stamp = stripe.lock.writeLock();
+        try {
+            return stripe.remove(userId, clientSession);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 获取用户的所有会话
+     *
+     * @return 会话数组，没有会话时返回空数组（调用方不可修改）
+     */
+    ClientSession[] get(long userId) {
+        Stripe stripe = stripe(userId);
+        long stamp = stripe.lock.tryOptimisticRead();
+        Object value = stripe.find(userId);
+        if (!stripe.lock.validate(stamp)) {
+            stamp = stripe.lock.readLock();
+            try {
+                value = stripe.find(userId);
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        if (value == null) {
+            return EMPTY;
+        }
+        return value instanceof ClientSession clientSession ? new ClientSession[]{clientSession} : (ClientSession[]) value;
+    }
+
+    /**
+     * 所有会话的快照（遍历期间可以安全地增删会话）
+     */
+    List<ClientSession> snapshot() {
+        List<ClientSession> sessions = new ArrayList<>(sessionCount());
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                for (Object value : stripe.values) {
+                    if (value instanceof ClientSession clientSession) {
+                        sessions.add(clientSession);
+                    } else if (value != null) {
+                        for (ClientSession clientSession : (ClientSession[]) value) {
+                            sessions.add(clientSession);
+                        }
+                    }
+                }
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return sessions;
+    }
+
+    int userCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.size;
+        }
+        return count;
+    }
+
+    int sessionCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.sessions;
+        }
+        return count;
+    }
+
+    /**
+     * 槽位总数（每个槽位占用 8 字节键 + 4 字节引用）
+     */
+    long slotCount() {
+        long count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.keys.length;
+        }
+        return count;
+    }
+
+    private Stripe stripe(long userId) {
+        return stripes[(hash(userId) >>> 24) & (STRIPES - 1)];
+    }
+
+    /**
+     * 用户ID的散列值：高位选择分段，低位决定槽位（包级可见，测试据此构造探测冲突）
+     */
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static final class Stripe {
+
+        final StampedLock lock = new StampedLock();
+        long[] keys = new long[INITIAL_CAPACITY];
+        Object[] values = new Object[INITIAL_CAPACITY];
+
+        /**
+         * 用户数（已占用的槽位数）
+         */
+        int size;
+
+        /**
+         * 会话数
+         */
+        int sessions;
+
+        /**
+         * 查找用户的值（乐观读时数组可能正被修改，探测次数以容量为上限，结果由调用方校验）
+         */
+        Object find(long key) {
+            long[] k = keys;
+            Object[] v = values;
+            if (k.length != v.length) {
+                return null;
+            }
+            int mask = k.length - 1;
+            int i = hash(key) & mask;
+            for (int probes = 0; probes < k.length; probes++) {
+                Object value = v[i];
+                if (value == null) {
+                    return null;
+                }
+                if (k[i] == key) {
+                    return value;
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        int add(long key, ClientSession clientSession) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    Object value = values[i];
+                    ClientSession[] merged;
+                    if (value instanceof ClientSession existing) {
+                        if (existing == clientSession) {
+                            return 1;
+                        }
+                        merged = new ClientSession[]{existing, clientSession};
+                    } else {
+                        ClientSession[] existing = (ClientSession[]) value;
+                        for (ClientSession session : existing) {
+                            if (session == clientSession) {
+                                return existing.length;
+                            }
+                        }
+                        merged = new ClientSession[existing.length + 1];
+                        System.arraycopy(existing, 0, merged, 0, existing.length);
+                        merged[existing.length] = clientSession;
+                    }
+                    values[i] = merged;
+                    sessions++;
+                    return merged.length;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = clientSession;
+            size++;
+            sessions++;
+            // 负载因子上限 0.75
+            if (size * 4 > keys.length * 3) {
+                resize();
+            }
+            return 1;
+        }
+
+        int remove(long key, ClientSession clientSession) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    Object value = values[i];
+                    if (value == clientSession) {
+                        removeAt(i);
+                        size--;
+                        sessions--;
+                        return 0;
+                    }
+                    if (!(value instanceof ClientSession[] existing)) {
+                        return -1;
+                    }
+                    int index = -1;
+                    for (int j = 0; j < existing.length; j++) {
+                        if (existing[j] == clientSession) {
+                            index = j;
+                            break;
+                        }
+                    }
+                    if (index < 0) {
+                        return -1;
+                    }
+                    if (existing.length == 2) {
+                        values[i] = existing[1 - index];
+                    } else {
+                        ClientSession[] remaining = new ClientSession[existing.length - 1];
+                        System.arraycopy(existing, 0, remaining, 0, index);
+                        System.arraycopy(existing, index + 1, remaining, index, existing.length - index - 1);
+                        values[i] = remaining;
+                    }
+                    sessions--;
+                    return existing.length - 1;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * 删除槽位，并把后续探测链上的条目前移填补空位（不使用墓碑，表不会因反复上下线而退化）
+         */
+        private void removeAt(int i) {
+            int mask = keys.length - 1;
+            values[i] = null;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (values[j] == null) {
+                    return;
+                }
+                int home = hash(keys[j]) & mask;
+                // home 落在 (i, j] 区间内的条目不能前移
+                boolean inRange = i <= j ? (home > i && home <= j) : (home > i || home <= j);
+                if (!inRange) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    values[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            long[] newKeys = new long[oldKeys.length * 2];
+            Object[] newValues = new Object[oldValues.length * 2];
+            int mask = newKeys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] == null) {
+                    continue;
+                }
+                int j = hash(oldKeys[i]) & mask;
+                while (newValues[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                newKeys[j] = oldKeys[i];
+                newValues[j] = oldValues[i];
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+    }
+}
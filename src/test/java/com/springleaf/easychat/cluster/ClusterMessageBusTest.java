@@ -0,0 +1,247 @@
+package com.springleaf.easychat.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springleaf.easychat.cache.GroupMemberCache;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import com.springleaf.easychat.enums.ConversationTypeEnum;
+import com.springleaf.easychat.mapper.GroupMemberMapper;
+import com.springleaf.easychat.model.vo.MessageVO;
+import com.springleaf.easychat.service.UnreadService;
+import com.springleaf.easychat.support.EmbeddedRedis;
+import com.springleaf.easychat.utils.ConversationIdUtil;
+import com.springleaf.easychat.websocket.ClientSession;
+import com.springleaf.easychat.websocket.DeliveryAckManager;
+import com.springleaf.easychat.websocket.MessagePusher;
+import com.springleaf.easychat.websocket.OnlineGroupIndex;
+import com.springleaf.easychat.websocket.OutboundDispatcher;
+import com.springleaf.easychat.websocket.SessionRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 两个节点之间的消息路由测试（嵌入式 Redis）：每个节点有独立的连接、订阅、会话注册表与推送器
+ * 用户 1 连接在 node-a，用户 2 连接在 node-b；另有存活但没有相关用户的 node-c
+ */
+class ClusterMessageBusTest {
+
+    private static final long USER_A = 1L;
+    private static final long USER_B = 2L;
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final List<String> publishedChannels = new CopyOnWriteArrayList<>();
+    private RedisMessageListenerContainer recorder;
+    private LettuceConnectionFactory recorderFactory;
+    private Node nodeA;
+    private Node nodeB;
+    private Node nodeC;
+    private ClientSession senderA;
+    private ClientSession senderB;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        EmbeddedRedis.flushAll();
+        nodeA = new Node("node-a");
+        nodeB = new Node("node-b");
+        nodeC = new Node("node-c");
+        // 第一轮注册所有节点，第二轮刷新各节点的存活节点列表
+        for (int round = 0; round < 2; round++) {
+            for (Node node : nodes) {
+                node.clusterNode.heartbeat();
+            }
+        }
+        senderA = nodeA.connect(USER_A);
+        senderB = nodeB.connect(USER_B);
+
+        // 记录所有节点频道上的发布（与各节点的订阅互不影响）
+        CountDownLatch subscribed = new CountDownLatch(1);
+        recorderFactory = EmbeddedRedis.newConnectionFactory();
+        recorder = new RedisMessageListenerContainer();
+        recorder.setConnectionFactory(recorderFactory);
+        recorder.afterPropertiesSet();
+        recorder.start();
+        recorder.addMessageListener((message, pattern) ->
+                        publishedChannels.add(new String(message.getChannel(), StandardCharsets.UTF_8)),
+                new PatternTopic(RedisKeyConstants.getNodeChannel("*")));
+        // 订阅在后台建立，发一条探测消息确认已生效后再开始
+        recorder.addMessageListener((message, pattern) -> subscribed.countDown(), new PatternTopic("probe"));
+        while (!subscribed.await(50, TimeUnit.MILLISECONDS)) {
+            nodeA.redis.convertAndSend("probe", "1");
+        }
+        for (Node node : nodes) {
+            node.awaitSubscribed();
+        }
+        // 探测消息全部到达后再记录基线
+        Thread.sleep(100);
+        publishedChannels.clear();
+        for (Node node : nodes) {
+            node.markBaseline();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        recorder.destroy();
+        recorderFactory.destroy();
+        for (Node node : nodes) {
+            node.close();
+        }
+    }
+
+    @Test
+    void messageForUserOnAnotherNodeIsPublishedOnlyToThatNode() {
+        MessageVO messageVO = message(100L, USER_A, USER_B);
+        nodeA.messagePusher.pushMessage(messageVO, senderA);
+
+        // node-b 把帧投递给用户 2 的连接
+        WebSocketMessage<?> frame = nodeB.awaitSent(USER_B);
+        assertThat(new String(((TextMessage) frame).asBytes(), StandardCharsets.UTF_8)).contains("\"id\":\"100\"");
+
+        // 只发布到 node-b 的频道一次，node-a、node-c 没有投递
+        assertThat(publishedChannels).containsExactly(RedisKeyConstants.getNodeChannel("node-b"));
+        assertThat(nodeA.published()).isEqualTo(1);
+        assertThat(nodeB.received()).isEqualTo(1);
+        assertThat(nodeC.received()).isZero();
+        verify(nodeA.outboundDispatcher, never()).send(any(), any());
+        verify(nodeC.outboundDispatcher, never()).send(any(), any());
+        // 接收者在其他节点在线，由该节点决定是否计入未读；发送节点查询其活跃会话后增加未读数
+        verify(nodeA.unreadService).batchIncrementUnread(List.of(USER_B), messageVO.getConversationId());
+    }
+
+    @Test
+    void replyFromTheOtherNodeIsRoutedBack() {
+        nodeB.messagePusher.pushMessage(message(200L, USER_B, USER_A), senderB);
+
+        nodeA.awaitSent(USER_A);
+        assertThat(publishedChannels).containsExactly(RedisKeyConstants.getNodeChannel("node-a"));
+        verify(nodeB.outboundDispatcher, never()).send(any(), any());
+    }
+
+    private static MessageVO message(long id, long senderId, long receiverId) {
+        MessageVO messageVO = new MessageVO();
+        messageVO.setId(id);
+        messageVO.setConversationId(ConversationIdUtil.generateSingleChatId(senderId, receiverId));
+        messageVO.setConversationType(ConversationTypeEnum.SINGLE.getCode());
+        messageVO.setSenderId(senderId);
+        messageVO.setMessageType(1);
+        messageVO.setContent("hello");
+        return messageVO;
+    }
+
+    /**
+     * 一个节点：独立的连接工厂与订阅容器，其余组件与应用中的装配一致
+     */
+    private class Node {
+
+        final LettuceConnectionFactory connectionFactory = EmbeddedRedis.newConnectionFactory();
+        final StringRedisTemplate redis = new StringRedisTemplate(connectionFactory);
+        final RedisMessageListenerContainer listenerContainer = new RedisMessageListenerContainer();
+        final ClusterNode clusterNode;
+        final PresenceService presenceService;
+        final SessionRegistry sessionRegistry = new SessionRegistry();
+        final OutboundDispatcher outboundDispatcher = mock(OutboundDispatcher.class);
+        final UnreadService unreadService = mock(UnreadService.class);
+        final ClusterMessageBus clusterMessageBus;
+        final MessagePusher messagePusher;
+        long publishedBase;
+        long receivedBase;
+
+        Node(String nodeId) {
+            EasyChatProperties properties = new EasyChatProperties();
+            properties.getCluster().setNodeId(nodeId);
+            clusterNode = new ClusterNode(redis, properties);
+            presenceService = new PresenceService(redis, clusterNode, properties);
+            presenceService.init();
+
+            listenerContainer.setConnectionFactory(connectionFactory);
+            listenerContainer.afterPropertiesSet();
+            listenerContainer.start();
+            when(outboundDispatcher.send(any(), any())).thenReturn(true);
+            DeliveryAckManager deliveryAckManager = new DeliveryAckManager(outboundDispatcher, properties);
+            ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+            clusterMessageBus = new ClusterMessageBus(redis, listenerContainer, clusterNode, sessionRegistry,
+                    deliveryAckManager, objectMapper);
+            clusterMessageBus.subscribe();
+
+            GroupMemberCache groupMemberCache = mock(GroupMemberCache.class);
+            messagePusher = new MessagePusher(groupMemberCache, objectMapper, unreadService, sessionRegistry,
+                    clusterNode, presenceService, clusterMessageBus,
+                    new OnlineGroupIndex(mock(GroupMemberMapper.class), groupMemberCache, sessionRegistry),
+                    deliveryAckManager);
+            nodes.add(this);
+        }
+
+        ClientSession connect(long userId) {
+            WebSocketSession webSocketSession = mock(WebSocketSession.class);
+            when(webSocketSession.isOpen()).thenReturn(true);
+            ClientSession clientSession = new ClientSession(userId, webSocketSession);
+            sessionRegistry.register(clientSession);
+            presenceService.markOnline(userId);
+            return clientSession;
+        }
+
+        /**
+         * 发送广播探测，本节点收到即说明订阅已建立
+         */
+        void awaitSubscribed() throws InterruptedException {
+            long received = clusterMessageBus.getReceivedCount();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (clusterMessageBus.getReceivedCount() == received) {
+                assertThat(System.nanoTime()).isLessThan(deadline);
+                clusterMessageBus.broadcastEviction("probe", List.of());
+                Thread.sleep(20);
+            }
+        }
+
+        void markBaseline() {
+            publishedBase = clusterMessageBus.getPublishedCount();
+            receivedBase = clusterMessageBus.getReceivedCount();
+        }
+
+        long published() {
+            return clusterMessageBus.getPublishedCount() - publishedBase;
+        }
+
+        long received() {
+            return clusterMessageBus.getReceivedCount() - receivedBase;
+        }
+
+        WebSocketMessage<?> awaitSent(long userId) {
+            ArgumentCaptor<ClientSession> session = ArgumentCaptor.forClass(ClientSession.class);
+            ArgumentCaptor<WebSocketMessage<?>> frame = ArgumentCaptor.forClass(WebSocketMessage.class);
+            verify(outboundDispatcher, timeout(5000)).send(session.capture(), frame.capture());
+            assertThat(session.getValue().getUserId()).isEqualTo(userId);
+            return frame.getValue();
+        }
+
+        void close() throws Exception {
+            listenerContainer.destroy();
+            presenceService.shutdown();
+            connectionFactory.destroy();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.springleaf.easychat.cluster;
+
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import com.springleaf.easychat.support.EmbeddedRedis;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 在线位图查询的测试
+ * 本节点为 node-a，存活的其他节点为 node-b、node-c，node-d 已宕机（位图尚未过期）
+ */
+class PresenceServiceTest {
+
+    private StringRedisTemplate redis;
+    private PresenceService presenceService;
+
+    @BeforeEach
+    void setUp() {
+        EmbeddedRedis.flushAll();
+        redis = EmbeddedRedis.template();
+        ClusterNode clusterNode = mock(ClusterNode.class);
+        when(clusterNode.getNodeId()).thenReturn("node-a");
+        when(clusterNode.getAliveNodes()).thenReturn(Set.of("node-a", "node-b", "node-c"));
+        presenceService = new PresenceService(redis, clusterNode, new EasyChatProperties());
+    }
+
+    @Test
+    void remoteNodesExcludeLocalAndDeadNodes() {
+        presenceService.markOnline(1L);
+        setBit("node-b", 1L);
+        setBit("node-b", 2L);
+        setBit("node-c", 2L);
+        setBit("node-d", 3L);
+        presenceService.markOnline(4L);
+
+        Map<Long, Set<String>> nodes = presenceService.getRemoteNodes(List.of(1L, 2L, 3L, 4L, 5L));
+
+        assertThat(nodes).containsOnlyKeys(1L, 2L);
+        assertThat(nodes.get(1L)).containsExactly("node-b");
+        assertThat(nodes.get(2L)).containsExactlyInAnyOrder("node-b", "node-c");
+    }
+
+    @Test
+    void remoteNodesAcrossBatches() {
+        // 超过单条 BITFIELD 的 500 个用户，跨批次的结果按用户对齐
+        List<Long> userIds = new ArrayList<>();
+        for (long userId = 1; userId <= 1201; userId++) {
+            userIds.add(userId);
+            if (userId % 100 == 0) {
+                setBit("node-c", userId);
+            }
+        }
+        setBit("node-b", 1201L);
+
+        Map<Long, Set<String>> nodes = presenceService.getRemoteNodes(userIds);
+
+        assertThat(nodes).hasSize(13);
+        for (long userId = 100; userId <= 1200; userId += 100) {
+            assertThat(nodes.get(userId)).containsExactly("node-c");
+        }
+        assertThat(nodes.get(1201L)).containsExactly("node-b");
+    }
+
+    @Test
+    void onlineUsersIncludeLocalNode() {
+        presenceService.markOnline(1L);
+        setBit("node-b", 2L);
+        setBit("node-d", 3L);
+        presenceService.markOnline(4L);
+        presenceService.markOffline(4L);
+
+        assertThat(presenceService.getOnlineUsers(List.of(1L, 2L, 3L, 4L))).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(presenceService.getRemoteNodes(List.of())).isEmpty();
+    }
+
+    private void setBit(String node, long userId) {
+        redis.opsForValue().setBit(RedisKeyConstants.getPresenceNodeKey(node), userId, true);
+    }
+}
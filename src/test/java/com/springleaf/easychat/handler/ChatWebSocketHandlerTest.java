@@ -0,0 +1,134 @@
+package com.springleaf.easychat.handler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springleaf.easychat.cluster.ClusterNode;
+import com.springleaf.easychat.cluster.PresenceService;
+import com.springleaf.easychat.cluster.UserRouteService;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import com.springleaf.easychat.constants.WebSocketConstants;
+import com.springleaf.easychat.service.MessageService;
+import com.springleaf.easychat.support.EmbeddedRedis;
+import com.springleaf.easychat.websocket.ActiveChatTracker;
+import com.springleaf.easychat.websocket.DeliveryAckManager;
+import com.springleaf.easychat.websocket.DeliveryReceiptPublisher;
+import com.springleaf.easychat.websocket.FanoutExecutor;
+import com.springleaf.easychat.websocket.HeartbeatMonitor;
+import com.springleaf.easychat.websocket.MessagePusher;
+import com.springleaf.easychat.websocket.OnlineGroupIndex;
+import com.springleaf.easychat.websocket.OutboundDispatcher;
+import com.springleaf.easychat.websocket.SessionRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 连接生命周期的测试：会话注册表与路由、在线位图保持一致
+ * 路由与在线位图使用嵌入式 Redis，本节点为 node-a
+ */
+class ChatWebSocketHandlerTest {
+
+    private static final long USER_ID = 1L;
+    private static final String NODE_ID = "node-a";
+
+    private StringRedisTemplate redis;
+    private SessionRegistry sessionRegistry;
+    private ChatWebSocketHandler handler;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        EmbeddedRedis.flushAll();
+        redis = EmbeddedRedis.template();
+        ClusterNode clusterNode = mock(ClusterNode.class);
+        when(clusterNode.getNodeId()).thenReturn(NODE_ID);
+        sessionRegistry = new SessionRegistry();
+        handler = new ChatWebSocketHandler(mock(MessageService.class), new ObjectMapper(),
+                mock(FanoutExecutor.class), mock(OutboundDispatcher.class), sessionRegistry,
+                mock(MessagePusher.class), new UserRouteService(redis, clusterNode), mock(OnlineGroupIndex.class),
+                mock(DeliveryAckManager.class), mock(DeliveryReceiptPublisher.class), mock(ActiveChatTracker.class),
+                mock(HeartbeatMonitor.class), new PresenceService(redis, clusterNode, new EasyChatProperties()));
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void lastDisconnectRemovesRouteAndPresence() throws Exception {
+        WebSocketSession first = session();
+        WebSocketSession second = session();
+        handler.afterConnectionEstablished(first);
+        handler.afterConnectionEstablished(second);
+
+        handler.afterConnectionClosed(first, CloseStatus.NORMAL);
+        assertOnline(true);
+
+        handler.afterConnectionClosed(second, CloseStatus.NORMAL);
+        // 重复的关闭事件不影响状态
+        handler.afterConnectionClosed(second, CloseStatus.NORMAL);
+        assertOnline(false);
+    }
+
+    @Test
+    void concurrentConnectAndLastDisconnectKeepUserOnline() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        WebSocketSession previous = session();
+        handler.afterConnectionEstablished(previous);
+        for (int i = 0; i < 200; i++) {
+            // 旧连接断开（最后一个连接）与新连接建立同时发生，结束后用户仍在线
+            WebSocketSession next = session();
+            WebSocketSession closing = previous;
+            Future<?> connect = executor.submit(() -> {
+                barrier.await();
+                handler.afterConnectionEstablished(next);
+                return null;
+            });
+            Future<?> disconnect = executor.submit(() -> {
+                barrier.await();
+                handler.afterConnectionClosed(closing, CloseStatus.NORMAL);
+                return null;
+            });
+            connect.get(5, TimeUnit.SECONDS);
+            disconnect.get(5, TimeUnit.SECONDS);
+
+            assertThat(sessionRegistry.getSessions(USER_ID)).hasSize(1);
+            assertOnline(true);
+            previous = next;
+        }
+        handler.afterConnectionClosed(previous, CloseStatus.NORMAL);
+        assertOnline(false);
+    }
+
+    private void assertOnline(boolean online) {
+        assertThat(redis.opsForSet().isMember(RedisKeyConstants.getRouteKey(USER_ID), NODE_ID)).isEqualTo(online);
+        assertThat(redis.opsForValue().getBit(RedisKeyConstants.getPresenceNodeKey(NODE_ID), USER_ID)).isEqualTo(online);
+        assertThat(sessionRegistry.isUserOnline(USER_ID)).isEqualTo(online);
+    }
+
+    private static WebSocketSession session() {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(WebSocketConstants.ATTR_USER_ID, USER_ID);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getAttributes()).thenReturn(attributes);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+}
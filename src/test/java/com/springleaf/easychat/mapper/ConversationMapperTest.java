@@ -0,0 +1,106 @@
+package com.springleaf.easychat.mapper;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.test.autoconfigure.MybatisPlusTest;
+import com.springleaf.easychat.model.entity.Conversation;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 会话最后消息批量写入（INSERT ... ON DUPLICATE KEY UPDATE）测试
+ */
+@MybatisPlusTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ConversationMapperTest {
+
+    private static final String CONVERSATION_ID = "g_1";
+    private static final LocalDateTime T1 = LocalDateTime.of(2026, 1, 1, 10, 0);
+    private static final LocalDateTime T2 = T1.plusMinutes(1);
+
+    @Resource
+    private ConversationMapper conversationMapper;
+
+    @Test
+    void insertsMissingRows() {
+        conversationMapper.batchUpsertLastMessage(List.of(row(1L, 100L, T1), row(2L, 100L, T1)));
+
+        Conversation conversation = find(1L);
+        assertThat(conversation.getLastMessageId()).isEqualTo(100L);
+        assertThat(conversation.getLastMessageTime()).isEqualTo(T1);
+        assertThat(conversation.getStatus()).isEqualTo(1);
+        assertThat(conversation.getPinned()).isFalse();
+        assertThat(conversation.getMuted()).isFalse();
+        assertThat(find(2L).getLastMessageId()).isEqualTo(100L);
+    }
+
+    @Test
+    void updatesExistingAndInsertsNewRowsInOneBatch() {
+        conversationMapper.batchUpsertLastMessage(List.of(row(1L, 100L, T1)));
+
+        conversationMapper.batchUpsertLastMessage(List.of(row(1L, 200L, T2), row(2L, 200L, T2)));
+
+        assertThat(find(1L).getLastMessageId()).isEqualTo(200L);
+        assertThat(find(1L).getLastMessageTime()).isEqualTo(T2);
+        assertThat(find(2L).getLastMessageId()).isEqualTo(200L);
+        assertThat(conversationMapper.selectCount(null)).isEqualTo(2);
+    }
+
+    @Test
+    void olderMessageDoesNotRegressLastMessage() {
+        conversationMapper.batchUpsertLastMessage(List.of(row(1L, 200L, T2)));
+
+        // 并发发送时先生成ID的消息后提交
+        conversationMapper.batchUpsertLastMessage(List.of(row(1L, 100L, T1)));
+
+        Conversation conversation = find(1L);
+        assertThat(conversation.getLastMessageId()).isEqualTo(200L);
+        assertThat(conversation.getLastMessageTime()).isEqualTo(T2);
+    }
+
+    @Test
+    void restoresDeletedConversationAndKeepsSettings() {
+        conversationMapper.batchUpsertLastMessage(List.of(row(1L, 100L, T1)));
+        Conversation settings = new Conversation();
+        settings.setStatus(0);
+        settings.setPinned(true);
+        settings.setMuted(true);
+        conversationMapper.update(settings, byUser(1L));
+
+        conversationMapper.batchUpsertLastMessage(List.of(row(1L, 200L, T2)));
+
+        Conversation conversation = find(1L);
+        assertThat(conversation.getStatus()).isEqualTo(1);
+        assertThat(conversation.getPinned()).isTrue();
+        assertThat(conversation.getMuted()).isTrue();
+        assertThat(conversation.getLastMessageId()).isEqualTo(200L);
+    }
+
+    private Conversation find(Long userId) {
+        return conversationMapper.selectOne(byUser(userId));
+    }
+
+    private static LambdaQueryWrapper<Conversation> byUser(Long userId) {
+        return new LambdaQueryWrapper<Conversation>()
+                .eq(Conversation::getUserId, userId)
+                .eq(Conversation::getConversationId, CONVERSATION_ID);
+    }
+
+    private static Conversation row(Long userId, Long lastMessageId, LocalDateTime lastMessageTime) {
+        Conversation conversation = new Conversation();
+        conversation.setConversationId(CONVERSATION_ID);
+        conversation.setType(2);
+        conversation.setUserId(userId);
+        conversation.setTargetId(1L);
+        conversation.setLastMessageId(lastMessageId);
+        conversation.setLastMessageTime(lastMessageTime);
+        return conversation;
+    }
+}
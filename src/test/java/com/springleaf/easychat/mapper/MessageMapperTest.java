@@ -0,0 +1,156 @@
+package com.springleaf.easychat.mapper;
+
+import com.baomidou.mybatisplus.test.autoconfigure.MybatisPlusTest;
+import com.springleaf.easychat.model.entity.Message;
+import jakarta.annotation.Resource;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 历史消息游标查询（selectOlder / selectNewer）边界测试，以及执行计划检查
+ * 会话中有消息 1~7，其中 4 已删除
+ *
+ * H2 只能验证使用了 idx_conv_id（H2 仅在排序列是索引最左列时才省去排序，无法体现 MySQL 中的“无 filesort”）；
+ * MySQL 兼容库（MariaDB 11.4，10 万条消息、200 个会话）上的 EXPLAIN：三种查询均为 key=idx_conv_id
+ * （首页 type=ref，带游标 type=range），Extra 为 Using where / Using index condition，没有 Using filesort；
+ * 改用 uk_conv_seq 时为 Using filesort
+ */
+@MybatisPlusTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class MessageMapperTest {
+
+    private static final String CONVERSATION_ID = "s_1_2";
+    private static final long DELETED_ID = 4L;
+
+    @Resource
+    private MessageMapper messageMapper;
+
+    @Resource
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Resource
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        for (long id = 1; id <= 7; id++) {
+            insert(CONVERSATION_ID, id, id == DELETED_ID ? 2 : 1);
+        }
+        // 其他会话的消息不应出现在结果中
+        insert("s_1_3", 100L, 1);
+    }
+
+    @Test
+    void selectOlderWithoutCursorReturnsLatestFirst() {
+        assertThat(ids(messageMapper.selectOlder(CONVERSATION_ID, null, 3))).containsExactly(7L, 6L, 5L);
+    }
+
+    @Test
+    void selectOlderExcludesTheCursorItself() {
+        assertThat(ids(messageMapper.selectOlder(CONVERSATION_ID, 6L, 1))).containsExactly(5L);
+    }
+
+    @Test
+    void selectOlderSkipsDeletedRowsWithoutShrinkingThePage() {
+        assertThat(ids(messageMapper.selectOlder(CONVERSATION_ID, 6L, 3))).containsExactly(5L, 3L, 2L);
+    }
+
+    @Test
+    void selectOlderOnTheCursorOfADeletedRowContinuesBelowIt() {
+        assertThat(ids(messageMapper.selectOlder(CONVERSATION_ID, DELETED_ID, 2))).containsExactly(3L, 2L);
+    }
+
+    @Test
+    void selectOlderLastPageIsShortThenEmpty() {
+        List<Message> lastPage = messageMapper.selectOlder(CONVERSATION_ID, 3L, 5);
+        assertThat(ids(lastPage)).containsExactly(2L, 1L);
+
+        assertThat(messageMapper.selectOlder(CONVERSATION_ID, 1L, 5)).isEmpty();
+    }
+
+    @Test
+    void selectNewerExcludesTheCursorAndSkipsDeletedRows() {
+        assertThat(ids(messageMapper.selectNewer(CONVERSATION_ID, 3L, 2))).containsExactly(5L, 6L);
+    }
+
+    @Test
+    void selectNewerLastPageIsShortThenEmpty() {
+        assertThat(ids(messageMapper.selectNewer(CONVERSATION_ID, 5L, 5))).containsExactly(6L, 7L);
+
+        assertThat(messageMapper.selectNewer(CONVERSATION_ID, 7L, 5)).isEmpty();
+    }
+
+    @Test
+    void olderAndNewerPagesMeetWithoutGapOrOverlap() {
+        // 以同一条消息为界向两侧翻页，合起来恰好是除已删除外的全部消息
+        List<Long> older = ids(messageMapper.selectOlder(CONVERSATION_ID, 5L, 10));
+        List<Long> newer = ids(messageMapper.selectNewer(CONVERSATION_ID, 4L, 10));
+
+        assertThat(older).containsExactly(3L, 2L, 1L);
+        assertThat(newer).containsExactly(5L, 6L, 7L);
+    }
+
+    @Test
+    void cursorQueriesUseTheConversationIdIndex() throws SQLException {
+        // 执行映射语句实际生成的 SQL，而不是手写一份
+        String older = explain("selectOlder", Map.of("conversationId", CONVERSATION_ID, "beforeId", 5L, "limit", 3));
+        assertThat(older).contains("public.idx_conv_id: conversation_id = ?1 AND id < ?2 */");
+
+        String latest = explain("selectOlder", Map.of("conversationId", CONVERSATION_ID, "limit", 3));
+        assertThat(latest).contains("public.idx_conv_id: conversation_id = ?1 */");
+
+        String newer = explain("selectNewer", Map.of("conversationId", CONVERSATION_ID, "afterId", 2L, "limit", 3));
+        assertThat(newer).contains("public.idx_conv_id: conversation_id = ?1 AND id > ?2 */");
+    }
+
+    private String explain(String statement, Map<String, Object> params) throws SQLException {
+        BoundSql boundSql = sqlSessionFactory.getConfiguration()
+                .getMappedStatement(MessageMapper.class.getName() + "." + statement)
+                .getBoundSql(new HashMap<>(params));
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement("EXPLAIN " + boundSql.getSql())) {
+            List<ParameterMapping> mappings = boundSql.getParameterMappings();
+            for (int i = 0; i < mappings.size(); i++) {
+                ps.setObject(i + 1, params.get(mappings.get(i).getProperty()));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                assertThat(rs.next()).isTrue();
+                // 执行计划中的索引条件跨行，统一为单个空格便于比较
+                return rs.getString(1).replaceAll("\\s+", " ");
+            }
+        }
+    }
+
+    private void insert(String conversationId, long id, int status) {
+        Message message = new Message();
+        message.setId(id);
+        message.setConversationId(conversationId);
+        message.setSeq(id);
+        message.setSenderId(1L);
+        message.setMessageType(1);
+        message.setContent("m" + id);
+        message.setStatus(status);
+        messageMapper.insert(message);
+    }
+
+    private static List<Long> ids(List<Message> messages) {
+        return messages.stream().map(Message::getId).toList();
+    }
+}
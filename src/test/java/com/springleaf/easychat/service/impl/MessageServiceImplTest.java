@@ -0,0 +1,348 @@
+package com.springleaf.easychat.service.impl;
+
+import com.baomidou.mybatisplus.test.autoconfigure.MybatisPlusTest;
+import com.springleaf.easychat.cache.GroupMemberCache;
+import com.springleaf.easychat.cache.GroupMemberSnapshot;
+import com.springleaf.easychat.cache.RecentMessageCache;
+import com.springleaf.easychat.cache.UserProfile;
+import com.springleaf.easychat.cache.UserProfileCache;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.config.MybatisPlusConfig;
+import com.springleaf.easychat.enums.ConversationTypeEnum;
+import com.springleaf.easychat.enums.GroupMemberStatusEnum;
+import com.springleaf.easychat.id.MessageIdGenerator;
+import com.springleaf.easychat.mapper.ConversationMapper;
+import com.springleaf.easychat.mapper.MessageMapper;
+import com.springleaf.easychat.exception.BusinessException;
+import com.springleaf.easychat.model.dto.MessageHistoryDTO;
+import com.springleaf.easychat.model.dto.MessageSyncDTO;
+import com.springleaf.easychat.model.dto.SendMessageDTO;
+import com.springleaf.easychat.model.entity.Conversation;
+import com.springleaf.easychat.model.entity.GroupMember;
+import com.springleaf.easychat.model.entity.Message;
+import com.springleaf.easychat.model.vo.MessageSyncVO;
+import com.springleaf.easychat.model.vo.MessageVO;
+import com.springleaf.easychat.service.SequenceService;
+import com.springleaf.easychat.service.UnreadService;
+import com.springleaf.easychat.utils.UserContextUtil;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.MockedStatic;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 消息服务的历史消息、重连同步查询与群消息发送者校验测试（H2 MySQL 模式，每个用例在回滚的事务中执行）
+ */
+@MybatisPlusTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(MybatisPlusConfig.class)
+class MessageServiceImplTest {
+
+    private static final long USER_ID = 1L;
+    private static final String CONV_A = "s_1_2";
+    private static final String CONV_B = "s_1_3";
+
+    @Resource
+    private ConversationMapper conversationMapper;
+
+    @Resource
+    private MessageMapper messageMapper;
+
+    private SequenceService sequenceService;
+    private UnreadService unreadService;
+    private GroupMemberCache groupMemberCache;
+    private UserProfileCache userProfileCache;
+    private MessageWriter messageWriter;
+    private MessageServiceImpl messageService;
+    private MockedStatic<UserContextUtil> userContext;
+
+    @BeforeEach
+    void setUp() {
+        sequenceService = mock(SequenceService.class);
+        unreadService = mock(UnreadService.class);
+        // 默认计数器都不存在，逐个会话查库
+        when(sequenceService.currentSeqs(anyList())).thenReturn(Map.of());
+        // 最近消息缓存总是未命中，历史消息都从数据库查询
+        RecentMessageCache recentMessageCache = mock(RecentMessageCache.class);
+        when(recentMessageCache.getLatest(anyString(), anyInt(), anyLong())).thenReturn(null);
+        userProfileCache = mock(UserProfileCache.class);
+        when(userProfileCache.getAll(anyList())).thenReturn(Map.of());
+        groupMemberCache = mock(GroupMemberCache.class);
+        messageWriter = mock(MessageWriter.class);
+        messageService = new MessageServiceImpl(userProfileCache, conversationMapper, groupMemberCache,
+                unreadService, new EasyChatProperties(), mock(MessageIdGenerator.class),
+                sequenceService, messageWriter, recentMessageCache);
+        ReflectionTestUtils.setField(messageService, "baseMapper", messageMapper);
+
+        userContext = mockStatic(UserContextUtil.class);
+        userContext.when(UserContextUtil::getCurrentUserId).thenReturn(USER_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userContext.close();
+    }
+
+    @ParameterizedTest
+    @CsvSource({"10, 20, ", "10, , 20", ", 10, 20", "10, 20, 30"})
+    void historyRejectsMoreThanOneCursorBeforeTouchingUnread(Long lastMessageId, Long afterMessageId, Long aroundMessageId) {
+        MessageHistoryDTO dto = history(lastMessageId, afterMessageId, aroundMessageId, 20);
+
+        assertThatThrownBy(() -> messageService.getMessageHistory(dto))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("只能指定一个");
+        verifyNoInteractions(unreadService);
+    }
+
+    @Test
+    void historyWithoutCursorReturnsLatestPage() {
+        insertHistory();
+
+        assertThat(ids(messageService.getMessageHistory(history(null, null, null, 3)))).containsExactly(7L, 6L, 5L);
+    }
+
+    @Test
+    void historyBeforeLastMessageIdExcludesItAndDeletedRows() {
+        insertHistory();
+
+        assertThat(ids(messageService.getMessageHistory(history(6L, null, null, 3)))).containsExactly(5L, 3L, 2L);
+    }
+
+    @Test
+    void historyAfterMessageIdReturnsNewerMessagesLatestFirst() {
+        insertHistory();
+
+        assertThat(ids(messageService.getMessageHistory(history(null, 3L, null, 2)))).containsExactly(6L, 5L);
+        assertThat(messageService.getMessageHistory(history(null, 7L, null, 2))).isEmpty();
+    }
+
+    @Test
+    void historyAroundMessageIdIncludesTargetAndBothSides() {
+        insertHistory();
+
+        assertThat(ids(messageService.getMessageHistory(history(null, null, 5L, 4)))).containsExactly(7L, 6L, 5L, 3L);
+    }
+
+    @Test
+    void historyAroundMessageIdNearTheStartFillsThePageWithNewerMessages() {
+        insertHistory();
+
+        assertThat(ids(messageService.getMessageHistory(history(null, null, 1L, 4)))).containsExactly(5L, 3L, 2L, 1L);
+    }
+
+    @Test
+    void syncReturnsLateCommittedMessagesWithLowerIds() {
+        insertConversation(CONV_A, 1);
+        insertMessage(10L, CONV_A, 1);
+        insertMessage(30L, CONV_A, 2);
+        // 较小的ID较晚写入（异步写入的提交顺序与ID顺序不一致），按ID做水位线会漏掉它
+        insertMessage(20L, CONV_A, 3);
+
+        MessageSyncVO result = messageService.syncMessages(sync(Map.of(CONV_A, 1L), 200));
+
+        assertThat(result.getMessages()).extracting(MessageVO::getId).containsExactly(30L, 20L);
+        assertThat(result.getSeqs()).containsExactly(Map.entry(CONV_A, 3L));
+        assertThat(result.getHasMore()).isFalse();
+    }
+
+    @Test
+    void syncPagesAcrossConversationsByMergingSeqs() {
+        insertConversation(CONV_A, 1);
+        insertConversation(CONV_B, 2);
+        for (int seq = 1; seq <= 3; seq++) {
+            insertMessage(100L + seq, CONV_A, seq);
+        }
+        for (int seq = 1; seq <= 2; seq++) {
+            insertMessage(200L + seq, CONV_B, seq);
+        }
+
+        MessageSyncVO first = messageService.syncMessages(sync(Map.of(), 4));
+        assertThat(first.getMessages()).extracting(MessageVO::getId).containsExactly(101L, 102L, 103L, 201L);
+        assertThat(first.getHasMore()).isTrue();
+
+        Map<String, Long> seqs = new HashMap<>(first.getSeqs());
+        MessageSyncVO second = messageService.syncMessages(sync(seqs, 4));
+        assertThat(second.getMessages()).extracting(MessageVO::getId).containsExactly(202L);
+        assertThat(second.getSeqs()).containsExactly(Map.entry(CONV_B, 2L));
+        assertThat(second.getHasMore()).isFalse();
+    }
+
+    @Test
+    void syncSkipsConversationsWhoseCounterIsCaughtUpAndDeletedMessages() {
+        insertConversation(CONV_A, 2);
+        insertConversation(CONV_B, 1);
+        insertMessage(101L, CONV_A, 1);
+        insertMessage(201L, CONV_B, 1);
+        Message deleted = insertMessage(202L, CONV_B, 2);
+        deleted.setStatus(2);
+        messageMapper.updateById(deleted);
+        // 会话 A 的计数器显示客户端已追平，不应再查询（此处让数据库里留一条以便区分）
+        when(sequenceService.currentSeqs(anyList())).thenReturn(Map.of(CONV_A, 0L, CONV_B, 2L));
+
+        MessageSyncVO result = messageService.syncMessages(sync(Map.of(), 200));
+
+        assertThat(result.getMessages()).extracting(MessageVO::getId).containsExactly(201L);
+        // 已删除的消息不返回，但水位线越过它，也不作为缺口
+        assertThat(result.getSeqs()).containsExactly(Map.entry(CONV_B, 2L));
+        assertThat(result.getGaps()).isEmpty();
+    }
+
+    @Test
+    void syncReportsSeqCommittedOutOfOrderAsGapUntilItLands() {
+        insertConversation(CONV_A, 1);
+        insertMessage(101L, CONV_A, 1);
+        // 序列号 3 先于 2 提交（2 仍在写入中）
+        insertMessage(103L, CONV_A, 3);
+
+        MessageSyncVO first = messageService.syncMessages(sync(Map.of(CONV_A, 1L), 200));
+        assertThat(first.getMessages()).extracting(MessageVO::getId).containsExactly(103L);
+        assertThat(first.getSeqs()).containsExactly(Map.entry(CONV_A, 3L));
+        assertThat(first.getGaps()).containsExactly(Map.entry(CONV_A, 2L));
+
+        // 序列号 2 随后提交；客户端按缺口把水位线降为 1 后再次同步，不会漏掉它
+        insertMessage(102L, CONV_A, 2);
+        MessageSyncVO second = messageService.syncMessages(sync(Map.of(CONV_A, first.getGaps().get(CONV_A) - 1), 200));
+        assertThat(second.getMessages()).extracting(MessageVO::getId).containsExactly(102L, 103L);
+        assertThat(second.getSeqs()).containsExactly(Map.entry(CONV_A, 3L));
+        assertThat(second.getGaps()).isEmpty();
+    }
+
+    @Test
+    void syncTreatsOldGapAsPermanentHole() {
+        insertConversation(CONV_A, 1);
+        insertMessage(101L, CONV_A, 1);
+        // 空号 2 之后的消息早已写入：2 是发送失败留下的空号，不再作为缺口
+        Message settled = insertMessage(103L, CONV_A, 3);
+        settled.setCreatedAt(LocalDateTime.now().minusMinutes(5));
+        messageMapper.updateById(settled);
+
+        MessageSyncVO result = messageService.syncMessages(sync(Map.of(), 200));
+
+        assertThat(result.getMessages()).extracting(MessageVO::getId).containsExactly(101L, 103L);
+        assertThat(result.getSeqs()).containsExactly(Map.entry(CONV_A, 3L));
+        assertThat(result.getGaps()).isEmpty();
+    }
+
+    @Test
+    void syncReturnsEmptyPageWhenUserHasNoConversations() {
+        MessageSyncVO result = messageService.syncMessages(sync(null, 200));
+
+        assertThat(result.getMessages()).isEmpty();
+        assertThat(result.getSeqs()).isEmpty();
+        assertThat(result.getHasMore()).isFalse();
+    }
+
+    /**
+     * 会话 A 中有消息 1~7，其中 4 已删除
+     */
+    @Test
+    void memberWhoQuitTheGroupCannotSendToIt() {
+        when(userProfileCache.get(USER_ID)).thenReturn(
+                new UserProfile(USER_ID, "u1", "u1", null, 1, null, null, null, null, null, null));
+        when(groupMemberCache.get(10L)).thenReturn(GroupMemberSnapshot.of(List.of(
+                groupMember(USER_ID, GroupMemberStatusEnum.QUIT), groupMember(2L, GroupMemberStatusEnum.NORMAL))));
+        SendMessageDTO dto = new SendMessageDTO();
+        dto.setSenderId(USER_ID);
+        dto.setConversationType(ConversationTypeEnum.GROUP.getCode());
+        dto.setGroupId(10L);
+        dto.setMessageType(1);
+        dto.setContent("hello");
+
+        assertThatThrownBy(() -> messageService.sendMessage(dto))
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("您不在该群组中");
+        verifyNoInteractions(messageWriter);
+    }
+
+    private static GroupMember groupMember(Long userId, GroupMemberStatusEnum status) {
+        GroupMember member = new GroupMember();
+        member.setGroupId(10L);
+        member.setUserId(userId);
+        member.setRole(1);
+        member.setStatus(status.getCode());
+        return member;
+    }
+
+    private void insertHistory() {
+        insertConversation(CONV_A, 1);
+        for (long id = 1; id <= 7; id++) {
+            Message message = insertMessage(id, CONV_A, id);
+            if (id == 4) {
+                message.setStatus(2);
+                messageMapper.updateById(message);
+            }
+        }
+    }
+
+    private static MessageHistoryDTO history(Long lastMessageId, Long afterMessageId, Long aroundMessageId, int size) {
+        MessageHistoryDTO dto = new MessageHistoryDTO();
+        dto.setConversationId(CONV_A);
+        dto.setLastMessageId(lastMessageId);
+        dto.setAfterMessageId(afterMessageId);
+        dto.setAroundMessageId(aroundMessageId);
+        dto.setSize(size);
+        return dto;
+    }
+
+    private static List<Long> ids(List<MessageVO> messages) {
+        return messages.stream().map(MessageVO::getId).toList();
+    }
+
+    private static MessageSyncDTO sync(Map<String, Long> seqs, int size) {
+        MessageSyncDTO dto = new MessageSyncDTO();
+        dto.setSeqs(seqs);
+        dto.setSize(size);
+        return dto;
+    }
+
+    /**
+     * 插入会话，minutesAgo 越小越靠前同步
+     */
+    private void insertConversation(String conversationId, int minutesAgo) {
+        Conversation conversation = new Conversation();
+        conversation.setConversationId(conversationId);
+        conversation.setType(1);
+        conversation.setUserId(USER_ID);
+        conversation.setTargetId(2L);
+        conversation.setLastMessageTime(LocalDateTime.now().minusMinutes(minutesAgo));
+        conversation.setStatus(1);
+        conversationMapper.insert(conversation);
+    }
+
+    private Message insertMessage(long id, String conversationId, long seq) {
+        Message message = new Message();
+        message.setId(id);
+        message.setConversationId(conversationId);
+        message.setSeq(seq);
+        message.setSenderId(2L);
+        message.setMessageType(1);
+        message.setContent("m" + id);
+        message.setStatus(1);
+        messageMapper.insert(message);
+        return message;
+    }
+}
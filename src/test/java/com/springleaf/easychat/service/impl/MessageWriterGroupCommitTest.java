@@ -0,0 +1,105 @@
+package com.springleaf.easychat.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.exception.BusinessException;
+import com.springleaf.easychat.mapper.ConversationMapper;
+import com.springleaf.easychat.mapper.GroupMapper;
+import com.springleaf.easychat.mapper.MessageMapper;
+import com.springleaf.easychat.model.entity.Message;
+import com.springleaf.easychat.service.SequenceService;
+import com.springleaf.easychat.wal.MessageWal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 组提交模式下等待超时的处理：已被提交线程取走的写入等待结果，仍在队列中的写入撤回后才报告超时
+ * 等待超时 100ms，每批 1 条，事务由 mock 模拟（阻塞到测试放行）
+ */
+class MessageWriterGroupCommitTest {
+
+    private TransactionTemplate transactionTemplate;
+    private CountDownLatch release;
+    private CountDownLatch committing;
+    private MessageWriter messageWriter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        EasyChatProperties properties = new EasyChatProperties();
+        properties.getGroupCommit().setEnabled(true);
+        properties.getGroupCommit().setMaxBatchSize(1);
+        properties.getGroupCommit().setWaitTimeoutMillis(100);
+        release = new CountDownLatch(1);
+        committing = new CountDownLatch(1);
+        transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> {
+            committing.countDown();
+            release.await();
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        messageWriter = new MessageWriter(mock(ConversationMapper.class), mock(GroupMapper.class), mock(MessageMapper.class),
+                transactionTemplate, new ObjectMapper(), mock(MessageWal.class), mock(SequenceService.class), properties);
+        messageWriter.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        release.countDown();
+        messageWriter.shutdown();
+    }
+
+    @Test
+    void writeTakenByCommitterWaitsForTheOutcomeInsteadOfTimingOut() throws Exception {
+        CompletableFuture<Void> write = CompletableFuture.runAsync(() ->
+                messageWriter.write(message(1L), new ArrayList<>(), null));
+        assertThat(committing.await(2, TimeUnit.SECONDS)).isTrue();
+
+        // 超过等待超时仍未返回失败：事务可能随后提交，报告失败会导致客户端重发
+        Thread.sleep(300);
+        assertThat(write).isNotDone();
+
+        release.countDown();
+        write.get(2, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void writeStillQueuedIsWithdrawnBeforeReportingTimeout() throws Exception {
+        // 第一条占住提交线程
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() ->
+                messageWriter.write(message(1L), new ArrayList<>(), null));
+        assertThat(committing.await(2, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> messageWriter.write(message(2L), new ArrayList<>(), null))
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("消息保存超时");
+
+        release.countDown();
+        first.get(2, TimeUnit.SECONDS);
+        messageWriter.shutdown();
+        // 撤回的写入不会再被提交
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+    }
+
+    private static Message message(Long id) {
+        Message message = new Message();
+        message.setId(id);
+        message.setConversationId("s_1_2");
+        message.setSeq(id);
+        return message;
+    }
+}
@@ -0,0 +1,139 @@
+package com.springleaf.easychat.service.impl;
+
+import com.baomidou.mybatisplus.test.autoconfigure.MybatisPlusTest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.mapper.ConversationMapper;
+import com.springleaf.easychat.mapper.GroupMapper;
+import com.springleaf.easychat.mapper.MessageMapper;
+import com.springleaf.easychat.model.entity.Message;
+import com.springleaf.easychat.service.SequenceService;
+import com.springleaf.easychat.wal.MessageWal;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 预写日志模式下序列号冲突的处理测试
+ * 写入在提交线程中以独立事务完成，因此测试方法不在事务中执行，数据在每个用例后清理
+ */
+@MybatisPlusTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MessageWriterWalTest {
+
+    private static final String CONVERSATION_ID = "s_1_2";
+
+    @Resource
+    private ConversationMapper conversationMapper;
+
+    @Resource
+    private GroupMapper groupMapper;
+
+    @Resource
+    private MessageMapper messageMapper;
+
+    @Resource
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path walDir;
+
+    private SequenceService sequenceService;
+    private MessageWal messageWal;
+    private MessageWriter messageWriter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        EasyChatProperties properties = new EasyChatProperties();
+        properties.getWal().setEnabled(true);
+        properties.getWal().setDir(walDir.toString());
+        properties.getWal().setSegmentSizeBytes(1024 * 1024);
+        properties.getWal().setRetryIntervalMillis(10);
+        ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+        sequenceService = mock(SequenceService.class);
+        messageWal = new MessageWal(properties);
+        messageWriter = new MessageWriter(conversationMapper, groupMapper, messageMapper,
+                new TransactionTemplate(transactionManager), objectMapper, messageWal, sequenceService, properties);
+        messageWriter.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        messageWriter.shutdown();
+        messageWal.close();
+        messageMapper.delete(null);
+    }
+
+    @Test
+    void reassignsSeqInsteadOfDroppingWhenSeqIsTaken() throws Exception {
+        // 计数器重建后，另一条消息已经以序列号 5 写入
+        messageMapper.insert(message(1L, 5L));
+        when(sequenceService.nextSeq(CONVERSATION_ID)).thenReturn(6L);
+
+        messageWriter.write(message(2L, 5L), new ArrayList<>(), null);
+
+        Message persisted = awaitPersisted(2L);
+        assertThat(persisted.getSeq()).isEqualTo(6L);
+        assertThat(messageMapper.selectById(1L).getSeq()).isEqualTo(5L);
+        assertThat(messageWriter.getStats()).containsEntry("walSeqReassigned", 1L).containsEntry("walSkipped", 0L);
+        verify(sequenceService).markPending(CONVERSATION_ID, 5L);
+        verify(sequenceService).markPending(CONVERSATION_ID, 6L);
+        verify(sequenceService).markPersisted(CONVERSATION_ID, 5L);
+        verify(sequenceService).markPersisted(CONVERSATION_ID, 6L);
+    }
+
+    @Test
+    void marksSeqPersistedAfterCommit() throws Exception {
+        messageWriter.write(message(3L, 1L), new ArrayList<>(), null);
+
+        assertThat(awaitPersisted(3L).getSeq()).isEqualTo(1L);
+        verify(sequenceService).markPending(CONVERSATION_ID, 1L);
+        verify(sequenceService).markPersisted(CONVERSATION_ID, 1L);
+    }
+
+    private Message awaitPersisted(Long id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            Message message = messageMapper.selectById(id);
+            if (message != null) {
+                // 提交后才标记，给提交线程一点时间
+                Thread.sleep(50);
+                return message;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("消息未写入: " + id);
+    }
+
+    private static Message message(Long id, Long seq) {
+        Message message = new Message();
+        message.setId(id);
+        message.setConversationId(CONVERSATION_ID);
+        message.setSeq(seq);
+        message.setSenderId(1L);
+        message.setMessageType(1);
+        message.setContent("hello");
+        message.setStatus(1);
+        return message;
+    }
+}
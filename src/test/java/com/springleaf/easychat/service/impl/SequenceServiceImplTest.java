@@ -0,0 +1,67 @@
+package com.springleaf.easychat.service.impl;
+
+import com.springleaf.easychat.mapper.MessageMapper;
+import com.springleaf.easychat.support.EmbeddedRedis;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 会话序列号计数器重建测试
+ */
+class SequenceServiceImplTest {
+
+    private static final String CONVERSATION_ID = "s_1_2";
+
+    private MessageMapper messageMapper;
+    private SequenceServiceImpl sequenceService;
+
+    @BeforeEach
+    void setUp() {
+        EmbeddedRedis.flushAll();
+        messageMapper = mock(MessageMapper.class);
+        sequenceService = new SequenceServiceImpl(EmbeddedRedis.template(), messageMapper);
+    }
+
+    @Test
+    void seedsFromDatabaseWhenCounterIsMissing() {
+        when(messageMapper.selectMaxSeq(CONVERSATION_ID)).thenReturn(5L);
+
+        assertThat(sequenceService.nextSeq(CONVERSATION_ID)).isEqualTo(6);
+        assertThat(sequenceService.nextSeq(CONVERSATION_ID)).isEqualTo(7);
+        verify(messageMapper, times(1)).selectMaxSeq(CONVERSATION_ID);
+    }
+
+    @Test
+    void seedsAbovePendingWalSeqsNotYetInDatabase() {
+        when(messageMapper.selectMaxSeq(CONVERSATION_ID)).thenReturn(5L);
+        sequenceService.markPending(CONVERSATION_ID, 8);
+        sequenceService.markPending(CONVERSATION_ID, 9);
+
+        assertThat(sequenceService.nextSeq(CONVERSATION_ID)).isEqualTo(10);
+    }
+
+    @Test
+    void persistingALowerSeqKeepsTheHigherPendingSeq() {
+        when(messageMapper.selectMaxSeq(CONVERSATION_ID)).thenReturn(8L);
+        sequenceService.markPending(CONVERSATION_ID, 8);
+        sequenceService.markPending(CONVERSATION_ID, 9);
+        sequenceService.markPersisted(CONVERSATION_ID, 8);
+
+        assertThat(sequenceService.nextSeq(CONVERSATION_ID)).isEqualTo(10);
+    }
+
+    @Test
+    void persistedSeqsNoLongerRaiseTheSeed() {
+        when(messageMapper.selectMaxSeq(CONVERSATION_ID)).thenReturn(3L);
+        sequenceService.markPending(CONVERSATION_ID, 9);
+        sequenceService.markPersisted(CONVERSATION_ID, 9);
+
+        assertThat(sequenceService.nextSeq(CONVERSATION_ID)).isEqualTo(4);
+    }
+}
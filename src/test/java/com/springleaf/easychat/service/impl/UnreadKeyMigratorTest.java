@@ -0,0 +1,126 @@
+package com.springleaf.easychat.service.impl;
+
+import com.springleaf.easychat.cluster.ClusterNode;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import com.springleaf.easychat.support.EmbeddedRedis;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 未读数 Key 迁移的幂等性测试
+ */
+class UnreadKeyMigratorTest {
+
+    private StringRedisTemplate redis;
+    private EasyChatProperties properties;
+    private ClusterNode clusterNode;
+    private final List<UnreadKeyMigrator> migrators = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        EmbeddedRedis.flushAll();
+        redis = EmbeddedRedis.template();
+        properties = new EasyChatProperties();
+        properties.getUnread().setStorage(EasyChatProperties.Unread.Storage.HASH);
+        properties.getUnread().setMigrateScanCount(2);
+        clusterNode = mock(ClusterNode.class);
+        when(clusterNode.getNodeId()).thenReturn("node-1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        migrators.forEach(UnreadKeyMigrator::stop);
+    }
+
+    @Test
+    void movesLegacyKeysIntoTheHashAndMarksDone() throws InterruptedException {
+        redis.opsForValue().set(RedisKeyConstants.getUnreadKey(1L, "s_1_2"), "3");
+        redis.opsForValue().set(RedisKeyConstants.getUnreadKey(1L, "g_10"), "5");
+        redis.opsForValue().set(RedisKeyConstants.getUnreadKey(2L, "s_1_2"), "1");
+
+        runToCompletion();
+
+        assertThat(hash(1L)).containsExactlyInAnyOrderEntriesOf(Map.of("s_1_2", "3", "g_10", "5"));
+        assertThat(hash(2L)).containsExactlyInAnyOrderEntriesOf(Map.of("s_1_2", "1"));
+        assertThat(redis.keys(RedisKeyConstants.UNREAD_LEGACY_PATTERN)).isEmpty();
+        assertThat(redis.hasKey(RedisKeyConstants.UNREAD_MIGRATION_DONE_KEY)).isTrue();
+        assertThat(redis.hasKey(RedisKeyConstants.UNREAD_MIGRATION_LOCK_KEY)).isFalse();
+    }
+
+    @Test
+    void rerunningAfterCompletionDoesNotCountTwice() throws InterruptedException {
+        redis.opsForValue().set(RedisKeyConstants.getUnreadKey(1L, "s_1_2"), "3");
+        runToCompletion();
+
+        // 完成标记丢失（例如被误删）后再次执行
+        redis.delete(RedisKeyConstants.UNREAD_MIGRATION_DONE_KEY);
+        runToCompletion();
+
+        assertThat(hash(1L)).containsExactlyInAnyOrderEntriesOf(Map.of("s_1_2", "3"));
+    }
+
+    @Test
+    void resumingAnInterruptedRunOnlyMovesTheRemainingKeys() throws InterruptedException {
+        // 上一次执行迁移了 s_1_2 后中断（锁已过期，没有完成标记），g_10 还是旧格式
+        redis.opsForHash().put(RedisKeyConstants.getUnreadHashKey(1L), "s_1_2", "3");
+        redis.opsForValue().set(RedisKeyConstants.getUnreadKey(1L, "g_10"), "5");
+
+        runToCompletion();
+
+        assertThat(hash(1L)).containsExactlyInAnyOrderEntriesOf(Map.of("s_1_2", "3", "g_10", "5"));
+    }
+
+    @Test
+    void legacyValueIsAddedToCountsWrittenInTheNewFormat() throws InterruptedException {
+        // 切换到 HASH 格式后、迁移前新增的未读数与旧 Key 中的未读数合并
+        redis.opsForHash().put(RedisKeyConstants.getUnreadHashKey(1L), "s_1_2", "2");
+        redis.opsForValue().set(RedisKeyConstants.getUnreadKey(1L, "s_1_2"), "3");
+
+        runToCompletion();
+
+        assertThat(hash(1L)).containsExactlyInAnyOrderEntriesOf(Map.of("s_1_2", "5"));
+    }
+
+    @Test
+    void nodeThatSeesTheDoneMarkerDoesNotMigrate() {
+        redis.opsForValue().set(RedisKeyConstants.UNREAD_MIGRATION_DONE_KEY, "1");
+        redis.opsForValue().set(RedisKeyConstants.getUnreadKey(1L, "s_1_2"), "3");
+
+        UnreadKeyMigrator migrator = newMigrator();
+        migrator.start();
+
+        assertThat(migrator.isCompleted()).isTrue();
+        assertThat(redis.hasKey(RedisKeyConstants.getUnreadKey(1L, "s_1_2"))).isTrue();
+    }
+
+    private void runToCompletion() throws InterruptedException {
+        UnreadKeyMigrator migrator = newMigrator();
+        migrator.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!migrator.isCompleted() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(migrator.isCompleted()).isTrue();
+    }
+
+    private UnreadKeyMigrator newMigrator() {
+        UnreadKeyMigrator migrator = new UnreadKeyMigrator(redis, clusterNode, properties);
+        migrators.add(migrator);
+        return migrator;
+    }
+
+    private Map<Object, Object> hash(long userId) {
+        return redis.opsForHash().entries(RedisKeyConstants.getUnreadHashKey(userId));
+    }
+}
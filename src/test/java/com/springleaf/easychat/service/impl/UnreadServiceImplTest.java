@@ -0,0 +1,220 @@
+package com.springleaf.easychat.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import com.springleaf.easychat.mapper.ConversationMapper;
+import com.springleaf.easychat.model.entity.Conversation;
+import com.springleaf.easychat.support.EmbeddedRedis;
+import com.springleaf.easychat.websocket.ActiveChatTracker;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * 未读总数（应用角标）与免打扰、过期、重建、删除会话的测试
+ * 用户 1 有会话 s_1_2 与免打扰的群 g_10
+ */
+class UnreadServiceImplTest {
+
+    private static final long USER_ID = 1L;
+    private static final String SINGLE = "s_1_2";
+    private static final String MUTED_GROUP = "g_10";
+
+    private StringRedisTemplate redis;
+    private ConversationMapper conversationMapper;
+    private UnreadServiceImpl unreadService;
+    private String totalKey;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // ConversationMapper 是 mock，Lambda 条件构造器需要的实体元数据手动初始化
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Conversation.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        EmbeddedRedis.flushAll();
+        redis = EmbeddedRedis.template();
+        conversationMapper = mock(ConversationMapper.class);
+        when(conversationMapper.selectList(any())).thenReturn(List.of(
+                conversation(SINGLE, false), conversation(MUTED_GROUP, true)));
+        unreadService = new UnreadServiceImpl(redis, completedMigrator(), conversationMapper,
+                mock(ActiveChatTracker.class), hashProperties());
+        totalKey = RedisKeyConstants.getUnreadTotalKey(USER_ID);
+    }
+
+    @Test
+    void mutedConversationIsNotCountedAndUnmuteAddsItBack() {
+        unreadService.incrementUnread(USER_ID, SINGLE);
+        unreadService.incrementUnread(USER_ID, MUTED_GROUP);
+        unreadService.incrementUnread(USER_ID, MUTED_GROUP);
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isEqualTo(1);
+
+        // 免打扰期间的新消息不计入
+        unreadService.incrementUnread(USER_ID, MUTED_GROUP);
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isEqualTo(1);
+
+        setMuted(MUTED_GROUP, false);
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isEqualTo(4);
+
+        setMuted(SINGLE, true);
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isEqualTo(3);
+
+        // 重复切换不重复扣除
+        setMuted(SINGLE, true);
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isEqualTo(3);
+    }
+
+    @Test
+    void clearingAMutedConversationDoesNotChangeTheTotal() {
+        unreadService.incrementUnread(USER_ID, SINGLE);
+        unreadService.incrementUnread(USER_ID, MUTED_GROUP);
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isEqualTo(1);
+
+        unreadService.clearUnread(USER_ID, MUTED_GROUP);
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isEqualTo(1);
+
+        unreadService.clearUnread(USER_ID, SINGLE);
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isZero();
+    }
+
+    @Test
+    void writesAfterExpiryDoNotRecreateTheTotalWithoutMuteMarkers() {
+        unreadService.incrementUnread(USER_ID, SINGLE);
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isEqualTo(1);
+
+        // 过期
+        redis.delete(totalKey);
+        unreadService.incrementUnread(USER_ID, MUTED_GROUP);
+        unreadService.clearUnread(USER_ID, SINGLE);
+        unreadService.onMuteChanged(USER_ID, MUTED_GROUP, false);
+        assertThat(redis.hasKey(totalKey)).isFalse();
+
+        // 下一次读取按会话列表重建，免打扰标记随之恢复
+        unreadService.incrementUnread(USER_ID, SINGLE);
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isEqualTo(1);
+        assertThat(redis.opsForHash().hasKey(totalKey, "m:" + MUTED_GROUP)).isTrue();
+        unreadService.incrementUnread(USER_ID, MUTED_GROUP);
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isEqualTo(1);
+    }
+
+    @Test
+    void hashWithoutTheTotalFieldIsRebuiltOnRead() {
+        // 只剩免打扰标记、没有总数字段的残留 Hash
+        redis.opsForHash().put(totalKey, "m:" + SINGLE, "1");
+        unreadService.incrementUnread(USER_ID, SINGLE);
+        assertThat(redis.opsForHash().hasKey(totalKey, "total")).isFalse();
+
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isEqualTo(1);
+        assertThat(redis.opsForHash().hasKey(totalKey, "m:" + SINGLE)).isFalse();
+    }
+
+    @Test
+    void incrementBetweenListingAndRebuildIsCounted() {
+        unreadService.incrementUnread(USER_ID, SINGLE);
+        // 查询会话列表之后、写入总数之前，另一条消息增加了未读数（总数尚未初始化，增加脚本不写总数）
+        StringRedisTemplate racing = spy(redis);
+        AtomicBoolean raced = new AtomicBoolean();
+        doAnswer(invocation -> {
+            if (raced.compareAndSet(false, true)) {
+                unreadService.incrementUnread(USER_ID, SINGLE);
+            }
+            return invocation.callRealMethod();
+        }).when(racing).execute(any(RedisScript.class), anyList(), any(Object[].class));
+        UnreadServiceImpl rebuilding = new UnreadServiceImpl(racing, completedMigrator(), conversationMapper,
+                mock(ActiveChatTracker.class), hashProperties());
+
+        assertThat(rebuilding.getUnreadTotal(USER_ID)).isEqualTo(2);
+        assertThat(raced).isTrue();
+        unreadService.clearUnread(USER_ID, SINGLE);
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isZero();
+    }
+
+    @Test
+    void stringStorageIsRebuiltFromPerConversationKeys() {
+        UnreadServiceImpl stringService = new UnreadServiceImpl(redis, completedMigrator(), conversationMapper,
+                mock(ActiveChatTracker.class), new EasyChatProperties());
+        stringService.incrementUnread(USER_ID, SINGLE);
+        stringService.incrementUnread(USER_ID, SINGLE);
+        stringService.incrementUnread(USER_ID, MUTED_GROUP);
+
+        assertThat(stringService.getUnreadTotal(USER_ID)).isEqualTo(2);
+        assertThat(redis.opsForHash().hasKey(totalKey, "m:" + MUTED_GROUP)).isTrue();
+    }
+
+    @Test
+    void deletedConversationIsSubtractedAndNotRebuilt() {
+        unreadService.incrementUnread(USER_ID, SINGLE);
+        unreadService.incrementUnread(USER_ID, SINGLE);
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isEqualTo(2);
+
+        // 删除会话：清除未读数，会话列表不再包含该会话
+        unreadService.clearUnread(USER_ID, SINGLE);
+        when(conversationMapper.selectList(any())).thenReturn(List.of(conversation(MUTED_GROUP, true)));
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isZero();
+        redis.delete(totalKey);
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isZero();
+    }
+
+    @Test
+    void everyWriteRefreshesTheExpiry() {
+        assertThat(unreadService.getUnreadTotal(USER_ID)).isZero();
+        Duration full = Duration.ofSeconds(RedisKeyConstants.UNREAD_TOTAL_EXPIRE_SECONDS);
+
+        redis.expire(totalKey, Duration.ofSeconds(10));
+        unreadService.incrementUnread(USER_ID, SINGLE);
+        assertThat(ttl()).isGreaterThan(full.minusMinutes(1));
+
+        redis.expire(totalKey, Duration.ofSeconds(10));
+        unreadService.clearUnread(USER_ID, SINGLE);
+        assertThat(ttl()).isGreaterThan(full.minusMinutes(1));
+
+        redis.expire(totalKey, Duration.ofSeconds(10));
+        setMuted(SINGLE, true);
+        assertThat(ttl()).isGreaterThan(full.minusMinutes(1));
+    }
+
+    private static EasyChatProperties hashProperties() {
+        EasyChatProperties properties = new EasyChatProperties();
+        properties.getUnread().setStorage(EasyChatProperties.Unread.Storage.HASH);
+        return properties;
+    }
+
+    private static UnreadKeyMigrator completedMigrator() {
+        UnreadKeyMigrator migrator = mock(UnreadKeyMigrator.class);
+        when(migrator.isCompleted()).thenReturn(true);
+        return migrator;
+    }
+
+    private void setMuted(String conversationId, boolean muted) {
+        unreadService.onMuteChanged(USER_ID, conversationId, muted);
+    }
+
+    private Duration ttl() {
+        return Duration.ofSeconds(redis.getExpire(totalKey));
+    }
+
+    private static Conversation conversation(String conversationId, boolean muted) {
+        Conversation conversation = new Conversation();
+        conversation.setConversationId(conversationId);
+        conversation.setMuted(muted);
+        return conversation;
+    }
+}
@@ -0,0 +1,139 @@
+package com.springleaf.easychat.service.impl;
+
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import com.springleaf.easychat.support.EmbeddedRedis;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 未读数两种存储格式的内存占用对比（嵌入式 Redis）：10000 个用户 × 每人 50 个会话，未读数 1 ~ 9
+ * 分别写入后取 INFO memory 的 used_memory 增量（包含全局字典的开销），并用 MEMORY USAGE 取一个用户的占用
+ *
+ * 本地测得（embedded-redis 1.4.3 自带的 Redis 6.2.6）：
+ * - STRING：每用户 50 个 Key，used_memory 增量 35456696 字节，约 3546 字节 / 用户（MEMORY USAGE 合计 3920 字节 / 用户）
+ * - HASH：每用户 1 个 ziplist 编码的 Hash，used_memory 增量 10988824 字节，约 1099 字节 / 用户（MEMORY USAGE 1027 字节）
+ * 按此推算 100 万用户 × 50 个会话：STRING 约 3.55 GB，HASH 约 1.10 GB，约为前者的 31%
+ */
+class UnreadStorageMemoryTest {
+
+    private static final int USERS = 10_000;
+    private static final int CONVERSATIONS = 50;
+    private static final long FIRST_USER_ID = 1_000_000L;
+
+    /**
+     * 通用命令的返回值按字节数组解析，MEMORY USAGE 的整数结果通过脚本取得
+     */
+    private static final DefaultRedisScript<Long> MEMORY_USAGE_SCRIPT = new DefaultRedisScript<>(
+            "return redis.call('MEMORY', 'USAGE', KEYS[1])", Long.class);
+
+    private StringRedisTemplate redis;
+
+    @BeforeEach
+    void setUp() {
+        EmbeddedRedis.flushAll();
+        redis = EmbeddedRedis.template();
+    }
+
+    @Test
+    void hashLayoutUsesFarLessMemoryThanStringKeys() {
+        long stringBefore = usedMemory();
+        write(false);
+        long stringBytes = usedMemory() - stringBefore;
+        long stringSample = 0;
+        for (String conversationId : conversationIds(FIRST_USER_ID)) {
+            stringSample += memoryUsage(RedisKeyConstants.getUnreadKey(FIRST_USER_ID, conversationId));
+        }
+        assertThat(redis.execute((RedisCallback<Long>) RedisConnection::dbSize)).isEqualTo((long) USERS * CONVERSATIONS);
+
+        EmbeddedRedis.flushAll();
+        long hashBefore = usedMemory();
+        write(true);
+        long hashBytes = usedMemory() - hashBefore;
+        long hashSample = memoryUsage(RedisKeyConstants.getUnreadHashKey(FIRST_USER_ID));
+        assertThat(redis.opsForHash().size(RedisKeyConstants.getUnreadHashKey(FIRST_USER_ID))).isEqualTo(CONVERSATIONS);
+
+        System.out.printf("Unread memory for %d users x %d conversations: string %d bytes (%.0f/user, MEMORY USAGE %d/user), "
+                        + "hash %d bytes (%.0f/user, MEMORY USAGE %d/user); 1M users: string %.2f GB, hash %.2f GB%n",
+                USERS, CONVERSATIONS, stringBytes, (double) stringBytes / USERS, stringSample,
+                hashBytes, (double) hashBytes / USERS, hashSample,
+                stringBytes * (1_000_000.0 / USERS) / 1e9, hashBytes * (1_000_000.0 / USERS) / 1e9);
+
+        // 会话数在紧凑编码的阈值内，Hash 的占用不到独立 Key 的三分之一
+        assertThat(hashBytes * 3).isLessThan(stringBytes);
+        assertThat(hashSample * 3).isLessThan(stringSample);
+    }
+
+    /**
+     * 分批 Pipeline 写入所有用户的未读数
+     */
+    private void write(boolean hash) {
+        int batch = 500;
+        for (int from = 0; from < USERS; from += batch) {
+            int start = from;
+            redis.executePipelined((RedisCallback<Object>) connection -> {
+                for (long userId = FIRST_USER_ID + start; userId < FIRST_USER_ID + start + batch; userId++) {
+                    List<String> conversationIds = conversationIds(userId);
+                    if (hash) {
+                        Map<byte[], byte[]> fields = new LinkedHashMap<>();
+                        for (int i = 0; i < conversationIds.size(); i++) {
+                            fields.put(bytes(conversationIds.get(i)), bytes(count(i)));
+                        }
+                        connection.hashCommands().hMSet(bytes(RedisKeyConstants.getUnreadHashKey(userId)), fields);
+                    } else {
+                        for (int i = 0; i < conversationIds.size(); i++) {
+                            connection.stringCommands().set(
+                                    bytes(RedisKeyConstants.getUnreadKey(userId, conversationIds.get(i))), bytes(count(i)));
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * 每个用户 40 个单聊、10 个群聊
+     */
+    private static List<String> conversationIds(long userId) {
+        List<String> conversationIds = new ArrayList<>(CONVERSATIONS);
+        for (int i = 0; i < CONVERSATIONS; i++) {
+            if (i < 40) {
+                long peerId = FIRST_USER_ID + (userId - FIRST_USER_ID + i + 1) % USERS;
+                conversationIds.add("s_" + Math.min(userId, peerId) + "_" + Math.max(userId, peerId));
+            } else {
+                conversationIds.add("g_" + (100_000 + (userId + i) % 5_000));
+            }
+        }
+        return conversationIds;
+    }
+
+    private static String count(int i) {
+        return String.valueOf(i % 9 + 1);
+    }
+
+    private long usedMemory() {
+        return Long.parseLong(Objects.requireNonNull(redis.execute((RedisCallback<String>) connection ->
+                Objects.requireNonNull(connection.serverCommands().info("memory")).getProperty("used_memory"))));
+    }
+
+    private long memoryUsage(String key) {
+        return Objects.requireNonNull(redis.execute(MEMORY_USAGE_SCRIPT, List.of(key)));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
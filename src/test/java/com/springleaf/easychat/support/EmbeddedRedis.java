@@ -0,0 +1,80 @@
+package com.springleaf.easychat.support;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.Objects;
+
+/**
+ * 测试用的嵌入式 Redis
+ * 整个测试 JVM 共用一个进程（随机端口），测试类通过 {@link #template()} 获取连接，在每个用例前 {@link #flushAll()}；
+ * 需要独立连接（统计命令数、模拟多个节点）时通过 {@link #newConnectionFactory()} 创建
+ */
+public final class EmbeddedRedis {
+
+    private static StringRedisTemplate template;
+    private static int port;
+
+    private EmbeddedRedis() {
+    }
+
+    /**
+     * 获取连接到嵌入式 Redis 的模板（首次调用时启动 Redis）
+     */
+    public static synchronized StringRedisTemplate template() {
+        if (template == null) {
+            port = freePort();
+            RedisServer server;
+            try {
+                server = new RedisServer(port);
+                server.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("启动嵌入式 Redis 失败", e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.stop();
+                } catch (IOException ignored) {
+                    // JVM 退出时 Redis 进程随之结束
+                }
+            }));
+            template = new StringRedisTemplate(newConnectionFactory());
+        }
+        return template;
+    }
+
+    /**
+     * 创建连接到嵌入式 Redis 的新连接工厂（与 {@link #template()} 不共享连接，调用方负责 destroy）
+     * 与生产环境一致使用连接池（commons-pool2 在类路径上时 Spring Boot 自动启用），Pipeline 不必每次新建连接
+     */
+    public static synchronized LettuceConnectionFactory newConnectionFactory() {
+        if (port == 0) {
+            template();
+        }
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", port), LettucePoolingClientConfiguration.defaultConfiguration());
+        connectionFactory.afterPropertiesSet();
+        return connectionFactory;
+    }
+
+    /**
+     * 清空所有数据
+     */
+    public static void flushAll() {
+        Objects.requireNonNull(template().getConnectionFactory()).getConnection().serverCommands().flushAll();
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
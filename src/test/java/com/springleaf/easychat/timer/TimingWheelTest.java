@@ -0,0 +1,147 @@
+package com.springleaf.easychat.timer;
+
+import com.springleaf.easychat.config.EasyChatProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 时间轮测试：刻度 10ms、8 个槽位（一圈 80ms）
+ * 任务不会早于到期时间执行；上界留出较大余量以适应繁忙的构建机器
+ */
+class TimingWheelTest {
+
+    private static final long TICK_MILLIS = 10;
+    private static final int SLOTS = 8;
+    private static final long REVOLUTION_MILLIS = TICK_MILLIS * SLOTS;
+    private static final long SLACK_MILLIS = 200;
+
+    private TimingWheel timingWheel;
+
+    @BeforeEach
+    void setUp() {
+        EasyChatProperties properties = new EasyChatProperties();
+        properties.getTimer().setTickMillis(TICK_MILLIS);
+        properties.getTimer().setTicksPerWheel(SLOTS);
+        timingWheel = new TimingWheel(properties);
+        timingWheel.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        timingWheel.stop();
+    }
+
+    @Test
+    void zeroDelayFiresOnTheNextTick() throws InterruptedException {
+        assertThat(elapsedMillisUntilFired(0)).isLessThan(SLACK_MILLIS);
+    }
+
+    @Test
+    void delayWithinOneRevolutionFiresAfterItsDeadline() throws InterruptedException {
+        assertThat(elapsedMillisUntilFired(35)).isBetween(35L, 35 + SLACK_MILLIS);
+    }
+
+    @Test
+    void delayOfExactlyOneRevolutionWaitsForTheNextRound() throws InterruptedException {
+        // 与当前刻度落在同一槽位，需要等一圈
+        assertThat(elapsedMillisUntilFired(REVOLUTION_MILLIS)).isBetween(REVOLUTION_MILLIS, REVOLUTION_MILLIS + SLACK_MILLIS);
+    }
+
+    @Test
+    void delayOfSeveralRevolutionsSkipsEarlierVisitsToItsSlot() throws InterruptedException {
+        // 2 圈 + 3 个刻度：第 3 个刻度的槽位在前两圈各经过一次，不能提前执行
+        long delay = REVOLUTION_MILLIS * 2 + TICK_MILLIS * 3;
+        assertThat(elapsedMillisUntilFired(delay)).isBetween(delay, delay + SLACK_MILLIS);
+    }
+
+    @Test
+    void cancelBeforeFireNeverRuns() throws InterruptedException {
+        AtomicBoolean ran = new AtomicBoolean();
+        // 尚在待转入队列中时取消
+        TimingWheel.Timeout pending = timingWheel.schedule(() -> ran.set(true), 50, TimeUnit.MILLISECONDS);
+        assertThat(pending.cancel()).isTrue();
+        // 已挂到槽位上后取消
+        TimingWheel.Timeout inBucket = timingWheel.schedule(() -> ran.set(true), 100, TimeUnit.MILLISECONDS);
+        Thread.sleep(3 * TICK_MILLIS);
+        assertThat(inBucket.cancel()).isTrue();
+
+        Thread.sleep(100 + SLACK_MILLIS);
+
+        assertThat(ran).isFalse();
+        assertThat(pending.isCancelled()).isTrue();
+        assertThat(pending.cancel()).isFalse();
+        assertThat(inBucket.isExpired()).isFalse();
+        assertThat(timingWheel.getStats()).containsEntry("cancelled", 2L).containsEntry("expired", 0L)
+                .containsEntry("pending", 0L);
+    }
+
+    @Test
+    void cancelAfterFireReturnsFalse() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        TimingWheel.Timeout timeout = timingWheel.schedule(fired::countDown, 10, TimeUnit.MILLISECONDS);
+
+        assertThat(fired.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(timeout.isExpired()).isTrue();
+        assertThat(timeout.cancel()).isFalse();
+        assertThat(timeout.isCancelled()).isFalse();
+    }
+
+    @Test
+    void taskCanRescheduleItselfFromTheWheelThread() throws InterruptedException {
+        // 与活跃会话、心跳检测相同的用法：到期时按剩余时间重新定时
+        CountDownLatch fired = new CountDownLatch(3);
+        AtomicLong lastFiredAt = new AtomicLong();
+        long start = System.nanoTime();
+        Runnable[] task = new Runnable[1];
+        task[0] = () -> {
+            lastFiredAt.set(System.nanoTime());
+            fired.countDown();
+            if (fired.getCount() > 0) {
+                timingWheel.schedule(task[0], 30, TimeUnit.MILLISECONDS);
+            }
+        };
+        timingWheel.schedule(task[0], 30, TimeUnit.MILLISECONDS);
+
+        assertThat(fired.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(lastFiredAt.get() - start)).isGreaterThanOrEqualTo(90);
+    }
+
+    @Test
+    void taskScheduledFromTheWheelThreadWithZeroDelayStillFires() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        timingWheel.schedule(() -> timingWheel.schedule(fired::countDown, 0, TimeUnit.MILLISECONDS),
+                10, TimeUnit.MILLISECONDS);
+
+        assertThat(fired.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheWheel() throws InterruptedException {
+        timingWheel.schedule(() -> {
+            throw new IllegalStateException("boom");
+        }, 0, TimeUnit.MILLISECONDS);
+
+        assertThat(elapsedMillisUntilFired(20)).isLessThan(20 + SLACK_MILLIS);
+        assertThat(timingWheel.getStats()).containsEntry("failed", 1L);
+    }
+
+    private long elapsedMillisUntilFired(long delayMillis) throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        AtomicLong firedAt = new AtomicLong();
+        long start = System.nanoTime();
+        timingWheel.schedule(() -> {
+            firedAt.set(System.nanoTime());
+            fired.countDown();
+        }, delayMillis, TimeUnit.MILLISECONDS);
+        assertThat(fired.await(delayMillis + 2000, TimeUnit.MILLISECONDS)).isTrue();
+        return TimeUnit.NANOSECONDS.toMillis(firedAt.get() - start);
+    }
+}
@@ -0,0 +1,105 @@
+package com.springleaf.easychat.websocket;
+
+import com.springleaf.easychat.config.EasyChatProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 扇出执行器的测试：名额已满时立即拒绝（不阻塞调用线程），已预留名额的任务一定能提交并按顺序执行
+ * 单分区，每分区 2 个名额
+ */
+class FanoutExecutorTest {
+
+    private static final String CONVERSATION_ID = "s_1_2";
+
+    private FanoutExecutor fanoutExecutor;
+
+    @BeforeEach
+    void setUp() {
+        EasyChatProperties properties = new EasyChatProperties();
+        properties.getFanout().setPartitions(1);
+        properties.getFanout().setQueueCapacity(2);
+        fanoutExecutor = new FanoutExecutor(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fanoutExecutor.shutdown();
+    }
+
+    @Test
+    void saturatedPartitionRejectsWithoutBlocking() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> executed = new CopyOnWriteArrayList<>();
+        assertThat(fanoutExecutor.tryReserve(CONVERSATION_ID)).isTrue();
+        assertThat(fanoutExecutor.tryReserve(CONVERSATION_ID)).isTrue();
+
+        // 名额用完后立即拒绝，不等待队列空位
+        long start = System.nanoTime();
+        assertThat(fanoutExecutor.tryReserve(CONVERSATION_ID)).isFalse();
+        assertThat(fanoutExecutor.submit(CONVERSATION_ID, () -> executed.add(0))).isFalse();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(50);
+
+        // 已预留名额的任务（消息已持久化）即使分区线程卡住也能提交
+        assertThat(fanoutExecutor.submitReserved(CONVERSATION_ID, () -> {
+            await(release);
+            executed.add(1);
+        })).isTrue();
+        assertThat(fanoutExecutor.submitReserved(CONVERSATION_ID, () -> executed.add(2))).isTrue();
+        assertThat(fanoutExecutor.tryReserve(CONVERSATION_ID)).isFalse();
+
+        release.countDown();
+        awaitIdle();
+        assertThat(executed).containsExactly(1, 2);
+        assertThat(fanoutExecutor.getStats()).containsEntry("rejected", 3L).containsEntry("completed", 2L);
+    }
+
+    @Test
+    void completedAndCancelledReservationsReturnPermits() throws Exception {
+        assertThat(fanoutExecutor.tryReserve(CONVERSATION_ID)).isTrue();
+        assertThat(fanoutExecutor.tryReserve(CONVERSATION_ID)).isTrue();
+        // 发送失败（未持久化）时归还名额
+        fanoutExecutor.cancelReservation(CONVERSATION_ID);
+        assertThat(fanoutExecutor.submitReserved(CONVERSATION_ID, () -> {
+        })).isTrue();
+        awaitIdle();
+
+        // 任务完成后归还名额，两个名额都可再次预留
+        assertThat(fanoutExecutor.tryReserve(CONVERSATION_ID)).isTrue();
+        assertThat(fanoutExecutor.tryReserve(CONVERSATION_ID)).isTrue();
+        assertThat(fanoutExecutor.tryReserve(CONVERSATION_ID)).isFalse();
+    }
+
+    @Test
+    void reservedSubmitAfterShutdownReturnsFalse() {
+        assertThat(fanoutExecutor.tryReserve(CONVERSATION_ID)).isTrue();
+        fanoutExecutor.shutdown();
+
+        assertThat(fanoutExecutor.submitReserved(CONVERSATION_ID, () -> {
+        })).isFalse();
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((long) fanoutExecutor.getStats().get("completed") < (long) fanoutExecutor.getStats().get("submitted")) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.springleaf.easychat.websocket;
+
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.timer.TimingWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 由时间轮驱动的心跳与空闲检测测试（Ping 间隔 30ms，空闲超时 90ms）
+ */
+class HeartbeatMonitorTest {
+
+    private TimingWheel timingWheel;
+    private OutboundDispatcher outboundDispatcher;
+    private HeartbeatMonitor heartbeatMonitor;
+    private ClientSession clientSession;
+
+    @BeforeEach
+    void setUp() {
+        EasyChatProperties properties = new EasyChatProperties();
+        properties.getTimer().setTickMillis(5);
+        properties.getHeartbeat().setPingIntervalMillis(30);
+        properties.getHeartbeat().setIdleTimeoutMillis(90);
+        timingWheel = new TimingWheel(properties);
+        timingWheel.start();
+        outboundDispatcher = mock(OutboundDispatcher.class);
+        heartbeatMonitor = new HeartbeatMonitor(outboundDispatcher, timingWheel, properties);
+
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        clientSession = new ClientSession(1L, session);
+    }
+
+    @AfterEach
+    void tearDown() {
+        heartbeatMonitor.shutdown();
+        timingWheel.stop();
+    }
+
+    @Test
+    void idleConnectionIsPingedThenReapedOffTheWheelThread() throws InterruptedException {
+        when(outboundDispatcher.send(eq(clientSession), any())).thenReturn(true);
+        when(outboundDispatcher.closeIdle(clientSession)).thenReturn(true);
+        CountDownLatch reaped = new CountDownLatch(1);
+        AtomicReference<String> reapThread = new AtomicReference<>();
+        heartbeatMonitor.addReapListener(reapedSession -> {
+            reapThread.set(Thread.currentThread().getName());
+            reaped.countDown();
+        });
+        // 空闲时长从会话创建时的活跃时间算起（setUp 中已记录），而不是从本用例开始执行算起
+        long start = clientSession.getLastActiveAt();
+
+        heartbeatMonitor.onConnect(clientSession);
+
+        assertThat(reaped.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(90);
+        verify(outboundDispatcher, atLeastOnce()).send(eq(clientSession), any(PingMessage.class));
+        // 清理监听器会访问 Redis，不能在时间轮线程上执行
+        assertThat(reapThread.get()).isEqualTo("heartbeat-reaper");
+        assertThat(heartbeatMonitor.getStats()).containsEntry("reaped", 1L);
+    }
+
+    @Test
+    void activeConnectionIsNeitherPingedNorReaped() throws InterruptedException {
+        heartbeatMonitor.onConnect(clientSession);
+
+        for (int i = 0; i < 30; i++) {
+            clientSession.markActive();
+            Thread.sleep(10);
+        }
+
+        verify(outboundDispatcher, never()).send(eq(clientSession), any(PingMessage.class));
+        verify(outboundDispatcher, never()).closeIdle(clientSession);
+    }
+
+    @Test
+    void disconnectStopsTheChecks() throws InterruptedException {
+        heartbeatMonitor.onConnect(clientSession);
+        heartbeatMonitor.onDisconnect(clientSession);
+
+        Thread.sleep(200);
+
+        verifyNoInteractions(outboundDispatcher);
+    }
+}
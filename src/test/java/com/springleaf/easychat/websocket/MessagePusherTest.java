@@ -0,0 +1,224 @@
+package com.springleaf.easychat.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springleaf.easychat.cache.GroupMemberCache;
+import com.springleaf.easychat.cache.GroupMemberSnapshot;
+import com.springleaf.easychat.cluster.ClusterMessageBus;
+import com.springleaf.easychat.cluster.ClusterNode;
+import com.springleaf.easychat.cluster.PresenceService;
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.constants.RedisKeyConstants;
+import com.springleaf.easychat.enums.ConversationTypeEnum;
+import com.springleaf.easychat.enums.GroupMemberStatusEnum;
+import com.springleaf.easychat.mapper.ConversationMapper;
+import com.springleaf.easychat.mapper.GroupMemberMapper;
+import com.springleaf.easychat.model.entity.GroupMember;
+import com.springleaf.easychat.model.vo.MessageVO;
+import com.springleaf.easychat.service.impl.UnreadKeyMigrator;
+import com.springleaf.easychat.service.impl.UnreadServiceImpl;
+import com.springleaf.easychat.support.EmbeddedRedis;
+import io.lettuce.core.event.command.CommandFailedEvent;
+import io.lettuce.core.event.command.CommandListener;
+import io.lettuce.core.event.command.CommandStartedEvent;
+import io.lettuce.core.event.command.CommandSucceededEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 群消息推送的 Redis 命令数测试（嵌入式 Redis）：命令数只与目标节点数、用户数 / 500 有关，不随群成员数逐个增加；已退出的成员不推送、不增加未读数
+ * 本节点 node-a，另一个存活节点 node-b；群成员 1..N，1 为发送者，2 在本节点在线，尾号为 3 的成员在 node-b 在线，其余离线
+ */
+class MessagePusherTest {
+
+    private static final long GROUP_ID = 10L;
+    private static final long SENDER_ID = 1L;
+    private static final long LOCAL_MEMBER_ID = 2L;
+    private static final String CONVERSATION_ID = "g_" + GROUP_ID;
+    private static final int BATCH = 500;
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redis;
+    private GroupMemberCache groupMemberCache;
+    private MessagePusher messagePusher;
+    private PresenceService remotePresence;
+    private DeliveryAckManager deliveryAckManager;
+    private final List<String> commands = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        EmbeddedRedis.flushAll();
+        connectionFactory = EmbeddedRedis.newConnectionFactory();
+        redis = new StringRedisTemplate(connectionFactory);
+        connectionFactory.getRequiredNativeClient().addListener(new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                commands.add(event.getCommand().getType().toString());
+            }
+
+            @Override
+            public void commandSucceeded(CommandSucceededEvent event) {
+            }
+
+            @Override
+            public void commandFailed(CommandFailedEvent event) {
+            }
+        });
+
+        ClusterNode localNode = clusterNode("node-a");
+        ClusterNode remoteNode = clusterNode("node-b");
+        remoteNode.heartbeat();
+        localNode.heartbeat();
+        remotePresence = new PresenceService(redis, remoteNode, new EasyChatProperties());
+
+        SessionRegistry sessionRegistry = new SessionRegistry();
+        WebSocketSession webSocketSession = mock(WebSocketSession.class);
+        when(webSocketSession.isOpen()).thenReturn(true);
+        sessionRegistry.register(new ClientSession(LOCAL_MEMBER_ID, webSocketSession));
+
+        deliveryAckManager = mock(DeliveryAckManager.class);
+        when(deliveryAckManager.deliver(any(), any(), any(), anyLong())).thenReturn(true);
+        EasyChatProperties properties = new EasyChatProperties();
+        properties.getUnread().setStorage(EasyChatProperties.Unread.Storage.HASH);
+        UnreadKeyMigrator migrator = mock(UnreadKeyMigrator.class);
+        when(migrator.isCompleted()).thenReturn(true);
+        UnreadServiceImpl unreadService = new UnreadServiceImpl(redis, migrator, mock(ConversationMapper.class),
+                mock(ActiveChatTracker.class), properties);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        ClusterMessageBus clusterMessageBus = new ClusterMessageBus(redis, mock(RedisMessageListenerContainer.class),
+                localNode, sessionRegistry, deliveryAckManager, objectMapper);
+
+        groupMemberCache = mock(GroupMemberCache.class);
+        messagePusher = new MessagePusher(groupMemberCache, objectMapper, unreadService, sessionRegistry, localNode,
+                new PresenceService(redis, localNode, new EasyChatProperties()), clusterMessageBus,
+                new OnlineGroupIndex(mock(GroupMemberMapper.class), groupMemberCache, sessionRegistry),
+                deliveryAckManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void commandCountDoesNotGrowWithGroupSize() {
+        Map<Integer, Integer> commandCounts = new LinkedHashMap<>();
+        Map<Integer, Double> latencies = new LinkedHashMap<>();
+        for (int size : new int[]{10, 100, 1000}) {
+            useGroup(size);
+            // 预热：脚本首次执行时 EVALSHA 未命中会再发一次 EVAL
+            messagePusher.pushMessage(message(size), null);
+
+            commands.clear();
+            messagePusher.pushMessage(message(size), null);
+            commandCounts.put(size, commands.size());
+            // 每个目标节点只发布一次
+            assertThat(commands).filteredOn("PUBLISH"::equals).hasSize(1);
+
+            // 推送耗时（先预热再计时，只作记录，不做断言）
+            int rounds = 50;
+            for (int i = 0; i < rounds; i++) {
+                messagePusher.pushMessage(message(size), null);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                messagePusher.pushMessage(message(size), null);
+            }
+            latencies.put(size, (System.nanoTime() - start) / rounds / 1_000_000.0);
+
+            // 离线成员与未查看该会话的在线成员都增加了未读数（预热 1 次 + 计数 1 次 + 计时前后各 rounds 次）
+            assertThat(redis.opsForHash().get(RedisKeyConstants.getUnreadHashKey((long) size), CONVERSATION_ID))
+                    .isEqualTo(String.valueOf(rounds * 2 + 2));
+        }
+        System.out.printf("MessagePusher Redis commands per group message: %s, avg latency (ms): %s%n",
+                commandCounts, latencies);
+
+        // BITFIELD（pipeline 一次往返）+ MGET 远程在线成员的活跃会话 + 增加未读数的脚本 + 向 node-b 发布
+        assertThat(commandCounts.get(10)).isEqualTo(4);
+        assertThat(commandCounts.get(100)).isEqualTo(4);
+        // 1000 人时 BITFIELD 与增加未读数的脚本每 500 个用户一批，各多一条，仍与成员数无关
+        assertThat(commandCounts.get(1000)).isEqualTo(2 + 1 + ceilDiv(999, BATCH) + 1);
+    }
+
+    @Test
+    void quitMembersAreNeitherPushedNorCounted() {
+        // 2 在本节点在线、3 在 node-b 在线、4 离线，三人都已退出；5 离线且是正常成员
+        remotePresence.markOnline(3L);
+        List<GroupMember> members = new ArrayList<>();
+        members.add(member(SENDER_ID, GroupMemberStatusEnum.NORMAL));
+        members.add(member(LOCAL_MEMBER_ID, GroupMemberStatusEnum.QUIT));
+        members.add(member(3L, GroupMemberStatusEnum.QUIT));
+        members.add(member(4L, GroupMemberStatusEnum.QUIT));
+        members.add(member(5L, GroupMemberStatusEnum.NORMAL));
+        when(groupMemberCache.get(GROUP_ID)).thenReturn(GroupMemberSnapshot.of(members));
+
+        commands.clear();
+        messagePusher.pushMessage(message(1L), null);
+
+        verify(deliveryAckManager, never()).deliver(any(), any(), any(), anyLong());
+        assertThat(commands).doesNotContain("PUBLISH");
+        assertThat(redis.opsForHash().get(RedisKeyConstants.getUnreadHashKey(5L), CONVERSATION_ID)).isEqualTo("1");
+        for (long quitMemberId = 2; quitMemberId <= 4; quitMemberId++) {
+            assertThat(redis.hasKey(RedisKeyConstants.getUnreadHashKey(quitMemberId))).isFalse();
+        }
+    }
+
+    private void useGroup(int size) {
+        List<GroupMember> members = new ArrayList<>(size);
+        for (long userId = 1; userId <= size; userId++) {
+            members.add(member(userId, GroupMemberStatusEnum.NORMAL));
+            if (userId % 10 == 3) {
+                remotePresence.markOnline(userId);
+            }
+        }
+        when(groupMemberCache.get(GROUP_ID)).thenReturn(GroupMemberSnapshot.of(members));
+    }
+
+    private static GroupMember member(long userId, GroupMemberStatusEnum status) {
+        GroupMember member = new GroupMember();
+        member.setGroupId(GROUP_ID);
+        member.setUserId(userId);
+        member.setRole(0);
+        member.setStatus(status.getCode());
+        return member;
+    }
+
+    private static MessageVO message(long id) {
+        MessageVO messageVO = new MessageVO();
+        messageVO.setId(id);
+        messageVO.setConversationId(CONVERSATION_ID);
+        messageVO.setConversationType(ConversationTypeEnum.GROUP.getCode());
+        messageVO.setSenderId(SENDER_ID);
+        messageVO.setMessageType(1);
+        messageVO.setContent("hello");
+        return messageVO;
+    }
+
+    private ClusterNode clusterNode(String nodeId) {
+        EasyChatProperties properties = new EasyChatProperties();
+        properties.getCluster().setNodeId(nodeId);
+        return new ClusterNode(redis, properties);
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,134 @@
+package com.springleaf.easychat.websocket;
+
+import com.springleaf.easychat.config.EasyChatProperties;
+import com.springleaf.easychat.constants.WebSocketConstants;
+import com.springleaf.easychat.timer.TimingWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 出站分发器的测试：写出卡住时由看门狗驱逐，缓冲计数在并发读写、清空时不为负
+ * 写出超时上限 100ms，看门狗每 25ms 检查一次
+ */
+class OutboundDispatcherTest {
+
+    private TimingWheel timingWheel;
+    private OutboundDispatcher outboundDispatcher;
+
+    @BeforeEach
+    void setUp() {
+        EasyChatProperties properties = new EasyChatProperties();
+        properties.getTimer().setTickMillis(5);
+        properties.getOutbound().setSendTimeLimitMillis(100);
+        properties.getOutbound().setWriterThreads(1);
+        timingWheel = new TimingWheel(properties);
+        timingWheel.start();
+        outboundDispatcher = new OutboundDispatcher(timingWheel, properties);
+        outboundDispatcher.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboundDispatcher.shutdown();
+        timingWheel.stop();
+    }
+
+    @Test
+    void stalledSendIsEvictedWithoutFurtherSends() throws Exception {
+        // 客户端不读取：sendMessage 一直阻塞，直到连接被关闭
+        CountDownLatch closed = new CountDownLatch(1);
+        WebSocketSession stalled = mock(WebSocketSession.class);
+        when(stalled.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            closed.await();
+            throw new IOException("连接已关闭");
+        }).when(stalled).sendMessage(any());
+        doAnswer(invocation -> {
+            closed.countDown();
+            return null;
+        }).when(stalled).close(any());
+        ClientSession stalledSession = new ClientSession(1L, stalled);
+
+        assertThat(outboundDispatcher.send(stalledSession, new TextMessage("a"))).isTrue();
+
+        // 之后不再有入队，只有看门狗能发现写出超时
+        verify(stalled, timeout(2000)).close(WebSocketConstants.RESYNC_REQUIRED);
+        assertThat(outboundDispatcher.getEvictedCount()).isEqualTo(1);
+
+        // 写线程被释放，其他会话的帧可以继续写出
+        WebSocketSession healthy = mock(WebSocketSession.class);
+        when(healthy.isOpen()).thenReturn(true);
+        assertThat(outboundDispatcher.send(new ClientSession(2L, healthy), new TextMessage("b"))).isTrue();
+        verify(healthy, timeout(2000)).sendMessage(any());
+    }
+
+    @Test
+    void queuedCountersNeverGoNegativeUnderConcurrentPollAndClear() throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        ClientSession clientSession = new ClientSession(1L, session);
+        TextMessage message = new TextMessage("0123456789");
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger minFrames = new AtomicInteger();
+        AtomicInteger minBytes = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> producer = executor.submit(() -> {
+                for (int i = 0; i < 500_000; i++) {
+                    clientSession.offer(message);
+                }
+            });
+            Future<?> consumer = executor.submit(() -> {
+                while (running.get()) {
+                    clientSession.poll();
+                    minFrames.accumulateAndGet(clientSession.getQueuedFrames(), Math::min);
+                    minBytes.accumulateAndGet(clientSession.getQueuedBytes(), Math::min);
+                }
+            });
+            Future<?> cleaner = executor.submit(() -> {
+                while (running.get()) {
+                    clientSession.clear();
+                    minFrames.accumulateAndGet(clientSession.getQueuedFrames(), Math::min);
+                }
+            });
+            producer.get(30, TimeUnit.SECONDS);
+            running.set(false);
+            consumer.get(30, TimeUnit.SECONDS);
+            cleaner.get(30, TimeUnit.SECONDS);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+
+        assertThat(minFrames.get()).isNotNegative();
+        assertThat(minBytes.get()).isNotNegative();
+        // 静止后计数与缓冲中实际的帧一致
+        int remaining = 0;
+        int frames = clientSession.getQueuedFrames();
+        while (clientSession.poll() != null) {
+            remaining++;
+        }
+        assertThat(frames).isEqualTo(remaining);
+        assertThat(clientSession.getQueuedFrames()).isZero();
+        assertThat(clientSession.getQueuedBytes()).isZero();
+    }
+}
@@ -0,0 +1,224 @@
+package com.springleaf.easychat.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+/**
+ * 开放寻址会话表的测试：扩容、线性探测链中间删除后的前移、并发读写，以及内存估算与 JOL 实测的对比
+ */
+class SessionTableTest {
+
+    /**
+     * 分段掩码与初始容量掩码：散列值在这些位上相同的用户落在同一分段的同一起始槽位
+     */
+    private static final int STRIPE_BITS = 0x0F000000;
+    private static final int SLOT_MASK = 1024 - 1;
+
+    @Test
+    void addRemoveGetAcrossResize() {
+        SessionTable table = new SessionTable();
+        long initialSlots = table.slotCount();
+        Map<Long, ClientSession> sessions = new HashMap<>();
+        // 每个分段约 1250 个用户，超过初始容量 1024 × 0.75，每个分段至少扩容一次
+        for (long userId = 1; userId <= 20000; userId++) {
+            ClientSession clientSession = session(userId);
+            sessions.put(userId, clientSession);
+            assertThat(table.add(clientSession)).isEqualTo(1);
+        }
+        assertThat(table.slotCount()).isGreaterThanOrEqualTo(initialSlots * 2);
+        assertThat(table.userCount()).isEqualTo(20000);
+        sessions.forEach((userId, clientSession) -> assertThat(table.get(userId)).containsExactly(clientSession));
+
+        // 多端登录与重复添加
+        ClientSession second = session(7L);
+        assertThat(table.add(second)).isEqualTo(2);
+        assertThat(table.add(second)).isEqualTo(2);
+        assertThat(table.get(7L)).containsExactly(sessions.get(7L), second);
+        assertThat(table.remove(sessions.get(7L))).isEqualTo(1);
+        assertThat(table.get(7L)).containsExactly(second);
+        sessions.put(7L, second);
+
+        for (long userId = 1; userId <= 20000; userId += 2) {
+            assertThat(table.remove(sessions.remove(userId))).isZero();
+        }
+        assertThat(table.userCount()).isEqualTo(10000);
+        assertThat(table.sessionCount()).isEqualTo(10000);
+        assertThat(table.snapshot()).containsExactlyInAnyOrderElementsOf(sessions.values());
+        for (long userId = 1; userId <= 20000; userId++) {
+            ClientSession expected = sessions.get(userId);
+            assertThat(table.get(userId)).isEqualTo(expected == null ? new ClientSession[0] : new ClientSession[]{expected});
+        }
+        assertThat(table.remove(session(1L))).isEqualTo(-1);
+    }
+
+    @Test
+    void removeFromMiddleOfClusterShiftsFollowersBack() {
+        // 起始槽位 h 的 A、B、C 与起始槽位 h + 1 的 D 组成一条探测链 [A B C D]
+        int home = 100;
+        List<Long> sameHome = keys(home, 3);
+        long d = keys(home + 1, 1).get(0);
+        assertClusterSurvivesRemovals(sameHome, d);
+    }
+
+    @Test
+    void removeFromClusterWrappingAroundTheTableEnd() {
+        // 起始槽位为最后一个槽位，探测链绕回表头 [.. A] [B C D ..]
+        int home = SLOT_MASK;
+        List<Long> sameHome = keys(home, 3);
+        long d = keys(0, 1).get(0);
+        assertClusterSurvivesRemovals(sameHome, d);
+    }
+
+    @Test
+    void concurrentReadersSeeStableUsersDuringWrites() throws Exception {
+        SessionTable table = new SessionTable();
+        int stableUsers = 2000;
+        ClientSession[] stable = new ClientSession[stableUsers];
+        for (int i = 0; i < stableUsers; i++) {
+            stable[i] = session(i * 2L);
+            table.add(stable[i]);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(6);
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<Long>> readers = new ArrayList<>();
+            for (int r = 0; r < 4; r++) {
+                readers.add(executor.submit(() -> {
+                    started.countDown();
+                    long reads = 0;
+                    while (running.get()) {
+                        for (int i = 0; i < stableUsers; i++) {
+                            assertThat(table.get(i * 2L)).containsExactly(stable[i]);
+                            reads++;
+                        }
+                    }
+                    return reads;
+                }));
+            }
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < 2; w++) {
+                long offset = w;
+                writers.add(executor.submit(() -> {
+                    started.countDown();
+                    // 奇数用户反复上下线，表随之扩容、前移
+                    for (int round = 0; round < 20; round++) {
+                        List<ClientSession> added = new ArrayList<>();
+                        for (long userId = 1 + offset * 2; userId < 40000; userId += 4) {
+                            ClientSession clientSession = session(userId);
+                            table.add(clientSession);
+                            added.add(clientSession);
+                        }
+                        for (ClientSession clientSession : added) {
+                            assertThat(table.remove(clientSession)).isZero();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            started.await();
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+            running.set(false);
+            for (Future<Long> reader : readers) {
+                assertThat(reader.get(30, TimeUnit.SECONDS)).isPositive();
+            }
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+        assertThat(table.userCount()).isEqualTo(stableUsers);
+        assertThat(table.sessionCount()).isEqualTo(stableUsers);
+    }
+
+    @Test
+    void estimatedBytesMatchMeasuredHeap() {
+        // 不扩容：槽位数 16 × 1024；ConcurrentHashMap 桶数组 4096
+        int users = 2000;
+        SessionTable table = new SessionTable();
+        Map<Long, ClientSession> boxedMap = new ConcurrentHashMap<>();
+        SessionRegistry registry = new SessionRegistry();
+        List<ClientSession> sessions = new ArrayList<>();
+        for (long userId = 1000; userId < 1000 + users; userId++) {
+            ClientSession clientSession = session(userId);
+            sessions.add(clientSession);
+            table.add(clientSession);
+            // 与原先的注册表一致，键为会话持有的用户ID
+            boxedMap.put(clientSession.getUserId(), clientSession);
+            registry.register(clientSession);
+        }
+
+        Map<String, Object> stats = registry.getStats();
+        assertThat((long) stats.get("estimatedBytes")).isCloseTo(retainedBytes(table, sessions), withinPercentage(5));
+        assertThat((long) stats.get("boxedMapEstimatedBytes")).isCloseTo(retainedBytes(boxedMap, sessions), withinPercentage(5));
+    }
+
+    private static void assertClusterSurvivesRemovals(List<Long> sameHome, long d) {
+        for (int victim = 0; victim < 4; victim++) {
+            SessionTable table = new SessionTable();
+            List<ClientSession> cluster = new ArrayList<>();
+            for (long userId : sameHome) {
+                cluster.add(session(userId));
+            }
+            cluster.add(session(d));
+            cluster.forEach(table::add);
+
+            ClientSession removed = cluster.remove(victim);
+            assertThat(table.remove(removed)).isZero();
+            assertThat(table.get(removed.getUserId())).isEmpty();
+            for (ClientSession clientSession : cluster) {
+                assertThat(table.get(clientSession.getUserId())).containsExactly(clientSession);
+            }
+            // 前移后的链仍可继续删除、插入
+            for (ClientSession clientSession : cluster) {
+                assertThat(table.remove(clientSession)).isZero();
+            }
+            assertThat(table.userCount()).isZero();
+            table.add(removed);
+            assertThat(table.get(removed.getUserId())).containsExactly(removed);
+        }
+    }
+
+    /**
+     * 查找与第一个用户同分段、起始槽位为 home 的用户ID（初始容量下）
+     */
+    private static List<Long> keys(int home, int count) {
+        List<Long> keys = new ArrayList<>();
+        for (long userId = 1; keys.size() < count; userId++) {
+            int hash = SessionTable.hash(userId);
+            if ((hash & STRIPE_BITS) == 0 && (hash & SLOT_MASK) == home) {
+                keys.add(userId);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 容器本身占用的堆内存（不含会话对象及其引用的对象）
+     */
+    private static long retainedBytes(Object container, List<ClientSession> sessions) {
+        Object[] roots = sessions.toArray(new Object[sessions.size() + 1]);
+        roots[sessions.size()] = container;
+        return GraphLayout.parseInstance(roots).totalSize() - GraphLayout.parseInstance(sessions.toArray()).totalSize();
+    }
+
+    private static ClientSession session(long userId) {
+        return new ClientSession(userId, null);
+    }
+}
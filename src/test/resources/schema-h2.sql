@@ -0,0 +1,36 @@
+-- docs/easy_chat.sql 中测试用到的表（去掉 H2 不支持的注释与降序索引）
+
+DROP TABLE IF EXISTS conversations;
+CREATE TABLE conversations (
+    conversation_id VARCHAR(64) NOT NULL,
+    type TINYINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    target_id BIGINT NOT NULL,
+    last_message_id BIGINT DEFAULT NULL,
+    last_message_time TIMESTAMP NULL,
+    status TINYINT DEFAULT 1,
+    pinned BOOLEAN DEFAULT FALSE,
+    muted BOOLEAN DEFAULT FALSE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, conversation_id)
+);
+CREATE INDEX idx_user_status_time ON conversations (user_id, status, last_message_time);
+
+DROP TABLE IF EXISTS messages;
+CREATE TABLE messages (
+    id BIGINT PRIMARY KEY,
+    conversation_id VARCHAR(64) NOT NULL,
+    seq BIGINT NOT NULL,
+    sender_id BIGINT NOT NULL,
+    message_type TINYINT NOT NULL,
+    content TEXT,
+    media_url VARCHAR(500),
+    file_name VARCHAR(200),
+    file_size INT,
+    status TINYINT DEFAULT 1,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX idx_conv_id ON messages (conversation_id, id, status);
+CREATE UNIQUE INDEX uk_conv_seq ON messages (conversation_id, seq);